@@ -15,6 +15,7 @@ import eu.europeana.crfmigration.domain.MigratorConfig;
 import eu.europeana.crfmigration.logic.MigrationManager;
 import eu.europeana.crfmigration.logic.MigrationMetrics;
 import eu.europeana.harvester.domain.MongoConfig;
+import eu.europeana.jobcreator.JobCreator;
 import org.joda.time.DateTime;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +53,8 @@ public class Migrator {
         final Graphite graphite = new Graphite(new InetSocketAddress(graphiteReporterConfig.getGraphiteServer(),
                 graphiteReporterConfig.getGraphitePort()));
 
+        JobCreator.useMetricRegistry(MigrationMetrics.METRIC_REGISTRY, MigrationMetrics.Migrator.NAME + ".jobCreator.dnsResolver");
+
         GraphiteReporter graphiteReporter = GraphiteReporter.forRegistry(MigrationMetrics.METRIC_REGISTRY)
                 .prefixedWith(graphiteReporterConfig.getGraphiteMasterId())
                 .convertRatesTo(TimeUnit.SECONDS)
@@ -1,5 +1,6 @@
 package eu.europeana.jobcreator;
 
+import com.codahale.metrics.MetricRegistry;
 import eu.europeana.harvester.domain.DocumentReferenceTaskType;
 import eu.europeana.harvester.domain.ReferenceOwner;
 import eu.europeana.harvester.domain.SourceDocumentReference;
@@ -22,7 +23,27 @@ import java.util.concurrent.ExecutionException;
  */
 public class JobCreator {
 
-    public final static CachingUrlResolver URL_RESOLVER = new CachingUrlResolver();
+    /**
+     * Resolves the IPs of the jobs. Its metrics are lost until the application gives its registry.
+     */
+    private static volatile CachingUrlResolver urlResolver = new CachingUrlResolver();
+
+    /**
+     * Registers the metrics of the IP resolution in the registry of the application. To be called once at startup,
+     * before any job is created, as the IPs resolved so far are forgotten.
+     */
+    public static void useMetricRegistry(final MetricRegistry metricRegistry, final String metricsPrefix) {
+        urlResolver = new CachingUrlResolver(
+                24 * 60 * 60 * 1000l, /* 24 HOURS -> positiveTtlInMillis */
+                5 * 60 * 1000l, /* 5 MINUTES -> negativeTtlInMillis */
+                8, /* nrOfLookupThreads */
+                metricRegistry,
+                metricsPrefix);
+    }
+
+    public static CachingUrlResolver getUrlResolver() {
+        return urlResolver;
+    }
 
     public final static List<ProcessingJobTuple> createJobs (final ReferenceOwner owner,
                                                              final SourceDocumentReference reference,
@@ -113,6 +134,8 @@ public class JobCreator {
             throw new IllegalArgumentException("Options cannot be null");
         }
 
+        prefetchIps(edmObjectUrl, edmHasViewUrls, edmIsShownByUrl, edmIsShownAtUrl);
+
         final List<ProcessingJobTuple> results = new ArrayList();
         final ReferenceOwner owner = new ReferenceOwner(providerId, collectionId, recordId, executionId);
 
@@ -173,6 +196,8 @@ public class JobCreator {
             throw new IllegalArgumentException("Options cannot be null");
         }
 
+        prefetchIps(edmObjectUrl, edmHasViewUrls, edmIsShownByUrl, edmIsShownAtUrl);
+
         final List<ProcessingJobTuple> results = new ArrayList();
         final ReferenceOwner owner = new ReferenceOwner(providerId, collectionId, recordId, executionId);
 
@@ -194,4 +219,22 @@ public class JobCreator {
 
         return results;
     }
+
+    /**
+     * Starts resolving the IPs of all the urls of the record at once, so that the jobs don't wait for one DNS lookup
+     * after the other.
+     */
+    private static void prefetchIps(final String edmObjectUrl,
+                                    final List<String> edmHasViewUrls,
+                                    final String edmIsShownByUrl,
+                                    final String edmIsShownAtUrl) {
+        final List<String> urls = new ArrayList<>();
+        if (null != edmObjectUrl) urls.add(edmObjectUrl);
+        if (null != edmHasViewUrls) urls.addAll(edmHasViewUrls);
+        if (null != edmIsShownByUrl) urls.add(edmIsShownByUrl);
+        if (null != edmIsShownAtUrl) urls.add(edmIsShownAtUrl);
+        if (urls.size() > 1) {
+            urlResolver.prefetch(urls);
+        }
+    }
 }
@@ -59,7 +59,7 @@ public class ProcessingJobBuilder {
                 ),
                 JobState.READY,
                 URLSourceType.OBJECT,
-                JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url),
+                JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url),
                 true);
 
         final List<SourceDocumentReferenceProcessingProfile> sourceDocumentReferenceProcessingProfiles =
@@ -103,7 +103,7 @@ public class ProcessingJobBuilder {
                                     sourceDocumentReference.getId(),
                                     subTasks)
                     ),
-                    JobState.READY, URLSourceType.HASVIEW, JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
+                    JobState.READY, URLSourceType.HASVIEW, JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
 
             sourceDocumentReferenceProcessingProfiles.add(
                 SourceDocumentReferenceProcessingProfileBuilder.edmHasView(sourceDocumentReference.getId(),
@@ -143,7 +143,7 @@ public class ProcessingJobBuilder {
                                 sourceDocumentReference.getId(),
                                 subTasks)
                 ),
-                JobState.READY, URLSourceType.ISSHOWNBY, JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
+                JobState.READY, URLSourceType.ISSHOWNBY, JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
 
         final List<SourceDocumentReferenceProcessingProfile> sourceDocumentReferenceProcessingProfiles =
                 Arrays.asList (
@@ -181,7 +181,7 @@ public class ProcessingJobBuilder {
                                 sourceDocumentReference.getId(),
                                 new ArrayList())
                 ),
-                JobState.READY, URLSourceType.ISSHOWNAT, JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
+                JobState.READY, URLSourceType.ISSHOWNAT, JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url), true);
 
         final List<SourceDocumentReferenceProcessingProfile> sourceDocumentReferenceProcessingProfiles =
             Arrays.asList (
@@ -231,7 +231,7 @@ public class ProcessingJobBuilder {
                             ),
               JobState.READY,
               URLSourceType.OBJECT,
-                JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url),
+                JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url),
               true
         );
 
@@ -280,7 +280,7 @@ public class ProcessingJobBuilder {
                                 ),
                   JobState.READY,
                   URLSourceType.HASVIEW,
-                    JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url),
+                    JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url),
                   true
             );
 
@@ -327,7 +327,7 @@ public class ProcessingJobBuilder {
                            ),
               JobState.READY,
               URLSourceType.ISSHOWNBY,
-                JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url),
+                JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url),
               true
         );
 
@@ -372,7 +372,7 @@ public class ProcessingJobBuilder {
                             ),
               JobState.READY,
               URLSourceType.ISSHOWNAT,
-                JobCreator.URL_RESOLVER.resolveIpOfUrlAndReturnLoopbackOnFail(url),
+                JobCreator.getUrlResolver().resolveIpOfUrlAndReturnLoopbackOnFail(url),
               true);
 
         final List<SourceDocumentReferenceProcessingProfile> sourceDocumentReferenceProcessingProfiles = Arrays.asList (
@@ -29,6 +29,11 @@ public class ProcessingJobLimits implements Serializable {
      */
     private final Long processingTerminationThresholdTimeLimitInMillis;
 
+    /**
+     * The content size threshold after which the retrieval is terminated. 0 means no limit.
+     */
+    private final Long retrievalTerminationThresholdSizeLimitInBytes;
+
     public ProcessingJobLimits() {
         this(
                 30 * 60 * 1000l,  /* 30 MINUTES -> retrievalTerminationThresholdTimeLimitInMillis */
@@ -41,11 +46,18 @@ public class ProcessingJobLimits implements Serializable {
     }
 
     public ProcessingJobLimits(Long retrievalTerminationThresholdTimeLimitInMillis, Long retrievalTerminationThresholdReadPerSecondInBytes, Long retrievalConnectionTimeoutInMillis, Integer retrievalMaxNrOfRedirects, Long processingTerminationThresholdTimeLimitInMillis) {
+        this(retrievalTerminationThresholdTimeLimitInMillis, retrievalTerminationThresholdReadPerSecondInBytes,
+                retrievalConnectionTimeoutInMillis, retrievalMaxNrOfRedirects, processingTerminationThresholdTimeLimitInMillis,
+                0l /* NO LIMIT -> retrievalTerminationThresholdSizeLimitInBytes */);
+    }
+
+    public ProcessingJobLimits(Long retrievalTerminationThresholdTimeLimitInMillis, Long retrievalTerminationThresholdReadPerSecondInBytes, Long retrievalConnectionTimeoutInMillis, Integer retrievalMaxNrOfRedirects, Long processingTerminationThresholdTimeLimitInMillis, Long retrievalTerminationThresholdSizeLimitInBytes) {
         this.retrievalTerminationThresholdTimeLimitInMillis = retrievalTerminationThresholdTimeLimitInMillis;
         this.retrievalTerminationThresholdReadPerSecondInBytes = retrievalTerminationThresholdReadPerSecondInBytes;
         this.retrievalConnectionTimeoutInMillis = retrievalConnectionTimeoutInMillis;
         this.retrievalMaxNrOfRedirects = retrievalMaxNrOfRedirects;
         this.processingTerminationThresholdTimeLimitInMillis = processingTerminationThresholdTimeLimitInMillis;
+        this.retrievalTerminationThresholdSizeLimitInBytes = retrievalTerminationThresholdSizeLimitInBytes;
     }
 
     public Long getRetrievalTerminationThresholdTimeLimitInMillis() {
@@ -67,4 +79,9 @@ public class ProcessingJobLimits implements Serializable {
     public Long getProcessingTerminationThresholdTimeLimitInMillis() {
         return processingTerminationThresholdTimeLimitInMillis;
     }
+
+    public Long getRetrievalTerminationThresholdSizeLimitInBytes() {
+        if (retrievalTerminationThresholdSizeLimitInBytes == null) return 0l; /* Repair on Read if missing */
+        return retrievalTerminationThresholdSizeLimitInBytes;
+    }
 }
@@ -7,6 +7,7 @@ public enum ProcessingJobRetrieveSubTaskState {
     FINISHED_RATE_LIMIT,
     FINISHED_TIME_LIMIT,
     FINISHED_SIZE_LIMIT,
+    FINISHED_UNWANTED_CONTENT,
     NEVER_EXECUTED
 }
 
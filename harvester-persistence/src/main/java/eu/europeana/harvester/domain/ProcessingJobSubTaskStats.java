@@ -215,6 +215,7 @@ public class ProcessingJobSubTaskStats implements Serializable {
                 retrieveState == ProcessingJobRetrieveSubTaskState.FINISHED_RATE_LIMIT ||
                 retrieveState == ProcessingJobRetrieveSubTaskState.FINISHED_SIZE_LIMIT ||
                 retrieveState == ProcessingJobRetrieveSubTaskState.FINISHED_TIME_LIMIT ||
+                retrieveState == ProcessingJobRetrieveSubTaskState.FINISHED_UNWANTED_CONTENT ||
                 colorExtractionState == ProcessingJobSubTaskState.FAILED ||
                 metaExtractionState == ProcessingJobSubTaskState.FAILED ||
                 thumbnailGenerationState == ProcessingJobSubTaskState.FAILED ||
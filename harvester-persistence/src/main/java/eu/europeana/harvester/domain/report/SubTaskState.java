@@ -10,5 +10,6 @@ public enum SubTaskState {
     FINISHED_RATE_LIMIT,
     FINISHED_TIME_LIMIT,
     FINISHED_SIZE_LIMIT,
+    FINISHED_UNWANTED_CONTENT,
     NEVER_EXECUTED
 }
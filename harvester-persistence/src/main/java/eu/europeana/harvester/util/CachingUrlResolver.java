@@ -1,41 +1,157 @@
 package eu.europeana.harvester.util;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.*;
 
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Resolves the IP of the urls. The lookups are executed asynchronously on a small dedicated pool so that the callers
+ * (ie. the netty I/O threads) never block on DNS.
+ *
+ * Both the resolved hostnames and the hostnames that can't be resolved are cached, each with its own time to live,
+ * so an unknown host is not looked up again on every call. Concurrent lookups of the same hostname are merged.
+ */
 public class CachingUrlResolver {
 
     private static final String NO_IP = "127.0.0.1";
 
-    private final LoadingCache<String /* hostname */ , String /* IP */> hostnameToIpCache;
+    private final Cache<String /* hostname */, String /* IP */> hostnameToIpCache;
+
+    private final Cache<String /* hostname */, UnknownHostException> unresolvableHostnameCache;
+
+    private final ConcurrentMap<String /* hostname */, ListenableFuture<String>> lookupsInProgress = new ConcurrentHashMap<>();
+
+    private final ListeningExecutorService lookupExecutor;
+
+    private final Meter hits;
+
+    private final Meter misses;
+
+    private final Meter failures;
+
+    private final Timer lookupDuration;
 
     public CachingUrlResolver() {
-        this.hostnameToIpCache =
-                CacheBuilder.newBuilder()
-                        .maximumSize(10*10000)
-                        .expireAfterWrite(24, TimeUnit.HOURS)
-                        .build(
-                                new CacheLoader<String, String>() {
-                                    public String load(String key) throws UnknownHostException {
-                                        final InetAddress address = InetAddress.getByName(key);
-                                        return address.getHostAddress();
-                                    }
-                                });
+        this(24 * 60 * 60 * 1000l, /* 24 HOURS -> positiveTtlInMillis */
+             5 * 60 * 1000l, /* 5 MINUTES -> negativeTtlInMillis */
+             8, /* nrOfLookupThreads */
+             new MetricRegistry(),
+             CachingUrlResolver.class.getSimpleName());
+    }
+
+    /**
+     * @param positiveTtlInMillis   how long a resolved hostname is cached
+     * @param negativeTtlInMillis   how long a hostname that can't be resolved is cached
+     * @param nrOfLookupThreads     the max number of DNS lookups executed in parallel
+     * @param metricRegistry        where the hit rate & lookup latency metrics are registered
+     * @param metricsPrefix         the prefix of the metric names
+     */
+    public CachingUrlResolver(final Long positiveTtlInMillis, final Long negativeTtlInMillis, final Integer nrOfLookupThreads,
+                              final MetricRegistry metricRegistry, final String metricsPrefix) {
+        this.hostnameToIpCache = CacheBuilder.newBuilder()
+                .maximumSize(10 * 10000)
+                .expireAfterWrite(positiveTtlInMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.unresolvableHostnameCache = CacheBuilder.newBuilder()
+                .maximumSize(10 * 10000)
+                .expireAfterWrite(negativeTtlInMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.lookupExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(nrOfLookupThreads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "dns-lookup");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }));
+
+        this.hits = metricRegistry.meter(name(metricsPrefix, "hits"));
+        this.misses = metricRegistry.meter(name(metricsPrefix, "misses"));
+        this.failures = metricRegistry.meter(name(metricsPrefix, "failures"));
+        this.lookupDuration = metricRegistry.timer(name(metricsPrefix, "lookupDuration"));
+
+        if (!metricRegistry.getGauges().containsKey(name(metricsPrefix, "hitRatio"))) {
+            metricRegistry.register(name(metricsPrefix, "hitRatio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(hits.getOneMinuteRate(), hits.getOneMinuteRate() + misses.getOneMinuteRate());
+                }
+            });
+        }
     }
 
+    /**
+     * Resolves the IP of the url without blocking. The future fails with {@link UnknownHostException} when the
+     * hostname can't be resolved.
+     */
+    public final ListenableFuture<String> resolveIpOfUrlAsync(final String url) throws MalformedURLException {
+        return resolveIpOfHostnameAsync(new URL(url).getHost());
+    }
+
+    /**
+     * @return the IP of the url if already known, null otherwise. Never blocks : when the IP is not known the lookup
+     * is started in the background so that it's known next time.
+     */
+    public final String resolveIpOfUrlIfCached(final String url) {
+        final String hostname;
+        try {
+            hostname = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        final ListenableFuture<String> ip = resolveIpOfHostnameAsync(hostname);
+        if (!ip.isDone()) {
+            return null;
+        }
+        try {
+            return Futures.getUnchecked(ip);
+        } catch (UncheckedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts the lookups for all the urls of a batch at once so that they run in parallel. The malformed urls are
+     * ignored.
+     *
+     * @return the IPs in the order of the urls, null for the urls that can't be resolved
+     */
+    public final ListenableFuture<List<String>> prefetch(final Collection<String> urls) {
+        final List<ListenableFuture<String>> lookups = new ArrayList<>();
+        for (final String url : urls) {
+            try {
+                lookups.add(resolveIpOfUrlAsync(url));
+            } catch (MalformedURLException e) {
+                lookups.add(Futures.<String>immediateFuture(null));
+            }
+        }
+        return Futures.successfulAsList(lookups);
+    }
 
     public final String resolveIpOfUrl(String url) throws MalformedURLException, ExecutionException {
-        final String hostname = new URL(url).getHost();
-        final String ip = hostnameToIpCache.get(hostname);
-        return ip;
+        try {
+            return resolveIpOfUrlAsync(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
     }
 
     public final String resolveIpOfUrlAndReturnLoopbackOnFail(String url)  {
@@ -49,4 +165,54 @@ public class CachingUrlResolver {
 
     }
 
+    private ListenableFuture<String> resolveIpOfHostnameAsync(final String hostname) {
+        final String ip = hostnameToIpCache.getIfPresent(hostname);
+        if (ip != null) {
+            hits.mark();
+            return Futures.immediateFuture(ip);
+        }
+        final UnknownHostException failure = unresolvableHostnameCache.getIfPresent(hostname);
+        if (failure != null) {
+            hits.mark();
+            return Futures.immediateFailedFuture(failure);
+        }
+
+        final ListenableFuture<String> lookupInProgress = lookupsInProgress.get(hostname);
+        if (lookupInProgress != null) {
+            hits.mark();
+            return lookupInProgress;
+        }
+
+        misses.mark();
+        final ListenableFutureTask<String> lookup = ListenableFutureTask.create(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                final Timer.Context lookupDurationContext = lookupDuration.time();
+                try {
+                    final String ip = InetAddress.getByName(hostname).getHostAddress();
+                    hostnameToIpCache.put(hostname, ip);
+                    return ip;
+                } catch (UnknownHostException e) {
+                    failures.mark();
+                    unresolvableHostnameCache.put(hostname, e);
+                    throw e;
+                } finally {
+                    lookupDurationContext.stop();
+                }
+            }
+        });
+
+        final ListenableFuture<String> concurrentLookup = lookupsInProgress.putIfAbsent(hostname, lookup);
+        if (concurrentLookup != null) {
+            return concurrentLookup;
+        }
+        lookup.addListener(new Runnable() {
+            @Override
+            public void run() {
+                lookupsInProgress.remove(hostname, lookup);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        lookupExecutor.execute(lookup);
+        return lookup;
+    }
 }
@@ -44,7 +44,8 @@ public class PagedProcessingJobElements extends PagedElements<ProcessingJob> {
                 o.getLong("retrievalTerminationThresholdReadPerSecondInBytes"),
                 o.getLong("retrievalConnectionTimeoutInMillis"),
                 o.getInt("retrievalMaxNrOfRedirects"),
-                o.getLong("processingTerminationThresholdTimeLimitInMillis")
+                o.getLong("processingTerminationThresholdTimeLimitInMillis"),
+                o.getLong("retrievalTerminationThresholdSizeLimitInBytes", 0l)
         );
     }
 
@@ -1,17 +1,21 @@
 package eu.europeana.harvester.db.mongo;
 
 
+import com.codahale.metrics.MetricRegistry;
 import eu.europeana.harvester.util.CachingUrlResolver;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
 import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class CachingUrlResolverTests {
 
@@ -56,4 +60,35 @@ public class CachingUrlResolverTests {
 
     }
 
+    @Test
+    public void canCacheHostnamesThatCannotBeResolved() throws InterruptedException, ExecutionException, TimeoutException, MalformedURLException {
+
+        final String url1 = "http://unknown-host.invalid/image.jpg";
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final CachingUrlResolver cache = new CachingUrlResolver(60 * 1000l, 60 * 1000l, 1, metricRegistry, "dns");
+        assertEquals(cache.resolveIpOfUrlAndReturnLoopbackOnFail(url1), "127.0.0.1");
+        assertEquals(cache.resolveIpOfUrlAndReturnLoopbackOnFail(url1), "127.0.0.1");
+
+        assertEquals(1, metricRegistry.meter("dns.misses").getCount());
+        assertEquals(1, metricRegistry.meter("dns.hits").getCount());
+        assertEquals(1, metricRegistry.meter("dns.failures").getCount());
+        assertEquals(1, metricRegistry.timer("dns.lookupDuration").getCount());
+    }
+
+    @Test
+    public void canPrefetchUrls() throws InterruptedException, ExecutionException, TimeoutException, MalformedURLException {
+
+        final CachingUrlResolver cache = new CachingUrlResolver();
+        assertNull(cache.resolveIpOfUrlIfCached("@@@##$#@!SS@sadsa7d8217y21w1hws891w"));
+
+        final List<String> ips = cache.prefetch(Arrays.asList("http://localhost/a.jpg", "http://unknown-host.invalid/b.jpg", "@@@")).get();
+        assertEquals(3, ips.size());
+        assertNotNull(ips.get(0));
+        assertNull(ips.get(1));
+        assertNull(ips.get(2));
+
+        assertEquals(ips.get(0), cache.resolveIpOfUrlIfCached("http://localhost/c.jpg"));
+        assertNull(cache.resolveIpOfUrlIfCached("http://unknown-host.invalid/d.jpg"));
+    }
+
 }
@@ -28,6 +28,7 @@ import eu.europeana.harvester.cluster.master.metrics.MasterMetrics;
 import eu.europeana.harvester.db.interfaces.*;
 import eu.europeana.harvester.db.mongo.*;
 import eu.europeana.harvester.domain.MongoConfig;
+import eu.europeana.jobcreator.JobCreator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.Duration;
@@ -85,6 +86,9 @@ class Master {
         final ClusterMasterConfig clusterMasterConfig = new ClusterMasterConfig(jobsPerIP, maxTasksInMemory,
                 receiveTimeoutInterval, responseTimeoutFromSlaveInMillis, jobRestarterConfig, WriteConcern.NONE);
 
+        // The job restarter creates jobs, the IPs they resolve are reported with the metrics of the master
+        JobCreator.useMetricRegistry(MasterMetrics.METRIC_REGISTRY, MasterMetrics.Master.NAME + ".jobCreator.dnsResolver");
+
         Slf4jReporter reporter = Slf4jReporter.forRegistry(MasterMetrics.METRIC_REGISTRY)
                 .outputTo(org.slf4j.LoggerFactory.getLogger("metrics"))
                 .convertRatesTo(TimeUnit.SECONDS)
@@ -14,7 +14,14 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigSyntax;
+import eu.europeana.harvester.cluster.domain.AdaptiveTimeoutConfig;
+import eu.europeana.harvester.cluster.domain.HttpClientPoolConfig;
+import eu.europeana.harvester.cluster.domain.ConnectionSlotLeaseConfig;
+import eu.europeana.harvester.cluster.domain.MediaHeaderRetrievalConfig;
 import eu.europeana.harvester.cluster.domain.NodeMasterConfig;
+import eu.europeana.harvester.cluster.domain.ProcessingPipelineConfig;
+import eu.europeana.harvester.cluster.domain.ResumableDownloadConfig;
+import eu.europeana.harvester.cluster.domain.SlaveDispatcherConfig;
 import eu.europeana.harvester.cluster.slave.NodeSupervisor;
 import eu.europeana.harvester.cluster.slave.SlaveMetrics;
 import eu.europeana.harvester.cluster.slave.validator.ImageMagicValidator;
@@ -24,6 +31,7 @@ import eu.europeana.harvester.db.s3.S3Configuration;
 import eu.europeana.harvester.db.s3.S3MediaClientStorage;
 import eu.europeana.harvester.db.swift.SwiftConfiguration;
 import eu.europeana.harvester.db.swift.SwiftMediaStorageClientImpl;
+import eu.europeana.harvester.httpclient.response.DiskSyncPolicy;
 import eu.europeana.harvester.httpclient.response.ResponseType;
 import eu.europeana.harvester.util.CachingUrlResolver;
 import org.apache.logging.log4j.LogManager;
@@ -35,7 +43,12 @@ import java.util.concurrent.TimeUnit;
 
 public class Slave {
 
-    public static final CachingUrlResolver URL_RESOLVER = new CachingUrlResolver();
+    public static final CachingUrlResolver URL_RESOLVER = new CachingUrlResolver(
+            24 * 60 * 60 * 1000l, /* 24 HOURS -> positiveTtlInMillis */
+            5 * 60 * 1000l, /* 5 MINUTES -> negativeTtlInMillis */
+            8, /* nrOfLookupThreads */
+            SlaveMetrics.METRIC_REGISTRY,
+            SlaveMetrics.Worker.Slave.Retrieve.NAME + ".dnsResolver");
 
     private static final Logger LOG = LogManager.getLogger(Slave.class.getName());
 
@@ -91,6 +104,14 @@ public class Slave {
             responseType = ResponseType.MEMORY_STORAGE;
         }
 
+        final DiskSyncPolicy diskSyncPolicy;
+
+        if (config.hasPath("slave.diskSyncPolicy") && "onClose".equals(config.getString("slave.diskSyncPolicy"))) {
+            diskSyncPolicy = DiskSyncPolicy.ON_CLOSE;
+        } else {
+            diskSyncPolicy = DiskSyncPolicy.NONE;
+        }
+
         final String pathToSave = config.getString("slave.pathToSave");
         final File dir = new File(pathToSave);
         if (!dir.exists()) {
@@ -105,8 +126,31 @@ public class Slave {
         final Integer nrOfRetries = config.getInt("slave.nrOfRetries");
         final Integer taskNrLimit = config.getInt("slave.taskNrLimit");
 
+        final HttpClientPoolConfig httpClientPoolConfig = config.hasPath("slave.httpClient") ?
+                HttpClientPoolConfig.valueOf(config.getConfig("slave.httpClient")) : new HttpClientPoolConfig();
+
+        final ResumableDownloadConfig resumableDownloadConfig = config.hasPath("slave.resumableDownloads") ?
+                ResumableDownloadConfig.valueOf(config.getConfig("slave.resumableDownloads")) : new ResumableDownloadConfig();
+
+        final AdaptiveTimeoutConfig adaptiveTimeoutConfig = config.hasPath("slave.adaptiveTimeouts") ?
+                AdaptiveTimeoutConfig.valueOf(config.getConfig("slave.adaptiveTimeouts")) : new AdaptiveTimeoutConfig();
+
+        final ProcessingPipelineConfig processingPipelineConfig = config.hasPath("slave.processingPipeline") ?
+                ProcessingPipelineConfig.valueOf(config.getConfig("slave.processingPipeline")) : new ProcessingPipelineConfig();
+
+        final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig = config.hasPath("slave.mediaHeaderRetrieval") ?
+                MediaHeaderRetrievalConfig.valueOf(config.getConfig("slave.mediaHeaderRetrieval")) : new MediaHeaderRetrievalConfig();
+
+        final ConnectionSlotLeaseConfig connectionSlotLeaseConfig = config.hasPath("slave.connectionSlotLeases") ?
+                ConnectionSlotLeaseConfig.valueOf(config.getConfig("slave.connectionSlotLeases")) : new ConnectionSlotLeaseConfig();
+
+        final SlaveDispatcherConfig dispatcherConfig = config.hasPath("slave.dispatchers") ?
+                SlaveDispatcherConfig.valueOf(config.getConfig("slave.dispatchers")) : new SlaveDispatcherConfig();
+
         final NodeMasterConfig nodeMasterConfig = new NodeMasterConfig(nrOfDownloaderSlaves, nrOfExtractorSlaves,
-                nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave, responseType, source, colorMapPath);
+                nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave, responseType, source, colorMapPath,
+                httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig, processingPipelineConfig,
+                mediaHeaderRetrievalConfig, connectionSlotLeaseConfig, dispatcherConfig, diskSyncPolicy);
 
         final String mediaStorageClientType = config.hasPath("media-storage-type") ? config.getString("media-storage-type") : "DUMMY";
 
@@ -149,7 +193,7 @@ public class Slave {
         reporter2.start(1, TimeUnit.MINUTES);
 
 
-        system = ActorSystem.create("ClusterSystem", config);
+        system = ActorSystem.create("ClusterSystem", dispatcherConfig.withDownloadDispatcherPoolSize(config, nrOfDownloaderSlaves));
 
         final ActorRef masterSender = system.actorOf(FromConfig.getInstance().props(), "masterSender");
 
@@ -177,6 +221,14 @@ public class Slave {
             responseType = ResponseType.MEMORY_STORAGE;
         }
 
+        final DiskSyncPolicy diskSyncPolicy;
+
+        if (config.hasPath("slave.diskSyncPolicy") && "onClose".equals(config.getString("slave.diskSyncPolicy"))) {
+            diskSyncPolicy = DiskSyncPolicy.ON_CLOSE;
+        } else {
+            diskSyncPolicy = DiskSyncPolicy.NONE;
+        }
+
         final String pathToSave = config.getString("slave.pathToSave");
         final File dir = new File(pathToSave);
         if (!dir.exists()) {
@@ -191,8 +243,31 @@ public class Slave {
         final Integer nrOfRetries = config.getInt("slave.nrOfRetries");
         final Integer taskNrLimit = config.getInt("slave.taskNrLimit");
 
+        final HttpClientPoolConfig httpClientPoolConfig = config.hasPath("slave.httpClient") ?
+                HttpClientPoolConfig.valueOf(config.getConfig("slave.httpClient")) : new HttpClientPoolConfig();
+
+        final ResumableDownloadConfig resumableDownloadConfig = config.hasPath("slave.resumableDownloads") ?
+                ResumableDownloadConfig.valueOf(config.getConfig("slave.resumableDownloads")) : new ResumableDownloadConfig();
+
+        final AdaptiveTimeoutConfig adaptiveTimeoutConfig = config.hasPath("slave.adaptiveTimeouts") ?
+                AdaptiveTimeoutConfig.valueOf(config.getConfig("slave.adaptiveTimeouts")) : new AdaptiveTimeoutConfig();
+
+        final ProcessingPipelineConfig processingPipelineConfig = config.hasPath("slave.processingPipeline") ?
+                ProcessingPipelineConfig.valueOf(config.getConfig("slave.processingPipeline")) : new ProcessingPipelineConfig();
+
+        final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig = config.hasPath("slave.mediaHeaderRetrieval") ?
+                MediaHeaderRetrievalConfig.valueOf(config.getConfig("slave.mediaHeaderRetrieval")) : new MediaHeaderRetrievalConfig();
+
+        final ConnectionSlotLeaseConfig connectionSlotLeaseConfig = config.hasPath("slave.connectionSlotLeases") ?
+                ConnectionSlotLeaseConfig.valueOf(config.getConfig("slave.connectionSlotLeases")) : new ConnectionSlotLeaseConfig();
+
+        final SlaveDispatcherConfig dispatcherConfig = config.hasPath("slave.dispatchers") ?
+                SlaveDispatcherConfig.valueOf(config.getConfig("slave.dispatchers")) : new SlaveDispatcherConfig();
+
         final NodeMasterConfig nodeMasterConfig = new NodeMasterConfig(nrOfDownloaderSlaves, nrOfExtractorSlaves,
-                nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave, responseType, source, colorMapPath);
+                nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave, responseType, source, colorMapPath,
+                httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig, processingPipelineConfig,
+                mediaHeaderRetrievalConfig, connectionSlotLeaseConfig, dispatcherConfig, diskSyncPolicy);
 
         final String mediaStorageClientType = config.hasPath("media-storage-type") ? config.getString("media-storage-type") : "DUMMY";
 
@@ -216,7 +291,7 @@ public class Slave {
 
 
 
-        system = ActorSystem.create("ClusterSystem", config);
+        system = ActorSystem.create("ClusterSystem", dispatcherConfig.withDownloadDispatcherPoolSize(config, nrOfDownloaderSlaves));
 
         final ActorRef masterSender = system.actorOf(FromConfig.getInstance().props(), "masterSender");
 
@@ -0,0 +1,139 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the per host adaptive timeouts of a slave node. When enabled, the time the hosts take
+ * to answer is tracked and the connection timeout of each host is derived from it (but never exceeds the one of the
+ * job). The hosts that did not answer several times in a row are skipped for a while.
+ */
+public class AdaptiveTimeoutConfig {
+
+    /**
+     * Whether the connection timeouts are derived from the observed latencies.
+     */
+    private final Boolean enabled;
+
+    /**
+     * The weight of a new sample in the average latency of a host.
+     */
+    private final Double latencySmoothingFactor;
+
+    /**
+     * The weight of a new sample in the average deviation of the latency of a host.
+     */
+    private final Double deviationSmoothingFactor;
+
+    /**
+     * The timeout of a host is its average latency plus this many times its average deviation.
+     */
+    private final Double deviationMultiplier;
+
+    /**
+     * The number of answers needed before the latency of a host is trusted.
+     */
+    private final Integer minNrOfSamples;
+
+    /**
+     * The derived timeouts are never shorter than this.
+     */
+    private final Long minTimeoutInMillis;
+
+    /**
+     * The number of consecutive connection failures after which a host is considered down.
+     */
+    private final Integer maxNrOfConsecutiveFailures;
+
+    /**
+     * How long a host that is down is skipped before it's tried again.
+     */
+    private final Long downHostRetryDelayInMillis;
+
+    /**
+     * The maximum number of hosts tracked, the least recently used are forgotten first.
+     */
+    private final Integer maxNrOfHosts;
+
+    public AdaptiveTimeoutConfig() {
+        this(
+                false, /* enabled */
+                0.125, /* latencySmoothingFactor */
+                0.25, /* deviationSmoothingFactor */
+                4.0, /* deviationMultiplier */
+                3, /* minNrOfSamples */
+                5 * 1000l, /* 5 SECONDS -> minTimeoutInMillis */
+                3, /* maxNrOfConsecutiveFailures */
+                5 * 60 * 1000l, /* 5 MINUTES -> downHostRetryDelayInMillis */
+                100 * 1000 /* maxNrOfHosts */
+        );
+    }
+
+    public AdaptiveTimeoutConfig(final Boolean enabled, final Double latencySmoothingFactor, final Double deviationSmoothingFactor,
+                                 final Double deviationMultiplier, final Integer minNrOfSamples, final Long minTimeoutInMillis,
+                                 final Integer maxNrOfConsecutiveFailures, final Long downHostRetryDelayInMillis,
+                                 final Integer maxNrOfHosts) {
+        this.enabled = enabled;
+        this.latencySmoothingFactor = latencySmoothingFactor;
+        this.deviationSmoothingFactor = deviationSmoothingFactor;
+        this.deviationMultiplier = deviationMultiplier;
+        this.minNrOfSamples = minNrOfSamples;
+        this.minTimeoutInMillis = minTimeoutInMillis;
+        this.maxNrOfConsecutiveFailures = maxNrOfConsecutiveFailures;
+        this.downHostRetryDelayInMillis = downHostRetryDelayInMillis;
+        this.maxNrOfHosts = maxNrOfHosts;
+    }
+
+    /**
+     * Builds the config from the "slave.adaptiveTimeouts" section. Every missing property falls back to the default value.
+     */
+    public static AdaptiveTimeoutConfig valueOf(final Config config) {
+        final AdaptiveTimeoutConfig defaults = new AdaptiveTimeoutConfig();
+        return new AdaptiveTimeoutConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("latencySmoothingFactor") ? config.getDouble("latencySmoothingFactor") : defaults.getLatencySmoothingFactor(),
+                config.hasPath("deviationSmoothingFactor") ? config.getDouble("deviationSmoothingFactor") : defaults.getDeviationSmoothingFactor(),
+                config.hasPath("deviationMultiplier") ? config.getDouble("deviationMultiplier") : defaults.getDeviationMultiplier(),
+                config.hasPath("minNrOfSamples") ? config.getInt("minNrOfSamples") : defaults.getMinNrOfSamples(),
+                config.hasPath("minTimeoutInMillis") ? config.getLong("minTimeoutInMillis") : defaults.getMinTimeoutInMillis(),
+                config.hasPath("maxNrOfConsecutiveFailures") ? config.getInt("maxNrOfConsecutiveFailures") : defaults.getMaxNrOfConsecutiveFailures(),
+                config.hasPath("downHostRetryDelayInMillis") ? config.getLong("downHostRetryDelayInMillis") : defaults.getDownHostRetryDelayInMillis(),
+                config.hasPath("maxNrOfHosts") ? config.getInt("maxNrOfHosts") : defaults.getMaxNrOfHosts()
+        );
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Double getLatencySmoothingFactor() {
+        return latencySmoothingFactor;
+    }
+
+    public Double getDeviationSmoothingFactor() {
+        return deviationSmoothingFactor;
+    }
+
+    public Double getDeviationMultiplier() {
+        return deviationMultiplier;
+    }
+
+    public Integer getMinNrOfSamples() {
+        return minNrOfSamples;
+    }
+
+    public Long getMinTimeoutInMillis() {
+        return minTimeoutInMillis;
+    }
+
+    public Integer getMaxNrOfConsecutiveFailures() {
+        return maxNrOfConsecutiveFailures;
+    }
+
+    public Long getDownHostRetryDelayInMillis() {
+        return downHostRetryDelayInMillis;
+    }
+
+    public Integer getMaxNrOfHosts() {
+        return maxNrOfHosts;
+    }
+}
@@ -0,0 +1,53 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the connection slot leases of a slave node. When enabled, the node doesn't ask the
+ * master for a connection slot per task : it leases several slots of an IP at once, enforces them itself for the
+ * tasks of that IP, renews the lease while it has tasks for the IP & returns it when it's done. A node that doesn't
+ * get a lease asks for the slots per task.
+ */
+public class ConnectionSlotLeaseConfig {
+
+    /**
+     * Whether the node leases the connection slots.
+     */
+    private final Boolean enabled;
+
+    /**
+     * The most slots of an IP asked for in one lease. The master gives at most the slots that are free.
+     */
+    private final Integer maxNrOfSlotsPerLease;
+
+    public ConnectionSlotLeaseConfig() {
+        this(
+                false, /* enabled */
+                10 /* maxNrOfSlotsPerLease */
+        );
+    }
+
+    public ConnectionSlotLeaseConfig(final Boolean enabled, final Integer maxNrOfSlotsPerLease) {
+        this.enabled = enabled;
+        this.maxNrOfSlotsPerLease = maxNrOfSlotsPerLease;
+    }
+
+    /**
+     * Builds the config from the "slave.connectionSlotLeases" section. Every missing property falls back to the default value.
+     */
+    public static ConnectionSlotLeaseConfig valueOf(final Config config) {
+        final ConnectionSlotLeaseConfig defaults = new ConnectionSlotLeaseConfig();
+        return new ConnectionSlotLeaseConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("maxNrOfSlotsPerLease") ? config.getInt("maxNrOfSlotsPerLease") : defaults.getMaxNrOfSlotsPerLease()
+        );
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Integer getMaxNrOfSlotsPerLease() {
+        return maxNrOfSlotsPerLease;
+    }
+}
@@ -0,0 +1,114 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the http client(s) shared by all the downloads of a slave node.
+ */
+public class HttpClientPoolConfig {
+
+    /**
+     * The maximum number of open connections for the whole node. -1 means no limit.
+     */
+    private final Integer maxConnections;
+
+    /**
+     * The maximum number of open connections towards the same host. -1 means no limit : the IP limiter already
+     * bounds the downloads per IP, a lower limit here would fail the downloads it lets through with
+     * "Too many connections".
+     */
+    private final Integer maxConnectionsPerHost;
+
+    /**
+     * Whether connections (including SSL ones) are kept alive and put back in the pool after a download.
+     */
+    private final Boolean keepAlive;
+
+    /**
+     * The time after which an idle pooled connection is closed.
+     */
+    private final Integer pooledConnectionIdleTimeoutInMillis;
+
+    /**
+     * The maximum time a connection can live in the pool. -1 means no limit.
+     */
+    private final Integer connectionTTLInMillis;
+
+    /**
+     * The time after which the socket connect is aborted.
+     */
+    private final Integer connectTimeoutInMillis;
+
+    /**
+     * The number of times a request is retried when the connection is closed by the remote host.
+     */
+    private final Integer maxRequestRetry;
+
+    public HttpClientPoolConfig() {
+        this(
+                -1, /* maxConnections */
+                -1, /* maxConnectionsPerHost */
+                true, /* keepAlive */
+                60 * 1000, /* 1 MINUTE -> pooledConnectionIdleTimeoutInMillis */
+                -1, /* connectionTTLInMillis */
+                100 * 1000, /* 100 SECONDS -> connectTimeoutInMillis */
+                3 /* maxRequestRetry */
+        );
+    }
+
+    public HttpClientPoolConfig(final Integer maxConnections, final Integer maxConnectionsPerHost, final Boolean keepAlive,
+                                final Integer pooledConnectionIdleTimeoutInMillis, final Integer connectionTTLInMillis,
+                                final Integer connectTimeoutInMillis, final Integer maxRequestRetry) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.keepAlive = keepAlive;
+        this.pooledConnectionIdleTimeoutInMillis = pooledConnectionIdleTimeoutInMillis;
+        this.connectionTTLInMillis = connectionTTLInMillis;
+        this.connectTimeoutInMillis = connectTimeoutInMillis;
+        this.maxRequestRetry = maxRequestRetry;
+    }
+
+    /**
+     * Builds the config from the "slave.httpClient" section. Every missing property falls back to the default value.
+     */
+    public static HttpClientPoolConfig valueOf(final Config config) {
+        final HttpClientPoolConfig defaults = new HttpClientPoolConfig();
+        return new HttpClientPoolConfig(
+                config.hasPath("maxConnections") ? config.getInt("maxConnections") : defaults.getMaxConnections(),
+                config.hasPath("maxConnectionsPerHost") ? config.getInt("maxConnectionsPerHost") : defaults.getMaxConnectionsPerHost(),
+                config.hasPath("keepAlive") ? config.getBoolean("keepAlive") : defaults.getKeepAlive(),
+                config.hasPath("pooledConnectionIdleTimeoutInMillis") ? config.getInt("pooledConnectionIdleTimeoutInMillis") : defaults.getPooledConnectionIdleTimeoutInMillis(),
+                config.hasPath("connectionTTLInMillis") ? config.getInt("connectionTTLInMillis") : defaults.getConnectionTTLInMillis(),
+                config.hasPath("connectTimeoutInMillis") ? config.getInt("connectTimeoutInMillis") : defaults.getConnectTimeoutInMillis(),
+                config.hasPath("maxRequestRetry") ? config.getInt("maxRequestRetry") : defaults.getMaxRequestRetry()
+        );
+    }
+
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public Integer getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public Boolean getKeepAlive() {
+        return keepAlive;
+    }
+
+    public Integer getPooledConnectionIdleTimeoutInMillis() {
+        return pooledConnectionIdleTimeoutInMillis;
+    }
+
+    public Integer getConnectionTTLInMillis() {
+        return connectionTTLInMillis;
+    }
+
+    public Integer getConnectTimeoutInMillis() {
+        return connectTimeoutInMillis;
+    }
+
+    public Integer getMaxRequestRetry() {
+        return maxRequestRetry;
+    }
+}
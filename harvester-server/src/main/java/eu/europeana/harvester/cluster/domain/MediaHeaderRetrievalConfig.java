@@ -0,0 +1,65 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the header only retrieval of the audio & video files of a slave node. When enabled,
+ * only the container header of the files whose meta info can be extracted from it (MP4, MP3 & WebM) is
+ * retrieved : the beginning of the file and, for the MP4 files that have their index at the end, the end of the
+ * file with a range request. The file on disk keeps its size, the rest of the content is never stored.
+ */
+public class MediaHeaderRetrievalConfig {
+
+    /**
+     * Whether only the header of the audio & video files is retrieved.
+     */
+    private final Boolean enabled;
+
+    /**
+     * How much of the beginning of a MP3 or WebM file is retrieved (after the ID3 tag, if any).
+     */
+    private final Long headerSizeInBytes;
+
+    /**
+     * The largest index retrieved from the end of a MP4 file. A MP4 file with a larger index is downloaded in full.
+     */
+    private final Long maxTrailerSizeInBytes;
+
+    public MediaHeaderRetrievalConfig() {
+        this(
+                false, /* enabled */
+                1024 * 1024l, /* 1 MB -> headerSizeInBytes */
+                16 * 1024 * 1024l /* 16 MB -> maxTrailerSizeInBytes */
+        );
+    }
+
+    public MediaHeaderRetrievalConfig(final Boolean enabled, final Long headerSizeInBytes, final Long maxTrailerSizeInBytes) {
+        this.enabled = enabled;
+        this.headerSizeInBytes = headerSizeInBytes;
+        this.maxTrailerSizeInBytes = maxTrailerSizeInBytes;
+    }
+
+    /**
+     * Builds the config from the "slave.mediaHeaderRetrieval" section. Every missing property falls back to the default value.
+     */
+    public static MediaHeaderRetrievalConfig valueOf(final Config config) {
+        final MediaHeaderRetrievalConfig defaults = new MediaHeaderRetrievalConfig();
+        return new MediaHeaderRetrievalConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("headerSizeInBytes") ? config.getLong("headerSizeInBytes") : defaults.getHeaderSizeInBytes(),
+                config.hasPath("maxTrailerSizeInBytes") ? config.getLong("maxTrailerSizeInBytes") : defaults.getMaxTrailerSizeInBytes()
+        );
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Long getHeaderSizeInBytes() {
+        return headerSizeInBytes;
+    }
+
+    public Long getMaxTrailerSizeInBytes() {
+        return maxTrailerSizeInBytes;
+    }
+}
@@ -1,5 +1,6 @@
 package eu.europeana.harvester.cluster.domain;
 
+import eu.europeana.harvester.httpclient.response.DiskSyncPolicy;
 import eu.europeana.harvester.httpclient.response.ResponseType;
 
 /**
@@ -42,14 +43,145 @@ public class NodeMasterConfig {
      */
     private final ResponseType responseType;
 
+    /**
+     * When the content of the disk based responses is forced to the storage device.
+     */
+    private final DiskSyncPolicy diskSyncPolicy;
+
     private final String source;
 
     private final String colorMapPath;
 
+    /**
+     * The configuration of the http clients shared by all the downloads of the node.
+     */
+    private final HttpClientPoolConfig httpClientPoolConfig;
+
+    /**
+     * The configuration of the resumable downloads of the node.
+     */
+    private final ResumableDownloadConfig resumableDownloadConfig;
+
+    /**
+     * The configuration of the per host adaptive timeouts of the node.
+     */
+    private final AdaptiveTimeoutConfig adaptiveTimeoutConfig;
+
+    /**
+     * The configuration of the processing stage of the node.
+     */
+    private final ProcessingPipelineConfig processingPipelineConfig;
+
+    /**
+     * The configuration of the header only retrieval of the audio & video files of the node.
+     */
+    private final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig;
+
+    /**
+     * The configuration of the connection slot leases of the node.
+     */
+    private final ConnectionSlotLeaseConfig connectionSlotLeaseConfig;
+
+    /**
+     * The configuration of the dispatchers of the actors of the node.
+     */
+    private final SlaveDispatcherConfig dispatcherConfig;
+
     public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
                             final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
                             final String pathToSave, final ResponseType responseType, final String source,
                             final String colorMapPath) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, new HttpClientPoolConfig(), new ResumableDownloadConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, new AdaptiveTimeoutConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig,
+                new ProcessingPipelineConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig,
+                            final ProcessingPipelineConfig processingPipelineConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig,
+                processingPipelineConfig, new MediaHeaderRetrievalConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig,
+                            final ProcessingPipelineConfig processingPipelineConfig,
+                            final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig,
+                processingPipelineConfig, mediaHeaderRetrievalConfig, new ConnectionSlotLeaseConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig,
+                            final ProcessingPipelineConfig processingPipelineConfig,
+                            final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig,
+                            final ConnectionSlotLeaseConfig connectionSlotLeaseConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig,
+                processingPipelineConfig, mediaHeaderRetrievalConfig, connectionSlotLeaseConfig,
+                new SlaveDispatcherConfig());
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig,
+                            final ProcessingPipelineConfig processingPipelineConfig,
+                            final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig,
+                            final ConnectionSlotLeaseConfig connectionSlotLeaseConfig,
+                            final SlaveDispatcherConfig dispatcherConfig) {
+        this(nrOfDownloaderSlaves, nrOfExtractorSlaves, nrOfPingerSlaves, nrOfRetries, taskNrLimit, pathToSave,
+                responseType, source, colorMapPath, httpClientPoolConfig, resumableDownloadConfig, adaptiveTimeoutConfig,
+                processingPipelineConfig, mediaHeaderRetrievalConfig, connectionSlotLeaseConfig, dispatcherConfig,
+                DiskSyncPolicy.NONE);
+    }
+
+    public NodeMasterConfig(final Integer nrOfDownloaderSlaves, final Integer nrOfExtractorSlaves,
+                            final Integer nrOfPingerSlaves, final Integer nrOfRetries, final Integer taskNrLimit,
+                            final String pathToSave, final ResponseType responseType, final String source,
+                            final String colorMapPath, final HttpClientPoolConfig httpClientPoolConfig,
+                            final ResumableDownloadConfig resumableDownloadConfig,
+                            final AdaptiveTimeoutConfig adaptiveTimeoutConfig,
+                            final ProcessingPipelineConfig processingPipelineConfig,
+                            final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig,
+                            final ConnectionSlotLeaseConfig connectionSlotLeaseConfig,
+                            final SlaveDispatcherConfig dispatcherConfig,
+                            final DiskSyncPolicy diskSyncPolicy) {
         this.nrOfDownloaderSlaves = nrOfDownloaderSlaves;
         this.nrOfExtractorSlaves = nrOfExtractorSlaves;
         this.nrOfPingerSlaves = nrOfPingerSlaves;
@@ -59,6 +191,14 @@ public class NodeMasterConfig {
         this.responseType = responseType;
         this.source = source;
         this.colorMapPath = colorMapPath;
+        this.httpClientPoolConfig = httpClientPoolConfig;
+        this.resumableDownloadConfig = resumableDownloadConfig;
+        this.adaptiveTimeoutConfig = adaptiveTimeoutConfig;
+        this.processingPipelineConfig = processingPipelineConfig;
+        this.mediaHeaderRetrievalConfig = mediaHeaderRetrievalConfig;
+        this.connectionSlotLeaseConfig = connectionSlotLeaseConfig;
+        this.dispatcherConfig = dispatcherConfig;
+        this.diskSyncPolicy = diskSyncPolicy;
     }
 
     public int getNrOfDownloaderSlaves() {
@@ -85,6 +225,10 @@ public class NodeMasterConfig {
         return responseType;
     }
 
+    public DiskSyncPolicy getDiskSyncPolicy() {
+        return diskSyncPolicy;
+    }
+
     public String getSource() {
         return source;
     }
@@ -96,4 +240,32 @@ public class NodeMasterConfig {
     public Integer getTaskNrLimit() {
         return taskNrLimit;
     }
+
+    public HttpClientPoolConfig getHttpClientPoolConfig() {
+        return httpClientPoolConfig;
+    }
+
+    public ResumableDownloadConfig getResumableDownloadConfig() {
+        return resumableDownloadConfig;
+    }
+
+    public AdaptiveTimeoutConfig getAdaptiveTimeoutConfig() {
+        return adaptiveTimeoutConfig;
+    }
+
+    public ProcessingPipelineConfig getProcessingPipelineConfig() {
+        return processingPipelineConfig;
+    }
+
+    public MediaHeaderRetrievalConfig getMediaHeaderRetrievalConfig() {
+        return mediaHeaderRetrievalConfig;
+    }
+
+    public ConnectionSlotLeaseConfig getConnectionSlotLeaseConfig() {
+        return connectionSlotLeaseConfig;
+    }
+
+    public SlaveDispatcherConfig getDispatcherConfig() {
+        return dispatcherConfig;
+    }
 }
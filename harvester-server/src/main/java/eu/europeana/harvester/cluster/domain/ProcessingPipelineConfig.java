@@ -0,0 +1,98 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the processing stage of a slave node. When enabled, the download workers hand the
+ * downloaded files over to a separate, bounded pool of processing workers (meta info, color, thumbnails & storage)
+ * and move on to the next download, so that the number of concurrent downloads (nrOfDownloaderSlaves) and the
+ * number of concurrent processings (usually the number of cores) are configured independently.
+ */
+public class ProcessingPipelineConfig {
+
+    /**
+     * Whether the processing runs in its own stage instead of in the download workers.
+     */
+    private final Boolean enabled;
+
+    /**
+     * The number of files processed at the same time.
+     */
+    private final Integer nrOfProcessingWorkers;
+
+    /**
+     * The number of downloaded files that can wait for a processing worker. When it's reached the download workers
+     * wait too, so that the downloads never outrun the processing.
+     */
+    private final Integer maxNrOfQueuedFiles;
+
+    /**
+     * The number of threads that run the independent sub tasks of a file (meta info, color & thumbnails) at the same
+     * time. Zero runs them one after the other in the processing worker.
+     */
+    private final Integer nrOfSubTaskWorkers;
+
+    /**
+     * Whether the color palette of the images is extracted in the JVM instead of by the ImageMagick remap. The
+     * palette is then close to the one of the remap but not always the same, the remap stays the reference.
+     */
+    private final Boolean jvmColorPalette;
+
+    public ProcessingPipelineConfig() {
+        this(
+                false, /* enabled */
+                Runtime.getRuntime().availableProcessors(), /* nrOfProcessingWorkers */
+                2 * Runtime.getRuntime().availableProcessors(), /* maxNrOfQueuedFiles */
+                Runtime.getRuntime().availableProcessors(), /* nrOfSubTaskWorkers */
+                false /* jvmColorPalette */
+        );
+    }
+
+    public ProcessingPipelineConfig(final Boolean enabled, final Integer nrOfProcessingWorkers, final Integer maxNrOfQueuedFiles,
+                                    final Integer nrOfSubTaskWorkers) {
+        this(enabled, nrOfProcessingWorkers, maxNrOfQueuedFiles, nrOfSubTaskWorkers, false);
+    }
+
+    public ProcessingPipelineConfig(final Boolean enabled, final Integer nrOfProcessingWorkers, final Integer maxNrOfQueuedFiles,
+                                    final Integer nrOfSubTaskWorkers, final Boolean jvmColorPalette) {
+        this.enabled = enabled;
+        this.nrOfProcessingWorkers = nrOfProcessingWorkers;
+        this.maxNrOfQueuedFiles = maxNrOfQueuedFiles;
+        this.nrOfSubTaskWorkers = nrOfSubTaskWorkers;
+        this.jvmColorPalette = jvmColorPalette;
+    }
+
+    /**
+     * Builds the config from the "slave.processingPipeline" section. Every missing property falls back to the default value.
+     */
+    public static ProcessingPipelineConfig valueOf(final Config config) {
+        final ProcessingPipelineConfig defaults = new ProcessingPipelineConfig();
+        return new ProcessingPipelineConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("nrOfProcessingWorkers") ? config.getInt("nrOfProcessingWorkers") : defaults.getNrOfProcessingWorkers(),
+                config.hasPath("maxNrOfQueuedFiles") ? config.getInt("maxNrOfQueuedFiles") : defaults.getMaxNrOfQueuedFiles(),
+                config.hasPath("nrOfSubTaskWorkers") ? config.getInt("nrOfSubTaskWorkers") : defaults.getNrOfSubTaskWorkers(),
+                config.hasPath("jvmColorPalette") ? config.getBoolean("jvmColorPalette") : defaults.getJvmColorPalette()
+        );
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Integer getNrOfProcessingWorkers() {
+        return nrOfProcessingWorkers;
+    }
+
+    public Integer getMaxNrOfQueuedFiles() {
+        return maxNrOfQueuedFiles;
+    }
+
+    public Integer getNrOfSubTaskWorkers() {
+        return nrOfSubTaskWorkers;
+    }
+
+    public Boolean getJvmColorPalette() {
+        return jvmColorPalette;
+    }
+}
@@ -0,0 +1,77 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+
+/**
+ * Stores the configuration of the resumable downloads of a slave node. When enabled, the downloads aborted because
+ * of the time or rate limits keep what they retrieved so far and the next retrieval of the same url continues from
+ * there with a range request.
+ */
+public class ResumableDownloadConfig {
+
+    /**
+     * Whether the partial downloads are kept & resumed.
+     */
+    private final Boolean enabled;
+
+    /**
+     * The slave local directory where the partial downloads are kept.
+     */
+    private final String scratchPath;
+
+    /**
+     * The partial downloads smaller than this are not worth keeping.
+     */
+    private final Long minPartialSizeInBytes;
+
+    /**
+     * The partial downloads older than this are discarded.
+     */
+    private final Long maxPartialAgeInMillis;
+
+    public ResumableDownloadConfig() {
+        this(
+                false, /* enabled */
+                "/tmp/harvester-partial-downloads", /* scratchPath */
+                1024 * 1024l, /* 1 MB -> minPartialSizeInBytes */
+                7 * 24 * 60 * 60 * 1000l /* 7 DAYS -> maxPartialAgeInMillis */
+        );
+    }
+
+    public ResumableDownloadConfig(final Boolean enabled, final String scratchPath, final Long minPartialSizeInBytes,
+                                   final Long maxPartialAgeInMillis) {
+        this.enabled = enabled;
+        this.scratchPath = scratchPath;
+        this.minPartialSizeInBytes = minPartialSizeInBytes;
+        this.maxPartialAgeInMillis = maxPartialAgeInMillis;
+    }
+
+    /**
+     * Builds the config from the "slave.resumableDownloads" section. Every missing property falls back to the default value.
+     */
+    public static ResumableDownloadConfig valueOf(final Config config) {
+        final ResumableDownloadConfig defaults = new ResumableDownloadConfig();
+        return new ResumableDownloadConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("scratchPath") ? config.getString("scratchPath") : defaults.getScratchPath(),
+                config.hasPath("minPartialSizeInBytes") ? config.getLong("minPartialSizeInBytes") : defaults.getMinPartialSizeInBytes(),
+                config.hasPath("maxPartialAgeInMillis") ? config.getLong("maxPartialAgeInMillis") : defaults.getMaxPartialAgeInMillis()
+        );
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public String getScratchPath() {
+        return scratchPath;
+    }
+
+    public Long getMinPartialSizeInBytes() {
+        return minPartialSizeInBytes;
+    }
+
+    public Long getMaxPartialAgeInMillis() {
+        return maxPartialAgeInMillis;
+    }
+}
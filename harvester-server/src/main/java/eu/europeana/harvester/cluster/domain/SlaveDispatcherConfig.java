@@ -0,0 +1,82 @@
+package eu.europeana.harvester.cluster.domain;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+
+/**
+ * Stores which dispatchers the actors of a slave node run on. When enabled, the node supervisor & the node master
+ * (the heartbeats & the bookkeeping of the tasks) run on the control dispatcher and the download workers, which block
+ * on the downloads & on the external processes, run on the download dispatcher : busy workers can't starve the
+ * heartbeats. The dispatchers are defined in the akka config, under their names. Otherwise all the actors run on the
+ * default dispatcher.
+ */
+public class SlaveDispatcherConfig {
+
+    /**
+     * Whether the actors of the node run on their own dispatchers.
+     */
+    private final Boolean enabled;
+
+    /**
+     * The dispatcher of the node supervisor & of the node master.
+     */
+    private final String controlDispatcher;
+
+    /**
+     * The dispatcher of the download workers.
+     */
+    private final String downloadDispatcher;
+
+    public SlaveDispatcherConfig() {
+        this(
+                false, /* enabled */
+                "slave-control-dispatcher", /* controlDispatcher */
+                "slave-download-dispatcher" /* downloadDispatcher */
+        );
+    }
+
+    public SlaveDispatcherConfig(final Boolean enabled, final String controlDispatcher, final String downloadDispatcher) {
+        this.enabled = enabled;
+        this.controlDispatcher = controlDispatcher;
+        this.downloadDispatcher = downloadDispatcher;
+    }
+
+    /**
+     * Builds the config from the "slave.dispatchers" section. Every missing property falls back to the default value.
+     */
+    public static SlaveDispatcherConfig valueOf(final Config config) {
+        final SlaveDispatcherConfig defaults = new SlaveDispatcherConfig();
+        return new SlaveDispatcherConfig(
+                config.hasPath("enabled") ? config.getBoolean("enabled") : defaults.getEnabled(),
+                config.hasPath("controlDispatcher") ? config.getString("controlDispatcher") : defaults.getControlDispatcher(),
+                config.hasPath("downloadDispatcher") ? config.getString("downloadDispatcher") : defaults.getDownloadDispatcher()
+        );
+    }
+
+    /**
+     * Sizes the download dispatcher after the number of download workers, one thread per worker, so that the two
+     * can't drift apart.
+     *
+     * @param config the akka config the actor system is created with
+     * @return the config with the pool size of the download dispatcher, unchanged when the dispatchers are disabled
+     */
+    public Config withDownloadDispatcherPoolSize(final Config config, final int nrOfDownloaderSlaves) {
+        if (!enabled) {
+            return config;
+        }
+        return config.withValue(downloadDispatcher + ".thread-pool-executor.fixed-pool-size",
+                ConfigValueFactory.fromAnyRef(nrOfDownloaderSlaves));
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public String getControlDispatcher() {
+        return controlDispatcher;
+    }
+
+    public String getDownloadDispatcher() {
+        return downloadDispatcher;
+    }
+}
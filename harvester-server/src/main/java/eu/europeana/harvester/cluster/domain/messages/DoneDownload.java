@@ -0,0 +1,24 @@
+package eu.europeana.harvester.cluster.domain.messages;
+
+import java.io.Serializable;
+
+/**
+ * Sent by a worker of a slave node to its node master when the download of a task is over & its processing is handed
+ * over to the processing stage : the connection slot of the task is free from then on. The result of the task is
+ * reported later on, by the DoneProcessing of the processing stage.
+ */
+public class DoneDownload implements Serializable {
+
+    /**
+     * The unique ID of the task.
+     */
+    private final String taskID;
+
+    public DoneDownload(String taskID) {
+        this.taskID = taskID;
+    }
+
+    public String getTaskID() {
+        return taskID;
+    }
+}
@@ -0,0 +1,9 @@
+package eu.europeana.harvester.cluster.domain.messages;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the node master to itself, halfway through the duration of the leases of connection slots, to renew them.
+ */
+public class RenewConnectionSlotLeases implements Serializable {
+}
@@ -0,0 +1,10 @@
+package eu.europeana.harvester.cluster.domain.messages;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the node master to itself after it received new tasks, to ask the master for their connection slots with
+ * one request per IP.
+ */
+public class RequestConnectionSlots implements Serializable {
+}
@@ -2,5 +2,87 @@ package eu.europeana.harvester.cluster.domain.messages;
 
 import java.io.Serializable;
 
+/**
+ * Message sent by slaves to ask the master for tasks. It carries the free capacity (the credit) of the node per
+ * stage & how many tasks the node received so far : the master may send up to "received + free download slots"
+ * tasks in total, minus the ones it already sent, so the bags still on their way to the node when it asks again
+ * aren't given twice. The counts start again with every credit session (ie. when the node master restarts).
+ *
+ * A request without credit (ie. sent by an older slave) gets one bag of the default size.
+ */
 public class RequestTasks implements Serializable {
+
+    private static final int NO_CREDIT = -1;
+
+    /**
+     * Identifies the count of the received tasks, it changes when the count starts again.
+     */
+    private final String creditSession;
+
+    /**
+     * How many tasks the node received during the credit session.
+     */
+    private final long nrOfTasksReceived;
+
+    /**
+     * How many more tasks the download workers of the node can take, including the ones that wait for a worker.
+     */
+    private final int freeDownloadSlots;
+
+    /**
+     * How many more downloaded files the processing of the node can take.
+     */
+    private final int freeProcessingSlots;
+
+    /**
+     * The size of the downloaded files being processed or waiting for processing.
+     */
+    private final long queuedBytes;
+
+    public RequestTasks() {
+        this(null, 0l, NO_CREDIT, NO_CREDIT, 0l);
+    }
+
+    public RequestTasks(final String creditSession, final long nrOfTasksReceived,
+                        final int freeDownloadSlots, final int freeProcessingSlots, final long queuedBytes) {
+        this.creditSession = creditSession;
+        this.nrOfTasksReceived = nrOfTasksReceived;
+        this.freeDownloadSlots = freeDownloadSlots;
+        this.freeProcessingSlots = freeProcessingSlots;
+        this.queuedBytes = queuedBytes;
+    }
+
+    /**
+     * @return false if the request doesn't carry the capacity of the node
+     */
+    public boolean hasCredit() {
+        return freeDownloadSlots != NO_CREDIT;
+    }
+
+    public String getCreditSession() {
+        return creditSession;
+    }
+
+    public long getNrOfTasksReceived() {
+        return nrOfTasksReceived;
+    }
+
+    /**
+     * @return the total number of tasks the node can take during the credit session
+     */
+    public long getTaskLimit() {
+        return nrOfTasksReceived + Math.max(0, freeDownloadSlots);
+    }
+
+    public int getFreeDownloadSlots() {
+        return freeDownloadSlots;
+    }
+
+    public int getFreeProcessingSlots() {
+        return freeProcessingSlots;
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
 }
@@ -0,0 +1,10 @@
+package eu.europeana.harvester.cluster.domain.messages;
+
+import java.io.Serializable;
+
+/**
+ * Sent by a worker of a slave node to its node master when it's free to take the next task : after it has finished
+ * a task, handed it over to the processing stage or been restarted after a failure.
+ */
+public class WorkerReady implements Serializable {
+}
@@ -0,0 +1,9 @@
+package eu.europeana.harvester.cluster.domain.messages.inner;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the accountant to itself after new tasks were added, to send them to the slaves that have credit left.
+ */
+public class DispatchTasks implements Serializable {
+}
@@ -21,7 +21,11 @@ import eu.europeana.harvester.cluster.master.accountants.AccountantActor;
 import eu.europeana.harvester.cluster.master.jobrestarter.JobRestarterActor;
 import eu.europeana.harvester.cluster.master.limiter.IPLimiterAccountantActor;
 import eu.europeana.harvester.cluster.master.limiter.domain.IPLimiterConfig;
+import eu.europeana.harvester.cluster.master.limiter.domain.LeaseConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.RenewConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotRequest;
 import eu.europeana.harvester.cluster.master.loaders.JobLoaderMasterActor;
 import eu.europeana.harvester.cluster.master.metrics.MasterMetrics;
@@ -411,6 +415,17 @@ public class ClusterMasterActor extends UntypedActor {
             return;
         }
 
+        if(message instanceof ReserveConnectionSlotsRequest) {
+            masterLimiter.tell(message, getSender());
+            return;
+        }
+
+        if(message instanceof LeaseConnectionSlotsRequest || message instanceof RenewConnectionSlotLeaseRequest ||
+                message instanceof ReturnConnectionSlotLeaseRequest) {
+            masterLimiter.tell(message, getSender());
+            return;
+        }
+
         if(message instanceof ReturnConnectionSlotRequest) {
             masterLimiter.tell(message, getSender());
             return;
@@ -4,6 +4,7 @@ import akka.actor.ActorRef;
 import akka.actor.UntypedActor;
 import com.codahale.metrics.Gauge;
 import eu.europeana.harvester.cluster.domain.DefaultLimits;
+import eu.europeana.harvester.cluster.domain.messages.BagOfTasks;
 import eu.europeana.harvester.cluster.domain.messages.DoneProcessing;
 import eu.europeana.harvester.cluster.domain.messages.RequestTasks;
 import eu.europeana.harvester.cluster.domain.messages.inner.*;
@@ -24,6 +25,11 @@ public class AccountantActor extends UntypedActor {
 
     private int lastNumberOfJobsCleaned = 0;
 
+    /**
+     * Whether a DispatchTasks is already on its way, the tasks added until then are sent together.
+     */
+    private boolean dispatchScheduled = false;
+
     public AccountantActor(DefaultLimits defaultLimits) {
         accountantActorHelper = new AccountantActorHelper(defaultLimits);
         masterReceiver = getContext().actorFor("../receiver");
@@ -90,16 +96,36 @@ public class AccountantActor extends UntypedActor {
             return;
         } else if (message instanceof RequestTasks) {
 
+            final RequestTasks requestTasks = (RequestTasks) message;
+
             LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Master.TASKS_SENDER),
-                    "Received request for tasks from " + getSender());
+                    "Received request for tasks from " + getSender() + ", download slots: " + requestTasks.getFreeDownloadSlots() +
+                            ", processing slots: " + requestTasks.getFreeProcessingSlots() + ", queued bytes: " + requestTasks.getQueuedBytes());
+
+            if (!requestTasks.hasCredit()) {
+                MasterMetrics.Master.sendJobSetToSlaveCounter.inc();
+                final com.codahale.metrics.Timer.Context context = MasterMetrics.Master.sendJobSetToSlaveDuration.time();
+                getSender().tell(accountantActorHelper.getBagOfTasks(), masterReceiver);
+                context.stop();
+                return;
+            }
 
-            MasterMetrics.Master.sendJobSetToSlaveCounter.inc();
-            final com.codahale.metrics.Timer.Context context = MasterMetrics.Master.sendJobSetToSlaveDuration.time();
-            getSender().tell(accountantActorHelper.getBagOfTasks(), masterReceiver);
-            context.stop();
+            accountantActorHelper.advertiseCredit(getSender(), requestTasks);
+            dispatchTasks(getSender());
             return;
         } else if (message instanceof AddTask) {
             accountantActorHelper.addTask((AddTask) message);
+            if (!dispatchScheduled && !accountantActorHelper.getSlavesWithCredit().isEmpty()) {
+                dispatchScheduled = true;
+                getContext().system().scheduler().scheduleOnce(scala.concurrent.duration.Duration.create(1,
+                        TimeUnit.SECONDS), getSelf(), new DispatchTasks(), getContext().system().dispatcher(), getSelf());
+            }
+            return;
+        } else if (message instanceof DispatchTasks) {
+            dispatchScheduled = false;
+            for (final ActorRef slave : accountantActorHelper.getSlavesWithCredit()) {
+                dispatchTasks(slave);
+            }
             return;
         } else if (message instanceof DoneProcessing) {
             accountantActorHelper.doneTask((DoneProcessing) message);
@@ -120,5 +146,20 @@ public class AccountantActor extends UntypedActor {
         }
     }
 
+    /**
+     * Sends to the slave as many tasks as it has credit for. The credit left is kept until there are more tasks.
+     */
+    private void dispatchTasks(final ActorRef slave) {
+        while (true) {
+            final com.codahale.metrics.Timer.Context context = MasterMetrics.Master.sendJobSetToSlaveDuration.time();
+            final BagOfTasks bagOfTasks = accountantActorHelper.getBagOfTasksForCredit(slave);
+            context.stop();
+            if (bagOfTasks.getTasks().isEmpty()) {
+                return;
+            }
+            MasterMetrics.Master.sendJobSetToSlaveCounter.inc();
+            slave.tell(bagOfTasks, masterReceiver);
+        }
+    }
 
 }
@@ -1,9 +1,11 @@
 package eu.europeana.harvester.cluster.master.accountants;
 
+import akka.actor.ActorRef;
 import eu.europeana.harvester.cluster.domain.DefaultLimits;
 import eu.europeana.harvester.cluster.domain.TaskState;
 import eu.europeana.harvester.cluster.domain.messages.BagOfTasks;
 import eu.europeana.harvester.cluster.domain.messages.DoneProcessing;
+import eu.europeana.harvester.cluster.domain.messages.RequestTasks;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
 import eu.europeana.harvester.cluster.domain.messages.inner.AddTask;
 import eu.europeana.harvester.cluster.domain.utils.Pair;
@@ -101,6 +103,35 @@ public class AccountantActorHelper {
     private final MapWrapper normalLane = new MapWrapper();
     private final MapWrapper fastLane = new MapWrapper();
 
+    /**
+     * The credit of a slave : how many tasks it can take in total during its credit session, how many were sent to
+     * it & when it advertised it.
+     */
+    private static class SlaveCredit {
+        private final String session;
+        private long taskLimit;
+        private long nrOfTasksSent;
+        private DateTime advertiseTime;
+
+        private SlaveCredit(final String session, final long nrOfTasksSent) {
+            this.session = session;
+            this.taskLimit = nrOfTasksSent;
+            this.nrOfTasksSent = nrOfTasksSent;
+        }
+
+        private int getCredit() {
+            return (int) Math.max(0, taskLimit - nrOfTasksSent);
+        }
+    }
+
+    /**
+     * The credit of each slave. A slave advertises its credit again with every heartbeat, the credit of a slave that
+     * stopped doing so is dropped by the clean.
+     */
+    private final Map<ActorRef, SlaveCredit> creditPerSlave = new HashMap<>();
+
+    private static final int MAX_CREDIT_AGE_IN_MINUTES = 10;
+
     private final DefaultLimits defaultLimits;
 
 
@@ -158,6 +189,14 @@ public class AccountantActorHelper {
             fastLane.addTask(retrieveUrl);
         }
 
+        final DateTime minAdvertiseTime = DateTime.now().minusMinutes(MAX_CREDIT_AGE_IN_MINUTES);
+        final Iterator<SlaveCredit> credits = creditPerSlave.values().iterator();
+        while (credits.hasNext()) {
+            if (credits.next().advertiseTime.isBefore(minAdvertiseTime)) {
+                credits.remove();
+            }
+        }
+
         return tasksToRestart.size();
     }
 
@@ -172,23 +211,71 @@ public class AccountantActorHelper {
 
 
     public BagOfTasks getBagOfTasks() {
+        return getBagOfTasks(defaultLimits.getTaskBatchSize());
+    }
+
+    /**
+     * @param maxToSend the maximum number of tasks in the bag
+     */
+    public BagOfTasks getBagOfTasks(final int maxToSend) {
 
-        List<RetrieveUrl> tasksToSend = startTasks();
+        List<RetrieveUrl> tasksToSend = startTasks(maxToSend);
         final BagOfTasks bagOfTasks = new BagOfTasks(tasksToSend);
         return bagOfTasks;
 
     }
 
+    /**
+     * Updates the credit of the slave with its request : the slave may get up to the tasks it received plus its free
+     * download slots, minus the ones sent to it since the start of its credit session. A slave whose processing is
+     * full & has files waiting gets no credit until it catches up, the tasks go to the other slaves.
+     */
+    public void advertiseCredit(final ActorRef slave, final RequestTasks requestTasks) {
+        SlaveCredit credit = creditPerSlave.get(slave);
+        if (credit == null || !credit.session.equals(requestTasks.getCreditSession())) {
+            // The tasks sent during the previous session, if any, are not counted anymore
+            credit = new SlaveCredit(requestTasks.getCreditSession(), requestTasks.getNrOfTasksReceived());
+            creditPerSlave.put(slave, credit);
+        }
+
+        final boolean processingIsFull = requestTasks.getFreeProcessingSlots() <= 0 && requestTasks.getQueuedBytes() > 0;
+        credit.taskLimit = processingIsFull ? requestTasks.getNrOfTasksReceived() : requestTasks.getTaskLimit();
+        credit.advertiseTime = DateTime.now();
+    }
+
+    /**
+     * Starts as many tasks as the slave has credit for, at most one bag of the default size, & takes them from its credit.
+     */
+    public BagOfTasks getBagOfTasksForCredit(final ActorRef slave) {
+        final SlaveCredit credit = creditPerSlave.get(slave);
+        if (credit == null || credit.getCredit() == 0) {
+            return new BagOfTasks(new ArrayList<RetrieveUrl>());
+        }
+
+        final BagOfTasks bagOfTasks = getBagOfTasks(Math.min(credit.getCredit(), defaultLimits.getTaskBatchSize()));
+        credit.nrOfTasksSent += bagOfTasks.getTasks().size();
+        return bagOfTasks;
+    }
+
+    /**
+     * @return the slaves that can take more tasks
+     */
+    public List<ActorRef> getSlavesWithCredit() {
+        final List<ActorRef> slaves = new ArrayList<>();
+        for (final Map.Entry<ActorRef, SlaveCredit> credit : creditPerSlave.entrySet())
+            if (credit.getValue().getCredit() > 0)
+                slaves.add(credit.getKey());
+        return slaves;
+    }
+
 
     /**
      * Check if we are allowed to start one or more jobs if yes then starts them.
      */
-    private List<RetrieveUrl> startTasks() {
+    private List<RetrieveUrl> startTasks(final int maxToSend) {
 
         List<RetrieveUrl> tasksToSend = new ArrayList<>();
 
-        final int maxToSend = defaultLimits.getTaskBatchSize();
-
         // first we go through the fastlane tasks
         List<RetrieveUrl> fastLaneTasks = fastLane.getListOfTasksWithRoundRobinStrategy(maxToSend);
 
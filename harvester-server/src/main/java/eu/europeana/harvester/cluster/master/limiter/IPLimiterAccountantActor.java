@@ -3,6 +3,7 @@ package eu.europeana.harvester.cluster.master.limiter;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.actor.UntypedActor;
 import eu.europeana.harvester.cluster.master.limiter.domain.*;
 import eu.europeana.harvester.cluster.master.metrics.MasterMetrics;
@@ -11,6 +12,12 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class IPLimiterAccountantActor extends UntypedActor {
@@ -34,6 +41,12 @@ public class IPLimiterAccountantActor extends UntypedActor {
     private final IpLimiterAccountant ipLimiterAccountant;
     private final IPLimiterConfig IPLimiterConfig;
 
+    /**
+     * Who asked for the slots of the tasks that wait in the queues of the IPs. The requesters are watched so that
+     * the tasks of a requester that is gone (ie. a slave that died or restarted) don't wait forever.
+     */
+    private final Map<String /* Task id */, ActorRef> waitingTaskRequesters = new HashMap<>();
+
     public IPLimiterAccountantActor(final IPLimiterConfig IPLimiterConfig) {
         this.ipLimiterAccountant = new IpLimiterAccountant(IPLimiterConfig.getDefaultLimitsPerIp(), IPLimiterConfig.getSpecificLimitsPerIp());
         this.IPLimiterConfig = IPLimiterConfig;
@@ -65,12 +78,75 @@ public class IPLimiterAccountantActor extends UntypedActor {
             getSender().tell(response, getSelf());
             return;
         }
+        if (message instanceof ReserveConnectionSlotsRequest) {
+            final ReserveConnectionSlotsRequest reserveConnectionSlotsRequest = (ReserveConnectionSlotsRequest) message;
+            LOG.debug("IO limiter instanceof ReserveConnectionSlotsRequest, ip: {}, number of tasks: {}",
+                    reserveConnectionSlotsRequest.getIp(), reserveConnectionSlotsRequest.getTaskIDs().size());
+
+            final List<ReserveConnectionSlotResponse> grantedSlots = ipLimiterAccountant.reserveConnectionSlotsRequest(reserveConnectionSlotsRequest);
+            final List<String> waitingTaskIds = new ArrayList<>(reserveConnectionSlotsRequest.getTaskIDs());
+            for (final ReserveConnectionSlotResponse grantedSlot : grantedSlots) {
+                waitingTaskIds.remove(grantedSlot.getTaskID());
+            }
+            for (final String taskId : waitingTaskIds) {
+                waitingTaskRequesters.put(taskId, getSender());
+            }
+            if (!waitingTaskIds.isEmpty()) {
+                getContext().watch(getSender());
+            }
+            MasterMetrics.Master.ipLimitGrantedSlotRequestCounter.inc(grantedSlots.size());
+            MasterMetrics.Master.ipLimitNotGrantedSlotRequestCounter.inc(waitingTaskIds.size());
+
+            if (!grantedSlots.isEmpty()) {
+                getSender().tell(new ReserveConnectionSlotsResponse(grantedSlots), getSelf());
+            }
+            return;
+        }
         if (message instanceof ReturnConnectionSlotRequest) {
             LOG.debug("IO limiter instanceof ReturnConnectionSlotRequest, message slot id: {}", ((ReturnConnectionSlotRequest) message).getSlotId());
 
             final ReturnConnectionSlotRequest returnConnectionSlotRequest = (ReturnConnectionSlotRequest) message;
             ipLimiterAccountant.returnConnectionSlotRequest(returnConnectionSlotRequest);
             MasterMetrics.Master.ipLimitReturnedGrantedSlotRequestCounter.inc();
+
+            // The slot goes right away to the task that waits for the longest
+            notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks(returnConnectionSlotRequest.getIp()));
+            return;
+        }
+        if (message instanceof LeaseConnectionSlotsRequest) {
+            final LeaseConnectionSlotsRequest leaseConnectionSlotsRequest = (LeaseConnectionSlotsRequest) message;
+            LOG.debug("IO limiter instanceof LeaseConnectionSlotsRequest, ip: {}, number of slots: {}",
+                    leaseConnectionSlotsRequest.getIp(), leaseConnectionSlotsRequest.getNrOfSlots());
+
+            // The lease lasts as long as a single slot, it's reclaimed the same way if it's not renewed
+            final ConnectionSlotLease lease = ipLimiterAccountant.leaseConnectionSlotsRequest(leaseConnectionSlotsRequest,
+                    IPLimiterConfig.getMaxSlotUsageLife().getMillis());
+            if (lease.getNrOfSlots() > 0) MasterMetrics.Master.ipLimitGrantedSlotRequestCounter.inc(lease.getNrOfSlots());
+            else MasterMetrics.Master.ipLimitNotGrantedSlotRequestCounter.inc();
+
+            getSender().tell(lease, getSelf());
+            return;
+        }
+        if (message instanceof RenewConnectionSlotLeaseRequest) {
+            final RenewConnectionSlotLeaseRequest renewConnectionSlotLeaseRequest = (RenewConnectionSlotLeaseRequest) message;
+            LOG.debug("IO limiter instanceof RenewConnectionSlotLeaseRequest, lease id: {}", renewConnectionSlotLeaseRequest.getLeaseId());
+
+            if (!ipLimiterAccountant.renewConnectionSlotLeaseRequest(renewConnectionSlotLeaseRequest)) {
+                getSender().tell(new ConnectionSlotLeaseExpired(renewConnectionSlotLeaseRequest.getLeaseId(),
+                        renewConnectionSlotLeaseRequest.getIp()), getSelf());
+                // The slots of a dropped lease come back one by one, the ones already free go to the waiting tasks
+                notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks(renewConnectionSlotLeaseRequest.getIp()));
+            }
+            return;
+        }
+        if (message instanceof ReturnConnectionSlotLeaseRequest) {
+            final ReturnConnectionSlotLeaseRequest returnConnectionSlotLeaseRequest = (ReturnConnectionSlotLeaseRequest) message;
+            LOG.debug("IO limiter instanceof ReturnConnectionSlotLeaseRequest, lease id: {}", returnConnectionSlotLeaseRequest.getLeaseId());
+
+            if (ipLimiterAccountant.returnConnectionSlotLeaseRequest(returnConnectionSlotLeaseRequest)) {
+                MasterMetrics.Master.ipLimitReturnedGrantedSlotRequestCounter.inc();
+                notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks(returnConnectionSlotLeaseRequest.getIp()));
+            }
             return;
         }
         if (message instanceof IPLimitCleanExpiredSlots) {
@@ -82,11 +158,21 @@ public class IPLimiterAccountantActor extends UntypedActor {
             return ;
         }
 
+        if (message instanceof Terminated) {
+            final ActorRef requester = ((Terminated) message).getActor();
+            final List<String> taskIds = removeWaitingTaskRequester(requester);
+            LOG.debug("IO limiter instanceof Terminated, requester {}, dropped waiting tasks: {}", requester, taskIds.size());
+
+            ipLimiterAccountant.removeWaitingTasks(taskIds);
+            return;
+        }
+
         if (message instanceof  ChangeMaxAvailableSlotsRequest) {
             LOG.debug("IO limiter instanceof ChangeMaxAvailableSlotsRequest");
 
             final ChangeMaxAvailableSlotsRequest changeMaxAvailableSlotsRequest = (ChangeMaxAvailableSlotsRequest) message;
             ipLimiterAccountant.setSpecificLimitPerIp(changeMaxAvailableSlotsRequest.getIp(),changeMaxAvailableSlotsRequest.getMaxAvailableSlots());
+            notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks(changeMaxAvailableSlotsRequest.getIp()));
             return ;
         }
 
@@ -99,6 +185,63 @@ public class IPLimiterAccountantActor extends UntypedActor {
         LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Master.IP_LIMITER),
                 "IP limiter reclaimed {} slots. Next reclaiming will execute in {} seconds.", reclaimedSlots, IPLimiterConfig.getMaxSlotUsageLife().toStandardSeconds().getSeconds());
 
+        // The tasks that weren't asked for again since are dropped, their jobs were stopped or their slaves are gone
+        final List<String> expiredTaskIds = ipLimiterAccountant.expireWaitingTasksAskedForBefore(DateTime.now().minus(IPLimiterConfig.getMaxWaitingTaskLife()));
+        for (final String taskId : expiredTaskIds) {
+            waitingTaskRequesters.remove(taskId);
+        }
+        LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Master.IP_LIMITER),
+                "IP limiter dropped {} waiting tasks.", expiredTaskIds.size());
+
+        notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks());
+    }
+
+    /**
+     * @return the ids of the waiting tasks of the requester, which aren't its own anymore
+     */
+    private List<String> removeWaitingTaskRequester(final ActorRef requester) {
+        final List<String> taskIds = new ArrayList<>();
+        final Iterator<Map.Entry<String, ActorRef>> waitingTasks = waitingTaskRequesters.entrySet().iterator();
+        while (waitingTasks.hasNext()) {
+            final Map.Entry<String, ActorRef> waitingTask = waitingTasks.next();
+            if (waitingTask.getValue().equals(requester)) {
+                taskIds.add(waitingTask.getKey());
+                waitingTasks.remove();
+            }
+        }
+        return taskIds;
+    }
+
+    /**
+     * Sends the slots granted to waiting tasks to the ones who asked for them, in one message per requester.
+     */
+    private void notifyWaitingTasks(final List<ReserveConnectionSlotResponse> grantedSlots) {
+        final Map<ActorRef, List<ReserveConnectionSlotResponse>> grantedSlotsPerRequester = new LinkedHashMap<>();
+        final List<String> ipsWithReturnedSlots = new ArrayList<>();
+        for (final ReserveConnectionSlotResponse grantedSlot : grantedSlots) {
+            final ActorRef requester = waitingTaskRequesters.remove(grantedSlot.getTaskID());
+            if (requester == null) {
+                // Nobody to give it to, the slot is free again
+                ipLimiterAccountant.returnConnectionSlotRequest(new ReturnConnectionSlotRequest(grantedSlot.getSlotId(), grantedSlot.getIp()));
+                ipsWithReturnedSlots.add(grantedSlot.getIp());
+                continue;
+            }
+            List<ReserveConnectionSlotResponse> requesterSlots = grantedSlotsPerRequester.get(requester);
+            if (requesterSlots == null) {
+                requesterSlots = new ArrayList<>();
+                grantedSlotsPerRequester.put(requester, requesterSlots);
+            }
+            requesterSlots.add(grantedSlot);
+        }
+
+        for (final Map.Entry<ActorRef, List<ReserveConnectionSlotResponse>> requesterSlots : grantedSlotsPerRequester.entrySet()) {
+            MasterMetrics.Master.ipLimitGrantedSlotRequestCounter.inc(requesterSlots.getValue().size());
+            requesterSlots.getKey().tell(new ReserveConnectionSlotsResponse(requesterSlots.getValue()), getSelf());
+        }
+
+        for (final String ip : ipsWithReturnedSlots) {
+            notifyWaitingTasks(ipLimiterAccountant.grantSlotsToWaitingTasks(ip));
+        }
     }
 }
 
@@ -1,19 +1,38 @@
 package eu.europeana.harvester.cluster.master.limiter;
 
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class IpConnectionSlots {
 
     private Integer maxAvailableSlots;
     private final String ip;
     private final HashMap<String /* Slot token */, DateTime /* The time when it was granted */> slots;
+
+    /**
+     * The tasks waiting for a slot, the one waiting for the longest first. A task that isn't asked for again
+     * expires : its job may have been stopped or its slave may be gone.
+     */
+    private final LinkedHashMap<String /* Task id */, DateTime /* The last time it was asked for */> waitingTasks = new LinkedHashMap<>();
+
+    /**
+     * The slots leased to the slaves. They are occupied slots like the ones of single tasks & expire the same way
+     * unless the lease is renewed.
+     */
+    private final HashMap<String /* Lease id */, List<String> /* Slot tokens */> leases = new HashMap<>();
     private final Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
 
     public IpConnectionSlots(Integer maxAvailableSlots, String ip) {
@@ -26,9 +45,8 @@ public class IpConnectionSlots {
         LOG.debug("reserve connection slot rez, slots {}, max avail {}, ip {}.", slots, maxAvailableSlots, ip);
 
         ReserveConnectionSlotResponse response = null;
-        if (slots.keySet().size() < maxAvailableSlots) {
-            response = new ReserveConnectionSlotResponse(ip,taskId, true);
-            slots.put(response.getSlotId(), DateTime.now());
+        if (slots.keySet().size() < maxAvailableSlots && waitingTasks.isEmpty()) {
+            response = grantSlot(taskId);
         } else {
             response = new ReserveConnectionSlotResponse(ip,taskId , false);
         }
@@ -37,6 +55,114 @@ public class IpConnectionSlots {
         return response;
     }
 
+    /**
+     * Reserves a slot for each of the tasks. The tasks that don't get one wait in the queue until
+     * {@link #grantSlotsToWaitingTasks()} gives them one. A task that is already waiting keeps its place & is kept
+     * from expiring.
+     *
+     * @return the slots granted right away
+     */
+    public final List<ReserveConnectionSlotResponse> requestConnectionSlotReservations(final List<String> taskIds) {
+        final List<ReserveConnectionSlotResponse> grantedSlots = new ArrayList<>();
+        final DateTime now = DateTime.now();
+        for (final String taskId : taskIds) {
+            if (waitingTasks.containsKey(taskId)) {
+                // Updating the value of a key doesn't change its place
+                waitingTasks.put(taskId, now);
+                continue;
+            }
+            if (slots.keySet().size() < maxAvailableSlots && waitingTasks.isEmpty()) {
+                grantedSlots.add(grantSlot(taskId));
+            } else {
+                waitingTasks.put(taskId, now);
+            }
+        }
+        LOG.debug("reserve connection slots rez, ip {}, granted {}, waiting {}", ip, grantedSlots.size(), waitingTasks.size());
+
+        return grantedSlots;
+    }
+
+    /**
+     * Gives the free slots to the tasks that wait for the longest. To be called after slots were returned, reclaimed
+     * or added.
+     *
+     * @return the slots granted
+     */
+    public final List<ReserveConnectionSlotResponse> grantSlotsToWaitingTasks() {
+        final List<ReserveConnectionSlotResponse> grantedSlots = new ArrayList<>();
+        final Iterator<String> waitingTaskIds = waitingTasks.keySet().iterator();
+        while (slots.keySet().size() < maxAvailableSlots && waitingTaskIds.hasNext()) {
+            final String taskId = waitingTaskIds.next();
+            waitingTaskIds.remove();
+            grantedSlots.add(grantSlot(taskId));
+        }
+        return grantedSlots;
+    }
+
+    private ReserveConnectionSlotResponse grantSlot(final String taskId) {
+        final ReserveConnectionSlotResponse response = new ReserveConnectionSlotResponse(ip, taskId, true);
+        slots.put(response.getSlotId(), DateTime.now());
+        return response;
+    }
+
+    /**
+     * Leases up to the given number of slots, as many as are free. No slots are leased while tasks wait for one.
+     *
+     * @return the lease, with no slots if none was free
+     */
+    public final ConnectionSlotLease leaseConnectionSlots(final int nrOfSlots, final long durationInMillis) {
+        final String leaseId = ReserveConnectionSlotResponse.generateId();
+        final List<String> slotIds = new ArrayList<>();
+        if (waitingTasks.isEmpty()) {
+            final DateTime now = DateTime.now();
+            while (slotIds.size() < nrOfSlots && slots.keySet().size() < maxAvailableSlots) {
+                final String slotId = ReserveConnectionSlotResponse.generateId();
+                slots.put(slotId, now);
+                slotIds.add(slotId);
+            }
+        }
+        if (!slotIds.isEmpty()) {
+            leases.put(leaseId, slotIds);
+        }
+        LOG.debug("lease connection slots rez, ip {}, asked {}, leased {}", ip, nrOfSlots, slotIds.size());
+
+        return new ConnectionSlotLease(leaseId, ip, new ArrayList<>(slotIds), durationInMillis);
+    }
+
+    /**
+     * Renews the slots of the lease. A lease is not renewed while tasks wait for a slot : it's dropped & its slots
+     * become slots of single tasks. The slave returns the free ones right away & the others when their tasks are
+     * done, they go to the waiting tasks then (or once they expire if the slave is gone).
+     *
+     * @return false if the lease is unknown (ie. already reclaimed) or was dropped
+     */
+    public final boolean renewConnectionSlotLease(final String leaseId) {
+        final List<String> slotIds = leases.get(leaseId);
+        if (slotIds == null) {
+            return false;
+        }
+        final DateTime now = DateTime.now();
+        for (final String slotId : slotIds) {
+            slots.put(slotId, now);
+        }
+        if (!waitingTasks.isEmpty()) {
+            leases.remove(leaseId);
+            return false;
+        }
+        return true;
+    }
+
+    public final boolean returnConnectionSlotLease(final String leaseId) {
+        final List<String> slotIds = leases.remove(leaseId);
+        if (slotIds == null) {
+            return false;
+        }
+        for (final String slotId : slotIds) {
+            slots.remove(slotId);
+        }
+        return true;
+    }
+
     public final boolean returnConnectionSlotReservation(final String slotId) {
         if (slots.containsKey(slotId)) {
             slots.remove(slotId);
@@ -55,13 +181,51 @@ public class IpConnectionSlots {
         for (final String slotId : slotIdsToBeReclaimed) {
             slots.remove(slotId);
         }
+
+        // The leases that weren't renewed expire with their slots
+        final Set<String> reclaimedSlotIds = new HashSet<>(slotIdsToBeReclaimed);
+        final Iterator<List<String>> leaseSlotIds = leases.values().iterator();
+        while (leaseSlotIds.hasNext()) {
+            final List<String> slotIds = leaseSlotIds.next();
+            slotIds.removeAll(reclaimedSlotIds);
+            if (slotIds.isEmpty()) leaseSlotIds.remove();
+        }
         return slotIdsToBeReclaimed.size();
     }
 
+    /**
+     * Drops the waiting tasks that weren't asked for since the limit.
+     *
+     * @return the ids of the dropped tasks
+     */
+    public final List<String> expireWaitingTasksAskedForBefore(final DateTime limit) {
+        final List<String> expiredTaskIds = new ArrayList<>();
+        final Iterator<Map.Entry<String, DateTime>> waitingTaskEntries = waitingTasks.entrySet().iterator();
+        while (waitingTaskEntries.hasNext()) {
+            final Map.Entry<String, DateTime> waitingTask = waitingTaskEntries.next();
+            if (waitingTask.getValue().isBefore(limit)) {
+                expiredTaskIds.add(waitingTask.getKey());
+                waitingTaskEntries.remove();
+            }
+        }
+        return expiredTaskIds;
+    }
+
+    /**
+     * Drops the given tasks from the queue, ie. when the one who asked for their slots is gone.
+     */
+    public final void removeWaitingTasks(final Collection<String> taskIds) {
+        waitingTasks.keySet().removeAll(taskIds);
+    }
+
     public final int getNumberOfAvailableSlots() {
         return maxAvailableSlots-slots.keySet().size();
     }
 
+    public final int getNumberOfWaitingTasks() {
+        return waitingTasks.size();
+    }
+
     public void setMaxAvailableSlots(Integer maxAvailableSlots) {
         this.maxAvailableSlots = maxAvailableSlots;
     }
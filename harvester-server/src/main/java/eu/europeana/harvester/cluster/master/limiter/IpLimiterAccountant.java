@@ -1,13 +1,21 @@
 package eu.europeana.harvester.cluster.master.limiter;
 
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
+import eu.europeana.harvester.cluster.master.limiter.domain.LeaseConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.RenewConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotRequest;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class IpLimiterAccountant {
@@ -39,11 +47,53 @@ public class IpLimiterAccountant {
         return occupiedConnectionSlotsPerIp.get(reserveConnectionSlotRequest.getIp()).requestConnectionSlotReservation(reserveConnectionSlotRequest.getTaskID());
     }
 
+    /**
+     * @return the slots granted right away, the other tasks wait for a slot to be returned
+     */
+    public final List<ReserveConnectionSlotResponse> reserveConnectionSlotsRequest(final ReserveConnectionSlotsRequest reserveConnectionSlotsRequest) {
+        occupiedConnectionSlotsPerIpFull(reserveConnectionSlotsRequest.getIp());
+        return occupiedConnectionSlotsPerIp.get(reserveConnectionSlotsRequest.getIp()).requestConnectionSlotReservations(reserveConnectionSlotsRequest.getTaskIDs());
+    }
+
+    /**
+     * @return the slots granted to the tasks waiting for a slot to the IP
+     */
+    public final List<ReserveConnectionSlotResponse> grantSlotsToWaitingTasks(final String ip) {
+        occupiedConnectionSlotsPerIpFull(ip);
+        return occupiedConnectionSlotsPerIp.get(ip).grantSlotsToWaitingTasks();
+    }
+
+    /**
+     * @return the slots granted to the tasks waiting for a slot to any IP
+     */
+    public final List<ReserveConnectionSlotResponse> grantSlotsToWaitingTasks() {
+        final List<ReserveConnectionSlotResponse> grantedSlots = new ArrayList<>();
+        for (final IpConnectionSlots ipConnectionSlots : occupiedConnectionSlotsPerIp.values()) {
+            grantedSlots.addAll(ipConnectionSlots.grantSlotsToWaitingTasks());
+        }
+        return grantedSlots;
+    }
+
     public final boolean returnConnectionSlotRequest(final ReturnConnectionSlotRequest returnConnectionSlotRequest) {
         occupiedConnectionSlotsPerIpFull(returnConnectionSlotRequest.getIp());
         return occupiedConnectionSlotsPerIp.get(returnConnectionSlotRequest.getIp()).returnConnectionSlotReservation(returnConnectionSlotRequest.getSlotId());
     }
 
+    public final ConnectionSlotLease leaseConnectionSlotsRequest(final LeaseConnectionSlotsRequest leaseConnectionSlotsRequest, final long durationInMillis) {
+        occupiedConnectionSlotsPerIpFull(leaseConnectionSlotsRequest.getIp());
+        return occupiedConnectionSlotsPerIp.get(leaseConnectionSlotsRequest.getIp()).leaseConnectionSlots(leaseConnectionSlotsRequest.getNrOfSlots(), durationInMillis);
+    }
+
+    public final boolean renewConnectionSlotLeaseRequest(final RenewConnectionSlotLeaseRequest renewConnectionSlotLeaseRequest) {
+        occupiedConnectionSlotsPerIpFull(renewConnectionSlotLeaseRequest.getIp());
+        return occupiedConnectionSlotsPerIp.get(renewConnectionSlotLeaseRequest.getIp()).renewConnectionSlotLease(renewConnectionSlotLeaseRequest.getLeaseId());
+    }
+
+    public final boolean returnConnectionSlotLeaseRequest(final ReturnConnectionSlotLeaseRequest returnConnectionSlotLeaseRequest) {
+        occupiedConnectionSlotsPerIpFull(returnConnectionSlotLeaseRequest.getIp());
+        return occupiedConnectionSlotsPerIp.get(returnConnectionSlotLeaseRequest.getIp()).returnConnectionSlotLease(returnConnectionSlotLeaseRequest.getLeaseId());
+    }
+
     public final int reclaimOccupiedSlotsOlderThan(final DateTime limit) {
         int reclaimedSlots = 0;
         for (final String ip : occupiedConnectionSlotsPerIp.keySet()) {
@@ -52,6 +102,23 @@ public class IpLimiterAccountant {
         return reclaimedSlots;
     }
 
+    /**
+     * @return the ids of the tasks that were waiting for a slot to any IP & weren't asked for since the limit
+     */
+    public final List<String> expireWaitingTasksAskedForBefore(final DateTime limit) {
+        final List<String> expiredTaskIds = new ArrayList<>();
+        for (final IpConnectionSlots ipConnectionSlots : occupiedConnectionSlotsPerIp.values()) {
+            expiredTaskIds.addAll(ipConnectionSlots.expireWaitingTasksAskedForBefore(limit));
+        }
+        return expiredTaskIds;
+    }
+
+    public final void removeWaitingTasks(final Collection<String> taskIds) {
+        for (final IpConnectionSlots ipConnectionSlots : occupiedConnectionSlotsPerIp.values()) {
+            ipConnectionSlots.removeWaitingTasks(taskIds);
+        }
+    }
+
     public final void setSpecificLimitPerIp(final String ip,final Integer limit) {
         LOG.debug("ip limiter accountant, ip {}, limit {} ", ip, limit);
         occupiedConnectionSlotsPerIpFull(ip);
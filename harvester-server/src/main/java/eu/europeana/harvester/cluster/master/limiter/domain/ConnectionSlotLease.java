@@ -0,0 +1,49 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The connection slots to an IP leased to a slave. The lease must be renewed before its duration is over, otherwise
+ * its slots are reclaimed like the expired slots of single tasks. A lease of no slots means none was free.
+ *
+ * The slave keeps the ids of the slots : when the lease isn't renewed, the slots still in use become slots of single
+ * tasks, each returned by its id once its task is done.
+ */
+public class ConnectionSlotLease implements Serializable {
+
+    private final String leaseId;
+
+    private final String ip;
+
+    private final List<String> slotIds;
+
+    private final Long durationInMillis;
+
+    public ConnectionSlotLease(String leaseId, String ip, List<String> slotIds, Long durationInMillis) {
+        this.leaseId = leaseId;
+        this.ip = ip;
+        this.slotIds = slotIds;
+        this.durationInMillis = durationInMillis;
+    }
+
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public List<String> getSlotIds() {
+        return slotIds;
+    }
+
+    public Integer getNrOfSlots() {
+        return slotIds.size();
+    }
+
+    public Long getDurationInMillis() {
+        return durationInMillis;
+    }
+}
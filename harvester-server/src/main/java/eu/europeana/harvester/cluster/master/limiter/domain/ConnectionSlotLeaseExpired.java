@@ -0,0 +1,26 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+
+/**
+ * Tells a slave that its lease of connection slots was not renewed : it was already reclaimed or other tasks wait for
+ * the slots of the IP. The slave must not start more tasks on it, the slots are reclaimed once they expire.
+ */
+public class ConnectionSlotLeaseExpired implements Serializable {
+
+    private final String leaseId;
+    private final String ip;
+
+    public ConnectionSlotLeaseExpired(String leaseId, String ip) {
+        this.leaseId = leaseId;
+        this.ip = ip;
+    }
+
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+}
@@ -11,10 +11,22 @@ public class IPLimiterConfig {
 
     private final Duration maxSlotUsageLife;
 
+    /**
+     * How long a task waits for a slot without being asked for again. The slaves ask again for the slots of their
+     * waiting tasks with every heartbeat.
+     */
+    private final Duration maxWaitingTaskLife;
+
     public IPLimiterConfig(Integer defaultLimitsPerIp, Map<String, Integer> specificLimitsPerIp, Duration maxSlotUsageLife) {
+        this(defaultLimitsPerIp, specificLimitsPerIp, maxSlotUsageLife, maxSlotUsageLife);
+    }
+
+    public IPLimiterConfig(Integer defaultLimitsPerIp, Map<String, Integer> specificLimitsPerIp, Duration maxSlotUsageLife,
+                           Duration maxWaitingTaskLife) {
         this.defaultLimitsPerIp = defaultLimitsPerIp;
         this.specificLimitsPerIp = specificLimitsPerIp;
         this.maxSlotUsageLife = maxSlotUsageLife;
+        this.maxWaitingTaskLife = maxWaitingTaskLife;
     }
 
     public Integer getDefaultLimitsPerIp() {
@@ -25,6 +37,10 @@ public class IPLimiterConfig {
         return maxSlotUsageLife;
     }
 
+    public Duration getMaxWaitingTaskLife() {
+        return maxWaitingTaskLife;
+    }
+
     public Map<String, Integer> getSpecificLimitsPerIp() {
         return specificLimitsPerIp;
     }
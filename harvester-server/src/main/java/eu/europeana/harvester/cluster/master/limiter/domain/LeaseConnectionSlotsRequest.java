@@ -0,0 +1,27 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+
+/**
+ * Asks for a lease of several connection slots to an IP, answered with a {@link ConnectionSlotLease}. The slave
+ * enforces the slots of the lease itself.
+ */
+public class LeaseConnectionSlotsRequest implements Serializable {
+
+    private final String ip;
+
+    private final Integer nrOfSlots;
+
+    public LeaseConnectionSlotsRequest(String ip, Integer nrOfSlots) {
+        this.ip = ip;
+        this.nrOfSlots = nrOfSlots;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public Integer getNrOfSlots() {
+        return nrOfSlots;
+    }
+}
@@ -0,0 +1,26 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+
+/**
+ * Renews a lease of connection slots for another lease duration. Answered with a {@link ConnectionSlotLeaseExpired}
+ * when the lease can't be renewed.
+ */
+public class RenewConnectionSlotLeaseRequest implements Serializable {
+
+    private final String leaseId;
+    private final String ip;
+
+    public RenewConnectionSlotLeaseRequest(String leaseId, String ip) {
+        this.leaseId = leaseId;
+        this.ip = ip;
+    }
+
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+}
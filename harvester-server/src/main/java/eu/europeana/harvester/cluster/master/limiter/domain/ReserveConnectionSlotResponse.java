@@ -19,7 +19,14 @@ public class ReserveConnectionSlotResponse implements Serializable {
 
 
     public ReserveConnectionSlotResponse(final String ip, final String taskID, final Boolean granted) {
-        this.slotId = generateId();
+        this(ip, taskID, generateId(), granted);
+    }
+
+    /**
+     * @param slotId the id of a slot that was already granted, ie. the slot of a lease a task runs on
+     */
+    public ReserveConnectionSlotResponse(final String ip, final String taskID, final String slotId, final Boolean granted) {
+        this.slotId = slotId;
         this.ip = ip;
         this.taskID = taskID;
         this.granted = granted;
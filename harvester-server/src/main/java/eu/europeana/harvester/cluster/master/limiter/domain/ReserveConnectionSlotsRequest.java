@@ -0,0 +1,29 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Asks for one connection slot to an IP for each of the tasks. The slots that are free are granted right away with a
+ * {@link ReserveConnectionSlotsResponse}, the other tasks wait in the queue of the IP & their slots are granted (with
+ * the same response) as soon as they are returned.
+ */
+public class ReserveConnectionSlotsRequest implements Serializable {
+
+    private final String ip;
+
+    private final List<String> taskIDs;
+
+    public ReserveConnectionSlotsRequest(String ip, List<String> taskIDs) {
+        this.ip = ip;
+        this.taskIDs = taskIDs;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public List<String> getTaskIDs() {
+        return taskIDs;
+    }
+}
@@ -0,0 +1,20 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The connection slots granted to the tasks of one or more {@link ReserveConnectionSlotsRequest}.
+ */
+public class ReserveConnectionSlotsResponse implements Serializable {
+
+    private final List<ReserveConnectionSlotResponse> grantedSlots;
+
+    public ReserveConnectionSlotsResponse(List<ReserveConnectionSlotResponse> grantedSlots) {
+        this.grantedSlots = grantedSlots;
+    }
+
+    public List<ReserveConnectionSlotResponse> getGrantedSlots() {
+        return grantedSlots;
+    }
+}
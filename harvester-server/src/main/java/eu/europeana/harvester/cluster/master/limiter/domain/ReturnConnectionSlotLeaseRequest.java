@@ -0,0 +1,22 @@
+package eu.europeana.harvester.cluster.master.limiter.domain;
+
+import java.io.Serializable;
+
+public class ReturnConnectionSlotLeaseRequest implements Serializable {
+
+    private final String leaseId;
+    private final String ip;
+
+    public ReturnConnectionSlotLeaseRequest(String leaseId, String ip) {
+        this.leaseId = leaseId;
+        this.ip = ip;
+    }
+
+    public String getLeaseId() {
+        return leaseId;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+}
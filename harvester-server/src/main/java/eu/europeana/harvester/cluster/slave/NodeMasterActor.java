@@ -5,9 +5,21 @@ import com.codahale.metrics.Gauge;
 import eu.europeana.harvester.cluster.domain.NodeMasterConfig;
 import eu.europeana.harvester.cluster.domain.messages.*;
 import eu.europeana.harvester.cluster.domain.utils.Pair;
-import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLeaseExpired;
+import eu.europeana.harvester.cluster.master.limiter.domain.LeaseConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.RenewConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotsRequest;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotsResponse;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotLeaseRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotRequest;
+import eu.europeana.harvester.cluster.slave.downloading.HostLatencyTracker;
+import eu.europeana.harvester.cluster.slave.downloading.HttpClientRegistry;
+import eu.europeana.harvester.cluster.slave.downloading.PartialDownloadStore;
+import eu.europeana.harvester.cluster.slave.limiter.ConnectionSlotLeases;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingStage;
+import eu.europeana.harvester.cluster.slave.processing.color.ColorPaletteExtractor;
 import eu.europeana.harvester.db.MediaStorageClient;
 import eu.europeana.harvester.httpclient.response.HttpRetrieveResponseFactory;
 import eu.europeana.harvester.logging.LoggingComponent;
@@ -16,12 +28,12 @@ import org.slf4j.LoggerFactory;
 import scala.Option;
 
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
- * This acts as a load balancer for the "retrieve and process" actor.
+ * This acts as a load balancer for the "retrieve and process" actor : it keeps a fixed pool of long lived workers
+ * (its children) and hands every ready task to an idle one. A worker that fails is restarted by the supervisor
+ * strategy, one that keeps failing is stopped & replaced.
  */
 public class NodeMasterActor extends UntypedActor {
 
@@ -30,8 +42,8 @@ public class NodeMasterActor extends UntypedActor {
                                            final NodeMasterConfig nodeMasterConfig,
                                            final MediaStorageClient mediaStorageClient){
 
-        return context.system().actorOf(Props.create(NodeMasterActor.class,
-                        masterSender,nodeSupervisor, nodeMasterConfig, mediaStorageClient),
+        return context.system().actorOf(NodeSupervisor.withControlDispatcher(Props.create(NodeMasterActor.class,
+                        masterSender,nodeSupervisor, nodeMasterConfig, mediaStorageClient), nodeMasterConfig),
                 "nodeMaster");
     }
 
@@ -63,20 +75,86 @@ public class NodeMasterActor extends UntypedActor {
      */
     private final Set<String> jobsToStop;
 
-    private Boolean sentRequest;
+    /**
+     * Identifies the count of the tasks received by this node master, the master starts its count of the tasks sent
+     * again when it changes.
+     */
+    private final String creditSession = UUID.randomUUID().toString();
+
+    /**
+     * The number of tasks received during the credit session.
+     */
+    private long nrOfTasksReceived = 0;
+
+    /**
+     * The total number of tasks the master may send during the credit session, as advertised with the last request.
+     */
+    private long advertisedTaskLimit = 0;
 
+    /**
+     * All the workers of the pool.
+     */
     final private List<ActorRef> actors = new ArrayList<>() ;
 
+    /**
+     * The workers waiting for a task, the one idle for the longest first.
+     */
+    final private Deque<ActorRef> idleActors = new ArrayDeque<>();
+
+    /**
+     * Restarts a failing worker, with a fresh state. A worker that fails more than the number of retries in a minute
+     * is stopped & replaced.
+     */
+    private final SupervisorStrategy workerSupervisorStrategy;
+
     final private HashMap<String, Pair<RetrieveUrlWithProcessingConfig,ReserveConnectionSlotResponse>> taskIDToRetrieveURL = new HashMap<>();
 
+    /**
+     * The tasks received since the last request for connection slots, per IP.
+     */
+    final private Map<String, List<String>> taskIDsToReserveSlotsFor = new HashMap<>();
+
+    /**
+     * The connection slots leased from the master. Null when the slots are asked for per task.
+     */
+    private final ConnectionSlotLeases connectionSlotLeases;
+
+    /**
+     * Whether a RenewConnectionSlotLeases is already on its way.
+     */
+    private boolean leaseRenewalScheduled = false;
+
+    /**
+     * Half the duration of the last lease granted by the master.
+     */
+    private long leaseRenewalPeriodInMillis = 0l;
 
-    Long lastRequest;
     final int maxSlaves;
 
     private MediaStorageClient mediaStorageClient;
 
-    final HttpRetrieveResponseFactory httpRetrieveResponseFactory = new HttpRetrieveResponseFactory();
-    final ExecutorService service = Executors.newCachedThreadPool();
+    final HttpRetrieveResponseFactory httpRetrieveResponseFactory;
+
+    /**
+     * The http clients shared by all the workers of this node. Owned (and closed) by this actor.
+     */
+    private final HttpClientRegistry httpClientRegistry;
+
+    /**
+     * Where the aborted downloads are kept to be resumed. Null when the resumable downloads are disabled.
+     */
+    private final PartialDownloadStore partialDownloadStore;
+
+    /**
+     * The processing stage shared by all the workers of this node. Null when the processing runs in the workers.
+     */
+    private final ProcessingStage processingStage;
+
+    /**
+     * The in JVM palette extraction shared by all the workers of this node. Null when the palette is taken from the
+     * ImageMagick remap.
+     */
+    private final ColorPaletteExtractor paletteExtractor;
 
     public NodeMasterActor(final ActorRef masterSender,final  ActorRef nodeSupervisor,
                            final NodeMasterConfig nodeMasterConfig,
@@ -89,9 +167,23 @@ public class NodeMasterActor extends UntypedActor {
 
         this.jobsToStop = new HashSet<>();
 
-        this.sentRequest = false;
         this.mediaStorageClient = mediaStorageClient;
         this.maxSlaves = nodeMasterConfig.getNrOfDownloaderSlaves();
+        this.httpRetrieveResponseFactory = new HttpRetrieveResponseFactory(nodeMasterConfig.getDiskSyncPolicy());
+        this.workerSupervisorStrategy =
+                new OneForOneStrategy(nodeMasterConfig.getNrOfRetries(), scala.concurrent.duration.Duration.create(1, TimeUnit.MINUTES),
+                        Collections.<Class<? extends Throwable>>singletonList(Exception.class));
+        this.httpClientRegistry = new HttpClientRegistry(nodeMasterConfig.getHttpClientPoolConfig(),
+                new HostLatencyTracker(nodeMasterConfig.getAdaptiveTimeoutConfig()),
+                nodeMasterConfig.getMediaHeaderRetrievalConfig());
+        this.partialDownloadStore = nodeMasterConfig.getResumableDownloadConfig().getEnabled() ?
+                new PartialDownloadStore(nodeMasterConfig.getResumableDownloadConfig()) : null;
+        this.processingStage = nodeMasterConfig.getProcessingPipelineConfig().getEnabled() ?
+                new ProcessingStage(nodeMasterConfig.getProcessingPipelineConfig()) : null;
+        this.paletteExtractor = nodeMasterConfig.getProcessingPipelineConfig().getJvmColorPalette() ?
+                ColorPaletteExtractor.forColorMap(nodeMasterConfig.getColorMapPath()) : null;
+        this.connectionSlotLeases = nodeMasterConfig.getConnectionSlotLeaseConfig().getEnabled() ?
+                new ConnectionSlotLeases(nodeMasterConfig.getConnectionSlotLeaseConfig().getMaxNrOfSlotsPerLease()) : null;
 
         LOG.debug("SLAVE - Node master actor constructor");
 
@@ -99,7 +191,7 @@ public class NodeMasterActor extends UntypedActor {
         SlaveMetrics.Worker.Master.activeWorkerSlavesCounter.registerHandler(new Gauge<Integer>() {
             @Override
             public Integer getValue() {
-                return actors.size();
+                return actors.size() - idleActors.size();
             }
         });
 
@@ -110,22 +202,44 @@ public class NodeMasterActor extends UntypedActor {
             }
         });
 
+        if (processingStage != null) {
+            SlaveMetrics.Worker.Slave.Processing.pendingFilesCounter.registerHandler(new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return processingStage.getNrOfPendingFiles();
+                }
+            });
+        }
+
     }
 
     @Override
     public void preStart() throws Exception {
 
-        lastRequest = 0l;
-        sentRequest = false;
-
         LOG.debug("SLAVE - Node master actor, post restart");
 
-        final int maxNrOfRetries = nodeMasterConfig.getNrOfRetries();
-        final SupervisorStrategy strategy =
-                new OneForOneStrategy(maxNrOfRetries, scala.concurrent.duration.Duration.create(1, TimeUnit.MINUTES),
-                        Collections.<Class<? extends Throwable>>singletonList(Exception.class));
+        for (int i = 0; i < maxSlaves; i++) {
+            startWorker();
+        }
     }
 
+    @Override
+    public SupervisorStrategy supervisorStrategy() {
+        return workerSupervisorStrategy;
+    }
+
+
+    @Override
+    public void postStop() throws Exception {
+
+        LOG.debug("SLAVE - Node master actor, post stop");
+
+        httpClientRegistry.close();
+        if (processingStage != null) {
+            processingStage.close();
+        }
+        super.postStop();
+    }
 
     @Override
     public void preRestart(Throwable reason, Option<Object> message) throws Exception {
@@ -142,9 +256,6 @@ public class NodeMasterActor extends UntypedActor {
 
         super.postRestart(reason);
 
-        sentRequest = false;
-        lastRequest = 0l;
-
         self().tell(new RequestTasks(), ActorRef.noSender());
     }
 
@@ -156,20 +267,55 @@ public class NodeMasterActor extends UntypedActor {
             return;
         }
 
+        if(message instanceof ReserveConnectionSlotsResponse ) {
+            for (final ReserveConnectionSlotResponse response : ((ReserveConnectionSlotsResponse) message).getGrantedSlots()) {
+                onReserveConnectionSlotResponseReceived(response);
+            }
+            return;
+        }
+
         if(message instanceof ReserveConnectionSlotResponse ) {
             onReserveConnectionSlotResponseReceived((ReserveConnectionSlotResponse) message);
             return;
         }
 
+        if(message instanceof RequestConnectionSlots ) {
+            onRequestConnectionSlotsReceived();
+            return;
+        }
+
+        if(message instanceof ConnectionSlotLease ) {
+            onConnectionSlotLeaseReceived((ConnectionSlotLease) message);
+            return;
+        }
+
+        if(message instanceof ConnectionSlotLeaseExpired ) {
+            onConnectionSlotLeaseExpiredReceived((ConnectionSlotLeaseExpired) message);
+            return;
+        }
+
+        if(message instanceof RenewConnectionSlotLeases ) {
+            onRenewConnectionSlotLeasesReceived();
+            return;
+        }
+
         if(message instanceof RequestTasks ) {
             onRequestTasksReceived();
             return;
         }
 
+        if(message instanceof DoneDownload) {
+            onDoneDownloadReceived((DoneDownload) message);
+            return;
+        }
         if(message instanceof DoneProcessing) {
             onDoneProcessingReceived(message);
             return;
         }
+        if(message instanceof WorkerReady) {
+            onWorkerReadyReceived();
+            return;
+        }
         if(message instanceof ChangeJobState) {
             onChangeJobStateReceived((ChangeJobState) message);
             return;
@@ -194,33 +340,30 @@ public class NodeMasterActor extends UntypedActor {
         final Terminated t = message;
         ActorRef which = t.getActor();
         this.actors.remove(which);
+        this.idleActors.remove(which);
 
         LOG.debug("SLAVE - Node master actor - onTerminatedReceived");
 
+        // The worker was stopped by the supervisor strategy, a fresh one takes its place
         if (actors.size()<maxSlaves){
-            Object msg = null;
-            if (!jobsReadyToBeProcessed.isEmpty())
-                msg = jobsReadyToBeProcessed.poll();
-
-            if(msg != null) {
-
-
-                ActorRef newActor = RetrieveAndProcessActor.createActor(getContext().system(),
-                        httpRetrieveResponseFactory, mediaStorageClient, nodeMasterConfig.getColorMapPath()
-                        );
-                this.actors.add(newActor);
-                context().watch(newActor);
-
-                newActor.tell(msg, getSelf());
-            }
-            if ( taskIDToRetrieveURL.size() < nodeMasterConfig.getTaskNrLimit()) {
-                self().tell(new RequestTasks(), ActorRef.noSender());
-            }
+            startWorker();
+            dispatchReadyJobs();
+        }
 
-            LOG.debug("SLAVE - Node master actor - onTerminatedReceived, actors < max slaves, task id to retrieve is: {}", taskIDToRetrieveURL);
+    }
 
+    private void onWorkerReadyReceived() {
+        final ActorRef worker = getSender();
+        if (!actors.contains(worker) || idleActors.contains(worker)) {
+            return;
         }
+        idleActors.add(worker);
+        dispatchReadyJobs();
+
+        // A download slot was freed, the credit is advertised if enough of them are free
+        self().tell(new RequestTasks(), ActorRef.noSender());
 
+        LOG.debug("SLAVE - Node master actor - onWorkerReadyReceived, idle workers: {}, task id to retrieve is: {}", idleActors.size(), taskIDToRetrieveURL);
     }
 
     private void onRetrieveUrlWithProcessingConfigReceived ( RetrieveUrlWithProcessingConfig retrieveUrl ) {
@@ -228,6 +371,7 @@ public class NodeMasterActor extends UntypedActor {
         LOG.debug("SLAVE - Node master actor - onRetrieveUrlWithProcessingConfigReceived");
 
         taskIDToRetrieveURL.put(retrieveUrl.getRetrieveUrl().getId(), new Pair(retrieveUrl,null));
+        nrOfTasksReceived++;
 
         LOG.debug("SLAVE - Node master actor - onRetrieveUrlWithProcessingConfigReceived - taskIDToRetrieveURL has size {}",
                 taskIDToRetrieveURL.size());
@@ -236,27 +380,142 @@ public class NodeMasterActor extends UntypedActor {
 
         LOG.debug("SLAVE - Node master actor - onRetrieveUrlWithProcessingConfigReceived - jobsWaitingForSlotGrantCounter {}",
                 SlaveMetrics.Worker.Master.jobsWaitingForSlotGrantCounter.getCount());
-        masterSender.tell(new ReserveConnectionSlotRequest(retrieveUrl.getRetrieveUrl().getIpAddress(),
-                retrieveUrl.getRetrieveUrl().getId()),getSelf());
+
+        // The tasks of a bag arrive one after the other, their slots are asked for together once they're all here
+        if (taskIDsToReserveSlotsFor.isEmpty()) {
+            self().tell(new RequestConnectionSlots(), ActorRef.noSender());
+        }
+        final String ip = retrieveUrl.getRetrieveUrl().getIpAddress();
+        List<String> taskIDs = taskIDsToReserveSlotsFor.get(ip);
+        if (taskIDs == null) {
+            taskIDs = new ArrayList<>();
+            taskIDsToReserveSlotsFor.put(ip, taskIDs);
+        }
+        taskIDs.add(retrieveUrl.getRetrieveUrl().getId());
+    }
+
+    private void onRequestConnectionSlotsReceived() {
+        for (final Map.Entry<String, List<String>> taskIDs : taskIDsToReserveSlotsFor.entrySet()) {
+            if (connectionSlotLeases == null) {
+                masterSender.tell(new ReserveConnectionSlotsRequest(taskIDs.getKey(), taskIDs.getValue()), getSelf());
+                continue;
+            }
+
+            // The tasks wait for a slot of the lease of their IP, which is asked for if the node has none yet
+            final int nrOfSlotsToLease = connectionSlotLeases.addWaitingTasks(taskIDs.getKey(), taskIDs.getValue());
+            if (nrOfSlotsToLease > 0) {
+                masterSender.tell(new LeaseConnectionSlotsRequest(taskIDs.getKey(), nrOfSlotsToLease), getSelf());
+            }
+            startTasksOnLease(taskIDs.getKey(), connectionSlotLeases.startWaitingTasks(taskIDs.getKey()));
+        }
+        taskIDsToReserveSlotsFor.clear();
+    }
+
+    private void onConnectionSlotLeaseReceived(final ConnectionSlotLease lease) {
+
+        LOG.debug("SLAVE - Node master actor - onConnectionSlotLeaseReceived, ip: {}, number of slots: {}", lease.getIp(), lease.getNrOfSlots());
+
+        if (connectionSlotLeases == null || connectionSlotLeases.hasLease(lease.getIp())) {
+            // Not needed (ie. asked for again with the heartbeat while the first one was on its way)
+            if (lease.getNrOfSlots() > 0) {
+                masterSender.tell(new ReturnConnectionSlotLeaseRequest(lease.getLeaseId(), lease.getIp()), ActorRef.noSender());
+            }
+            return;
+        }
+
+        if (lease.getNrOfSlots() == 0) {
+            // No free slot to lease, the tasks ask for their slots one by one & wait in the queue of the IP on the master
+            reserveConnectionSlots(lease.getIp(), connectionSlotLeases.onLeaseLost(lease.getIp()));
+            return;
+        }
+
+        startTasksOnLease(lease.getIp(), connectionSlotLeases.onLeaseGranted(lease));
+        returnIdleLease(lease.getIp());
+
+        leaseRenewalPeriodInMillis = lease.getDurationInMillis() / 2;
+        if (!leaseRenewalScheduled) {
+            leaseRenewalScheduled = true;
+            getContext().system().scheduler().scheduleOnce(scala.concurrent.duration.Duration.create(leaseRenewalPeriodInMillis,
+                    TimeUnit.MILLISECONDS), getSelf(), new RenewConnectionSlotLeases(), getContext().system().dispatcher(), getSelf());
+        }
+    }
+
+    private void onConnectionSlotLeaseExpiredReceived(final ConnectionSlotLeaseExpired expired) {
+
+        LOG.debug("SLAVE - Node master actor - onConnectionSlotLeaseExpiredReceived, ip: {}", expired.getIp());
+
+        if (connectionSlotLeases == null || !expired.getLeaseId().equals(connectionSlotLeases.getLeaseIds().get(expired.getIp()))) {
+            return;
+        }
+        // The slots of the lease are slots of single tasks now : the free ones go back right away, the others when
+        // their tasks are done
+        for (final String slotId : connectionSlotLeases.getFreeSlotIds(expired.getIp())) {
+            masterSender.tell(new ReturnConnectionSlotRequest(slotId, expired.getIp()), ActorRef.noSender());
+        }
+        reserveConnectionSlots(expired.getIp(), connectionSlotLeases.onLeaseLost(expired.getIp()));
+    }
+
+    private void onRenewConnectionSlotLeasesReceived() {
+        final Map<String, String> leaseIds = connectionSlotLeases.getLeaseIds();
+        for (final Map.Entry<String, String> leaseId : leaseIds.entrySet()) {
+            masterSender.tell(new RenewConnectionSlotLeaseRequest(leaseId.getValue(), leaseId.getKey()), getSelf());
+        }
+
+        leaseRenewalScheduled = !leaseIds.isEmpty();
+        if (leaseRenewalScheduled) {
+            getContext().system().scheduler().scheduleOnce(scala.concurrent.duration.Duration.create(leaseRenewalPeriodInMillis,
+                    TimeUnit.MILLISECONDS), getSelf(), new RenewConnectionSlotLeases(), getContext().system().dispatcher(), getSelf());
+        }
+    }
+
+    /**
+     * Starts the tasks that got a slot of the lease of their IP. A slot of a lease is never returned on its own while
+     * the node has the lease : the slot of a task that's not needed anymore goes back to the lease.
+     */
+    private void startTasksOnLease(final String ip, final List<ReserveConnectionSlotResponse> slots) {
+        for (final ReserveConnectionSlotResponse slot : slots) {
+            final Pair<RetrieveUrlWithProcessingConfig, ReserveConnectionSlotResponse> task = taskIDToRetrieveURL.get(slot.getTaskID());
+            if (task == null || task.getValue() != null) {
+                startTasksOnLease(ip, connectionSlotLeases.onTaskDone(ip, slot.getTaskID()));
+                continue;
+            }
+            onReserveConnectionSlotResponseReceived(slot);
+        }
+    }
+
+    /**
+     * Returns the lease of the IP to the master once the node has no more tasks for it.
+     */
+    private void returnIdleLease(final String ip) {
+        final String leaseId = connectionSlotLeases.releaseIdleLease(ip);
+        if (leaseId != null) {
+            masterSender.tell(new ReturnConnectionSlotLeaseRequest(leaseId, ip), ActorRef.noSender());
+        }
+    }
+
+    private void reserveConnectionSlots(final String ip, final List<String> taskIDs) {
+        if (!taskIDs.isEmpty()) {
+            masterSender.tell(new ReserveConnectionSlotsRequest(ip, taskIDs), getSelf());
+        }
     }
 
     private void onReserveConnectionSlotResponseReceived ( ReserveConnectionSlotResponse reserveConnectionSlotResponse) {
 
         LOG.debug("SLAVE - Node master actor - onReserveConnectionSlotResponseReceived");
 
-        if (!taskIDToRetrieveURL.containsKey(reserveConnectionSlotResponse.getTaskID()))
+        // The tasks that don't get a slot wait in the queue of the IP on the master, which sends the slot when it's free
+        if ( !reserveConnectionSlotResponse.getGranted())
             return;
 
-        RetrieveUrlWithProcessingConfig retrieveUrl = taskIDToRetrieveURL.get(reserveConnectionSlotResponse.getTaskID()).getKey();
-
-        if ( !reserveConnectionSlotResponse.getGranted()) {
-            getContext().system().scheduler().scheduleOnce(scala.concurrent.duration.Duration.create(30,
-                    TimeUnit.SECONDS), masterSender,
-                    new ReserveConnectionSlotRequest(reserveConnectionSlotResponse.getIp(),reserveConnectionSlotResponse.getTaskID()),
-                    getContext().system().dispatcher(), getSelf());
+        final Pair<RetrieveUrlWithProcessingConfig, ReserveConnectionSlotResponse> task = taskIDToRetrieveURL.get(reserveConnectionSlotResponse.getTaskID());
+        if (task == null || task.getValue() != null) {
+            // Unknown task or a second slot for the same task (asked for again with the heartbeat), not needed
+            masterSender.tell(new ReturnConnectionSlotRequest(reserveConnectionSlotResponse.getSlotId(), reserveConnectionSlotResponse.getIp()), ActorRef.noSender());
             return;
         }
 
+        RetrieveUrlWithProcessingConfig retrieveUrl = task.getKey();
+
         taskIDToRetrieveURL.put(retrieveUrl.getRetrieveUrl().getId(), new Pair(retrieveUrl,reserveConnectionSlotResponse));
 
         LOG.debug("SLAVE - Node master actor - onReserveConnectionSlotResponseReceived - taskIDToRetrieveURL has size {}", taskIDToRetrieveURL.size());
@@ -271,67 +530,106 @@ public class NodeMasterActor extends UntypedActor {
     }
 
     private void executeRetrieveURL(Object message) {
-        LOG.debug("NodeMasterActor executeretrieveurl actors size: {}, max slaves: {}, jobs ready to be processed: {}", actors.size(), maxSlaves,
+        LOG.debug("NodeMasterActor executeretrieveurl actors size: {}, idle actors: {}, jobs ready to be processed: {}", actors.size(), idleActors.size(),
                 jobsReadyToBeProcessed.size());
 
         jobsReadyToBeProcessed.add(message);
+        dispatchReadyJobs();
+    }
 
-        if ( actors.size()<maxSlaves & jobsReadyToBeProcessed.size()>maxSlaves ) {
-
-            for ( int i=0;i<maxSlaves;i++){
-                Object msg = null;
-
-                if (!jobsReadyToBeProcessed.isEmpty())
-                    msg = jobsReadyToBeProcessed.poll();
-
-                if(msg != null) {
-                    RetrieveUrlWithProcessingConfig tst = (RetrieveUrlWithProcessingConfig) msg;
-                    LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Slave.MASTER),
-                            "Slave master starting new Worker Actor for url {} ",tst.getRetrieveUrl().getUrl());
-
-                    ActorRef newActor = RetrieveAndProcessActor.createActor(getContext().system(),
-                            httpRetrieveResponseFactory, mediaStorageClient, nodeMasterConfig.getColorMapPath()
-                            );
-                    this.actors.add(newActor);
-
-                    context().watch(newActor);
-
-                    newActor.tell(msg, getSelf());
-                }
+    /**
+     * Hands the ready jobs to the idle workers, one job per worker.
+     */
+    private void dispatchReadyJobs() {
+        while (!idleActors.isEmpty() && !jobsReadyToBeProcessed.isEmpty()) {
+            final Object msg = jobsReadyToBeProcessed.poll();
+            final RetrieveUrlWithProcessingConfig tst = (RetrieveUrlWithProcessingConfig) msg;
+            LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Slave.MASTER),
+                    "Slave master handing over to a Worker Actor the url {} ",tst.getRetrieveUrl().getUrl());
+
+            idleActors.poll().tell(msg, getSelf());
+        }
+    }
 
-            }
+    private void startWorker() {
+        Props workerProps = RetrieveAndProcessActor.props(
+                httpRetrieveResponseFactory, mediaStorageClient, nodeMasterConfig.getColorMapPath(),
+                httpClientRegistry, partialDownloadStore, processingStage, paletteExtractor);
+        if (nodeMasterConfig.getDispatcherConfig().getEnabled()) {
+            // The workers block on the downloads & on the external processes : they get threads of their own
+            workerProps = workerProps.withDispatcher(nodeMasterConfig.getDispatcherConfig().getDownloadDispatcher());
         }
+        final ActorRef newActor = getContext().actorOf(workerProps);
+        this.actors.add(newActor);
+        this.idleActors.add(newActor);
+        context().watch(newActor);
     }
 
+    /**
+     * Advertises the free capacity of this node to the master, with the number of tasks received so far : the master
+     * subtracts the tasks it sent, including the ones that haven't arrived yet. The node supervisor asks on start &
+     * with every heartbeat : the credit is then advertised even if it didn't change, in case the master lost it.
+     * Otherwise the credit is advertised only when at least taskNrLimit more tasks can be taken, so that the tasks
+     * come in bags and not one by one.
+     */
     private void onRequestTasksReceived() {
-        //allways request tasks if the message is coming from the supervisor
 
         LOG.debug("SLAVE - Node master actor - onRequestTasksReceived");
 
-        if ( getSender().equals(nodeSupervisor)) {
-            if ( masterSender!= null && jobsReadyToBeProcessed.size() < nodeMasterConfig.getTaskNrLimit() ) {
-                masterSender.tell(new RequestTasks(), nodeSupervisor);
-                sentRequest = true;
-                lastRequest = System.currentTimeMillis();
-            }
+        if (masterSender == null) {
+            return;
         }
-        else if(!sentRequest && masterSender != null && jobsReadyToBeProcessed.size() < nodeMasterConfig.getTaskNrLimit()) {
 
-            masterSender.tell(new RequestTasks(), nodeSupervisor);
-            sentRequest = true;
-            lastRequest = System.currentTimeMillis();
+        final int freeDownloadSlots = computeFreeDownloadSlots();
+        if (getSender().equals(nodeSupervisor) ||
+                nrOfTasksReceived + freeDownloadSlots - advertisedTaskLimit >= Math.max(1, nodeMasterConfig.getTaskNrLimit())) {
+            final RequestTasks requestTasks = (processingStage != null) ?
+                    new RequestTasks(creditSession, nrOfTasksReceived, freeDownloadSlots, processingStage.getNrOfFreeSlots(), processingStage.getQueuedBytes()) :
+                    new RequestTasks(creditSession, nrOfTasksReceived, freeDownloadSlots, freeDownloadSlots, 0l);
+            masterSender.tell(requestTasks, nodeSupervisor);
+            advertisedTaskLimit = requestTasks.getTaskLimit();
+
+            LOG.debug("SLAVE - Node master actor - advertised credit, received tasks: {}, download slots: {}, processing slots: {}, queued bytes: {}",
+                    new Object[]{nrOfTasksReceived, requestTasks.getFreeDownloadSlots(), requestTasks.getFreeProcessingSlots(), requestTasks.getQueuedBytes()});
         }
-        else  {
-                final Long currentTime = System.currentTimeMillis();
-                final int diff = Math.round ( ((currentTime - lastRequest)/1000) );
-                if(diff > 5 && jobsReadyToBeProcessed.size() < nodeMasterConfig.getTaskNrLimit() ) {
-                    sentRequest = true;
-                    //self().tell(new RequestTasks(), ActorRef.noSender());
-                    masterSender.tell(new RequestTasks(), nodeSupervisor);
-                    lastRequest = System.currentTimeMillis();
+    }
 
-                }
+    /**
+     * @return how many more tasks the workers can take : one per worker plus taskNrLimit waiting for a worker, minus
+     * the tasks that were received & are not downloaded yet
+     */
+    private int computeFreeDownloadSlots() {
+        return Math.max(0, maxSlaves + nodeMasterConfig.getTaskNrLimit() - taskIDToRetrieveURL.size());
+    }
 
+    /**
+     * The download of the task is over & its processing is queued in the processing stage : its connection slot goes
+     * to the next task of the IP right away instead of waiting for the end of the processing.
+     */
+    private void onDoneDownloadReceived(final DoneDownload doneDownload) {
+
+        LOG.debug("SLAVE - Node master actor - onDoneDownloadReceived, task: {}", doneDownload.getTaskID());
+
+        releaseConnectionSlot(doneDownload.getTaskID());
+    }
+
+    /**
+     * Forgets the task & frees its connection slot : returned to the master or, when it belongs to a lease, given to
+     * the next task of the IP. Does nothing when the slot was already freed at the end of the download.
+     */
+    private void releaseConnectionSlot(final String taskID) {
+        final Pair<RetrieveUrlWithProcessingConfig, ReserveConnectionSlotResponse> pair = taskIDToRetrieveURL.remove(taskID);
+        if (pair == null || pair.getValue() == null) {
+            return;
+        }
+
+        if (connectionSlotLeases != null && connectionSlotLeases.isOnLease(taskID)) {
+            // The slot stays with the node, for the next task of the IP
+            final String ip = pair.getValue().getIp();
+            startTasksOnLease(ip, connectionSlotLeases.onTaskDone(ip, taskID));
+            returnIdleLease(ip);
+        } else {
+            masterSender.tell(new ReturnConnectionSlotRequest(pair.getValue().getSlotId(), pair.getValue().getIp()), ActorRef.noSender());
         }
     }
 
@@ -341,13 +639,7 @@ public class NodeMasterActor extends UntypedActor {
         LOG.debug("SLAVE - Node master actor - ondoneprocessingreceived, processing state: {}, url: {}, log: {}", doneProcessing.getProcessingState().name(),
                doneProcessing.getUrl(), doneProcessing.getLog());
 
-        this.actors.remove(getSender());
-
-        if(taskIDToRetrieveURL.containsKey(doneProcessing.getTaskID())) {
-
-            Pair < RetrieveUrlWithProcessingConfig, ReserveConnectionSlotResponse> pair = taskIDToRetrieveURL.remove(doneProcessing.getTaskID());
-            masterSender.tell(new ReturnConnectionSlotRequest(pair.getValue().getSlotId(), pair.getValue().getIp()), ActorRef.noSender());
-        }
+        releaseConnectionSlot(doneProcessing.getTaskID());
 
         masterSender.tell(message, getSelf());
 
@@ -368,6 +660,31 @@ public class NodeMasterActor extends UntypedActor {
         LOG.debug("SLAVE - Node master actor - onHeartBeatReceived");
 
         getSender().tell(new SlaveHeartbeat(), getSelf());
+
+        // Asks again for the slots of the tasks that still wait for one, in case the master lost them. The master
+        // keeps the place in the queue of the tasks it knows about & drops the ones that aren't asked for again.
+        final Map<String, List<String>> waitingTaskIDs = new HashMap<>();
+        for (final Pair<RetrieveUrlWithProcessingConfig, ReserveConnectionSlotResponse> task : taskIDToRetrieveURL.values()) {
+            final String ip = task.getKey().getRetrieveUrl().getIpAddress();
+            if (task.getValue() != null ||
+                    (connectionSlotLeases != null && connectionSlotLeases.isWaiting(ip, task.getKey().getRetrieveUrl().getId()))) {
+                continue;
+            }
+            if (!waitingTaskIDs.containsKey(ip)) {
+                waitingTaskIDs.put(ip, new ArrayList<String>());
+            }
+            waitingTaskIDs.get(ip).add(task.getKey().getRetrieveUrl().getId());
+        }
+        for (final Map.Entry<String, List<String>> taskIDs : waitingTaskIDs.entrySet()) {
+            masterSender.tell(new ReserveConnectionSlotsRequest(taskIDs.getKey(), taskIDs.getValue()), getSelf());
+        }
+
+        // Same for the leases that were asked for & not granted yet
+        if (connectionSlotLeases != null) {
+            for (final String ip : connectionSlotLeases.getIpsWithPendingLeaseRequest()) {
+                masterSender.tell(new LeaseConnectionSlotsRequest(ip, connectionSlotLeases.getNrOfSlotsToAskFor(ip)), getSelf());
+            }
+        }
     }
 
     private void onChangeJobStateReceived(ChangeJobState message) {
@@ -14,6 +14,8 @@ import eu.europeana.harvester.logging.LoggingComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -23,11 +25,22 @@ public class NodeSupervisor extends UntypedActor {
 
     public static ActorRef createActor(final ActorSystem system, final Slave slave, final ActorRef masterSender,
                                        final NodeMasterConfig nodeMasterConfig, final MediaStorageClient mediaStorageClient, MetricRegistry metrics) {
-        return system.actorOf(Props.create(NodeSupervisor.class, slave, masterSender, nodeMasterConfig,
-                mediaStorageClient, metrics), "nodeSupervisor");
+        // The heartbeats run on the control dispatcher, where the blocked download workers can't delay them
+        return system.actorOf(withControlDispatcher(Props.create(NodeSupervisor.class, slave, masterSender,
+                nodeMasterConfig, mediaStorageClient, metrics), nodeMasterConfig), "nodeSupervisor");
 
     }
 
+    /**
+     * Moves the actor to the control dispatcher of the node, if the node has its own dispatchers.
+     */
+    static Props withControlDispatcher(final Props props, final NodeMasterConfig nodeMasterConfig) {
+        if (!nodeMasterConfig.getDispatcherConfig().getEnabled()) {
+            return props;
+        }
+        return props.withDispatcher(nodeMasterConfig.getDispatcherConfig().getControlDispatcher());
+    }
+
     private final Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
 
     /**
@@ -226,10 +239,15 @@ public class NodeSupervisor extends UntypedActor {
         final BagOfTasks bagOfTasks = message;
 
         LOG.debug("SLAVE - Node supervisor onBagOfTasksReceived, bagoftasks size: {}", bagOfTasks.getTasks().size());
+        final List<String> urls = new ArrayList<>();
         for (RetrieveUrl url : bagOfTasks.getTasks()) {
             LOG.debug("retrieve url: {} /n", url.getUrl());
+            urls.add(url.getUrl());
         }
 
+        // The IPs are resolved in the background while the tasks wait for a free worker.
+        Slave.URL_RESOLVER.prefetch(urls);
+
         for (final RetrieveUrl request : bagOfTasks.getTasks()) {
 
             final StartedTask startedTask = new StartedTask(request.getId());
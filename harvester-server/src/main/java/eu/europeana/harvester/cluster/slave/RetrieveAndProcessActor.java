@@ -3,14 +3,20 @@ package eu.europeana.harvester.cluster.slave;
 import akka.actor.*;
 import akka.pattern.CircuitBreaker;
 import com.codahale.metrics.Timer;
+import eu.europeana.harvester.cluster.domain.messages.DoneDownload;
 import eu.europeana.harvester.cluster.domain.messages.DoneProcessing;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrlWithProcessingConfig;
+import eu.europeana.harvester.cluster.domain.messages.WorkerReady;
+import eu.europeana.harvester.cluster.slave.downloading.HttpClientRegistry;
+import eu.europeana.harvester.cluster.slave.downloading.PartialDownloadStore;
 import eu.europeana.harvester.cluster.slave.downloading.SlaveDownloader;
 import eu.europeana.harvester.cluster.slave.downloading.SlaveLinkChecker;
 import eu.europeana.harvester.cluster.slave.processing.ProcessingResultTuple;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingStage;
 import eu.europeana.harvester.cluster.slave.processing.SlaveProcessor;
 import eu.europeana.harvester.cluster.slave.processing.color.ColorExtractor;
+import eu.europeana.harvester.cluster.slave.processing.color.ColorPaletteExtractor;
 import eu.europeana.harvester.cluster.slave.processing.exceptiions.LocaleException;
 import eu.europeana.harvester.cluster.slave.processing.metainfo.MediaMetaInfoExtractor;
 import eu.europeana.harvester.db.MediaStorageClient;
@@ -22,11 +28,13 @@ import eu.europeana.harvester.httpclient.response.RetrievingState;
 import eu.europeana.harvester.logging.LoggingComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Option;
 import scala.concurrent.duration.Duration;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 
@@ -52,6 +60,8 @@ public class RetrieveAndProcessActor extends UntypedActor {
                 return ProcessingJobRetrieveSubTaskState.FAILED;
             case FINISHED_SIZE_LIMIT:
                 return ProcessingJobRetrieveSubTaskState.FAILED;
+            case FINISHED_UNWANTED_CONTENT:
+                return ProcessingJobRetrieveSubTaskState.FINISHED_UNWANTED_CONTENT;
             default:
                 return ProcessingJobRetrieveSubTaskState.ERROR;
         }
@@ -68,6 +78,49 @@ public class RetrieveAndProcessActor extends UntypedActor {
         ));
     }
 
+    public static final ActorRef createActor(final ActorSystem system,
+                                             final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                             final MediaStorageClient mediaStorageClient,
+                                             final String colorMapPath,
+                                             final HttpClientRegistry httpClientRegistry,
+                                             final PartialDownloadStore partialDownloadStore
+    ) {
+        return createActor(system, httpRetrieveResponseFactory, mediaStorageClient, colorMapPath, httpClientRegistry,
+                partialDownloadStore, null);
+    }
+
+    public static final ActorRef createActor(final ActorSystem system,
+                                             final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                             final MediaStorageClient mediaStorageClient,
+                                             final String colorMapPath,
+                                             final HttpClientRegistry httpClientRegistry,
+                                             final PartialDownloadStore partialDownloadStore,
+                                             final ProcessingStage processingStage
+    ) {
+        return system.actorOf(props(httpRetrieveResponseFactory, mediaStorageClient, colorMapPath, httpClientRegistry,
+                partialDownloadStore, processingStage, null));
+    }
+
+    /**
+     * The props of a worker of the node master pool. The worker is long lived : it takes one task after the other.
+     *
+     * @param paletteExtractor the in JVM palette extraction shared by the workers or null to take the palette from
+     *                         the ImageMagick remap
+     */
+    public static final Props props(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                    final MediaStorageClient mediaStorageClient,
+                                    final String colorMapPath,
+                                    final HttpClientRegistry httpClientRegistry,
+                                    final PartialDownloadStore partialDownloadStore,
+                                    final ProcessingStage processingStage,
+                                    final ColorPaletteExtractor paletteExtractor
+    ) {
+        return Props.create(RetrieveAndProcessActor.class,
+                httpRetrieveResponseFactory, colorMapPath, mediaStorageClient, httpClientRegistry, partialDownloadStore,
+                processingStage, paletteExtractor
+        );
+    }
+
     public static final ActorRef createActor(final ActorSystem system,
                                              final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
                                              final SlaveProcessor processor
@@ -77,6 +130,16 @@ public class RetrieveAndProcessActor extends UntypedActor {
         ));
     }
 
+    public static final ActorRef createActor(final ActorSystem system,
+                                             final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                             final SlaveProcessor processor,
+                                             final ProcessingStage processingStage
+    ) {
+        return system.actorOf(Props.create(RetrieveAndProcessActor.class,
+                httpRetrieveResponseFactory, processor, processingStage
+        ));
+    }
+
     private final Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
 
     /**
@@ -89,49 +152,121 @@ public class RetrieveAndProcessActor extends UntypedActor {
      */
     private ActorRef sender;
 
-    /**
-     * An object which represents a task.
-     */
-    private RetrieveUrl task;
-
-    private RetrieveUrlWithProcessingConfig taskWithProcessingConfig;
-
     private final SlaveProcessor slaveProcessor;
 
     private final SlaveDownloader slaveDownloader;
 
     private final SlaveLinkChecker slaveLinkChecker;
 
+    /**
+     * The processing stage shared by the workers of the node. When null the worker processes the files it downloads.
+     */
+    private final ProcessingStage processingStage;
+
+    /**
+     * Guards all the tasks of this worker. When it opens the next task fails & the supervisor restarts the worker.
+     */
+    private CircuitBreaker breaker;
+
     public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
                                    final String colorMapPath,
                                    final MediaStorageClient mediaStorageClient
     ) throws Exception {
+        this(httpRetrieveResponseFactory, colorMapPath, mediaStorageClient, HttpClientRegistry.defaultRegistry(), null);
+    }
+
+    public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                   final String colorMapPath,
+                                   final MediaStorageClient mediaStorageClient,
+                                   final HttpClientRegistry httpClientRegistry,
+                                   final PartialDownloadStore partialDownloadStore
+    ) throws Exception {
+        this(httpRetrieveResponseFactory, colorMapPath, mediaStorageClient, httpClientRegistry, partialDownloadStore, null);
+    }
+
+    public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                   final String colorMapPath,
+                                   final MediaStorageClient mediaStorageClient,
+                                   final HttpClientRegistry httpClientRegistry,
+                                   final PartialDownloadStore partialDownloadStore,
+                                   final ProcessingStage processingStage
+    ) throws Exception {
+        this(httpRetrieveResponseFactory, colorMapPath, mediaStorageClient, httpClientRegistry, partialDownloadStore,
+                processingStage, null);
+    }
+
+    public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                   final String colorMapPath,
+                                   final MediaStorageClient mediaStorageClient,
+                                   final HttpClientRegistry httpClientRegistry,
+                                   final PartialDownloadStore partialDownloadStore,
+                                   final ProcessingStage processingStage,
+                                   final ColorPaletteExtractor paletteExtractor
+    ) throws Exception {
 
         this.httpRetrieveResponseFactory = httpRetrieveResponseFactory;
-        this.slaveProcessor = new SlaveProcessor(new MediaMetaInfoExtractor(colorMapPath),
-                new ColorExtractor(colorMapPath),
+        this.slaveProcessor = new SlaveProcessor(new MediaMetaInfoExtractor(colorMapPath, paletteExtractor),
+                new ColorExtractor(colorMapPath, paletteExtractor),
                 mediaStorageClient,
-                colorMapPath
+                colorMapPath,
+                (processingStage != null) ? processingStage.getSubTaskExecutor() : null
         );
-        this.slaveDownloader = new SlaveDownloader();
-        this.slaveLinkChecker = new SlaveLinkChecker();
+        this.slaveDownloader = new SlaveDownloader(httpClientRegistry, partialDownloadStore);
+        this.slaveLinkChecker = new SlaveLinkChecker(httpClientRegistry);
+        this.processingStage = processingStage;
     }
 
     public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
                                    final SlaveProcessor slaveProcessor) {
+        this(httpRetrieveResponseFactory, slaveProcessor, null);
+    }
+
+    public RetrieveAndProcessActor(final HttpRetrieveResponseFactory httpRetrieveResponseFactory,
+                                   final SlaveProcessor slaveProcessor,
+                                   final ProcessingStage processingStage) {
 
         this.httpRetrieveResponseFactory = httpRetrieveResponseFactory;
         this.slaveProcessor = slaveProcessor;
         this.slaveDownloader = new SlaveDownloader();
         this.slaveLinkChecker = new SlaveLinkChecker();
+        this.processingStage = processingStage;
     }
 
 
+    @Override
+    public void preStart() throws Exception {
+        breaker = new CircuitBreaker(
+                getContext().dispatcher(), getContext().system().scheduler(),
+                5, Duration.create(computeMaximumRetrievalAndProcessingDurationInMinutes(new ProcessingJobLimits()), TimeUnit.MINUTES), Duration.create(1, TimeUnit.MINUTES))
+                .onOpen(new Runnable() {
+                    public void run() {
+                        notifyMeOnOpen();
+                    }
+                });
+    }
+
+    /**
+     * Reports the task that failed, if any, so that its connection slot is returned, & tells the node master that
+     * this worker is ready again : the restarted worker keeps the mailbox.
+     */
+    @Override
+    public void preRestart(Throwable reason, Option<Object> message) throws Exception {
+        final ActorRef nodeMaster = (sender != null) ? sender : getContext().parent();
+        if (message.isDefined() && message.get() instanceof RetrieveUrlWithProcessingConfig) {
+            final RetrieveUrl failedTask = ((RetrieveUrlWithProcessingConfig) message.get()).getRetrieveUrl();
+
+            LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, failedTask.getJobId(), failedTask.getUrl(), failedTask.getReferenceOwner()),
+                    "The slave worker failed & is restarted.", reason);
+            nodeMaster.tell(failedRetrieval(failedTask, reason), getSelf());
+        }
+        nodeMaster.tell(new WorkerReady(), getSelf());
+        super.preRestart(reason, message);
+    }
+
     public void notifyMeOnOpen() {
-        LOG.warn(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_PROCESSING, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
-                "The slave processing circuit breaker is now open, and will not close for one minute. Slave worker suicides now with poison pill.");
+        LOG.warn(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_PROCESSING),
+                "The slave processing circuit breaker is now open, and will not close for one minute. The next task fails & the slave worker is restarted.");
         SlaveMetrics.Worker.Slave.forcedSelfDestructCounter.inc();
-        getSelf().tell(PoisonPill.getInstance(), ActorRef.noSender());
     }
 
     @Override
@@ -139,22 +274,13 @@ public class RetrieveAndProcessActor extends UntypedActor {
         sender = getSender();
 
         if (message instanceof RetrieveUrlWithProcessingConfig) {
-            taskWithProcessingConfig = (RetrieveUrlWithProcessingConfig) message;
-            task = taskWithProcessingConfig.getRetrieveUrl();
-            final CircuitBreaker breaker = new CircuitBreaker(
-                    getContext().dispatcher(), getContext().system().scheduler(),
-                    5, Duration.create(computeMaximumRetrievalAndProcessingDurationInMinutes(task), TimeUnit.MINUTES), Duration.create(1, TimeUnit.MINUTES))
-                    .onOpen(new Runnable() {
-                        public void run() {
-                            notifyMeOnOpen();
-                        }
-                    });
+            final RetrieveUrlWithProcessingConfig taskWithProcessingConfig = (RetrieveUrlWithProcessingConfig) message;
 
             breaker.callWithSyncCircuitBreaker(
                     new Callable() {
                         @Override
                         public Object call() throws Exception {
-                            process(task);
+                            process(taskWithProcessingConfig);
                             return null;
                         }
                     }
@@ -166,11 +292,17 @@ public class RetrieveAndProcessActor extends UntypedActor {
 
     private void finishProcess(final DoneProcessing doneProcessing) {
         sender.tell(doneProcessing, getSelf());
-        // Gentle suicide!
-        getSelf().tell(PoisonPill.getInstance(), ActorRef.noSender());
+        // Ready for the next task
+        sender.tell(new WorkerReady(), getSelf());
     }
 
-    private void process(final RetrieveUrl task) {
+    /**
+     * Runs a task. The task is passed along (and never kept in a field) : once handed over to the processing stage
+     * its processing goes on while this worker already runs the next task.
+     */
+    private void process(final RetrieveUrlWithProcessingConfig taskWithProcessingConfig) {
+        final RetrieveUrl task = taskWithProcessingConfig.getRetrieveUrl();
+        final String downloadPath = taskWithProcessingConfig.getDownloadPath();
 
         HttpRetrieveResponse response = null;
         DoneProcessing doneProcessing = null;
@@ -179,7 +311,7 @@ public class RetrieveAndProcessActor extends UntypedActor {
         final Timer.Context downloadTimerContext = SlaveMetrics.Worker.Slave.Retrieve.totalDuration.time();
 
         try {
-            response = executeRetrieval(task);
+            response = executeRetrieval(task, downloadPath);
             final ProcessingJobRetrieveSubTaskState responseState = convertRetrieveStateToProcessingJobRetrieveSubTaskState(response.getState());
 
             doneProcessing = new DoneProcessing(
@@ -193,17 +325,10 @@ public class RetrieveAndProcessActor extends UntypedActor {
                     null /* text meta info */, response.getLog());
 
             LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
-                    "Retrieval url finished with success and the temporary file is stored on disk at {}", taskWithProcessingConfig.getDownloadPath());
+                    "Retrieval url finished with success and the temporary file is stored on disk at {}", downloadPath);
 
         } catch (Exception e) {
-            doneProcessing = new DoneProcessing(
-                    task.getId(), task.getUrl(), task.getReferenceId(), task.getJobId(),
-                    task.getTaskType(),
-                    null,
-                    new ProcessingJobSubTaskStats().withRetrieveState(ProcessingJobRetrieveSubTaskState.ERROR, e),
-                    null /* image meta info */,
-                    null /* audio meta info */, null /* video meta info */,
-                    null /* text meta info */, e.getMessage());
+            doneProcessing = failedRetrieval(task, e);
 
             LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
                     "Exception during retrieval. The http retrieve response could not be created for url {} and job {} . Probable cause : wrong configuration argument in the slave.", task.getUrl(), task.getJobId(), e);
@@ -237,11 +362,71 @@ public class RetrieveAndProcessActor extends UntypedActor {
             return;
         }
 
-        // STEP 2 : Execute processing
+        // STEP 2 : Execute processing, in the processing stage of the node when there's one
+        if (processingStage != null) {
+            handOverToProcessingStage(response, task, downloadPath, doneProcessing);
+            return;
+        }
+
+        finishProcess(executeProcessingStep(response, task, downloadPath, doneProcessing));
+        return;
+
+    }
+
+    /**
+     * Queues the processing of the downloaded file in the processing stage & frees this worker for the next download.
+     * The node master is told first that the download is over, so that the connection slot of the task is free while
+     * the file waits for & goes through the processing. The processing worker reports the result to the node master.
+     * It only uses what it's given here, never the state of this actor.
+     */
+    private void handOverToProcessingStage(final HttpRetrieveResponse response, final RetrieveUrl task,
+                                           final String downloadPath, final DoneProcessing downloaded) {
+        final ActorRef nodeMaster = sender;
+        final ActorRef self = getSelf();
+        final long sizeInBytes = (downloaded.getHttpResponseContentSizeInBytes() != null) ?
+                downloaded.getHttpResponseContentSizeInBytes() : 0l;
+
+        nodeMaster.tell(new DoneDownload(task.getId()), self);
+
+        final Timer.Context stageWaitTimerContext = SlaveMetrics.Worker.Slave.Processing.stageWaitDuration.time();
+        try {
+            processingStage.submit(new Runnable() {
+                @Override
+                public void run() {
+                    nodeMaster.tell(executeProcessingStep(response, task, downloadPath, downloaded), self);
+                }
+            }, sizeInBytes);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // The node is shutting down
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            finishProcess(withProcessingError(downloaded, e));
+            return;
+        } finally {
+            stageWaitTimerContext.stop();
+        }
+
+        // The processing goes on without this worker, it's ready for the next download
+        sender.tell(new WorkerReady(), getSelf());
+    }
+
+    private DoneProcessing failedRetrieval(final RetrieveUrl task, final Throwable e) {
+        return new DoneProcessing(
+                task.getId(), task.getUrl(), task.getReferenceId(), task.getJobId(),
+                task.getTaskType(),
+                null,
+                new ProcessingJobSubTaskStats().withRetrieveState(ProcessingJobRetrieveSubTaskState.ERROR, e),
+                null /* image meta info */,
+                null /* audio meta info */, null /* video meta info */,
+                null /* text meta info */, e.getMessage());
+    }
+
+    private DoneProcessing executeProcessingStep(final HttpRetrieveResponse response, final RetrieveUrl task,
+                                                 final String downloadPath, final DoneProcessing downloaded) {
+        DoneProcessing doneProcessing = downloaded;
         final Timer.Context processingTimerContext = SlaveMetrics.Worker.Slave.Processing.totalDuration.time();
         ProcessingResultTuple processingResultTuple;
         try {
-            processingResultTuple = executeProcessing(response, task);
+            processingResultTuple = executeProcessing(response, task, downloadPath);
 
             if (processingResultTuple == null)
                 throw new IllegalStateException("Unexpected processingResultTuple with value null. Probable cause : bug in slave code.");
@@ -257,15 +442,7 @@ public class RetrieveAndProcessActor extends UntypedActor {
                     (processingResultTuple.getMediaMetaInfoTuple() != null) ? processingResultTuple.getMediaMetaInfoTuple().getTextMetaInfo() : null);
 
         } catch (Exception e) {
-            doneProcessing = doneProcessing.withProcessingInfo(doneProcessing.getStats()
-                            .withColorExtractionState(ProcessingJobSubTaskState.ERROR, e)
-                            .withMetaExtractionState(ProcessingJobSubTaskState.ERROR, e)
-                            .withThumbnailGenerationState(ProcessingJobSubTaskState.ERROR, e)
-                            .withThumbnailStorageState(ProcessingJobSubTaskState.ERROR, e),
-                    null,
-                    null,
-                    null,
-                    null);
+            doneProcessing = withProcessingError(doneProcessing, e);
 
             LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_PROCESSING, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
                     "This should never happen in this way -> Exception during processing. :  " + e.getLocalizedMessage(), e);
@@ -274,9 +451,19 @@ public class RetrieveAndProcessActor extends UntypedActor {
             processingTimerContext.stop();
         }
 
-        finishProcess(doneProcessing);
-        return;
+        return doneProcessing;
+    }
 
+    private DoneProcessing withProcessingError(final DoneProcessing doneProcessing, final Exception e) {
+        return doneProcessing.withProcessingInfo(doneProcessing.getStats()
+                        .withColorExtractionState(ProcessingJobSubTaskState.ERROR, e)
+                        .withMetaExtractionState(ProcessingJobSubTaskState.ERROR, e)
+                        .withThumbnailGenerationState(ProcessingJobSubTaskState.ERROR, e)
+                        .withThumbnailStorageState(ProcessingJobSubTaskState.ERROR, e),
+                null,
+                null,
+                null,
+                null);
     }
 
 
@@ -284,10 +471,11 @@ public class RetrieveAndProcessActor extends UntypedActor {
      * Executes the retrieval phase.
      *
      * @param task
+     * @param downloadPath where the downloaded file is stored
      * @return
      * @throws Exception
      */
-    private final HttpRetrieveResponse executeRetrieval(final RetrieveUrl task) throws Exception {
+    private final HttpRetrieveResponse executeRetrieval(final RetrieveUrl task, final String downloadPath) throws Exception {
 
         HttpRetrieveResponse response = null;
         switch (task.getDocumentReferenceTask().getTaskType()) {
@@ -295,7 +483,7 @@ public class RetrieveAndProcessActor extends UntypedActor {
                 SlaveMetrics.Worker.Slave.Retrieve.linkCheckingCounter.inc();
                 final Timer.Context downloadLinkCheckingTimerContext = SlaveMetrics.Worker.Slave.Retrieve.linkCheckingDuration.time();
                 try {
-                    response = httpRetrieveResponseFactory.create(ResponseType.NO_STORAGE, taskWithProcessingConfig.getDownloadPath());
+                    response = httpRetrieveResponseFactory.create(ResponseType.NO_STORAGE, downloadPath);
                     response.setLoggingAppFields(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()));
                     slaveLinkChecker.downloadAndStoreInHttpRetrievResponse(response, task);
                 } finally {
@@ -306,7 +494,7 @@ public class RetrieveAndProcessActor extends UntypedActor {
                 SlaveMetrics.Worker.Slave.Retrieve.unconditionalDownloadCounter.inc();
                 final Timer.Context downloadUnconditionalDownloadTimerContext = SlaveMetrics.Worker.Slave.Retrieve.unconditionalDownloadDuration.time();
                 try {
-                    response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, taskWithProcessingConfig.getDownloadPath());
+                    response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, downloadPath);
                     response.setLoggingAppFields(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()));
                     slaveDownloader.downloadAndStoreInHttpRetrieveResponse(response, task);
                 } finally {
@@ -318,7 +506,7 @@ public class RetrieveAndProcessActor extends UntypedActor {
                 final Timer.Context downloadConditionalDownloadTimerContext = SlaveMetrics.Worker.Slave.Retrieve.conditionalDownloadDuration.time();
 
                 try {
-                    response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, taskWithProcessingConfig.getDownloadPath());
+                    response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, downloadPath);
                     response.setLoggingAppFields(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()));
                     slaveDownloader.downloadAndStoreInHttpRetrieveResponse(response, task);
                 } finally {
@@ -351,31 +539,25 @@ public class RetrieveAndProcessActor extends UntypedActor {
      *
      * @param response
      * @param task
+     * @param downloadPath where the downloaded file is stored
      * @return
      * @throws Exception
      */
-    private final ProcessingResultTuple executeProcessing(final HttpRetrieveResponse response, final RetrieveUrl task) throws
+    private final ProcessingResultTuple executeProcessing(final HttpRetrieveResponse response, final RetrieveUrl task,
+                                                          final String downloadPath) throws
             LocaleException,
             URISyntaxException,
             IOException {
         return slaveProcessor.process(task.getDocumentReferenceTask(),
-                taskWithProcessingConfig.getDownloadPath(),
+                downloadPath,
                 response.getUrl().toURI().toASCIIString(),
-                response.getContent(),
                 responseTypeFromTaskType(task.getDocumentReferenceTask().getTaskType()),
                 task.getReferenceOwner()
         );
     }
 
-    private long computeMaximumRetrievalAndProcessingDurationInMinutes(RetrieveUrl retrieveUrl) {
-        long duration;
-        try {
-            duration = Duration.create(retrieveUrl.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis() + retrieveUrl.getLimits().getProcessingTerminationThresholdTimeLimitInMillis(), TimeUnit.MILLISECONDS).toMinutes();
-        } catch (Exception e) {
-            ProcessingJobLimits lm = new ProcessingJobLimits();
-            duration = Duration.create(lm.getRetrievalTerminationThresholdTimeLimitInMillis() + lm.getProcessingTerminationThresholdTimeLimitInMillis(), TimeUnit.MILLISECONDS).toMinutes();
-        }
-        return duration;
+    private long computeMaximumRetrievalAndProcessingDurationInMinutes(ProcessingJobLimits limits) {
+        return Duration.create(limits.getRetrievalTerminationThresholdTimeLimitInMillis() + limits.getProcessingTerminationThresholdTimeLimitInMillis(), TimeUnit.MILLISECONDS).toMinutes();
     }
 
 }
@@ -121,6 +121,15 @@ public class SlaveMetrics {
                 public static final Timer originalCachingDuration = METRIC_REGISTRY.timer(name(Processing.NAME, ORIGINAL_CACHING, DURATION));
                 public static final Counter originalCachingCounter = METRIC_REGISTRY.counter(name(Processing.NAME, ORIGINAL_CACHING, COUNTER));
 
+                /**
+                 * How many downloaded files are processed or wait for processing in the processing stage.
+                 */
+                public static final LazyGauge pendingFilesCounter = new LazyGauge(METRIC_REGISTRY, name(Processing.NAME, "pendingFiles", COUNTER));
+                /**
+                 * How long the download workers wait for room in the processing stage.
+                 */
+                public static final Timer stageWaitDuration = METRIC_REGISTRY.timer(name(Processing.NAME, "stageWait", DURATION));
+
             }
         }
     }
@@ -0,0 +1,165 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import com.google.common.base.Charsets;
+import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.domain.ProcessingJobSubTask;
+
+import java.util.List;
+
+/**
+ * Guesses the kind of a download from the Content-Type response header & the first bytes of the content, so that
+ * the downloads that can't be processed (ie. the HTML landing pages) are aborted before they are fully retrieved.
+ *
+ * The guess is conservative : a content is reported as {@link ContentType#UNKNOWN} only when it's clearly not a
+ * media file. When the first bytes are not conclusive the content type is left undecided and the download continues.
+ */
+public class ContentSniffer {
+
+    /**
+     * How much of the content is inspected.
+     */
+    public static final int SNIFF_SIZE_IN_BYTES = 4 * 1024;
+
+    private static final String[] HTML_PREFIXES = {"<!doctype html", "<html", "<head", "<body", "<title", "<script", "<iframe", "<frameset"};
+
+    /**
+     * @param contentTypeHeader the Content-Type response header or null if missing
+     * @param firstBytes        the first bytes of the content, at most {@link #SNIFF_SIZE_IN_BYTES} are inspected
+     * @param length            how many of the first bytes are available
+     * @return the kind of the content, {@link ContentType#UNKNOWN} if it's surely not a media file or null if undecided
+     */
+    public static ContentType sniff(final String contentTypeHeader, final byte[] firstBytes, final int length) {
+        final int n = Math.min(length, Math.min(firstBytes.length, SNIFF_SIZE_IN_BYTES));
+
+        final ContentType fromMagicBytes = sniffMagicBytes(firstBytes, n);
+        if (fromMagicBytes != null) {
+            return fromMagicBytes;
+        }
+
+        if (looksLikeHtml(firstBytes, n)) {
+            return ContentType.UNKNOWN;
+        }
+
+        final String mimeType = mimeTypeOf(contentTypeHeader);
+        if (mimeType == null) {
+            return null;
+        }
+        // The body is not a known media format, so the header can be trusted when it says it's a web page.
+        if (mimeType.equals("text/html") || mimeType.equals("application/xhtml+xml")) {
+            return ContentType.UNKNOWN;
+        }
+        if (mimeType.startsWith("image/")) return ContentType.IMAGE;
+        if (mimeType.startsWith("audio/")) return ContentType.AUDIO;
+        if (mimeType.startsWith("video/")) return ContentType.VIDEO;
+        if (mimeType.equals("application/pdf")) return ContentType.PDF;
+        return null;
+    }
+
+    /**
+     * Detects the exact mime type of the formats that have an unambiguous signature, the same answer the external
+     * mime type detection would give. Audio & video containers are not detected here as the same signature maps to
+     * several mime types (ie. MP4 vs QuickTime, Matroska vs WebM).
+     *
+     * @param firstBytes the first bytes of the content, at most {@link #SNIFF_SIZE_IN_BYTES} are inspected
+     * @param length     how many of the first bytes are available
+     * @return the mime type or null if it can't be decided from the first bytes alone
+     */
+    public static String sniffMimeType(final byte[] firstBytes, final int length) {
+        final byte[] b = firstBytes;
+        final int n = Math.min(length, Math.min(firstBytes.length, SNIFF_SIZE_IN_BYTES));
+
+        if (startsWith(b, n, 0, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (startsWith(b, n, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return "image/png";
+        if (startsWith(b, n, 0, 'G', 'I', 'F', '8', '7', 'a') || startsWith(b, n, 0, 'G', 'I', 'F', '8', '9', 'a')) return "image/gif";
+        if (startsWith(b, n, 0, 'I', 'I', 0x2A, 0x00) || startsWith(b, n, 0, 'M', 'M', 0x00, 0x2A)) return "image/tiff";
+        if (startsWith(b, n, 0, 0x00, 0x00, 0x00, 0x0C, 'j', 'P', ' ', ' ', 0x0D, 0x0A, 0x87, 0x0A)) return "image/jp2";
+        if (startsWith(b, n, 0, 'R', 'I', 'F', 'F') && startsWith(b, n, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+        if (startsWith(b, n, 0, '%', 'P', 'D', 'F', '-')) return "application/pdf";
+        return null;
+    }
+
+    /**
+     * @return true if at least one of the sub tasks can be executed on a content of the given kind. Mirrors what
+     * the {@link eu.europeana.harvester.cluster.slave.processing.SlaveProcessor} does with each kind of content.
+     */
+    public static boolean canProduceAnySubTask(final ContentType contentType, final List<ProcessingJobSubTask> subTasks) {
+        if (contentType == null) {
+            return true;
+        }
+        for (final ProcessingJobSubTask subTask : subTasks) {
+            switch (subTask.getTaskType()) {
+                case META_EXTRACTION:
+                    // The color extraction implies meta extraction (see SlaveProcessorHack)
+                case COLOR_EXTRACTION:
+                    if (contentType != ContentType.UNKNOWN) return true;
+                    break;
+                case GENERATE_THUMBNAIL:
+                    if (contentType == ContentType.IMAGE || contentType == ContentType.PDF) return true;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static ContentType sniffMagicBytes(final byte[] b, final int n) {
+        if (startsWith(b, n, 0, 0xFF, 0xD8, 0xFF)) return ContentType.IMAGE; /* JPEG */
+        if (startsWith(b, n, 0, 0x89, 'P', 'N', 'G')) return ContentType.IMAGE;
+        if (startsWith(b, n, 0, 'G', 'I', 'F', '8')) return ContentType.IMAGE;
+        if (startsWith(b, n, 0, 'I', 'I', 0x2A, 0x00) || startsWith(b, n, 0, 'M', 'M', 0x00, 0x2A)) return ContentType.IMAGE; /* TIFF */
+        if (startsWith(b, n, 0, 0x00, 0x00, 0x00, 0x0C, 'j', 'P', ' ', ' ') || startsWith(b, n, 0, 0xFF, 0x4F, 0xFF, 0x51)) return ContentType.IMAGE; /* JPEG 2000 */
+        if (startsWith(b, n, 0, 'B', 'M') && n >= 14) return ContentType.IMAGE;
+        if (startsWith(b, n, 0, '%', 'P', 'D', 'F')) return ContentType.PDF;
+
+        if (startsWith(b, n, 0, 'R', 'I', 'F', 'F')) {
+            if (startsWith(b, n, 8, 'W', 'E', 'B', 'P')) return ContentType.IMAGE;
+            if (startsWith(b, n, 8, 'W', 'A', 'V', 'E')) return ContentType.AUDIO;
+            if (startsWith(b, n, 8, 'A', 'V', 'I', ' ')) return ContentType.VIDEO;
+            return null;
+        }
+        if (startsWith(b, n, 0, 'F', 'O', 'R', 'M') && (startsWith(b, n, 8, 'A', 'I', 'F', 'F') || startsWith(b, n, 8, 'A', 'I', 'F', 'C'))) return ContentType.AUDIO;
+        if (startsWith(b, n, 0, 'I', 'D', '3') || startsWith(b, n, 0, 'f', 'L', 'a', 'C')) return ContentType.AUDIO;
+        if (n >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xE0) == 0xE0 && (b[1] & 0x06) != 0 &&
+                (b[2] & 0xF0) != 0xF0 && (b[2] & 0x0C) != 0x0C) return ContentType.AUDIO; /* MPEG audio frame */
+
+        if (startsWith(b, n, 4, 'f', 't', 'y', 'p')) {
+            return (startsWith(b, n, 8, 'M', '4', 'A') || startsWith(b, n, 8, 'M', '4', 'B')) ? ContentType.AUDIO : ContentType.VIDEO;
+        }
+        if (startsWith(b, n, 0, 0x1A, 0x45, 0xDF, 0xA3)) return ContentType.VIDEO; /* Matroska & WebM */
+        if (startsWith(b, n, 0, 0x00, 0x00, 0x01, 0xBA) || startsWith(b, n, 0, 0x00, 0x00, 0x01, 0xB3)) return ContentType.VIDEO; /* MPEG */
+        if (startsWith(b, n, 0, 'F', 'L', 'V', 0x01)) return ContentType.VIDEO;
+
+        return null;
+    }
+
+    private static boolean looksLikeHtml(final byte[] b, final int n) {
+        int start = 0;
+        if (startsWith(b, n, 0, 0xEF, 0xBB, 0xBF)) start = 3; /* UTF-8 BOM */
+        final String text = new String(b, start, Math.max(0, n - start), Charsets.ISO_8859_1).trim().toLowerCase();
+
+        for (final String prefix : HTML_PREFIXES) {
+            if (text.startsWith(prefix)) return true;
+        }
+        // XHTML & the pages that start with a comment
+        if (text.startsWith("<?xml") || text.startsWith("<!--")) {
+            return text.contains("<html");
+        }
+        return false;
+    }
+
+    private static String mimeTypeOf(final String contentTypeHeader) {
+        if (contentTypeHeader == null) return null;
+        final int parameters = contentTypeHeader.indexOf(';');
+        final String mimeType = ((parameters >= 0) ? contentTypeHeader.substring(0, parameters) : contentTypeHeader).trim().toLowerCase();
+        return mimeType.isEmpty() ? null : mimeType;
+    }
+
+    private static boolean startsWith(final byte[] b, final int n, final int offset, final int... signature) {
+        if (n < offset + signature.length) return false;
+        for (int i = 0; i < signature.length; i++) {
+            if ((b[offset + i] & 0xFF) != signature[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.europeana.harvester.cluster.domain.AdaptiveTimeoutConfig;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.*;
+
+/**
+ * Keeps, for each host, an exponentially weighted moving average of the time it takes to answer (from the request
+ * until the response status) and of the deviation of that time, the same way TCP estimates its retransmission
+ * timeout. The connection timeout of a host is derived from them, so that a host that usually answers in 200ms is
+ * not waited for 100s.
+ *
+ * It also counts the consecutive connection failures of each host : a host that did not answer several times in a
+ * row is considered down and is not tried again for a while.
+ *
+ * When the adaptive timeouts are disabled nothing is recorded nor scheduled : the job connection timeout is used.
+ */
+public class HostLatencyTracker {
+
+    private final AdaptiveTimeoutConfig config;
+
+    private final Cache<String /* host */, HostLatency> latencies;
+
+    /**
+     * Null when the adaptive timeouts are disabled.
+     */
+    private final ScheduledThreadPoolExecutor timeoutScheduler;
+
+    public HostLatencyTracker(final AdaptiveTimeoutConfig config) {
+        this.config = config;
+        this.latencies = CacheBuilder.newBuilder()
+                .maximumSize(config.getMaxNrOfHosts())
+                .build();
+
+        if (!config.getEnabled()) {
+            this.timeoutScheduler = null;
+            return;
+        }
+        this.timeoutScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "connect-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param jobConnectTimeoutInMillis the connection timeout of the job
+     * @return the connection timeout to use for the host, never longer than the one of the job
+     */
+    public long connectTimeoutInMillis(final String host, final long jobConnectTimeoutInMillis) {
+        if (!config.getEnabled() || host == null) {
+            return jobConnectTimeoutInMillis;
+        }
+        final HostLatency latency = latencies.getIfPresent(host);
+        if (latency == null) {
+            return jobConnectTimeoutInMillis;
+        }
+        return latency.timeoutInMillis(jobConnectTimeoutInMillis);
+    }
+
+    /**
+     * @return true if the last connection attempts to the host failed & it's not yet time to try it again
+     */
+    public boolean isDown(final String host) {
+        if (!config.getEnabled() || host == null) {
+            return false;
+        }
+        final HostLatency latency = latencies.getIfPresent(host);
+        return latency != null && latency.isDown();
+    }
+
+    /**
+     * Records the time the host took to answer.
+     */
+    public void recordResponse(final String host, final long latencyInMillis) {
+        if (!config.getEnabled() || host == null) return;
+        latencyOf(host).recordResponse(latencyInMillis);
+    }
+
+    /**
+     * Records that the host could not be reached (ie. the connection was refused or timed out).
+     */
+    public void recordConnectFailure(final String host) {
+        if (!config.getEnabled() || host == null) return;
+        latencyOf(host).recordConnectFailure();
+    }
+
+    /**
+     * Runs the action after the timeout unless the returned future is cancelled before. Used to abort the requests
+     * of the hosts that don't answer in time, as the http client has a single connect timeout for all the hosts.
+     *
+     * @return the scheduled timeout or null if the adaptive timeouts are disabled
+     */
+    public ScheduledFuture<?> scheduleConnectTimeout(final Runnable onTimeout, final long timeoutInMillis) {
+        if (!config.getEnabled()) {
+            return null;
+        }
+        return timeoutScheduler.schedule(onTimeout, timeoutInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timeout scheduler. The pending timeouts are dropped.
+     */
+    public void close() {
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the host of the url or null if the url is malformed
+     */
+    public static String hostOf(final String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private HostLatency latencyOf(final String host) {
+        final HostLatency latency = latencies.getIfPresent(host);
+        if (latency != null) {
+            return latency;
+        }
+        final HostLatency newLatency = new HostLatency();
+        final HostLatency existingLatency = latencies.asMap().putIfAbsent(host, newLatency);
+        return (existingLatency != null) ? existingLatency : newLatency;
+    }
+
+    private class HostLatency {
+
+        private double averageLatencyInMillis;
+
+        private double averageDeviationInMillis;
+
+        private int nrOfSamples = 0;
+
+        private int nrOfConsecutiveFailures = 0;
+
+        private long lastFailureTimestamp = 0;
+
+        synchronized void recordResponse(final long latencyInMillis) {
+            if (nrOfSamples == 0) {
+                averageLatencyInMillis = latencyInMillis;
+                averageDeviationInMillis = latencyInMillis / 2.0;
+            } else {
+                final double beta = config.getDeviationSmoothingFactor();
+                final double alpha = config.getLatencySmoothingFactor();
+                averageDeviationInMillis = (1 - beta) * averageDeviationInMillis + beta * Math.abs(averageLatencyInMillis - latencyInMillis);
+                averageLatencyInMillis = (1 - alpha) * averageLatencyInMillis + alpha * latencyInMillis;
+            }
+            nrOfSamples++;
+            nrOfConsecutiveFailures = 0;
+        }
+
+        synchronized void recordConnectFailure() {
+            nrOfConsecutiveFailures++;
+            lastFailureTimestamp = System.currentTimeMillis();
+        }
+
+        synchronized boolean isDown() {
+            return nrOfConsecutiveFailures >= config.getMaxNrOfConsecutiveFailures() &&
+                    System.currentTimeMillis() - lastFailureTimestamp < config.getDownHostRetryDelayInMillis();
+        }
+
+        synchronized long timeoutInMillis(final long jobConnectTimeoutInMillis) {
+            if (nrOfSamples < config.getMinNrOfSamples()) {
+                return jobConnectTimeoutInMillis;
+            }
+            final long timeout = (long) Math.ceil(averageLatencyInMillis + config.getDeviationMultiplier() * averageDeviationInMillis);
+            return Math.min(jobConnectTimeoutInMillis, Math.max(config.getMinTimeoutInMillis(), timeout));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import eu.europeana.harvester.cluster.domain.AdaptiveTimeoutConfig;
+import eu.europeana.harvester.cluster.domain.HttpClientPoolConfig;
+import eu.europeana.harvester.cluster.domain.MediaHeaderRetrievalConfig;
+import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
+import eu.europeana.harvester.domain.ProcessingJobLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the http clients shared by all the downloads & link checks of a slave node. The clients (and with them the
+ * Netty event loop, the connection pool, keep-alive and TLS sessions) live as long as the registry, not as long as
+ * a task.
+ *
+ * The max number of redirects can be set only at client level, so the registry keeps one client for each distinct
+ * value (in practice all the jobs use the same limits and there is exactly one). Everything else that comes from
+ * the task limits is applied on the request.
+ */
+public class HttpClientRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientRegistry.class.getName());
+
+    private static HttpClientRegistry defaultRegistry;
+
+    /**
+     * The registry used by the downloaders which are not created by a node master (ie. tests & tools).
+     */
+    public static synchronized HttpClientRegistry defaultRegistry() {
+        if (defaultRegistry == null) {
+            defaultRegistry = new HttpClientRegistry(new HttpClientPoolConfig());
+        }
+        return defaultRegistry;
+    }
+
+    private final HttpClientPoolConfig config;
+
+    private final HostLatencyTracker hostLatencyTracker;
+
+    private final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig;
+
+    private final Map<Integer /* max redirects */, AsyncHttpClient> clients = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    public HttpClientRegistry(final HttpClientPoolConfig config) {
+        this(config, new HostLatencyTracker(new AdaptiveTimeoutConfig()));
+    }
+
+    public HttpClientRegistry(final HttpClientPoolConfig config, final HostLatencyTracker hostLatencyTracker) {
+        this(config, hostLatencyTracker, new MediaHeaderRetrievalConfig());
+    }
+
+    public HttpClientRegistry(final HttpClientPoolConfig config, final HostLatencyTracker hostLatencyTracker,
+                              final MediaHeaderRetrievalConfig mediaHeaderRetrievalConfig) {
+        this.config = config;
+        this.hostLatencyTracker = hostLatencyTracker;
+        this.mediaHeaderRetrievalConfig = mediaHeaderRetrievalConfig;
+    }
+
+    /**
+     * @return the shared client that can execute the task with its limits
+     */
+    public AsyncHttpClient clientFor(final ProcessingJobLimits limits) {
+        if (closed) {
+            throw new IllegalStateException("The http client registry is closed.");
+        }
+        final Integer maxRedirects = limits.getRetrievalMaxNrOfRedirects();
+        AsyncHttpClient client = clients.get(maxRedirects);
+        if (client == null) {
+            synchronized (this) {
+                client = clients.get(maxRedirects);
+                if (client == null) {
+                    client = new AsyncHttpClient(buildClientConfig(maxRedirects));
+                    clients.put(maxRedirects, client);
+                    LOG.debug("Created a new pooled http client for max redirects {}", maxRedirects);
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Prepares a GET request for the task on the shared client, with the per task limits applied on the request.
+     */
+    public AsyncHttpClient.BoundRequestBuilder prepareGet(final RetrieveUrl task) {
+        final AsyncHttpClient.BoundRequestBuilder requestBuilder = clientFor(task.getLimits()).prepareGet(task.getUrl())
+                .setFollowRedirects(true);
+
+        final Long timeLimit = task.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis();
+        if (timeLimit != null && timeLimit > 0) {
+            // The handlers enforce the limit themselves while data flows, this only covers the silent servers.
+            requestBuilder.setRequestTimeout((int) Math.min(timeLimit, Integer.MAX_VALUE));
+        }
+        return requestBuilder;
+    }
+
+    private AsyncHttpClientConfig buildClientConfig(final Integer maxRedirects) {
+        return new AsyncHttpClientConfig.Builder()
+                .setMaxRedirects(maxRedirects)
+                .setFollowRedirect(true)
+                .setConnectTimeout(config.getConnectTimeoutInMillis())
+                .setAcceptAnyCertificate(true)
+                .setMaxRequestRetry(config.getMaxRequestRetry())
+                .setMaxConnections(config.getMaxConnections())
+                .setMaxConnectionsPerHost(config.getMaxConnectionsPerHost())
+                .setAllowPoolingConnections(config.getKeepAlive())
+                .setAllowPoolingSslConnections(config.getKeepAlive())
+                .setPooledConnectionIdleTimeout(config.getPooledConnectionIdleTimeoutInMillis())
+                .setConnectionTTL(config.getConnectionTTLInMillis())
+                .build();
+    }
+
+    public HttpClientPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the node wide latencies of the hosts, from which the connection timeouts are derived
+     */
+    public HostLatencyTracker getHostLatencyTracker() {
+        return hostLatencyTracker;
+    }
+
+    /**
+     * @return how the downloads of the node retrieve only the header of the audio & video files
+     */
+    public MediaHeaderRetrievalConfig getMediaHeaderRetrievalConfig() {
+        return mediaHeaderRetrievalConfig;
+    }
+
+    /**
+     * Closes all the clients. Must be called only when no download is running anymore.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (final AsyncHttpClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                LOG.error("Failed to close pooled http client", e);
+            }
+        }
+        clients.clear();
+        hostLatencyTracker.close();
+    }
+}
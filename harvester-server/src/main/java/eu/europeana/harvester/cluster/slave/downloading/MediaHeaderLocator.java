@@ -0,0 +1,202 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Follows the content of an audio or video file while it's downloaded & tells where its container header ends, so
+ * that the download can stop there :
+ * <ul>
+ * <li>MP4 / QuickTime : the top level boxes are walked until the "moov" box (the header ends with it) or the "mdat"
+ * box (the media data comes first & the "moov" box is expected after it, in the trailer of the file)</li>
+ * <li>MP3 : the ID3 tag & the given number of bytes after it, enough for the first frames</li>
+ * <li>WebM / Matroska : the given number of bytes, enough for the EBML header, the segment info & the tracks</li>
+ * </ul>
+ * Any other format is unsupported & is downloaded in full.
+ */
+public class MediaHeaderLocator {
+
+    private enum Format {MP4, MP3, MATROSKA, UNSUPPORTED}
+
+    /**
+     * The number of bytes needed to detect the format.
+     */
+    private static final int FORMAT_SIZE_IN_BYTES = 12;
+
+    private static final int ID3_HEADER_SIZE_IN_BYTES = 10;
+
+    private final long contentLength;
+
+    private final long headerSizeInBytes;
+
+    private final byte[] firstBytes = new byte[FORMAT_SIZE_IN_BYTES];
+
+    private Format format = null;
+
+    /**
+     * The number of bytes consumed so far.
+     */
+    private long position = 0;
+
+    /**
+     * The position of the next MP4 box & the bytes of its header (size, type & large size) received so far.
+     */
+    private long nextBoxStart = 0;
+
+    private final byte[] boxHeader = new byte[16];
+
+    private int boxHeaderLength = 0;
+
+    private long headerEnd = -1;
+
+    private long trailerStart = -1;
+
+    /**
+     * @param contentLength     the size of the whole file
+     * @param headerSizeInBytes how much of the beginning of the formats without a header size (MP3 & WebM) is needed
+     */
+    public MediaHeaderLocator(final long contentLength, final long headerSizeInBytes) {
+        this.contentLength = contentLength;
+        this.headerSizeInBytes = headerSizeInBytes;
+    }
+
+    /**
+     * Consumes the next part of the content. The buffer is left as it was.
+     */
+    public void consume(final ByteBuffer part) {
+        final ByteBuffer content = part.duplicate();
+        final long partStart = position;
+        final long partEnd = position + content.remaining();
+
+        if (format == null) {
+            for (long offset = partStart; offset < Math.min(partEnd, FORMAT_SIZE_IN_BYTES); offset++) {
+                firstBytes[(int) offset] = content.get(content.position() + (int) (offset - partStart));
+            }
+            if (partEnd >= FORMAT_SIZE_IN_BYTES) {
+                detectFormat();
+            }
+        }
+
+        if (format == Format.MP4) {
+            walkBoxes(content, partStart, partEnd);
+        }
+        position = partEnd;
+    }
+
+    /**
+     * @return true if the header of the file can't be located, the file must be downloaded in full
+     */
+    public boolean isUnsupported() {
+        return format == Format.UNSUPPORTED;
+    }
+
+    /**
+     * @return the position where the header ends (the content until there is needed) or -1 if not known yet
+     */
+    public long getHeaderEnd() {
+        return headerEnd;
+    }
+
+    /**
+     * @return the position of the trailer that holds the index of a MP4 file (the content from there to the end is
+     * needed) or -1 if there's none
+     */
+    public long getTrailerStart() {
+        return trailerStart;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    private void detectFormat() {
+        if (firstBytes[4] == 'f' && firstBytes[5] == 't' && firstBytes[6] == 'y' && firstBytes[7] == 'p') {
+            format = Format.MP4;
+        } else if (firstBytes[0] == 'I' && firstBytes[1] == 'D' && firstBytes[2] == '3') {
+            format = Format.MP3;
+            // The tag size is a 28 bits "sync safe" integer, the tag can hold a large cover art
+            final long tagSize = ((firstBytes[6] & 0x7F) << 21) | ((firstBytes[7] & 0x7F) << 14) |
+                    ((firstBytes[8] & 0x7F) << 7) | (firstBytes[9] & 0x7F);
+            headerEnd = Math.min(contentLength, ID3_HEADER_SIZE_IN_BYTES + tagSize + headerSizeInBytes);
+        } else if ((firstBytes[0] & 0xFF) == 0xFF && (firstBytes[1] & 0xE0) == 0xE0) {
+            format = Format.MP3;
+            headerEnd = Math.min(contentLength, headerSizeInBytes);
+        } else if ((firstBytes[0] & 0xFF) == 0x1A && (firstBytes[1] & 0xFF) == 0x45 &&
+                (firstBytes[2] & 0xFF) == 0xDF && (firstBytes[3] & 0xFF) == 0xA3) {
+            format = Format.MATROSKA;
+            headerEnd = Math.min(contentLength, headerSizeInBytes);
+        } else {
+            format = Format.UNSUPPORTED;
+        }
+    }
+
+    private void walkBoxes(final ByteBuffer content, final long partStart, final long partEnd) {
+        while (headerEnd == -1 && trailerStart == -1 && format == Format.MP4 && nextBoxStart < partEnd) {
+            // Collect the header of the next box, it might be split between parts
+            final long headerStart = nextBoxStart + boxHeaderLength;
+            final long available = Math.min(boxHeader.length - boxHeaderLength, partEnd - headerStart);
+            for (int i = 0; i < available; i++) {
+                boxHeader[boxHeaderLength++] = byteAt(content, partStart, headerStart + i);
+            }
+            if (boxHeaderLength < 8) {
+                return;
+            }
+
+            long boxSize = readUnsignedInt(0);
+            if (boxSize == 1) {
+                // 64 bits size
+                if (boxHeaderLength < 16) {
+                    return;
+                }
+                boxSize = (readUnsignedInt(8) << 32) | readUnsignedInt(12);
+            }
+            final String boxType = new String(boxHeader, 4, 4, StandardCharsets.ISO_8859_1);
+            onBox(boxType, boxSize);
+            boxHeaderLength = 0;
+        }
+    }
+
+    private void onBox(final String boxType, final long boxSize) {
+        final long boxStart = nextBoxStart;
+        if (boxSize == 0) {
+            // The box extends to the end of the file
+            if ("moov".equals(boxType)) {
+                headerEnd = contentLength;
+            } else {
+                format = Format.UNSUPPORTED;
+            }
+            return;
+        }
+        if (boxSize < 8) {
+            format = Format.UNSUPPORTED;
+            return;
+        }
+
+        nextBoxStart = boxStart + boxSize;
+        if ("moov".equals(boxType)) {
+            headerEnd = Math.min(contentLength, nextBoxStart);
+        } else if ("mdat".equals(boxType)) {
+            if (nextBoxStart >= contentLength) {
+                // The media data goes until the end, there's no index after it
+                format = Format.UNSUPPORTED;
+            } else {
+                trailerStart = nextBoxStart;
+            }
+        } else if (nextBoxStart >= contentLength) {
+            format = Format.UNSUPPORTED;
+        }
+    }
+
+    /**
+     * @return the byte at the given position of the file, from the current part or from the first bytes (when the
+     * first part was too small to detect the format)
+     */
+    private byte byteAt(final ByteBuffer content, final long partStart, final long offset) {
+        return (offset < partStart) ? firstBytes[(int) offset] : content.get(content.position() + (int) (offset - partStart));
+    }
+
+    private long readUnsignedInt(final int offset) {
+        return ((boxHeader[offset] & 0xFFl) << 24) | ((boxHeader[offset + 1] & 0xFFl) << 16) |
+                ((boxHeader[offset + 2] & 0xFFl) << 8) | (boxHeader[offset + 3] & 0xFFl);
+    }
+}
@@ -0,0 +1,61 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+/**
+ * The content retrieved so far by an aborted download together with the validators needed to resume it safely.
+ */
+public class PartialDownload {
+
+    /**
+     * The file that holds the content retrieved so far.
+     */
+    private final String absolutePath;
+
+    private final Long sizeInBytes;
+
+    /**
+     * The ETag response header of the aborted download. Null if missing.
+     */
+    private final String eTag;
+
+    /**
+     * The Last-Modified response header of the aborted download. Null if missing.
+     */
+    private final String lastModified;
+
+    public PartialDownload(final String absolutePath, final Long sizeInBytes, final String eTag, final String lastModified) {
+        this.absolutePath = absolutePath;
+        this.sizeInBytes = sizeInBytes;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public String getAbsolutePath() {
+        return absolutePath;
+    }
+
+    public Long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the value of the If-Range request header or null if the download can't be resumed safely. Weak ETags
+     * can't be used for ranges, the Last-Modified date is used instead.
+     */
+    public String getIfRangeValidator() {
+        if (eTag != null && !eTag.trim().isEmpty() && !eTag.trim().startsWith("W/")) {
+            return eTag.trim();
+        }
+        if (lastModified != null && !lastModified.trim().isEmpty()) {
+            return lastModified.trim();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import eu.europeana.harvester.cluster.domain.ResumableDownloadConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Keeps the partial downloads of a slave node in a local scratch directory. Each url has at most one partial download,
+ * made of the content file & a small properties file with the validators of the response it came from.
+ */
+public class PartialDownloadStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartialDownloadStore.class.getName());
+
+    private static final String CONTENT_SUFFIX = ".part";
+
+    private static final String VALIDATORS_SUFFIX = ".properties";
+
+    private final ResumableDownloadConfig config;
+
+    private final File scratchDir;
+
+    public PartialDownloadStore(final ResumableDownloadConfig config) {
+        this.config = config;
+        this.scratchDir = new File(config.getScratchPath());
+        if (!scratchDir.exists()) {
+            scratchDir.mkdirs();
+        }
+    }
+
+    /**
+     * @return the partial download of the url or null if there is none that can be resumed
+     */
+    public synchronized PartialDownload find(final String url) {
+        final File content = contentFile(url);
+        final File validators = validatorsFile(url);
+        if (!content.exists() || !validators.exists()) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - content.lastModified() > config.getMaxPartialAgeInMillis()) {
+            remove(url);
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (final InputStream in = new FileInputStream(validators)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.warn("Cannot read the validators of the partial download of " + url + ". Discarding it.", e);
+            remove(url);
+            return null;
+        }
+
+        // Guards against the (very) unlikely hash collisions.
+        if (!url.equals(properties.getProperty("url"))) {
+            return null;
+        }
+
+        final PartialDownload partialDownload = new PartialDownload(content.getAbsolutePath(), content.length(),
+                properties.getProperty("eTag"), properties.getProperty("lastModified"));
+        if (partialDownload.getIfRangeValidator() == null) {
+            remove(url);
+            return null;
+        }
+        return partialDownload;
+    }
+
+    /**
+     * Moves the content retrieved so far in the store so that a later download of the url can continue from there.
+     * The content is kept only if it's large enough and if the response had a validator to resume it safely.
+     *
+     * @return true if the content was kept
+     */
+    public synchronized boolean keep(final String url, final String downloadedFilePath, final String eTag,
+                                     final String lastModified) {
+        final File downloaded = new File(downloadedFilePath);
+        final PartialDownload candidate = new PartialDownload(downloadedFilePath, downloaded.length(), eTag, lastModified);
+        if (!downloaded.exists() || candidate.getSizeInBytes() < config.getMinPartialSizeInBytes() ||
+                candidate.getIfRangeValidator() == null) {
+            return false;
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (eTag != null) properties.setProperty("eTag", eTag);
+        if (lastModified != null) properties.setProperty("lastModified", lastModified);
+
+        try {
+            try (final OutputStream out = new FileOutputStream(validatorsFile(url))) {
+                properties.store(out, null);
+            }
+            Files.move(downloaded.toPath(), contentFile(url).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Cannot keep the partial download of " + url, e);
+            remove(url);
+            return false;
+        }
+    }
+
+    /**
+     * Forgets the partial download of the url (ie. the download finished or can't be resumed anymore).
+     */
+    public synchronized void remove(final String url) {
+        contentFile(url).delete();
+        validatorsFile(url).delete();
+    }
+
+    private File contentFile(final String url) {
+        return new File(scratchDir, key(url) + CONTENT_SUFFIX);
+    }
+
+    private File validatorsFile(final String url) {
+        return new File(scratchDir, key(url) + VALIDATORS_SUFFIX);
+    }
+
+    private static String key(final String url) {
+        return Hashing.md5().hashString(url, Charsets.UTF_8).toString();
+    }
+}
@@ -2,9 +2,11 @@ package eu.europeana.harvester.cluster.slave.downloading;
 
 import com.ning.http.client.*;
 import eu.europeana.harvester.cluster.Slave;
+import eu.europeana.harvester.cluster.domain.ContentType;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
 import eu.europeana.harvester.domain.DocumentReferenceTaskType;
 import eu.europeana.harvester.httpclient.response.HttpRetrieveResponse;
+import eu.europeana.harvester.httpclient.response.HttpRetrieveResponseDiskStorage;
 import eu.europeana.harvester.httpclient.response.RetrievingState;
 import eu.europeana.harvester.logging.LoggingComponent;
 import org.slf4j.Logger;
@@ -12,18 +14,76 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SlaveDownloader {
 
     private Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
 
+    /**
+     * The node wide http clients. They are shared between tasks and must never be closed by the downloader.
+     */
+    private final HttpClientRegistry httpClientRegistry;
+
+    /**
+     * Where the downloads aborted because of the time or rate limits are kept to be resumed. Null when the
+     * resumable downloads are disabled.
+     */
+    private final PartialDownloadStore partialDownloadStore;
+
+    public SlaveDownloader() {
+        this(HttpClientRegistry.defaultRegistry());
+    }
+
+    public SlaveDownloader(final HttpClientRegistry httpClientRegistry) {
+        this(httpClientRegistry, null);
+    }
+
+    public SlaveDownloader(final HttpClientRegistry httpClientRegistry, final PartialDownloadStore partialDownloadStore) {
+        this.httpClientRegistry = httpClientRegistry;
+        this.partialDownloadStore = partialDownloadStore;
+    }
+
     public HttpRetrieveResponse downloadAndStoreInHttpRetrieveResponse(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task) {
+        final AtomicReference<MediaHeaderLocator> retrievedHeader = new AtomicReference<>();
+        // The header & the trailer are put in place in the file on disk
+        final boolean headerOnly = httpClientRegistry.getMediaHeaderRetrievalConfig().getEnabled() &&
+                httpRetrieveResponse instanceof HttpRetrieveResponseDiskStorage;
+        download(httpRetrieveResponse, task, headerOnly, retrievedHeader);
+
+        if (retrievedHeader.get() != null && !completeHeaderRetrieval(httpRetrieveResponse, task, retrievedHeader.get())) {
+            // The end of the file could not be retrieved on its own, so the whole file is downloaded after all.
+            retrievedHeader.set(null);
+            try {
+                httpRetrieveResponse.init();
+            } catch (IOException e) {
+                cleanup(httpRetrieveResponse, task, e);
+                return httpRetrieveResponse;
+            }
+            download(httpRetrieveResponse, task, false, retrievedHeader);
+        }
+        return httpRetrieveResponse;
+    }
+
+    /**
+     * @param headerOnly      whether only the container header of an audio or video file can be retrieved
+     * @param retrievedHeader where the header locator is put when only the header was retrieved
+     */
+    private HttpRetrieveResponse download(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task,
+                                          final boolean headerOnly, final AtomicReference<MediaHeaderLocator> retrievedHeader) {
 
         if ((task.getDocumentReferenceTask().getTaskType() != DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD) &&
                 (task.getDocumentReferenceTask().getTaskType() != DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD)) {
@@ -48,34 +108,55 @@ public class SlaveDownloader {
             return httpRetrieveResponse;
         }
 
-        final AsyncHttpClient asyncHttpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
-                .setMaxRedirects(task.getLimits().getRetrievalMaxNrOfRedirects())
-                .setFollowRedirect(true)
-                .setConnectTimeout(100000)
-                .setAcceptAnyCertificate(true)
-                .setMaxRequestRetry(3)
-                .build());
+        /* Don't waste a connection timeout (& the IP slot held meanwhile) on a host that is known to be down */
+        final HostLatencyTracker hostLatencyTracker = httpClientRegistry.getHostLatencyTracker();
+        final String host = HostLatencyTracker.hostOf(task.getUrl());
+        if (hostLatencyTracker.isDown(host)) {
+            httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
+            httpRetrieveResponse.setLog("The download was skipped, as the host did not answer the last connection attempts");
+            return httpRetrieveResponse;
+        }
+        final long connectTimeoutInMillis = hostLatencyTracker.connectTimeoutInMillis(host, task.getLimits().getRetrievalConnectionTimeoutInMillis());
+        final AtomicBoolean statusReceived = new AtomicBoolean(false);
+        final AtomicBoolean connectTimedOut = new AtomicBoolean(false);
+
         httpRetrieveResponse.setState(RetrievingState.PROCESSING);
 
+        final PartialDownload partialDownload = (partialDownloadStore != null) ? partialDownloadStore.find(task.getUrl()) : null;
+
         final long connectionSetupStartTimestamp = System.currentTimeMillis();
 
-        final ListenableFuture<Integer> downloadListener = asyncHttpClient.prepareGet(task.getUrl()).execute(new AsyncHandler<Integer>() {
+        final ListenableFuture<Integer> downloadListener = prepareRequest(task, partialDownload).execute(new AsyncHandler<Integer>() {
             final TimeWindowCounter timeWindowCounter = new TimeWindowCounter();
 
+            /* The first bytes of the content, inspected to abort early the content that can't be processed */
+            final byte[] sniffedBytes = new byte[ContentSniffer.SNIFF_SIZE_IN_BYTES];
+            int sniffedLength = 0;
+            boolean sniffing = false;
+            String contentTypeHeader = null;
+
+            /* Follows the content of an audio or video file to stop the download after its header, null when the whole file is downloaded */
+            MediaHeaderLocator headerLocator = null;
+            boolean acceptsRanges = false;
+
             @Override
             public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
 
                 final long connectionSetupDurationInMillis = System.currentTimeMillis() - connectionSetupStartTimestamp;
+                statusReceived.set(true);
+                hostLatencyTracker.recordResponse(host, connectionSetupDurationInMillis);
                 httpRetrieveResponse.setSocketConnectToDownloadStartDurationInMilliSecs(connectionSetupDurationInMillis);
                 httpRetrieveResponse.setCheckingDurationInMilliSecs(connectionSetupDurationInMillis);
 
                 httpRetrieveResponse.setUrl(new URL(task.getUrl()));
-                httpRetrieveResponse.setSourceIp(Slave.URL_RESOLVER.resolveIpOfUrl(task.getUrl()));
+                // Never block the I/O thread on DNS, the IP known when the job was created will do otherwise.
+                final String sourceIp = Slave.URL_RESOLVER.resolveIpOfUrlIfCached(task.getUrl());
+                httpRetrieveResponse.setSourceIp(sourceIp != null ? sourceIp : task.getIpAddress());
 
-                if (connectionSetupDurationInMillis > task.getLimits().getRetrievalConnectionTimeoutInMillis()) {
+                if (connectionSetupDurationInMillis > connectTimeoutInMillis) {
                     /* Initial connection setup time longer than threshold. */
                     httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
-                    httpRetrieveResponse.setLog("The download was aborted, as it took too long to initiate the connection (" + connectionSetupDurationInMillis + "ms, larger than " + task.getLimits().getRetrievalConnectionTimeoutInMillis() + "ms)");
+                    httpRetrieveResponse.setLog("The download was aborted, as it took too long to initiate the connection (" + connectionSetupDurationInMillis + "ms, larger than " + connectTimeoutInMillis + "ms)");
                     return STATE.ABORT;
                 }
 
@@ -103,6 +184,36 @@ public class SlaveDownloader {
                     }
                 }
 
+                /** Conditional download and the server confirms that the content did not change */
+                if (task.getDocumentReferenceTask().getTaskType() == DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD &&
+                        httpRetrieveResponse.getHttpResponseCode() == 304) {
+                    // A 304 carries only some of the headers, the rest are kept from the previous download.
+                    if (task.getHeaders() != null) {
+                        for (final Map.Entry<String, String> previousHeader : task.getHeaders().entrySet()) {
+                            if (!downloadResponseHeaders.getHeaders().containsKey(previousHeader.getKey())) {
+                                httpRetrieveResponse.addHeader(previousHeader.getKey(), previousHeader.getValue());
+                            }
+                        }
+                    }
+                    // There is no body, so the connection is not aborted and can go back in the pool.
+                    httpRetrieveResponse.setState(RetrievingState.COMPLETED);
+                    httpRetrieveResponse.setLog("Same file already downloaded before, skipping download (not modified)");
+                    return STATE.CONTINUE;
+                }
+
+                /** A resumed download continues only if the server sends the rest of the same content */
+                final boolean resumed = (partialDownload != null) && httpRetrieveResponse.getHttpResponseCode() == 206 &&
+                        partialDownload.getSizeInBytes().equals(parseContentRangeStart(downloadResponseHeaders.getHeaders().getFirstValue("Content-Range")));
+                if (partialDownload != null && !resumed) {
+                    // The content changed, the server ignored the range or can't serve it => start over next time.
+                    partialDownloadStore.remove(task.getUrl());
+                    if (httpRetrieveResponse.getHttpResponseCode() == 206) {
+                        httpRetrieveResponse.setState(RetrievingState.ERROR);
+                        httpRetrieveResponse.setLog("The download was aborted, as the server did not resume it from the expected position (" + partialDownload.getSizeInBytes() + " bytes)");
+                        return STATE.ABORT;
+                    }
+                }
+
                 /** We terminate the connection in case of HTTP error only after we collect the response headers */
                 if (httpRetrieveResponse.getHttpResponseCode() >= 400) {
                     httpRetrieveResponse.setState(RetrievingState.ERROR);
@@ -110,9 +221,9 @@ public class SlaveDownloader {
                     return STATE.ABORT;
                 }
 
-                /** Abort when conditional download and headers match */
-                if (task.getDocumentReferenceTask().getTaskType() == DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD) {
-                    final String existingContentLength = fetchContentLengthHeader(task.getHeaders());
+                /** Abort when conditional download and headers match (for the servers that ignore the validators) */
+                if (task.getDocumentReferenceTask().getTaskType() == DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD && partialDownload == null) {
+                    final String existingContentLength = fetchHeader(task.getHeaders(), "Content-Length");
                     final String downloadContentLength = downloadResponseHeaders.getHeaders().getFirstValue("Content-Length"); //case insensitive map
 
                     if (existingContentLength != null && downloadContentLength != null &&
@@ -124,6 +235,43 @@ public class SlaveDownloader {
                     }
                 }
 
+                final Long announcedContentLength = parseContentLength(downloadResponseHeaders.getHeaders().getFirstValue("Content-Length"));
+                final Long expectedContentSizeInBytes = (announcedContentLength == null) ? null :
+                        (resumed ? partialDownload.getSizeInBytes() + announcedContentLength : announcedContentLength);
+
+                /** Abort when the announced content is larger than the size limit */
+                final long sizeLimitInBytes = task.getLimits().getRetrievalTerminationThresholdSizeLimitInBytes();
+                if (sizeLimitInBytes > 0 && expectedContentSizeInBytes != null && expectedContentSizeInBytes > sizeLimitInBytes) {
+                    httpRetrieveResponse.setState(RetrievingState.FINISHED_SIZE_LIMIT);
+                    httpRetrieveResponse.setLog("The download was aborted, as the file is too large (" + expectedContentSizeInBytes + " bytes larger than " + sizeLimitInBytes + " bytes)");
+                    return STATE.ABORT;
+                }
+
+                /** Let the storage set the length of the file upfront */
+                if (expectedContentSizeInBytes != null) {
+                    httpRetrieveResponse.expectContentSizeInBytes(expectedContentSizeInBytes);
+                }
+
+                /** The content retrieved by the previous attempts goes first (and was already sniffed) */
+                if (resumed) {
+                    appendPartialDownload(httpRetrieveResponse, partialDownload);
+                }
+
+                /** Inspect the beginning of the content only when there is some processing to do on it */
+                contentTypeHeader = downloadResponseHeaders.getHeaders().getFirstValue("Content-Type");
+                sniffing = !resumed && task.getDocumentReferenceTask().getProcessingTasks() != null &&
+                        !task.getDocumentReferenceTask().getProcessingTasks().isEmpty();
+
+                /** Only the header of a large audio or video file is needed to extract its meta info */
+                final long headerSizeInBytes = httpClientRegistry.getMediaHeaderRetrievalConfig().getHeaderSizeInBytes();
+                if (headerOnly && sniffing && httpRetrieveResponse.getHttpResponseCode() == 200 &&
+                        expectedContentSizeInBytes != null && expectedContentSizeInBytes > headerSizeInBytes) {
+                    headerLocator = new MediaHeaderLocator(expectedContentSizeInBytes, headerSizeInBytes);
+                    // The trailer is asked for only when the server says it serves ranges
+                    final String acceptRanges = downloadResponseHeaders.getHeaders().getFirstValue("Accept-Ranges");
+                    acceptsRanges = acceptRanges != null && "bytes".equalsIgnoreCase(acceptRanges.trim());
+                }
+
                 timeWindowCounter.start();
 
                 return STATE.CONTINUE;
@@ -150,8 +298,44 @@ public class SlaveDownloader {
                     return STATE.ABORT;
                 }
 
+                final long sizeLimitInBytes = task.getLimits().getRetrievalTerminationThresholdSizeLimitInBytes();
+                if (sizeLimitInBytes > 0 && httpRetrieveResponse.getContentSizeInBytes() + bodyPart.length() > sizeLimitInBytes) {
+                    /* Content larger than threshold (ie. no or wrong Content-Length header). */
+                    httpRetrieveResponse.setState(RetrievingState.FINISHED_SIZE_LIMIT);
+                    httpRetrieveResponse.setLog("The download was aborted, as the file is too large (more than " + sizeLimitInBytes + " bytes)");
+                    return STATE.ABORT;
+                }
+
+                if (sniffing) {
+                    final int sniffedNow = Math.min(bodyPart.length(), sniffedBytes.length - sniffedLength);
+                    bodyPart.getBodyByteBuffer().duplicate().get(sniffedBytes, sniffedLength, sniffedNow);
+                    sniffedLength += sniffedNow;
+                    if (sniffedLength == sniffedBytes.length) {
+                        sniffing = false;
+                        if (isUnwantedContent(httpRetrieveResponse, task, contentTypeHeader, sniffedBytes, sniffedLength)) {
+                            return STATE.ABORT;
+                        }
+                    }
+                }
+
+                if (headerLocator != null) {
+                    headerLocator.consume(bodyPart.getBodyByteBuffer());
+                }
+
                 timeWindowCounter.incrementCount(bodyPart.length());
-                httpRetrieveResponse.addContent(bodyPart.getBodyPartBytes());
+                httpRetrieveResponse.addContent(bodyPart.getBodyByteBuffer());
+
+                if (headerLocator != null) {
+                    if (headerLocator.isUnsupported() || (headerLocator.getTrailerStart() != -1 && !canRetrieveTrailer(headerLocator, acceptsRanges))) {
+                        headerLocator = null;
+                    } else if (headerLocator.getTrailerStart() != -1 ||
+                            (headerLocator.getHeaderEnd() != -1 && httpRetrieveResponse.getContentSizeInBytes() >= headerLocator.getHeaderEnd())) {
+                        retrievedHeader.set(headerLocator);
+                        httpRetrieveResponse.setState(RetrievingState.COMPLETED);
+                        httpRetrieveResponse.setLog("Only the header of the media file was retrieved (" + httpRetrieveResponse.getContentSizeInBytes() + " of " + headerLocator.getContentLength() + " bytes)");
+                        return STATE.ABORT;
+                    }
+                }
                 return STATE.CONTINUE;
 
             }
@@ -159,6 +343,12 @@ public class SlaveDownloader {
             @Override
             public Integer onCompleted() throws Exception {
 
+                // A content shorter than the sniffing window is inspected only now, to skip its processing if useless.
+                if (sniffing && sniffedLength > 0 && httpRetrieveResponse.getState() == RetrievingState.PROCESSING) {
+                    sniffing = false;
+                    isUnwantedContent(httpRetrieveResponse, task, contentTypeHeader, sniffedBytes, sniffedLength);
+                }
+
                 // Mark it as completed only when the previous state was processing. Otherwise it finished with a non-error state that must be kept.
                 if (httpRetrieveResponse.getState() == RetrievingState.PROCESSING)
                     httpRetrieveResponse.setState(RetrievingState.COMPLETED);
@@ -169,25 +359,32 @@ public class SlaveDownloader {
                     LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
                             "Failed to close the download response. This might be a bug in harvester slave code.", e1);
                 }
+
+                // The content over the size limit or that can't be processed is never used, so it does not stay on disk.
+                if (httpRetrieveResponse.getState() == RetrievingState.FINISHED_SIZE_LIMIT ||
+                        httpRetrieveResponse.getState() == RetrievingState.FINISHED_UNWANTED_CONTENT) {
+                    removeIncompleteDownload(httpRetrieveResponse, task);
+                } else if (httpRetrieveResponse.getState() == RetrievingState.COMPLETED && partialDownload != null) {
+                    partialDownloadStore.remove(task.getUrl());
+                } else {
+                    keepPartialDownload(httpRetrieveResponse, task, partialDownload);
+                }
                 return 0;
             }
 
             @Override
             public void onThrowable(Throwable e) {
 
-                // Remove the possibly incomplete file stored on disk
-                try {
-                    final File retrievalFileStorage = Paths.get(httpRetrieveResponse.getAbsolutePath()).toFile();
-                    if (retrievalFileStorage.exists()) {
-                        retrievalFileStorage.delete();
-                    }
-                } catch (Exception e1) {
-                    LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
-                            "Cleaning of the incomplete download result file failed in an unexpected way. This might be a bug in harvester slave code.", e1);
-                }
-
                 httpRetrieveResponse.setState(RetrievingState.ERROR);
 
+                if (!statusReceived.get()) {
+                    hostLatencyTracker.recordConnectFailure(host);
+                }
+                if (connectTimedOut.get()) {
+                    httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
+                    httpRetrieveResponse.setLog("The download was aborted, as it took too long to initiate the connection (longer than " + connectTimeoutInMillis + "ms)");
+                }
+
                 // Check if the tim threshold limit was exceeded & save that information.
                 final long downloadDurationInMillis = System.currentTimeMillis() - connectionSetupStartTimestamp;
                 if (downloadDurationInMillis > task.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis()) {
@@ -196,42 +393,292 @@ public class SlaveDownloader {
                     httpRetrieveResponse.setLog("The download was aborted, as it took too long to download this file (" + downloadDurationInMillis + "ms longer than " + task.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis() + " ms)");
                 }
 
+                // Keep the content retrieved so far if the download can be resumed, otherwise remove the possibly incomplete file stored on disk
+                if (!keepPartialDownload(httpRetrieveResponse, task, partialDownload)) {
+                    removeIncompleteDownload(httpRetrieveResponse, task);
+                }
+
                 // Check if it was aborted because of conditional download with with same headers.
                 if (httpRetrieveResponse.getState() == RetrievingState.COMPLETED && task.getDocumentReferenceTask().getTaskType() == DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD) {
                     // We don't set any exception as the download was aborted for a legitimate reason.
-                    cleanup(httpRetrieveResponse, task, asyncHttpClient, httpRetrieveResponse.getException());
+                    cleanup(httpRetrieveResponse, task, httpRetrieveResponse.getException());
                 } else {
                     // We set the exception as the download was aborted because of a problem.
-                    cleanup(httpRetrieveResponse, task, asyncHttpClient, e);
+                    cleanup(httpRetrieveResponse, task, e);
                 }
             }
         });
 
+        /* The http client connect timeout is the same for all hosts, the one of this host is enforced here (if adaptive) */
+        final ScheduledFuture<?> connectTimeout = hostLatencyTracker.scheduleConnectTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (!statusReceived.get()) {
+                    connectTimedOut.set(true);
+                    downloadListener.abort(new TimeoutException("No answer from " + host + " after " + connectTimeoutInMillis + "ms"));
+                }
+            }
+        }, connectTimeoutInMillis);
+
         try {
             Integer r = downloadListener.get(1, TimeUnit.DAYS /* This timeout should never be reached. There are other timeouts used internally that will expire much quicker. */);
             LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
                     "Download finished with status {}", r);
 
         } catch (Exception e) {
-            cleanup(httpRetrieveResponse, task, asyncHttpClient, e);
+            cleanup(httpRetrieveResponse, task, e);
 
         } finally {
-            cleanup(httpRetrieveResponse, task, asyncHttpClient, httpRetrieveResponse.getException());
-            asyncHttpClient.close();
+            if (connectTimeout != null) connectTimeout.cancel(false);
+            cleanup(httpRetrieveResponse, task, httpRetrieveResponse.getException());
             return httpRetrieveResponse;
         }
     }
 
-    private String fetchContentLengthHeader(Map<String, String> headers) {
+    /**
+     * Prepares the request. A conditional download sends the validators received with the previous download
+     * (ETag & Last-Modified) so that the server can answer with a 304 instead of the content when nothing changed.
+     * A resumed download asks only for the content that is missing, if the content did not change meanwhile.
+     */
+    private AsyncHttpClient.BoundRequestBuilder prepareRequest(final RetrieveUrl task, final PartialDownload partialDownload) {
+        final AsyncHttpClient.BoundRequestBuilder requestBuilder = httpClientRegistry.prepareGet(task);
+
+        if (partialDownload != null) {
+            // The previous download did not finish, so a "not modified" answer would be useless.
+            requestBuilder.addHeader("Range", "bytes=" + partialDownload.getSizeInBytes() + "-");
+            requestBuilder.addHeader("If-Range", partialDownload.getIfRangeValidator());
+            return requestBuilder;
+        }
+
+        if (task.getDocumentReferenceTask().getTaskType() == DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD && task.getHeaders() != null) {
+            final String eTag = fetchHeader(task.getHeaders(), "ETag");
+            if (eTag != null && !eTag.trim().isEmpty()) {
+                requestBuilder.addHeader("If-None-Match", eTag.trim());
+            }
+            final String lastModified = fetchHeader(task.getHeaders(), "Last-Modified");
+            if (lastModified != null && !lastModified.trim().isEmpty()) {
+                requestBuilder.addHeader("If-Modified-Since", lastModified.trim());
+            }
+        }
+        return requestBuilder;
+    }
+
+    private boolean canRetrieveTrailer(final MediaHeaderLocator headerLocator, final boolean acceptsRanges) {
+        return acceptsRanges && headerLocator.getContentLength() - headerLocator.getTrailerStart() <=
+                httpClientRegistry.getMediaHeaderRetrievalConfig().getMaxTrailerSizeInBytes();
+    }
+
+    /**
+     * Completes the file of which only the header was retrieved : the trailer is retrieved with a range request when
+     * the index of the file is at its end & the file is given back its size. The content that was not retrieved is
+     * a hole in the file, it takes no space on disk and reads as zeros. The response is marked as header only, its
+     * size is not the one of the retrieved bytes.
+     *
+     * @return false if the trailer could not be retrieved
+     */
+    private boolean completeHeaderRetrieval(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task,
+                                            final MediaHeaderLocator headerLocator) {
+        try (final RandomAccessFile file = new RandomAccessFile(httpRetrieveResponse.getAbsolutePath(), "rw")) {
+            if (headerLocator.getTrailerStart() != -1 && !retrieveTrailer(httpRetrieveResponse, task, headerLocator, file.getChannel())) {
+                return false;
+            }
+            file.setLength(headerLocator.getContentLength());
+            httpRetrieveResponse.markHeaderOnly(headerLocator.getContentLength());
+            return true;
+        } catch (Exception e) {
+            LOG.warn(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
+                    "Failed to complete the header of the media file, the whole file is downloaded", e);
+            return false;
+        }
+    }
+
+    /**
+     * Streams the content from the trailer start to the end of the file in place in the file. The request is aborted
+     * as soon as the server sends anything else (ie. the whole file when it ignores the range or the validator
+     * doesn't match) or more than the trailer, and when the time limit of the task is reached.
+     *
+     * @return false if the server did not send exactly the trailer
+     */
+    private boolean retrieveTrailer(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task,
+                                    final MediaHeaderLocator headerLocator, final FileChannel file) throws Exception {
+        final long trailerStart = headerLocator.getTrailerStart();
+        final long trailerSizeInBytes = headerLocator.getContentLength() - trailerStart;
+        if (trailerSizeInBytes > httpClientRegistry.getMediaHeaderRetrievalConfig().getMaxTrailerSizeInBytes()) {
+            return false;
+        }
+        final long remainingTimeInMillis = task.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis() -
+                httpRetrieveResponse.getRetrievalDurationInMilliSecs();
+        if (remainingTimeInMillis <= 0) {
+            return false;
+        }
+
+        final AsyncHttpClient.BoundRequestBuilder requestBuilder = httpClientRegistry.prepareGet(task);
+        requestBuilder.addHeader("Range", "bytes=" + trailerStart + "-");
+        // The trailer must come from the same content as the header
+        final String eTag = httpRetrieveResponse.getETag();
+        final String lastModified = httpRetrieveResponse.getLastModified();
+        if (eTag != null && !eTag.trim().startsWith("W/")) {
+            requestBuilder.addHeader("If-Range", eTag.trim());
+        } else if (lastModified != null) {
+            requestBuilder.addHeader("If-Range", lastModified.trim());
+        }
+
+        final ListenableFuture<Boolean> trailerListener = requestBuilder.execute(new AsyncHandler<Boolean>() {
+            long trailerSizeRetrieved = 0;
+            boolean valid = true;
+
+            @Override
+            public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
+                valid = status.getStatusCode() == 206;
+                return valid ? STATE.CONTINUE : STATE.ABORT;
+            }
+
+            @Override
+            public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+                valid = Long.valueOf(trailerStart).equals(parseContentRangeStart(headers.getHeaders().getFirstValue("Content-Range")));
+                return valid ? STATE.CONTINUE : STATE.ABORT;
+            }
+
+            @Override
+            public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+                if (trailerSizeRetrieved + bodyPart.length() > trailerSizeInBytes) {
+                    valid = false;
+                    return STATE.ABORT;
+                }
+                final ByteBuffer content = bodyPart.getBodyByteBuffer();
+                while (content.hasRemaining()) {
+                    trailerSizeRetrieved += file.write(content, trailerStart + trailerSizeRetrieved);
+                }
+                return STATE.CONTINUE;
+            }
+
+            @Override
+            public Boolean onCompleted() throws Exception {
+                return valid && trailerSizeRetrieved == trailerSizeInBytes;
+            }
+
+            @Override
+            public void onThrowable(Throwable e) {
+                valid = false;
+            }
+        });
+
+        try {
+            return Boolean.TRUE.equals(trailerListener.get(remainingTimeInMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            trailerListener.abort(e);
+            return false;
+        }
+    }
+
+    private Long parseContentLength(final String contentLength) {
+        if (contentLength == null) return null;
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            // The header is just a hint, it's OK to ignore it when it's not valid.
+            return null;
+        }
+    }
+
+    /**
+     * @return the first byte position of a "bytes first-last/total" Content-Range header or null if not valid
+     */
+    private Long parseContentRangeStart(final String contentRange) {
+        if (contentRange == null) return null;
+        final String value = contentRange.trim();
+        if (!value.startsWith("bytes")) return null;
+        final int dash = value.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            return Long.parseLong(value.substring("bytes".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void appendPartialDownload(final HttpRetrieveResponse httpRetrieveResponse, final PartialDownload partialDownload) throws Exception {
+        try (final FileChannel channel = FileChannel.open(Paths.get(partialDownload.getAbsolutePath()), StandardOpenOption.READ)) {
+            httpRetrieveResponse.addContent(channel);
+        }
+    }
+
+    /**
+     * Moves the content retrieved so far to the partial download store when the download was stopped by the time
+     * or rate limits and can be resumed later.
+     *
+     * @return true if the content was kept
+     */
+    private boolean keepPartialDownload(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task,
+                                        final PartialDownload previousPartialDownload) {
+        if (partialDownloadStore == null || httpRetrieveResponse.getContentSizeInBytes() == 0 ||
+                (httpRetrieveResponse.getState() != RetrievingState.FINISHED_TIME_LIMIT &&
+                        httpRetrieveResponse.getState() != RetrievingState.FINISHED_RATE_LIMIT)) {
+            return false;
+        }
+
+        try {
+            httpRetrieveResponse.close();
+        } catch (IOException e) {
+            return false;
+        }
+
+        // A 206 might not repeat the validators, those of the previous attempt are still valid then.
+        String eTag = httpRetrieveResponse.getETag();
+        String lastModified = httpRetrieveResponse.getLastModified();
+        if (previousPartialDownload != null && eTag == null && lastModified == null) {
+            eTag = previousPartialDownload.getETag();
+            lastModified = previousPartialDownload.getLastModified();
+        }
+
+        final boolean kept = partialDownloadStore.keep(task.getUrl(), httpRetrieveResponse.getAbsolutePath(), eTag, lastModified);
+        if (kept) {
+            LOG.debug(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
+                    "Kept {} bytes of the aborted download to be resumed", httpRetrieveResponse.getContentSizeInBytes());
+        }
+        return kept;
+    }
+
+    /**
+     * Sniffs the beginning of the content & marks the download as unwanted when none of the processing sub tasks
+     * of the task can be executed on it (ie. the url points to an HTML landing page instead of the media file).
+     *
+     * @return true if the content is unwanted
+     */
+    private boolean isUnwantedContent(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task,
+                                      final String contentTypeHeader, final byte[] firstBytes, final int length) {
+        final ContentType contentType = ContentSniffer.sniff(contentTypeHeader, firstBytes, length);
+        if (ContentSniffer.canProduceAnySubTask(contentType, task.getDocumentReferenceTask().getProcessingTasks())) {
+            return false;
+        }
+        httpRetrieveResponse.setState(RetrievingState.FINISHED_UNWANTED_CONTENT);
+        httpRetrieveResponse.setLog("The download was aborted, as none of the processing tasks can be executed on the content (Content-Type " + contentTypeHeader + ", detected " + contentType + ")");
+        return true;
+    }
+
+    private void removeIncompleteDownload(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task) {
+        try {
+            final File retrievalFileStorage = Paths.get(httpRetrieveResponse.getAbsolutePath()).toFile();
+            if (retrievalFileStorage.exists()) {
+                retrievalFileStorage.delete();
+            }
+        } catch (Exception e1) {
+            LOG.error(LoggingComponent.appendAppFields(LoggingComponent.Slave.SLAVE_RETRIEVAL, task.getJobId(), task.getUrl(), task.getReferenceOwner()),
+                    "Cleaning of the incomplete download result file failed in an unexpected way. This might be a bug in harvester slave code.", e1);
+        }
+    }
+
+    private String fetchHeader(final Map<String, String> headers, final String name) {
+        if (headers == null) return null;
         for (final Map.Entry<String, String> entry : headers.entrySet()) {
-            if ("Content-Length".equalsIgnoreCase(entry.getKey())) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
                 return entry.getValue();
             }
         }
         return null;
     }
 
-    private void cleanup(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task, final AsyncHttpClient asyncHttpClient, final Throwable e) {
+    private void cleanup(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task, final Throwable e) {
         try {
             if (httpRetrieveResponse != null) {
                 httpRetrieveResponse.setException(e);
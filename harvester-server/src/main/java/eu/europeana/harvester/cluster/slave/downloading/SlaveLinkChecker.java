@@ -13,7 +13,10 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static net.logstash.logback.marker.Markers.append;
 
@@ -21,6 +24,18 @@ public class SlaveLinkChecker {
 
     private org.slf4j.Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
 
+    /**
+     * The node wide http clients. They are shared between tasks and must never be closed by the link checker.
+     */
+    private final HttpClientRegistry httpClientRegistry;
+
+    public SlaveLinkChecker() {
+        this(HttpClientRegistry.defaultRegistry());
+    }
+
+    public SlaveLinkChecker(final HttpClientRegistry httpClientRegistry) {
+        this.httpClientRegistry = httpClientRegistry;
+    }
 
 
     public void downloadAndStoreInHttpRetrievResponse(final HttpRetrieveResponse httpRetrieveResponse, final RetrieveUrl task) {
@@ -31,35 +46,44 @@ public class SlaveLinkChecker {
 
         httpRetrieveResponse.setState(RetrievingState.ERROR);
 
-        final AsyncHttpClient asyncHttpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
-                .setMaxRedirects(task.getLimits().getRetrievalMaxNrOfRedirects())
-                .setFollowRedirect(true)
-                .setConnectTimeout(100000)
-                .setAcceptAnyCertificate(true)
-                .setMaxRequestRetry(3)
-                .build());
 
+        /* Don't waste a connection timeout (& the IP slot held meanwhile) on a host that is known to be down */
+        final HostLatencyTracker hostLatencyTracker = httpClientRegistry.getHostLatencyTracker();
+        final String host = HostLatencyTracker.hostOf(task.getUrl());
+        if (hostLatencyTracker.isDown(host)) {
+            httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
+            httpRetrieveResponse.setLog("The link could not be verified, as the host did not answer the last connection attempts");
+            cleanup(httpRetrieveResponse, null);
+            return;
+        }
+        final long connectTimeoutInMillis = hostLatencyTracker.connectTimeoutInMillis(host, task.getLimits().getRetrievalConnectionTimeoutInMillis());
+        final AtomicBoolean statusReceived = new AtomicBoolean(false);
+        final AtomicBoolean connectTimedOut = new AtomicBoolean(false);
 
         httpRetrieveResponse.setState(RetrievingState.PROCESSING);
         httpRetrieveResponse.setRetrievalDurationInMilliSecs(0l);
         final long connectionSetupStartTimestamp = System.currentTimeMillis();
 
-        final ListenableFuture<Integer> downloadListener = asyncHttpClient.prepareGet(task.getUrl()).execute(new AsyncHandler<Integer>() {
+        final ListenableFuture<Integer> downloadListener = httpClientRegistry.prepareGet(task).execute(new AsyncHandler<Integer>() {
 
             @Override
             public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
 
                 final long connectionSetupDurationInMillis = System.currentTimeMillis() - connectionSetupStartTimestamp;
+                statusReceived.set(true);
+                hostLatencyTracker.recordResponse(host, connectionSetupDurationInMillis);
                 httpRetrieveResponse.setSocketConnectToDownloadStartDurationInMilliSecs(connectionSetupDurationInMillis);
                 httpRetrieveResponse.setCheckingDurationInMilliSecs(connectionSetupDurationInMillis);
 
                 httpRetrieveResponse.setUrl(new URL(task.getUrl()));
-                httpRetrieveResponse.setSourceIp(Slave.URL_RESOLVER.resolveIpOfUrl(task.getUrl()));
+                // Never block the I/O thread on DNS, the IP known when the job was created will do otherwise.
+                final String sourceIp = Slave.URL_RESOLVER.resolveIpOfUrlIfCached(task.getUrl());
+                httpRetrieveResponse.setSourceIp(sourceIp != null ? sourceIp : task.getIpAddress());
 
-                if (connectionSetupDurationInMillis > task.getLimits().getRetrievalConnectionTimeoutInMillis()) {
+                if (connectionSetupDurationInMillis > connectTimeoutInMillis) {
                     /* Initial connection setup time longer than threshold. */
                     httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
-                    httpRetrieveResponse.setLog("The link could not be verified, as the time to initiate the connection took too long (" + connectionSetupDurationInMillis + " ms longer than " + task.getLimits().getRetrievalConnectionTimeoutInMillis() + " ms)");
+                    httpRetrieveResponse.setLog("The link could not be verified, as the time to initiate the connection took too long (" + connectionSetupDurationInMillis + " ms longer than " + connectTimeoutInMillis + " ms)");
                     return STATE.ABORT;
                 }
 
@@ -104,7 +128,7 @@ public class SlaveLinkChecker {
 
             @Override
             public Integer onCompleted() throws Exception {
-                cleanup(httpRetrieveResponse, asyncHttpClient, httpRetrieveResponse.getException());
+                cleanup(httpRetrieveResponse, httpRetrieveResponse.getException());
                 return 0;
             }
 
@@ -112,6 +136,14 @@ public class SlaveLinkChecker {
             @Override
             public void onThrowable(Throwable e) {
 
+                if (!statusReceived.get()) {
+                    hostLatencyTracker.recordConnectFailure(host);
+                }
+                if (connectTimedOut.get()) {
+                    httpRetrieveResponse.setState(RetrievingState.FINISHED_TIME_LIMIT);
+                    httpRetrieveResponse.setLog("The link could not be verified, as the time to initiate the connection took too long (longer than " + connectTimeoutInMillis + " ms)");
+                }
+
                 // Check if the tim threshold limit was exceeded & save that information.
                 final long downloadDurationInMillis = System.currentTimeMillis() - connectionSetupStartTimestamp;
                 if (downloadDurationInMillis > task.getLimits().getRetrievalTerminationThresholdTimeLimitInMillis()) {
@@ -123,11 +155,11 @@ public class SlaveLinkChecker {
                 // Check if it was aborted because of conditional download with with same headers.
                 if (httpRetrieveResponse.getState() == RetrievingState.COMPLETED) {
                     // We don't set any exception as the download was aborted for a legitimate reason.
-                    cleanup(httpRetrieveResponse, asyncHttpClient, httpRetrieveResponse.getException());
+                    cleanup(httpRetrieveResponse, httpRetrieveResponse.getException());
                 }
                 else {
                     // We set the exception as the download was aborted because of a problem.
-                    cleanup(httpRetrieveResponse, asyncHttpClient, e);
+                    cleanup(httpRetrieveResponse, e);
                 }
             }
 
@@ -137,27 +169,36 @@ public class SlaveLinkChecker {
             }
         });
 
+        /* The http client connect timeout is the same for all hosts, the one of this host is enforced here (if adaptive) */
+        final ScheduledFuture<?> connectTimeout = hostLatencyTracker.scheduleConnectTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (!statusReceived.get()) {
+                    connectTimedOut.set(true);
+                    downloadListener.abort(new TimeoutException("No answer from " + host + " after " + connectTimeoutInMillis + " ms"));
+                }
+            }
+        }, connectTimeoutInMillis);
+
         try {
             Integer r = downloadListener.get(1, TimeUnit.DAYS /* This timeout should never be reached. There are other timeouts used internally that will expire much quicker. */);
             LOG.debug(append(LogMarker.EUROPEANA_PROCESSING_JOB_ID, task.getJobId()),"Download finished with status: {}", r);
 
         } catch (Exception e) {
-            cleanup(httpRetrieveResponse, asyncHttpClient, e);
+            cleanup(httpRetrieveResponse, e);
         } finally {
-            cleanup(httpRetrieveResponse, asyncHttpClient, httpRetrieveResponse.getException());
-            asyncHttpClient.close();
+            if (connectTimeout != null) connectTimeout.cancel(false);
+            cleanup(httpRetrieveResponse, httpRetrieveResponse.getException());
         }
     }
 
-    private void cleanup(final HttpRetrieveResponse httpRetrieveResponse, final AsyncHttpClient asyncHttpClient, final Throwable e) {
+    private void cleanup(final HttpRetrieveResponse httpRetrieveResponse, final Throwable e) {
         if (httpRetrieveResponse != null) httpRetrieveResponse.setException(e);
         try {
             if (httpRetrieveResponse != null) httpRetrieveResponse.close();
         } catch (IOException e1) {
             LOG.error("Failed to close the response, caused by : " + e1.getMessage());
         }
-
-        //if (asyncHttpClient != null && !asyncHttpClient.isClosed()) asyncHttpClient.close();
     }
 
 }
@@ -0,0 +1,215 @@
+package eu.europeana.harvester.cluster.slave.limiter;
+
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The connection slots leased by a slave node from the master, at most one lease per IP. The tasks of an IP wait
+ * here until a slot of the lease of the IP is free, the node asks the master for a lease when it has none.
+ *
+ * Each task runs on a slot of the lease, known by its id : when the lease is lost, the free slots & the slots of the
+ * tasks still running are returned to the master one by one, like the slots of single tasks.
+ *
+ * Not thread safe, owned by the node master.
+ */
+public class ConnectionSlotLeases {
+
+    private static class Lease {
+        private final String leaseId;
+        private final int nrOfSlots;
+        private final ArrayDeque<String> freeSlotIds;
+
+        private Lease(final ConnectionSlotLease lease) {
+            this.leaseId = lease.getLeaseId();
+            this.nrOfSlots = lease.getNrOfSlots();
+            this.freeSlotIds = new ArrayDeque<>(lease.getSlotIds());
+        }
+    }
+
+    private final int maxNrOfSlotsPerLease;
+
+    private final Map<String /* IP */, Lease> leases = new HashMap<>();
+
+    /**
+     * The tasks waiting for a slot of a lease, per IP, the one waiting for the longest first.
+     */
+    private final Map<String /* IP */, LinkedHashSet<String> /* Task ids */> waitingTasks = new HashMap<>();
+
+    private final Set<String /* IP */> ipsWithPendingLeaseRequest = new HashSet<>();
+
+    private final Map<String /* Task id */, ReserveConnectionSlotResponse /* The slot of the lease */> tasksOnLease = new HashMap<>();
+
+    public ConnectionSlotLeases(final int maxNrOfSlotsPerLease) {
+        this.maxNrOfSlotsPerLease = Math.max(1, maxNrOfSlotsPerLease);
+    }
+
+    /**
+     * Queues the tasks of the IP until they get a slot of its lease.
+     *
+     * @return the number of slots to ask the master for or 0 if the IP has a lease or one was already asked for
+     */
+    public int addWaitingTasks(final String ip, final List<String> taskIds) {
+        LinkedHashSet<String> ipWaitingTasks = waitingTasks.get(ip);
+        if (ipWaitingTasks == null) {
+            ipWaitingTasks = new LinkedHashSet<>();
+            waitingTasks.put(ip, ipWaitingTasks);
+        }
+        ipWaitingTasks.addAll(taskIds);
+
+        if (leases.containsKey(ip) || ipsWithPendingLeaseRequest.contains(ip)) {
+            return 0;
+        }
+        ipsWithPendingLeaseRequest.add(ip);
+        return Math.min(ipWaitingTasks.size(), maxNrOfSlotsPerLease);
+    }
+
+    /**
+     * @return true if the task waits for a slot of a lease
+     */
+    public boolean isWaiting(final String ip, final String taskId) {
+        final Set<String> ipWaitingTasks = waitingTasks.get(ip);
+        return ipWaitingTasks != null && ipWaitingTasks.contains(taskId);
+    }
+
+    /**
+     * @return true if the task runs on a slot of a lease the node still has
+     */
+    public boolean isOnLease(final String taskId) {
+        return tasksOnLease.containsKey(taskId);
+    }
+
+    public boolean hasLease(final String ip) {
+        return leases.containsKey(ip);
+    }
+
+    /**
+     * Takes the lease granted by the master. The caller must return the lease when the IP already has one.
+     *
+     * @return the slots of the lease given to the tasks that can start
+     */
+    public List<ReserveConnectionSlotResponse> onLeaseGranted(final ConnectionSlotLease lease) {
+        ipsWithPendingLeaseRequest.remove(lease.getIp());
+        leases.put(lease.getIp(), new Lease(lease));
+        return startWaitingTasks(lease.getIp());
+    }
+
+    /**
+     * The master had no free slot for a lease or didn't renew the lease : the IP has no lease anymore. The tasks
+     * running on its slots go on, their slots are now slots of single tasks to return to the master once they're done.
+     *
+     * @return the tasks waiting for a slot of the IP, they have to ask the master for their slot one by one
+     */
+    public List<String> onLeaseLost(final String ip) {
+        ipsWithPendingLeaseRequest.remove(ip);
+        final Lease lease = leases.remove(ip);
+        if (lease != null) {
+            final Iterator<ReserveConnectionSlotResponse> slots = tasksOnLease.values().iterator();
+            while (slots.hasNext()) {
+                if (slots.next().getIp().equals(ip)) slots.remove();
+            }
+        }
+        final LinkedHashSet<String> ipWaitingTasks = waitingTasks.remove(ip);
+        return (ipWaitingTasks == null) ? new ArrayList<String>() : new ArrayList<>(ipWaitingTasks);
+    }
+
+    /**
+     * @return the ids of the slots of the lease of the IP that no task uses, to return to the master when the lease
+     * is lost
+     */
+    public List<String> getFreeSlotIds(final String ip) {
+        final Lease lease = leases.get(ip);
+        return (lease == null) ? new ArrayList<String>() : new ArrayList<>(lease.freeSlotIds);
+    }
+
+    /**
+     * Frees the slot of a task that runs on a lease, see {@link #isOnLease(String)}.
+     *
+     * @return the slots of the lease given to the tasks that can start
+     */
+    public List<ReserveConnectionSlotResponse> onTaskDone(final String ip, final String taskId) {
+        final ReserveConnectionSlotResponse slot = tasksOnLease.remove(taskId);
+        final Lease lease = leases.get(ip);
+        if (slot == null || lease == null) {
+            return new ArrayList<>();
+        }
+        lease.freeSlotIds.add(slot.getSlotId());
+        return startWaitingTasks(ip);
+    }
+
+    /**
+     * Drops the lease of the IP if none of its slots is used & no task waits for one.
+     *
+     * @return the id of the lease to return to the master or null if it's still needed
+     */
+    public String releaseIdleLease(final String ip) {
+        final Lease lease = leases.get(ip);
+        if (lease == null || lease.freeSlotIds.size() < lease.nrOfSlots || waitingTasks.containsKey(ip)) {
+            return null;
+        }
+        leases.remove(ip);
+        return lease.leaseId;
+    }
+
+    /**
+     * @return the id of the lease of each IP, to be renewed
+     */
+    public Map<String /* IP */, String /* Lease id */> getLeaseIds() {
+        final Map<String, String> leaseIds = new HashMap<>();
+        for (final Map.Entry<String, Lease> lease : leases.entrySet()) {
+            leaseIds.put(lease.getKey(), lease.getValue().leaseId);
+        }
+        return leaseIds;
+    }
+
+    /**
+     * @return the IPs whose lease was asked for & not granted yet
+     */
+    public Set<String> getIpsWithPendingLeaseRequest() {
+        return new HashSet<>(ipsWithPendingLeaseRequest);
+    }
+
+    /**
+     * @return the number of slots still asked for the IP
+     */
+    public int getNrOfSlotsToAskFor(final String ip) {
+        final Set<String> ipWaitingTasks = waitingTasks.get(ip);
+        return (ipWaitingTasks == null) ? 0 : Math.min(ipWaitingTasks.size(), maxNrOfSlotsPerLease);
+    }
+
+    /**
+     * Gives the free slots of the lease of the IP to the tasks waiting for the longest.
+     *
+     * @return the slots of the lease given to the tasks that can start
+     */
+    public List<ReserveConnectionSlotResponse> startWaitingTasks(final String ip) {
+        final List<ReserveConnectionSlotResponse> startedTasks = new ArrayList<>();
+        final Lease lease = leases.get(ip);
+        final LinkedHashSet<String> ipWaitingTasks = waitingTasks.get(ip);
+        if (lease == null || ipWaitingTasks == null) {
+            return startedTasks;
+        }
+
+        final Iterator<String> taskIds = ipWaitingTasks.iterator();
+        while (!lease.freeSlotIds.isEmpty() && taskIds.hasNext()) {
+            final String taskId = taskIds.next();
+            taskIds.remove();
+            final ReserveConnectionSlotResponse slot = new ReserveConnectionSlotResponse(ip, taskId, lease.freeSlotIds.poll(), true);
+            tasksOnLease.put(taskId, slot);
+            startedTasks.add(slot);
+        }
+        if (ipWaitingTasks.isEmpty()) {
+            waitingTasks.remove(ip);
+        }
+        return startedTasks;
+    }
+}
@@ -0,0 +1,35 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The pixels of an image decoded by ImageIO, usually with subsampling (see
+ * {@link eu.europeana.harvester.cluster.slave.processing.thumbnail.ThumbnailJavaImageGenerator#decode}), & the size
+ * of the original read from the header of the file.
+ */
+public class DecodedImage {
+
+    private final BufferedImage image;
+
+    private final int originalWidth;
+
+    private final int originalHeight;
+
+    public DecodedImage(final BufferedImage image, final int originalWidth, final int originalHeight) {
+        this.image = image;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    public int getOriginalHeight() {
+        return originalHeight;
+    }
+}
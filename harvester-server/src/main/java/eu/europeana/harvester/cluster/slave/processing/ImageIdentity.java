@@ -0,0 +1,84 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import gr.ntua.image.mediachecker.ImageInfo;
+import org.im4java.core.IM4JavaException;
+import org.im4java.core.IMOperation;
+import org.im4java.core.IdentifyCmd;
+import org.im4java.process.ArrayListOutputConsumer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The format, the size & the color space of an image : what an ImageMagick identify reads from the header of the
+ * file, without decoding the pixels nor remapping them to the colormap like the image info does.
+ */
+public class ImageIdentity {
+
+    /**
+     * One line per property, only the first frame of the animations & the multi page images is identified.
+     */
+    private static final String FORMAT = "%m\n%w\n%h\n%[colorspace]\n";
+
+    private final String fileFormat;
+
+    private final Integer width;
+
+    private final Integer height;
+
+    private final String colorSpace;
+
+    public ImageIdentity(final String fileFormat, final Integer width, final Integer height, final String colorSpace) {
+        this.fileFormat = fileFormat;
+        this.width = width;
+        this.height = height;
+        this.colorSpace = colorSpace;
+    }
+
+    public static ImageIdentity valueOf(final ImageInfo imageInfo) {
+        return new ImageIdentity(imageInfo.getFileFormat(), imageInfo.getWidth(), imageInfo.getHeight(),
+                imageInfo.getColorSpace());
+    }
+
+    /**
+     * Runs "identify -ping" on the image.
+     */
+    public static ImageIdentity identify(final String path) throws IOException, InterruptedException, IM4JavaException {
+        final IMOperation op = new IMOperation();
+        op.ping();
+        op.format(FORMAT);
+        op.addImage(path + "[0]");
+
+        final ArrayListOutputConsumer output = new ArrayListOutputConsumer();
+        final IdentifyCmd identify = new IdentifyCmd();
+        identify.setOutputConsumer(output);
+        identify.run(op);
+
+        final List<String> lines = output.getOutput();
+        if (lines.size() < 4) {
+            throw new IOException("Can't identify the image " + path + " : " + lines);
+        }
+        try {
+            return new ImageIdentity(lines.get(0).trim(), Integer.valueOf(lines.get(1).trim()),
+                    Integer.valueOf(lines.get(2).trim()), lines.get(3).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Can't identify the image " + path + " : " + lines, e);
+        }
+    }
+
+    public String getFileFormat() {
+        return fileFormat;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public String getColorSpace() {
+        return colorSpace;
+    }
+}
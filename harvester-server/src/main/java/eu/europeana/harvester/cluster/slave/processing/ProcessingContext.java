@@ -0,0 +1,212 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.cluster.slave.downloading.ContentSniffer;
+import eu.europeana.harvester.cluster.slave.processing.color.ColorPaletteExtractor;
+import eu.europeana.harvester.cluster.slave.processing.metainfo.MediaMetaDataUtils;
+import eu.europeana.harvester.cluster.slave.processing.thumbnail.ThumbnailJavaImageGenerator;
+import eu.europeana.harvester.domain.ThumbnailType;
+import gr.ntua.image.mediachecker.ImageInfo;
+import gr.ntua.image.mediachecker.MediaChecker;
+import org.im4java.core.IM4JavaException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Everything that is learned about a downloaded file while it is processed. The image info (size, color space &
+ * palette) needs an external ImageMagick run, so does the mime type unless the first bytes of the file tell it.
+ * They are computed the first time they are needed and then shared by the meta info extraction, the color
+ * extraction and all the thumbnails of the file.
+ *
+ * When the JVM palette extraction is enabled and ImageIO can decode the image, the meta info only needs the identity
+ * of the image : the full image info, with its remap to the colormap, is then only computed for the images ImageIO
+ * can't read. Otherwise the palette is taken from the image info, as the reference ImageMagick remap.
+ *
+ * The images that ImageIO can read are decoded only once, at the resolution the largest thumbnail needs : the
+ * width of the original, the sample of the JVM palette & the thumbnails all come from that single decoding.
+ *
+ * A context belongs to a single processing run. Its sub tasks may run at the same time, so every value is computed
+ * only once even when it's asked for by several threads ; every value has its own lock so that waiting for one
+ * doesn't block the others.
+ */
+public class ProcessingContext {
+
+    private final String path;
+
+    private final String colorMapPath;
+
+    /**
+     * The in JVM palette extraction or null if the palette is always taken from the image info.
+     */
+    private final ColorPaletteExtractor paletteExtractor;
+
+    private final Object mimeTypeLock = new Object();
+
+    private final Object imageInfoLock = new Object();
+
+    private final Object imageIdentityLock = new Object();
+
+    private final Object colorPaletteLock = new Object();
+
+    private final Object decodedImageLock = new Object();
+
+    private String mimeType;
+
+    private ContentType contentType;
+
+    private volatile ImageInfo imageInfo;
+
+    private ImageIdentity imageIdentity;
+
+    private String[] colorPalette;
+
+    private boolean imageDecoded;
+
+    private DecodedImage decodedImage;
+
+    public ProcessingContext(final String path, final String colorMapPath) {
+        this(path, colorMapPath, null);
+    }
+
+    public ProcessingContext(final String path, final String colorMapPath, final ColorPaletteExtractor paletteExtractor) {
+        this.path = path;
+        this.colorMapPath = colorMapPath;
+        this.paletteExtractor = paletteExtractor;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getColorMapPath() {
+        return colorMapPath;
+    }
+
+    /**
+     * @return the mime type of the file, detected in the JVM from its first bytes when they have an unambiguous
+     * signature, otherwise by the external detection
+     */
+    public String getMimeType() throws IOException {
+        synchronized (mimeTypeLock) {
+            if (mimeType == null) {
+                mimeType = sniffMimeType();
+            }
+            if (mimeType == null) {
+                mimeType = MediaChecker.getMimeType(path);
+            }
+            return mimeType;
+        }
+    }
+
+    /**
+     * @return the category of the file, {@link ContentType#UNKNOWN} if the mime type can't be detected
+     */
+    public ContentType getContentType() {
+        synchronized (mimeTypeLock) {
+            if (contentType == null) {
+                try {
+                    contentType = MediaMetaDataUtils.classifyMimeType(getMimeType());
+                } catch (IOException e) {
+                    // It's OK to eat the exception here, same as MediaMetaDataUtils.classifyUrl
+                    contentType = ContentType.UNKNOWN;
+                }
+            }
+            return contentType;
+        }
+    }
+
+    /**
+     * @return the info of the image, identified & color mapped only once. A failure is not remembered so the
+     * next call tries again.
+     */
+    public ImageInfo getImageInfo() throws IOException, InterruptedException, IM4JavaException {
+        synchronized (imageInfoLock) {
+            if (imageInfo == null) {
+                imageInfo = MediaChecker.getImageInfo(path, colorMapPath);
+            }
+            return imageInfo;
+        }
+    }
+
+    /**
+     * @return the format, the size & the color space of the image, taken from the image info when it's already
+     * known, otherwise identified without the remap to the colormap
+     */
+    public ImageIdentity getImageIdentity() throws IOException, InterruptedException, IM4JavaException {
+        synchronized (imageIdentityLock) {
+            if (imageIdentity == null) {
+                final ImageInfo knownImageInfo = imageInfo;
+                imageIdentity = (knownImageInfo != null) ? ImageIdentity.valueOf(knownImageInfo) : ImageIdentity.identify(path);
+            }
+            return imageIdentity;
+        }
+    }
+
+    /**
+     * @return the dominant colors of the image, extracted in the JVM when the context has the JVM extraction and
+     * ImageIO can decode it, otherwise taken from the image info
+     */
+    public String[] getColorPalette() throws IOException, InterruptedException, IM4JavaException {
+        synchronized (colorPaletteLock) {
+            if (colorPalette == null && paletteExtractor != null) {
+                final DecodedImage decoded = getDecodedImage();
+                if (decoded != null) {
+                    colorPalette = paletteExtractor.extract(decoded.getImage());
+                }
+            }
+            if (colorPalette == null) {
+                colorPalette = getImageInfo().getPalette();
+            }
+            return colorPalette;
+        }
+    }
+
+    /**
+     * @return the width of the image, taken from its decoding when ImageIO can read it so that the thumbnails don't
+     * wait for the image info
+     */
+    public Integer getImageWidth() throws IOException, InterruptedException, IM4JavaException {
+        final ImageInfo knownImageInfo = imageInfo;
+        if (knownImageInfo != null) {
+            return knownImageInfo.getWidth();
+        }
+        final DecodedImage decoded = getDecodedImage();
+        return (decoded != null) ? decoded.getOriginalWidth() : getImageInfo().getWidth();
+    }
+
+    /**
+     * @return the image decoded by ImageIO at the resolution of the largest thumbnail, or null if ImageIO can't read
+     * it. The decoding is tried only once.
+     */
+    public DecodedImage getDecodedImage() {
+        synchronized (decodedImageLock) {
+            if (!imageDecoded) {
+                decodedImage = ThumbnailJavaImageGenerator.decode(new File(path), ThumbnailType.LARGE.getWidth(), null);
+                imageDecoded = true;
+            }
+            return decodedImage;
+        }
+    }
+
+    public Long getFileSize() throws IOException {
+        return MediaChecker.getFileSize(path);
+    }
+
+    private String sniffMimeType() {
+        final byte[] firstBytes = new byte[ContentSniffer.SNIFF_SIZE_IN_BYTES];
+        try (final InputStream in = new FileInputStream(path)) {
+            int length = 0;
+            int read;
+            while (length < firstBytes.length && (read = in.read(firstBytes, length, firstBytes.length - length)) != -1) {
+                length += read;
+            }
+            return ContentSniffer.sniffMimeType(firstBytes, length);
+        } catch (IOException e) {
+            // The external detection reports the problem, if any
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import eu.europeana.harvester.cluster.domain.ProcessingPipelineConfig;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The processing stage of a slave node : a fixed pool of processing workers fed by a bounded queue of downloaded
+ * files. A download worker that submits a file while the queue is full waits until there's room, which keeps the
+ * downloads from running ahead of the processing (and from filling the disk with files waiting to be processed).
+ *
+ * Shared by all the download workers of the node. Owned (and closed) by the node master.
+ */
+public class ProcessingStage {
+
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Runs the independent sub tasks of the files processed by the workers. Null when they run one after the other.
+     */
+    private final ExecutorService subTaskWorkers;
+
+    /**
+     * One permit per file that can be processed or wait for processing.
+     */
+    private final Semaphore capacity;
+
+    /**
+     * The size of the files being processed or waiting for processing.
+     */
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    public ProcessingStage(final ProcessingPipelineConfig config) {
+        final int nrOfWorkers = Math.max(1, config.getNrOfProcessingWorkers());
+        this.capacity = new Semaphore(nrOfWorkers + Math.max(0, config.getMaxNrOfQueuedFiles()), true);
+        this.workers = new ThreadPoolExecutor(nrOfWorkers, nrOfWorkers, 0l, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreads("slave-processing-"));
+        // The sub task workers never wait for anything, so the processing workers that wait for them can't deadlock.
+        this.subTaskWorkers = (config.getNrOfSubTaskWorkers() > 0) ?
+                Executors.newFixedThreadPool(config.getNrOfSubTaskWorkers(), daemonThreads("slave-subtask-")) : null;
+    }
+
+    /**
+     * Queues the processing of a downloaded file, waiting first for room in the queue if it's full.
+     *
+     * @throws InterruptedException if the wait was interrupted, the processing is then not queued
+     */
+    public void submit(final Runnable processing) throws InterruptedException {
+        submit(processing, 0l);
+    }
+
+    /**
+     * Queues the processing of a downloaded file of the given size, waiting first for room in the queue if it's full.
+     *
+     * @throws InterruptedException if the wait was interrupted, the processing is then not queued
+     */
+    public void submit(final Runnable processing, final long sizeInBytes) throws InterruptedException {
+        capacity.acquire();
+        queuedBytes.addAndGet(sizeInBytes);
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        processing.run();
+                    } finally {
+                        queuedBytes.addAndGet(-sizeInBytes);
+                        capacity.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedBytes.addAndGet(-sizeInBytes);
+            capacity.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of files being processed or waiting for processing
+     */
+    public int getNrOfPendingFiles() {
+        return workers.getActiveCount() + workers.getQueue().size();
+    }
+
+    /**
+     * @return the number of files that can still be submitted without waiting
+     */
+    public int getNrOfFreeSlots() {
+        return capacity.availablePermits();
+    }
+
+    /**
+     * @return the size of the files being processed or waiting for processing
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return where the processing workers run the independent sub tasks of a file or null to run them one after the other
+     */
+    public ExecutorService getSubTaskExecutor() {
+        return subTaskWorkers;
+    }
+
+    /**
+     * Stops the processing workers. The queued files are dropped.
+     */
+    public void close() {
+        workers.shutdownNow();
+        if (subTaskWorkers != null) {
+            subTaskWorkers.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger nrOfThreads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, namePrefix + nrOfThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
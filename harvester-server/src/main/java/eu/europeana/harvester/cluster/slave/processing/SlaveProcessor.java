@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 public class SlaveProcessor {
     private final Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
@@ -35,19 +36,33 @@ public class SlaveProcessor {
     private final MediaStorageClient mediaStorageClient;
     private final String colorMapPath;
 
+    /**
+     * Where the independent sub tasks of a file run at the same time. When null they run one after the other.
+     */
+    private final ExecutorService subTaskExecutor;
+
     public SlaveProcessor(MediaMetaInfoExtractor metaInfoExtractor, ColorExtractor colorExtractor, MediaStorageClient mediaStorageClient, String colorMapPath) {
+        this(metaInfoExtractor, colorExtractor, mediaStorageClient, colorMapPath, null);
+    }
+
+    public SlaveProcessor(MediaMetaInfoExtractor metaInfoExtractor, ColorExtractor colorExtractor, MediaStorageClient mediaStorageClient, String colorMapPath,
+                          ExecutorService subTaskExecutor) {
         this.metaInfoExtractor = metaInfoExtractor;
         this.colorExtractor = colorExtractor;
         this.mediaStorageClient = mediaStorageClient;
         this.colorMapPath = colorMapPath;
+        this.subTaskExecutor = subTaskExecutor;
     }
 
+    /**
+     * Processes the downloaded file. It's only read from the disk, by each step as it needs, never loaded in the
+     * memory as a whole.
+     */
     public ProcessingResultTuple process(final ProcessingJobTaskDocumentReference task,
-                                         String originalFilePath,
-                                         String originalFileUrl,
-                                         byte[] originalFileContent,
-                                         ResponseType responseType,
-                                         ReferenceOwner referenceOwner) {
+                                         final String originalFilePath,
+                                         final String originalFileUrl,
+                                         final ResponseType responseType,
+                                         final ReferenceOwner referenceOwner) {
 
         // (1) Locate tasks
         final ProcessingJobSubTask colorExtractionProcessingTask = locateColorExtractionProcessingTask(task);
@@ -56,16 +71,52 @@ public class SlaveProcessor {
 
         ProcessingJobSubTaskStats stats = new ProcessingJobSubTaskStats();
 
-        // (2) Execute tasks
+        // The file is identified only once for all the tasks & its palette is shared by the meta info & the colors
+        final ProcessingContext context = new ProcessingContext(originalFilePath, colorMapPath,
+                (null == colorExtractor) ? null : colorExtractor.getPaletteExtractor());
+
+        // (2) Execute tasks : the meta data extraction, the color extraction & the thumbnail generation don't depend
+        // on each other & run at the same time when there's a sub task executor. The file is classified before.
+        final ContentType contentType = context.getContentType();
         MediaMetaInfoTuple mediaMetaInfoTuple = null;
         ImageMetaInfo imageColorMetaInfo = null;
         Map<ProcessingJobSubTask, MediaFile> generatedThumbnails = new HashMap<>();
 
         // Meta data extraction : This always happens if there is a task for it.
-        if (null != metaExtractionProcessingTask) {
+        final Future<MediaMetaInfoTuple> metaInfoExtraction = (null == metaExtractionProcessingTask) ? null :
+                fork(new Callable<MediaMetaInfoTuple>() {
+                    @Override
+                    public MediaMetaInfoTuple call() throws Exception {
+                        return extractMetaInfo(context, originalFileUrl, responseType, metaExtractionProcessingTask);
+                    }
+                });
+
+        // Color extraction : This happens only for images.
+        final Future<ImageMetaInfo> colorExtraction = (!contentType.equals(ContentType.IMAGE) || null == colorExtractionProcessingTask) ? null :
+                fork(new Callable<ImageMetaInfo>() {
+                    @Override
+                    public ImageMetaInfo call() throws Exception {
+                        return extractColor(context);
+                    }
+                });
+
+        // Thumbnail generation : This happens JUST for images (ONLY where color extraction was successful, checked when
+        // joining) and PDF files.
+        final Future<Map<ProcessingJobSubTask, MediaFile>> thumbnailGeneration =
+                ((null == thumbnailGenerationProcessingTasks) || thumbnailGenerationProcessingTasks.isEmpty() ||
+                 !((contentType.equals(ContentType.IMAGE) && null != colorExtraction) || contentType.equals(ContentType.PDF))) ? null :
+                fork(new Callable<Map<ProcessingJobSubTask, MediaFile>>() {
+                    @Override
+                    public Map<ProcessingJobSubTask, MediaFile> call() throws Exception {
+                        return generateThumbnails(context, originalFileUrl, referenceOwner,
+                                thumbnailGenerationProcessingTasks);
+                    }
+                });
+
+        // Join the meta data extraction
+        if (null != metaInfoExtraction) {
             try {
-                mediaMetaInfoTuple = extractMetaInfo(originalFilePath, originalFileUrl, responseType,
-                        metaExtractionProcessingTask);
+                mediaMetaInfoTuple = join(metaInfoExtraction);
 
                 if (null != mediaMetaInfoTuple && mediaMetaInfoTuple.isValid()) {
                     stats = stats.withMetaExtractionState(ProcessingJobSubTaskState.SUCCESS);
@@ -77,13 +128,13 @@ public class SlaveProcessor {
             }
         }
 
-        // Color extraction : This happens only for images.
-        if (!MediaMetaDataUtils.classifyUrl(originalFilePath).equals(ContentType.IMAGE)) {
+        // Join the color extraction
+        if (!contentType.equals(ContentType.IMAGE)) {
             stats = stats.withColorExtractionState(ProcessingJobSubTaskState.NEVER_EXECUTED);
 
-        } else if ((null != colorExtractionProcessingTask)) {
+        } else if (null != colorExtraction) {
             try {
-                imageColorMetaInfo = extractColor(originalFilePath);
+                imageColorMetaInfo = join(colorExtraction);
 
                 if (null != imageColorMetaInfo && null != imageColorMetaInfo.getColorPalette() &&
                         imageColorMetaInfo.getColorPalette().length > 0) {
@@ -104,19 +155,22 @@ public class SlaveProcessor {
                 mediaMetaInfoTuple = mediaMetaInfoTuple.withImageMetaInfo(mediaMetaInfoTuple.getImageMetaInfo().withColorPalette(imageColorMetaInfo.getColorPalette()));
         }
 
-        // Thumbnail generation : This happens JUST for images (ONLY where color extraction was successful) and PDF files.
-        if ((null != thumbnailGenerationProcessingTasks) && !thumbnailGenerationProcessingTasks.isEmpty()) {
-            if ((MediaMetaDataUtils.classifyUrl(originalFilePath).equals(ContentType.IMAGE) && (imageColorMetaInfo != null)) || MediaMetaDataUtils.classifyUrl(originalFilePath).equals(ContentType.PDF)) {
-                try {
-                    generatedThumbnails = generateThumbnails(originalFilePath, originalFileUrl, originalFileContent,
-                            referenceOwner, thumbnailGenerationProcessingTasks);
+        // Join the thumbnail generation, the thumbnails of an image without colors are dropped.
+        if (null != thumbnailGeneration) {
+            try {
+                final Map<ProcessingJobSubTask, MediaFile> thumbnails = join(thumbnailGeneration);
+
+                if (!contentType.equals(ContentType.IMAGE) || (imageColorMetaInfo != null)) {
+                    generatedThumbnails = thumbnails;
 
                     if (null != generatedThumbnails && generatedThumbnails.size() == thumbnailGenerationProcessingTasks.size()) {
                         stats = stats.withThumbnailGenerationState(ProcessingJobSubTaskState.SUCCESS);
                     } else {
                         stats = stats.withThumbnailGenerationState(ProcessingJobSubTaskState.FAILED, new Exception("thumbnailGenerationProcessingTasks is null OR empty OR imageColorMetaInfo is null"));
                     }
-                } catch (Exception e) {
+                }
+            } catch (Exception e) {
+                if (!contentType.equals(ContentType.IMAGE) || (imageColorMetaInfo != null)) {
                     stats = stats.withThumbnailGenerationState(ProcessingJobSubTaskState.ERROR, e);
                 }
             }
@@ -155,8 +209,7 @@ public class SlaveProcessor {
             thumbnailStorageDurationContext.stop();
             try {
 //  TODO : Re-enable when harvesting finished!
-//                cacheOriginalImage(originalFilePath, originalFileUrl, originalFileContent, referenceOwner,
-//                        mediaMetaInfoTuple);
+//                cacheOriginalImage(originalFilePath, originalFileUrl, referenceOwner, mediaMetaInfoTuple);
 
             } catch (Exception e) {
                 stats = stats.withThumbnailStorageState(ProcessingJobSubTaskState.ERROR, e);
@@ -170,7 +223,35 @@ public class SlaveProcessor {
         );
     }
 
-    private void cacheOriginalImage(String originalFilePath, String originalFileUrl, byte[] originalFileContent,
+    /**
+     * Starts a sub task on the sub task executor or, when there's none (or it's shut down), runs it right away.
+     */
+    private <T> Future<T> fork(final Callable<T> subTask) {
+        final FutureTask<T> future = new FutureTask<>(subTask);
+        if (subTaskExecutor == null) {
+            future.run();
+            return future;
+        }
+        try {
+            subTaskExecutor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.run();
+        }
+        return future;
+    }
+
+    /**
+     * Waits for a sub task & throws the exception it failed with, if any.
+     */
+    private static <T> T join(final Future<T> subTask) throws Exception {
+        try {
+            return subTask.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void cacheOriginalImage(String originalFilePath, String originalFileUrl,
                                     ReferenceOwner referenceOwner, MediaMetaInfoTuple mediaMetaInfoTuple) throws
             NoSuchAlgorithmException,
             IOException {// (3.3) Cache original if it is an image
@@ -179,8 +260,9 @@ public class SlaveProcessor {
             final Timer.Context originalCachingDurationContext = SlaveMetrics.Worker.Slave.Processing.originalCachingDuration
                     .time();
             try {
+                // The original is stored as a whole, it's the only step that loads it in the memory
                 final MediaFile mediaFile = generateOriginal(originalFilePath, originalFileUrl,
-                        originalFileContent, referenceOwner,
+                        Files.readAllBytes(Paths.get(originalFilePath)), referenceOwner,
                         mediaMetaInfoTuple.getImageMetaInfo());
                 mediaStorageClient.createOrModify(mediaFile);
             } finally {
@@ -232,12 +314,12 @@ public class SlaveProcessor {
         return result;
     }
 
-    private final ImageMetaInfo extractColor(String originalFilePath) throws ColorExtractionException {
-        if (MediaMetaDataUtils.classifyUrl(originalFilePath).equals(ContentType.IMAGE)) {
+    private final ImageMetaInfo extractColor(final ProcessingContext context) throws ColorExtractionException {
+        if (context.getContentType().equals(ContentType.IMAGE)) {
             SlaveMetrics.Worker.Slave.Processing.colorExtractionCounter.inc();
             final Timer.Context colorExtractionDurationContext = SlaveMetrics.Worker.Slave.Processing.colorExtractionDuration.time();
             try {
-                return colorExtractor.colorExtraction(originalFilePath);
+                return colorExtractor.colorExtraction(context);
             } catch (Exception e) {
                 throw new ColorExtractionException(e);
             } finally {
@@ -247,7 +329,7 @@ public class SlaveProcessor {
         return null;
     }
 
-    private final MediaMetaInfoTuple extractMetaInfo(final String originalFilePath,
+    private final MediaMetaInfoTuple extractMetaInfo(final ProcessingContext context,
                                                      final String originalFileUrl,
                                                      final ResponseType responseType,
                                                      final ProcessingJobSubTask metaExtractionProcessingTask) throws MetaInfoExtractionException {
@@ -257,7 +339,7 @@ public class SlaveProcessor {
         SlaveMetrics.Worker.Slave.Processing.metaInfoExtractionCounter.inc();
         final Timer.Context metaInfoExtractionDurationContext = SlaveMetrics.Worker.Slave.Processing.metaInfoExtractionDuration.time();
         try {
-            return metaInfoExtractor.extract(originalFilePath);
+            return metaInfoExtractor.extract(context);
         } catch (Exception e) {
             e.printStackTrace();
             throw new MetaInfoExtractionException(e);
@@ -279,31 +361,32 @@ public class SlaveProcessor {
 
     }
 
-    private final Map<ProcessingJobSubTask, MediaFile> generateThumbnails(final String originalFilePath,
+    private final Map<ProcessingJobSubTask, MediaFile> generateThumbnails(final ProcessingContext context,
                                                                           final String originalFileUrl,
-                                                                          final byte[] originalFileContent,
                                                                           final ReferenceOwner referenceOwner,
                                                                           final List<ProcessingJobSubTask> thumbnailGenerationProcessingTasks) throws ThumbnailGenerationException {
         final Map<ProcessingJobSubTask, MediaFile> results = new HashMap<ProcessingJobSubTask, MediaFile>();
+        final List<ThumbnailConfig> expectedSizes = new ArrayList<>();
         for (final ProcessingJobSubTask thumbnailGenerationTask : thumbnailGenerationProcessingTasks) {
-                SlaveMetrics.Worker.Slave.Processing.thumbnailGenerationCounter.inc();
-                final Timer.Context thumbnailGenerationDurationContext = SlaveMetrics.Worker.Slave.Processing.thumbnailGenerationDuration.time();
-                try {
-                    final GenericSubTaskConfiguration config = thumbnailGenerationTask.getConfig();
-
-                    final MediaFile thumbnailMediaFile = ThumbnailGeneratorFactory.getThumbnailGenerator(MediaMetaDataUtils.classifyUrl(originalFilePath), colorMapPath)
-                            .createMediaFileWithThumbnail(config.getThumbnailConfig().getWidth(),
-                                    config.getThumbnailConfig().getHeight(),
-                                    referenceOwner.getExecutionId(),
-                                    originalFileUrl,
-                                    originalFileContent,
-                                    originalFilePath);
-                    results.put(thumbnailGenerationTask, thumbnailMediaFile);
-                } catch (Exception e) {
-                    throw new ThumbnailGenerationException(e);
-                } finally {
-                    thumbnailGenerationDurationContext.stop();
-                }
+            SlaveMetrics.Worker.Slave.Processing.thumbnailGenerationCounter.inc();
+            expectedSizes.add(thumbnailGenerationTask.getConfig().getThumbnailConfig());
+        }
+
+        // All the sizes are generated from a single decoding of the original
+        final Timer.Context thumbnailGenerationDurationContext = SlaveMetrics.Worker.Slave.Processing.thumbnailGenerationDuration.time();
+        try {
+            final List<MediaFile> thumbnailMediaFiles = ThumbnailGeneratorFactory.getThumbnailGenerator(context.getContentType(), context.getMimeType(), colorMapPath)
+                    .createMediaFilesWithThumbnails(expectedSizes,
+                            referenceOwner.getExecutionId(),
+                            originalFileUrl,
+                            context);
+            for (int i = 0; i < thumbnailGenerationProcessingTasks.size(); i++) {
+                results.put(thumbnailGenerationProcessingTasks.get(i), thumbnailMediaFiles.get(i));
+            }
+        } catch (Exception e) {
+            throw new ThumbnailGenerationException(e);
+        } finally {
+            thumbnailGenerationDurationContext.stop();
         }
         return results;
     }
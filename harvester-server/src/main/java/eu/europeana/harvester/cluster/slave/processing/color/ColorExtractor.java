@@ -1,16 +1,41 @@
 package eu.europeana.harvester.cluster.slave.processing.color;
 
-import eu.europeana.harvester.cluster.slave.processing.metainfo.MediaMetaDataUtils;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
 import eu.europeana.harvester.domain.ImageMetaInfo;
-import gr.ntua.image.mediachecker.MediaChecker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 
 public class ColorExtractor {
+    private final Logger LOG = LoggerFactory.getLogger(this.getClass().getName());
+
     private final String colorMapPath;
 
+    /**
+     * The in JVM extraction or null if the palette is taken from the ImageMagick remap.
+     */
+    private final ColorPaletteExtractor paletteExtractor;
+
     public ColorExtractor(String colorMapPath) {
+        this(colorMapPath, null);
+    }
+
+    /**
+     * @param paletteExtractor the in JVM extraction, its palette is close to the one of the ImageMagick remap but
+     *                         not always the same (see {@link ColorPaletteExtractor}), or null to use the remap
+     */
+    public ColorExtractor(final String colorMapPath, final ColorPaletteExtractor paletteExtractor) {
         this.colorMapPath = colorMapPath;
+        this.paletteExtractor = paletteExtractor;
+    }
+
+    /**
+     * @return the in JVM extraction, shared with the contexts of the files, or null if there is none
+     */
+    public ColorPaletteExtractor getPaletteExtractor() {
+        return paletteExtractor;
     }
 
     /**
@@ -21,27 +46,25 @@ public class ColorExtractor {
      * @throws InterruptedException
      */
     public ImageMetaInfo colorExtraction(final String path) throws IOException, InterruptedException {
-        boolean success = true;
-        int retry = 3;
-        do {
-            try {
-                if (MediaChecker.getMimeType(path).startsWith("image")) {
-                    final ImageMetaInfo imageMetaInfo = MediaMetaDataUtils.extractImageMetadata(path, colorMapPath);
-                    return new ImageMetaInfo(null, null, null, null, null, null, imageMetaInfo.getColorPalette(), null);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                if (retry > 0) {
-                    success = false;
-                    Thread.sleep(1000);
-                    retry = -1;
-                } else {
-                    success = true;
-                }
-            }
-        } while (!success);
+        return colorExtraction(new ProcessingContext(path, colorMapPath, paletteExtractor));
+    }
 
-        return null;
+    /**
+     * Extracts the colormap from an image, in the JVM when the context has the palette extraction & ImageIO can
+     * decode the image, otherwise from the image info. The palette is shared with the meta info extraction.
+     *
+     * @return partial metainfo, contains only the colormap
+     */
+    public ImageMetaInfo colorExtraction(final ProcessingContext context) throws IOException, InterruptedException {
+        try {
+            if (!context.getMimeType().startsWith("image")) {
+                return null;
+            }
+            return new ImageMetaInfo(null, null, null, null, null, null, context.getColorPalette(), null);
+        } catch (Exception e) {
+            LOG.error("Failed to extract the colors of " + context.getPath(), e);
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,264 @@
+package eu.europeana.harvester.cluster.slave.processing.color;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Extracts the dominant colors of an image in the JVM, without the ImageMagick remap of the full image : the image
+ * is decoded at a low resolution, every pixel is mapped to the nearest color of the colormap (with the
+ * Floyd-Steinberg dithering of the "-remap", so that the mid tones are split between their neighbour colors the same
+ * way) and the most frequent colors of the histogram make the palette.
+ *
+ * Everything is done on primitive arrays : the pixels of the sample, the colormap & the histogram.
+ *
+ * The palette is close to the one of the ImageMagick remap but it can't be guaranteed to be the same : ImageIO and
+ * ImageMagick don't decode the JPEGs to exactly the same pixels, the histogram is computed on a sample of the image
+ * and ImageMagick dithers along a Hilbert curve (Riemersma) by default. The colors with close frequencies may swap
+ * or differ, so this extraction is opt-in (slave.processingPipeline.jvmColorPalette) & the remap stays the reference.
+ */
+public class ColorPaletteExtractor {
+    private static final Logger LOG = LoggerFactory.getLogger(ColorPaletteExtractor.class.getName());
+
+    /**
+     * The longest side of the sample the histogram is computed on.
+     */
+    static final int SAMPLE_SIZE = 200;
+
+    /**
+     * The number of colors in the palette, same as the ImageMagick extraction.
+     */
+    static final int NR_OF_COLORS = 6;
+
+    /**
+     * The colors of the colormap (0xRRGGBB), in the order they appear in it.
+     */
+    private final int[] colorMap;
+
+    public ColorPaletteExtractor(final String colorMapPath) throws IOException {
+        this(readColorMap(colorMapPath));
+    }
+
+    ColorPaletteExtractor(final int[] colorMap) {
+        if (colorMap.length == 0) {
+            throw new IllegalArgumentException("The colormap has no colors");
+        }
+        this.colorMap = colorMap;
+    }
+
+    /**
+     * @return the extraction for the colormap or null if ImageIO can't read the colormap, the colors are then
+     * extracted by ImageMagick
+     */
+    public static ColorPaletteExtractor forColorMap(final String colorMapPath) {
+        if (colorMapPath == null) {
+            return null;
+        }
+        try {
+            return new ColorPaletteExtractor(colorMapPath);
+        } catch (Exception e) {
+            LOG.warn("The colors are extracted by ImageMagick, can't read the colormap " + colorMapPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the dominant colors of the image, most frequent first, as "#RRGGBB" or null if ImageIO can't read it
+     */
+    public String[] extract(final String path) throws IOException {
+        final BufferedImage sample = readSample(path);
+        if (sample == null) {
+            return null;
+        }
+        return extract(sample);
+    }
+
+    /**
+     * @param image the image already decoded, ie. for the thumbnails : the histogram is computed on every n-th pixel
+     *              so that the longest side of the sample is about {@link #SAMPLE_SIZE}
+     * @return the dominant colors of the image, most frequent first, as "#RRGGBB"
+     */
+    public String[] extract(final BufferedImage image) {
+        final int step = Math.max(1, Math.max(image.getWidth(), image.getHeight()) / SAMPLE_SIZE);
+        final int width = (image.getWidth() + step - 1) / step;
+        final int height = (image.getHeight() + step - 1) / step;
+        final int[] pixels;
+        if (step == 1) {
+            pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        } else {
+            pixels = new int[width * height];
+            final int[] row = new int[image.getWidth()];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y * step, image.getWidth(), 1, row, 0, image.getWidth());
+                for (int x = 0; x < width; x++) {
+                    pixels[y * width + x] = row[x * step];
+                }
+            }
+        }
+        return palette(histogram(pixels, width, height));
+    }
+
+    /**
+     * Maps every pixel to the nearest color of the colormap, the error of each pixel being diffused to the next ones.
+     * The transparent pixels are seen over a white background.
+     *
+     * @param pixels the ARGB pixels, row by row
+     * @return how many pixels were mapped to each color of the colormap
+     */
+    int[] histogram(final int[] pixels, final int width, final int height) {
+        final int[] histogram = new int[colorMap.length];
+
+        // The errors (x16) of the current & the next row, per channel, with a pixel of margin on each side
+        int[] currentErrors = new int[(width + 2) * 3];
+        int[] nextErrors = new int[(width + 2) * 3];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int argb = pixels[y * width + x];
+                final int alpha = argb >>> 24;
+                final int e = (x + 1) * 3;
+                final int red = clamp(overWhite((argb >> 16) & 0xFF, alpha) + currentErrors[e] / 16);
+                final int green = clamp(overWhite((argb >> 8) & 0xFF, alpha) + currentErrors[e + 1] / 16);
+                final int blue = clamp(overWhite(argb & 0xFF, alpha) + currentErrors[e + 2] / 16);
+
+                final int index = nearest(red, green, blue);
+                histogram[index]++;
+
+                final int color = colorMap[index];
+                diffuse(currentErrors, nextErrors, e, red - ((color >> 16) & 0xFF));
+                diffuse(currentErrors, nextErrors, e + 1, green - ((color >> 8) & 0xFF));
+                diffuse(currentErrors, nextErrors, e + 2, blue - (color & 0xFF));
+            }
+            final int[] swap = currentErrors;
+            currentErrors = nextErrors;
+            nextErrors = swap;
+            Arrays.fill(nextErrors, 0);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the most frequent colors, ties broken by the order of the colormap
+     */
+    String[] palette(final int[] histogram) {
+        final boolean[] taken = new boolean[histogram.length];
+        final String[] palette = new String[Math.min(NR_OF_COLORS, histogram.length)];
+        int nrOfColors = 0;
+        while (nrOfColors < palette.length) {
+            int best = -1;
+            for (int i = 0; i < histogram.length; i++) {
+                if (!taken[i] && histogram[i] > 0 && (best == -1 || histogram[i] > histogram[best])) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            taken[best] = true;
+            palette[nrOfColors++] = String.format("#%06X", colorMap[best]);
+        }
+        return (nrOfColors == palette.length) ? palette : Arrays.copyOf(palette, nrOfColors);
+    }
+
+    /**
+     * @return the index of the color of the colormap that is the closest to the given one
+     */
+    int nearest(final int red, final int green, final int blue) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < colorMap.length; i++) {
+            final int color = colorMap[i];
+            final int dr = red - ((color >> 16) & 0xFF);
+            final int dg = green - ((color >> 8) & 0xFF);
+            final int db = blue - (color & 0xFF);
+            final int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Floyd-Steinberg : 7/16 to the right, 3/16 below left, 5/16 below & 1/16 below right.
+     */
+    private static void diffuse(final int[] currentErrors, final int[] nextErrors, final int e, final int error) {
+        currentErrors[e + 3] += error * 7;
+        nextErrors[e - 3] += error * 3;
+        nextErrors[e] += error * 5;
+        nextErrors[e + 3] += error;
+    }
+
+    private static int overWhite(final int channel, final int alpha) {
+        return (channel * alpha + 0xFF * (0xFF - alpha)) / 0xFF;
+    }
+
+    private static int clamp(final int channel) {
+        return (channel < 0) ? 0 : (channel > 0xFF) ? 0xFF : channel;
+    }
+
+    /**
+     * @return the image decoded with subsampling so that its longest side is about {@link #SAMPLE_SIZE} or null if
+     * ImageIO can't read it
+     */
+    private static BufferedImage readSample(final String path) throws IOException {
+        try (final ImageInputStream imageIn = ImageIO.createImageInputStream(new File(path))) {
+            if (imageIn == null) {
+                return null;
+            }
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                final int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / SAMPLE_SIZE);
+                final ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } catch (Exception e) {
+                // ie. CMYK JPEGs, the ImageMagick extraction handles them
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return the distinct colors of the colormap image, in the order they appear in it
+     */
+    static int[] readColorMap(final String colorMapPath) throws IOException {
+        final BufferedImage image = ImageIO.read(new File(colorMapPath));
+        if (image == null) {
+            throw new IOException("Can't read the colormap " + colorMapPath);
+        }
+        final int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        final int[] colors = new int[pixels.length];
+        int nrOfColors = 0;
+        for (final int pixel : pixels) {
+            final int color = pixel & 0xFFFFFF;
+            boolean known = false;
+            for (int i = 0; i < nrOfColors && !known; i++) {
+                known = colors[i] == color;
+            }
+            if (!known) {
+                colors[nrOfColors++] = color;
+            }
+        }
+        return Arrays.copyOf(colors, nrOfColors);
+    }
+}
@@ -1,10 +1,11 @@
 package eu.europeana.harvester.cluster.slave.processing.metainfo;
 
 import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.cluster.slave.processing.ImageIdentity;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
 import eu.europeana.harvester.domain.*;
 import eu.europeana.harvester.utils.LocalMediaChecker;
 import gr.ntua.image.mediachecker.AudioInfo;
-import gr.ntua.image.mediachecker.ImageInfo;
 import gr.ntua.image.mediachecker.MediaChecker;
 import gr.ntua.image.mediachecker.VideoInfo;
 import org.im4java.core.IM4JavaException;
@@ -19,30 +20,36 @@ public class MediaMetaDataUtils {
      * @return - the matching category
      */
     public static final ContentType classifyUrl(final String path) {
-        try {
-            final String type = MediaChecker.getMimeType(path);
+        // The mime type is detected in the JVM when possible & the IOException is eaten by the context.
+        return new ProcessingContext(path, null).getContentType();
+    }
 
-            if (type.startsWith("image")) {
-                return ContentType.IMAGE;
-            }
-            if (type.startsWith("audio")) {
-                return ContentType.AUDIO;
-            }
-            if (type.startsWith("video")) {
-                return ContentType.VIDEO;
-            }
-            if (type.equals("application/pdf")) {
-                return ContentType.PDF;
-            }
-            if ((type.startsWith("text") || type.equals("application/xml") || type.equals("application/rtf") || type.equals("application/epub"))
-                    && !type.contains("html")) {
-                return ContentType.NON_PDF_TEXT;
-            }
-            return ContentType.UNKNOWN;
-        } catch (IOException e) {
+    /**
+     * Classifies a mime type in one of the existent categories.
+     *
+     * @return - the matching category
+     */
+    public static final ContentType classifyMimeType(final String type) {
+        if (type == null) {
             return ContentType.UNKNOWN;
-            // IT's OK to eat the exception here.
         }
+        if (type.startsWith("image")) {
+            return ContentType.IMAGE;
+        }
+        if (type.startsWith("audio")) {
+            return ContentType.AUDIO;
+        }
+        if (type.startsWith("video")) {
+            return ContentType.VIDEO;
+        }
+        if (type.equals("application/pdf")) {
+            return ContentType.PDF;
+        }
+        if ((type.startsWith("text") || type.equals("application/xml") || type.equals("application/rtf") || type.equals("application/epub"))
+                && !type.contains("html")) {
+            return ContentType.NON_PDF_TEXT;
+        }
+        return ContentType.UNKNOWN;
     }
 
 
@@ -52,21 +59,32 @@ public class MediaMetaDataUtils {
      * @return - an object with all the meta info
      */
     public final static ImageMetaInfo extractImageMetadata(final String path, final String colorMapPath) throws InterruptedException, IOException, IM4JavaException {
+        return extractImageMetadata(new ProcessingContext(path, colorMapPath));
+    }
+
+    /**
+     * Extracts image meta data from the identity & the color palette shared by the whole processing of the file :
+     * the image is remapped to the colormap only when its palette can't be extracted in the JVM.
+     * @return - an object with all the meta info
+     */
+    public final static ImageMetaInfo extractImageMetadata(final ProcessingContext context) throws InterruptedException, IOException, IM4JavaException {
         ImageMetaInfo imageMetaInfo = null;
 
-            final ImageInfo imageInfo = MediaChecker.getImageInfo(path, colorMapPath);
-            final Long fileSize = MediaChecker.getFileSize(path);
+            // The palette first : when it needs the image info, the identity is taken from it
+            final String[] colorPalette = context.getColorPalette();
+            final ImageIdentity imageIdentity = context.getImageIdentity();
+            final Long fileSize = context.getFileSize();
 
             ImageOrientation imageOrientation;
-            if(imageInfo.getWidth() > imageInfo.getHeight()) {
+            if(imageIdentity.getWidth() > imageIdentity.getHeight()) {
                 imageOrientation = ImageOrientation.LANDSCAPE;
             } else {
                 imageOrientation = ImageOrientation.PORTRAIT;
             }
 
-            imageMetaInfo = new ImageMetaInfo(imageInfo.getWidth(), imageInfo.getHeight(),
-                    imageInfo.getMimeType(), imageInfo.getFileFormat(), imageInfo.getColorSpace(),
-                    fileSize, imageInfo.getPalette(), imageOrientation);
+            imageMetaInfo = new ImageMetaInfo(imageIdentity.getWidth(), imageIdentity.getHeight(),
+                    context.getMimeType(), imageIdentity.getFileFormat(), imageIdentity.getColorSpace(),
+                    fileSize, colorPalette, imageOrientation);
 
         return imageMetaInfo;
     }
@@ -111,17 +129,35 @@ public class MediaMetaDataUtils {
      * @return - an object with all the meta info
      */
     public final static TextMetaInfo extractTextMetaData(final String path) throws Exception {
+        return extractTextMetaData(new ProcessingContext(path, null));
+    }
+
+    /**
+     * Extracts text meta data, reusing the mime type detected for the whole processing of the file
+     * @return - an object with all the meta info
+     */
+    public final static TextMetaInfo extractTextMetaData(final ProcessingContext context) throws Exception {
         TextMetaInfo textMetaInfo ;
+            final String path = context.getPath();
 
-            final Long fileSize = MediaChecker.getFileSize(path);
-            final Boolean isSearchable = LocalMediaChecker.issearchable(path);
+            final Long fileSize = context.getFileSize();
+
+            // The first pages of a PDF are read in the JVM, the rest is left to the media checker
+            PdfInfo pdfInfo = null;
+            if ("application/pdf".equals(context.getMimeType())) {
+                try {
+                    pdfInfo = PdfInfo.read(path);
+                } catch (Exception e) {}
+            }
+
+            final Boolean isSearchable = (pdfInfo != null) ? pdfInfo.getSearchable() : LocalMediaChecker.issearchable(path);
 
             Integer getDPI = null;
             try {
-                getDPI = LocalMediaChecker.getdpi(path);
+                getDPI = (pdfInfo != null) ? pdfInfo.getDpi() : LocalMediaChecker.getdpi(path);
             } catch(Exception e) {}
 
-            textMetaInfo = new TextMetaInfo(MediaChecker.getMimeType(path), fileSize,
+            textMetaInfo = new TextMetaInfo(context.getMimeType(), fileSize,
                     getDPI, isSearchable);
 
         return textMetaInfo;
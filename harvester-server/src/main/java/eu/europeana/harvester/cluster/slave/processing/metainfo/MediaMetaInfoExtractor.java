@@ -1,6 +1,8 @@
 package eu.europeana.harvester.cluster.slave.processing.metainfo;
 
 import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
+import eu.europeana.harvester.cluster.slave.processing.color.ColorPaletteExtractor;
 import eu.europeana.harvester.domain.AudioMetaInfo;
 import eu.europeana.harvester.domain.ImageMetaInfo;
 import eu.europeana.harvester.domain.TextMetaInfo;
@@ -9,12 +11,30 @@ import eu.europeana.harvester.domain.VideoMetaInfo;
 public class MediaMetaInfoExtractor {
     private final String colorMapPath;
 
+    /**
+     * The in JVM palette extraction or null if the palette is taken from the ImageMagick remap.
+     */
+    private final ColorPaletteExtractor paletteExtractor;
+
     public MediaMetaInfoExtractor(String colorMapPath) {
+        this(colorMapPath, null);
+    }
+
+    public MediaMetaInfoExtractor(final String colorMapPath, final ColorPaletteExtractor paletteExtractor) {
         this.colorMapPath = colorMapPath;
+        this.paletteExtractor = paletteExtractor;
     }
 
     public MediaMetaInfoTuple extract(final String path) throws Exception {
-        final ContentType contentType = MediaMetaDataUtils.classifyUrl(path);
+        return extract(new ProcessingContext(path, colorMapPath, paletteExtractor));
+    }
+
+    /**
+     * Extracts the meta info reusing what the other processing steps already learned about the file.
+     */
+    public MediaMetaInfoTuple extract(final ProcessingContext context) throws Exception {
+        final ContentType contentType = context.getContentType();
+        final String path = context.getPath();
 
         ImageMetaInfo imageMetaInfo = null;
         AudioMetaInfo audioMetaInfo = null;
@@ -22,13 +42,13 @@ public class MediaMetaInfoExtractor {
         TextMetaInfo textMetaInfo = null;
         switch (contentType) {
             case PDF:
-                textMetaInfo = MediaMetaDataUtils.extractTextMetaData(path);
+                textMetaInfo = MediaMetaDataUtils.extractTextMetaData(context);
                 break;
             case NON_PDF_TEXT:
-                textMetaInfo = MediaMetaDataUtils.extractTextMetaData(path);
+                textMetaInfo = MediaMetaDataUtils.extractTextMetaData(context);
                 break;
             case IMAGE:
-                imageMetaInfo = MediaMetaDataUtils.extractImageMetadata(path, colorMapPath);
+                imageMetaInfo = MediaMetaDataUtils.extractImageMetadata(context);
                 break;
             case VIDEO:
                 videoMetaInfo = MediaMetaDataUtils.extractVideoMetaData(path);
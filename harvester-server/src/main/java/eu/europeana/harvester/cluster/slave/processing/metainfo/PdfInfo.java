@@ -0,0 +1,105 @@
+package eu.europeana.harvester.cluster.slave.processing.metainfo;
+
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfNumber;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import java.io.IOException;
+
+/**
+ * The searchability & the resolution of a PDF, read in the JVM from the first pages only : the document is opened
+ * with partial reads from disk (only the cross reference table & the objects of the pages that are looked at are
+ * loaded), so that a scanned book of hundreds of pages costs the same as a leaflet.
+ */
+public class PdfInfo {
+
+    /**
+     * The number of pages looked at, from the first one.
+     */
+    public static final int MAX_NR_OF_PAGES = 5;
+
+    private static final float POINTS_PER_INCH = 72f;
+
+    private static final Integer NO_IMAGES_DPI = -1;
+
+    private final Boolean searchable;
+
+    /**
+     * -1 when none of the pages looked at has images, same as the media checker.
+     */
+    private final Integer dpi;
+
+    public PdfInfo(final Boolean searchable, final Integer dpi) {
+        this.searchable = searchable;
+        this.dpi = dpi;
+    }
+
+    /**
+     * @return the info of the PDF
+     * @throws IOException if the file can't be read or is not a PDF
+     */
+    public static PdfInfo read(final String path) throws IOException {
+        final PdfReader reader = new PdfReader(new RandomAccessFileOrArray(path), null);
+        try {
+            final int nrOfPages = Math.min(MAX_NR_OF_PAGES, reader.getNumberOfPages());
+            boolean searchable = false;
+            Integer dpi = null;
+            for (int page = 1; page <= nrOfPages; page++) {
+                if (!searchable) {
+                    final String text = PdfTextExtractor.getTextFromPage(reader, page);
+                    searchable = text != null && !text.trim().isEmpty();
+                }
+                final Integer pageDpi = dpiOf(reader, page);
+                if (pageDpi != null && (dpi == null || pageDpi > dpi)) {
+                    dpi = pageDpi;
+                }
+                reader.releasePage(page);
+            }
+            return new PdfInfo(searchable, (dpi == null) ? NO_IMAGES_DPI : dpi);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the resolution of the widest image of the page, as if it was printed across the whole page, or null
+     * if the page has no images (ie. a born digital document)
+     */
+    private static Integer dpiOf(final PdfReader reader, final int page) {
+        final PdfDictionary resources = reader.getPageN(page).getAsDict(PdfName.RESOURCES);
+        final PdfDictionary xObjects = (resources == null) ? null : resources.getAsDict(PdfName.XOBJECT);
+        if (xObjects == null) {
+            return null;
+        }
+        final float pageWidthInInches = reader.getPageSize(page).getWidth() / POINTS_PER_INCH;
+        if (pageWidthInInches <= 0) {
+            return null;
+        }
+        Integer widestImage = null;
+        for (final PdfName name : xObjects.getKeys()) {
+            final PdfObject xObject = PdfReader.getPdfObject(xObjects.get(name));
+            if (!(xObject instanceof PdfDictionary)) {
+                continue;
+            }
+            final PdfDictionary image = (PdfDictionary) xObject;
+            final PdfNumber width = image.getAsNumber(PdfName.WIDTH);
+            if (PdfName.IMAGE.equals(image.getAsName(PdfName.SUBTYPE)) && width != null &&
+                    (widestImage == null || width.intValue() > widestImage)) {
+                widestImage = width.intValue();
+            }
+        }
+        return (widestImage == null) ? null : Math.round(widestImage / pageWidthInInches);
+    }
+
+    public Boolean getSearchable() {
+        return searchable;
+    }
+
+    public Integer getDpi() {
+        return dpi;
+    }
+}
@@ -1,13 +1,24 @@
 package eu.europeana.harvester.cluster.slave.processing.thumbnail;
 
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
 import eu.europeana.harvester.domain.MediaFile;
+import eu.europeana.harvester.domain.ThumbnailConfig;
 import eu.europeana.harvester.domain.ThumbnailType;
-import gr.ntua.image.mediachecker.ImageInfo;
-import gr.ntua.image.mediachecker.MediaChecker;
+import org.im4java.core.ConvertCmd;
+import org.im4java.core.IMOperation;
+import org.im4java.process.Pipe;
 import org.joda.time.DateTime;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Abstract class for generating thumbnails
@@ -32,42 +43,85 @@ public abstract class ThumbnailGenerator {
     /**
      * Creates a thumbnail of a downloaded media file (image or PDF)
      */
-    public MediaFile createMediaFileWithThumbnail (final Integer expectedWidth, final Integer expectedHeight, final String currentProcessId, final String originalFileUrl, final byte[] originalFileContent, final String originalFilePath) throws Exception {
-        final ImageInfo originalFileInfo = MediaChecker.getImageInfo(originalFilePath, getColorMapPath());
-        Integer thumbnailResizedToWidth = null;
-        Integer thumbnailResizedToHeight = null;
+    public MediaFile createMediaFileWithThumbnail (final Integer expectedWidth, final Integer expectedHeight, final String currentProcessId, final String originalFileUrl, final String originalFilePath) throws Exception {
+        return createMediaFileWithThumbnail(expectedWidth, expectedHeight, currentProcessId, originalFileUrl,
+                new ProcessingContext(originalFilePath, getColorMapPath()));
+    }
 
-        // Step 1 : compute the width & height of the new thumbnail
-        if (expectedWidth != ThumbnailType.MEDIUM.getWidth() && expectedWidth != ThumbnailType.LARGE.getWidth()) {
-            throw new IllegalArgumentException("Cannot generate thumbnails from configuration tasks where width != "+ThumbnailType.MEDIUM.getHeight() + " or width != "+ThumbnailType.LARGE.getHeight());
+    /**
+     * Creates a thumbnail of a downloaded media file (image or PDF), reusing the image info & the mime type already
+     * known from the previous processing steps of the same file. The original is read from the disk.
+     */
+    public MediaFile createMediaFileWithThumbnail (final Integer expectedWidth, final Integer expectedHeight, final String currentProcessId, final String originalFileUrl, final ProcessingContext context) throws Exception {
+        final Integer thumbnailResizedToWidth = resizedWidth(expectedWidth, context.getImageWidth());
+        final Integer thumbnailResizedToHeight = null;
+
+        final byte[] newData = createThumbnail(new File(context.getPath()), thumbnailResizedToWidth, thumbnailResizedToHeight);
+
+        return toMediaFile(expectedWidth, expectedHeight, currentProcessId, originalFileUrl, newData, context);
+    }
+
+    /**
+     * Creates all the thumbnails of a downloaded media file (image or PDF) from a single decoding of the original :
+     * the largest thumbnail is made first and is the source of the next one. The original is read from the disk or
+     * taken from the context when it's already decoded there.
+     *
+     * @param expectedSizes the sizes of the thumbnails, each must match a {@link ThumbnailType}
+     * @return the thumbnails, in the same order as the sizes
+     */
+    public List<MediaFile> createMediaFilesWithThumbnails (final List<ThumbnailConfig> expectedSizes, final String currentProcessId, final String originalFileUrl, final ProcessingContext context) throws Exception {
+        if (expectedSizes.isEmpty()) {
+            return Collections.emptyList();
         }
+        final Integer originalWidth = context.getImageWidth();
 
-        if (expectedWidth == ThumbnailType.MEDIUM.getWidth()) {
-            // Scenario 2 : The thumbnail generation task must make a thumbnail of width = 200 + proportional height
-            if (originalFileInfo.getWidth() < ThumbnailType.MEDIUM.getWidth()) {
-                // Use the original aspect ratio
-                thumbnailResizedToWidth = null;
-                thumbnailResizedToHeight = null;
-            } else {
-                // The width is 200 & the height will be adjusted automatically.
-                thumbnailResizedToWidth = ThumbnailType.MEDIUM.getWidth();
-                thumbnailResizedToHeight = null;
+        // Largest first, as every thumbnail is resized from the previous one
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < expectedSizes.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return expectedSizes.get(second).getWidth().compareTo(expectedSizes.get(first).getWidth());
             }
+        });
+
+        final List<Integer> resizedWidths = new ArrayList<>();
+        for (final Integer index : order) {
+            resizedWidths.add(resizedWidth(expectedSizes.get(index).getWidth(), originalWidth));
         }
 
-        if (expectedWidth == ThumbnailType.LARGE.getWidth()) {
-            // Scenario 3 : The thumbnail generation task must make a thumbnail of width = 400 + proportional height
-            if (originalFileInfo.getWidth() < ThumbnailType.LARGE.getWidth()) {
-                // Use the original aspect ratio
-                thumbnailResizedToWidth = null;
-                thumbnailResizedToHeight = null;
-            } else {
-                // The width is 200 & the height will be adjusted automatically.
-                thumbnailResizedToWidth = ThumbnailType.LARGE.getWidth();
-                thumbnailResizedToHeight = null;
-            }
+        final List<byte[]> newData = createThumbnails(context, resizedWidths);
+
+        final MediaFile[] results = new MediaFile[expectedSizes.size()];
+        for (int i = 0; i < order.size(); i++) {
+            final ThumbnailConfig expectedSize = expectedSizes.get(order.get(i));
+            results[order.get(i)] = toMediaFile(expectedSize.getWidth(), expectedSize.getHeight(), currentProcessId,
+                    originalFileUrl, newData.get(i), context);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return the width to resize the original to or null if the original is kept as it is (ie. it's smaller than the thumbnail)
+     */
+    private Integer resizedWidth(final Integer expectedWidth, final Integer originalWidth) {
+        // Step 1 : compute the width & height of the new thumbnail
+        if (expectedWidth != ThumbnailType.MEDIUM.getWidth() && expectedWidth != ThumbnailType.LARGE.getWidth()) {
+            throw new IllegalArgumentException("Cannot generate thumbnails from configuration tasks where width != "+ThumbnailType.MEDIUM.getHeight() + " or width != "+ThumbnailType.LARGE.getHeight());
         }
 
+        // Scenario 2 & 3 : The thumbnail generation task must make a thumbnail of width = 200 or 400 + proportional height
+        if (originalWidth < expectedWidth) {
+            // Use the original aspect ratio
+            return null;
+        }
+        // The width is 200 or 400 & the height will be adjusted automatically.
+        return expectedWidth;
+    }
+
+    private MediaFile toMediaFile(final Integer expectedWidth, final Integer expectedHeight, final String currentProcessId, final String originalFileUrl, final byte[] newData, final ProcessingContext context) throws IOException, NoSuchAlgorithmException {
         final String url = originalFileUrl;
         final String[] temp = url.split("/");
         String name = url;
@@ -75,14 +129,12 @@ public abstract class ThumbnailGenerator {
             name = temp[temp.length - 1];
         }
 
-        final byte[] newData = createThumbnail(new ByteArrayInputStream(originalFileContent), thumbnailResizedToWidth, thumbnailResizedToHeight, originalFileContent);
-
         final ThumbnailType expectedThumbnailType = thumbnailTypeFromExpectedSize(expectedHeight, expectedWidth);
 
         if (expectedThumbnailType == null) throw new IllegalArgumentException("The expected thumbnail height "+expectedHeight+" or width "+expectedWidth+" do not match any of the hardcoded presets");
 
         return new MediaFile(currentProcessId, name, null, null, url,
-                new DateTime(System.currentTimeMillis()), newData, 1, MediaChecker.getMimeType(originalFilePath), null, expectedWidth)
+                new DateTime(System.currentTimeMillis()), newData, 1, context.getMimeType(), null, expectedWidth)
                 .withId(MediaFile.generateIdFromUrlAndSizeType(originalFileUrl, expectedThumbnailType.name()));
     }
 
@@ -106,7 +158,69 @@ public abstract class ThumbnailGenerator {
 
 
     /**
-     * Manages im4java thumbnail converting call
+     * Manages im4java thumbnail converting call. The original is read straight from the file, it's never loaded in
+     * the memory as a whole.
+     */
+    protected abstract byte[] createThumbnail(final File original, final Integer width, final Integer height) throws Exception;
+
+    /**
+     * Creates the thumbnails of the given widths (largest first, null keeps the original size). By default each one is
+     * created on its own, the generators that can do better override it.
+     */
+    protected List<byte[]> createThumbnails(final File original, final List<Integer> widths) throws Exception {
+        final List<byte[]> results = new ArrayList<>();
+        for (final Integer width : widths) {
+            results.add(createThumbnail(original, width, null));
+        }
+        return results;
+    }
+
+    /**
+     * Creates the thumbnails of a file being processed. By default from the original on the disk, the generators that
+     * can reuse what the context already decoded override it.
+     */
+    protected List<byte[]> createThumbnails(final ProcessingContext context, final List<Integer> widths) throws Exception {
+        return createThumbnails(new File(context.getPath()), widths);
+    }
+
+    /**
+     * Runs a single ImageMagick convert for all the thumbnails : the operation must already contain the source image,
+     * every width is then resized from the previous one. All but the last thumbnail are written with "-write" to
+     * temporary files, the last one goes to the output.
      */
-    protected abstract byte[] createThumbnail(final InputStream in, final Integer width, final Integer height, final byte[] originalFileInfo) throws Exception;
+    protected static List<byte[]> runThumbnailChain(final IMOperation op, final List<Integer> widths) throws Exception {
+        final List<File> intermediateFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < widths.size(); i++) {
+                if (widths.get(i) != null) {
+                    op.thumbnail(widths.get(i), null);
+                }
+                if (i < widths.size() - 1) {
+                    final File intermediateFile = File.createTempFile("thumbnail", ".jpg");
+                    intermediateFiles.add(intermediateFile);
+                    op.write(IMAGE_OUTPUT_FORMAT + intermediateFile.getAbsolutePath());
+                }
+            }
+            // New file path, generating a jpg format thumbnail
+            op.addImage(IMAGE_OUTPUT_FORMAT + "-");
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final Pipe pipeOut = new Pipe(null, out);
+
+            final ConvertCmd convert = new ConvertCmd();
+            convert.setOutputConsumer(pipeOut);
+            convert.run(op);
+
+            final List<byte[]> results = new ArrayList<>();
+            for (final File intermediateFile : intermediateFiles) {
+                results.add(Files.readAllBytes(intermediateFile.toPath()));
+            }
+            results.add(out.toByteArray());
+            return results;
+        } finally {
+            for (final File intermediateFile : intermediateFiles) {
+                intermediateFile.delete();
+            }
+        }
+    }
 }
\ No newline at end of file
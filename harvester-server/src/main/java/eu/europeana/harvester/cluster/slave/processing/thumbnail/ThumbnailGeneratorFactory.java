@@ -23,4 +23,21 @@ public class ThumbnailGeneratorFactory {
             default :  throw new Exception("No thumbnail supported for " + contentType + " content type.");
         }
     }
+
+    /**
+     * Same as {@link #getThumbnailGenerator(ContentType, String)} but the thumbnails of the common image formats
+     * (JPEG, PNG, GIF, BMP) are generated in the JVM by {@link ThumbnailJavaImageGenerator}, without forking ImageMagick.
+     *
+     * @param contentType the MIME type of the file you are generating thumbnail for
+     * @param mimeType the exact mime type of the file
+     * @param colorMapPath set in config
+     * @return a new ThumbnailGenerator instance
+     * @throws Exception
+     */
+    public static ThumbnailGenerator getThumbnailGenerator(final ContentType contentType, final String mimeType, final String colorMapPath) throws Exception {
+        if (ContentType.IMAGE == contentType && ThumbnailJavaImageGenerator.supports(mimeType)) {
+            return new ThumbnailJavaImageGenerator(colorMapPath);
+        }
+        return getThumbnailGenerator(contentType, colorMapPath);
+    }
 }
@@ -4,19 +4,31 @@ import org.im4java.core.ConvertCmd;
 import org.im4java.core.IMOperation;
 import org.im4java.process.Pipe;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by andra on 14.06.2016.
  */
 public class ThumbnailImageGenerator extends ThumbnailGenerator {
 
+    /**
+     * How many times larger than the thumbnail the large JPEGs are decoded.
+     */
+    static final int DECODE_SIZE_FACTOR = 2;
+
     public ThumbnailImageGenerator(String colorMathPath) {
         super(colorMathPath);
     }
 
-    protected byte[] createThumbnail(final InputStream in, final Integer width, final Integer height, final byte[] originalFileInfo) throws Exception {
+    protected byte[] createThumbnail(final File original, final Integer width, final Integer height) throws Exception {
         final IMOperation op = new IMOperation();
 
         if (width != null && height != null) {
@@ -30,20 +42,81 @@ public class ThumbnailImageGenerator extends ThumbnailGenerator {
             op.thumbnail(null, height);
         } else {} // Scenario 4 : use original values for both width and height
 
-        // File source path
-        op.addImage("-");
+        addDecodeSizeHint(op, original, width);
+        // File source path, ImageMagick reads it from the disk
+        op.addImage(original.getAbsolutePath());
         // New file path, generating a jpg format thumbnail
         op.addImage(IMAGE_OUTPUT_FORMAT + "-");
 
-        final Pipe pipeIn = new Pipe(in, null);
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         final Pipe pipeOut = new Pipe(null, out);
 
         final ConvertCmd convert = new ConvertCmd();
-        convert.setInputProvider(pipeIn);
         convert.setOutputConsumer(pipeOut);
         convert.run(op);
 
         return out.toByteArray();
     }
-}
+
+    @Override
+    protected List<byte[]> createThumbnails(final File original, final List<Integer> widths) throws Exception {
+        final IMOperation op = new IMOperation();
+        // The first width is the largest one
+        addDecodeSizeHint(op, original, widths.isEmpty() ? null : widths.get(0));
+        // File source path, ImageMagick reads it from the disk
+        op.addImage(original.getAbsolutePath());
+        return runThumbnailChain(op, widths);
+    }
+
+    /**
+     * Lets libjpeg decode a large JPEG at a reduced resolution (DCT scaling by 1/2, 1/4 or 1/8) instead of decoding
+     * all the pixels & throwing most of them away in the resize : a 10000x10000 original is decoded at ~1/8 of its
+     * size, which saves both the time and the memory of the full decoding. The decoded image is kept at least
+     * {@link #DECODE_SIZE_FACTOR} times larger than the thumbnail so that the resize still has something to smooth.
+     */
+    private static void addDecodeSizeHint(final IMOperation op, final File original, final Integer width) {
+        final Dimension decodeSize = jpegDecodeSize(original, width);
+        if (decodeSize != null) {
+            op.define("jpeg:size=" + decodeSize.width + "x" + decodeSize.height);
+        }
+    }
+
+    /**
+     * @return the size to decode the JPEG at or null if it's not a JPEG or it's too small to be worth it
+     */
+    static Dimension jpegDecodeSize(final File original, final Integer width) {
+        if (width == null || original == null || !original.isFile()) {
+            return null;
+        }
+
+        // Only the header is read, to learn the size of the original
+        final Dimension originalSize;
+        try (final ImageInputStream imageIn = ImageIO.createImageInputStream(original)) {
+            if (imageIn == null || imageIn.read() != 0xFF || imageIn.read() != 0xD8 || imageIn.read() != 0xFF) {
+                return null;
+            }
+            imageIn.seek(0);
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                originalSize = new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        final int decodeWidth = width * DECODE_SIZE_FACTOR;
+        if (originalSize.width < decodeWidth * 2) {
+            // libjpeg can't reduce it by at least 1/2
+            return null;
+        }
+        final int decodeHeight = (int) Math.ceil((double) originalSize.height * decodeWidth / originalSize.width);
+        return new Dimension(decodeWidth, Math.max(1, decodeHeight));
+    }
+}
\ No newline at end of file
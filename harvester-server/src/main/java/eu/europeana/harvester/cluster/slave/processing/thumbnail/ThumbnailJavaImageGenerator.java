@@ -0,0 +1,229 @@
+package eu.europeana.harvester.cluster.slave.processing.thumbnail;
+
+import eu.europeana.harvester.cluster.slave.processing.DecodedImage;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the thumbnails of the common image formats in the JVM, without forking an ImageMagick process :
+ * the original is decoded with subsampling (only the pixels needed for the thumbnail are read), downscaled in
+ * several steps to keep the quality of a single high quality resize & encoded as JPEG. During the processing of a
+ * file the decoded original is taken from the {@link ProcessingContext}, where it's shared with the color extraction.
+ *
+ * The images that ImageIO can't decode (ie. CMYK JPEGs) are handed over to {@link ThumbnailImageGenerator}.
+ */
+public class ThumbnailJavaImageGenerator extends ThumbnailGenerator {
+
+    /**
+     * The formats that ImageIO decodes as well as ImageMagick. Everything else goes to ImageMagick.
+     */
+    private static final Set<String> SUPPORTED_MIME_TYPES = new HashSet<>(Arrays.asList(
+            "image/jpeg", "image/pjpeg", "image/png", "image/gif", "image/bmp", "image/x-ms-bmp"));
+
+    private static final float JPEG_QUALITY = 0.92f;
+
+    private final ThumbnailImageGenerator fallback;
+
+    public ThumbnailJavaImageGenerator(String colorMapPath) {
+        super(colorMapPath);
+        this.fallback = new ThumbnailImageGenerator(colorMapPath);
+    }
+
+    /**
+     * @return true if the thumbnails of the images with the mime type can be generated in the JVM
+     */
+    public static boolean supports(final String mimeType) {
+        return mimeType != null && SUPPORTED_MIME_TYPES.contains(mimeType.trim().toLowerCase()) &&
+                ImageIO.getImageReadersByMIMEType(mimeType.trim().toLowerCase()).hasNext();
+    }
+
+    protected byte[] createThumbnail(final File original, final Integer width, final Integer height) throws Exception {
+        final DecodedImage decoded = decode(original, width, height);
+        if (decoded == null) {
+            return fallback.createThumbnail(original, width, height);
+        }
+        return encodeJpeg(scaleAll(decoded, Collections.singletonList(width), height).get(0));
+    }
+
+    /**
+     * Decodes the original once, at the resolution needed by the largest thumbnail, & resizes every thumbnail from
+     * the previous one.
+     */
+    @Override
+    protected List<byte[]> createThumbnails(final File original, final List<Integer> widths) throws Exception {
+        final DecodedImage decoded = decode(original, widths.get(0), null);
+        if (decoded == null) {
+            return fallback.createThumbnails(original, widths);
+        }
+        return encodeJpegs(scaleAll(decoded, widths, null));
+    }
+
+    /**
+     * Resizes the original already decoded for the processing of the file, unless it's too small for the largest
+     * thumbnail.
+     */
+    @Override
+    protected List<byte[]> createThumbnails(final ProcessingContext context, final List<Integer> widths) throws Exception {
+        final DecodedImage decoded = context.getDecodedImage();
+        if (decoded == null || !isLargeEnough(decoded, widths.get(0), null)) {
+            return createThumbnails(new File(context.getPath()), widths);
+        }
+        return encodeJpegs(scaleAll(decoded, widths, null));
+    }
+
+    /**
+     * Decodes the image with subsampling : only the rows & the columns needed for a thumbnail of the given size are
+     * decoded, with {@link ThumbnailImageGenerator#DECODE_SIZE_FACTOR} times more pixels than the thumbnail so that
+     * the final resize has something to smooth. The file is read through a random access stream.
+     *
+     * @return the decoded image or null if ImageIO can't read it (ie. CMYK JPEGs), ImageMagick does it then
+     */
+    public static DecodedImage decode(final File original, final Integer width, final Integer height) {
+        try (final ImageInputStream imageIn = ImageIO.createImageInputStream(original)) {
+            if (imageIn == null) {
+                return null;
+            }
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                final int originalWidth = reader.getWidth(0);
+                final int originalHeight = reader.getHeight(0);
+                final Dimension target = thumbnailSize(originalWidth, originalHeight, width, height);
+
+                final ImageReadParam param = reader.getDefaultReadParam();
+                final int subsampling = Math.max(1, Math.min(originalWidth / target.width, originalHeight / target.height)
+                        / ThumbnailImageGenerator.DECODE_SIZE_FACTOR);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return new DecodedImage(reader.read(0, param), originalWidth, originalHeight);
+            } finally {
+                reader.dispose();
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean isLargeEnough(final DecodedImage decoded, final Integer width, final Integer height) {
+        final Dimension target = thumbnailSize(decoded.getOriginalWidth(), decoded.getOriginalHeight(), width, height);
+        return decoded.getImage().getWidth() >= target.width && decoded.getImage().getHeight() >= target.height;
+    }
+
+    /**
+     * @param widths the widths of the thumbnails, largest first
+     * @return the thumbnails, each one resized from the previous one
+     */
+    private static List<BufferedImage> scaleAll(final DecodedImage decoded, final List<Integer> widths, final Integer height) {
+        BufferedImage image = decoded.getImage();
+        final List<BufferedImage> results = new ArrayList<>();
+        for (final Integer width : widths) {
+            final Dimension target = thumbnailSize(decoded.getOriginalWidth(), decoded.getOriginalHeight(), width, height);
+            image = scale(image, target.width, target.height);
+            results.add(image);
+        }
+        return results;
+    }
+
+    private static List<byte[]> encodeJpegs(final List<BufferedImage> thumbnails) throws Exception {
+        final List<byte[]> results = new ArrayList<>();
+        for (final BufferedImage thumbnail : thumbnails) {
+            results.add(encodeJpeg(thumbnail));
+        }
+        return results;
+    }
+
+    /**
+     * Same geometry as the ImageMagick "-thumbnail WxH" : the aspect ratio is always kept.
+     */
+    static Dimension thumbnailSize(final int originalWidth, final int originalHeight, final Integer width, final Integer height) {
+        if (width != null && height != null) {
+            final double ratio = Math.min((double) width / originalWidth, (double) height / originalHeight);
+            return new Dimension(Math.max(1, (int) Math.round(originalWidth * ratio)), Math.max(1, (int) Math.round(originalHeight * ratio)));
+        }
+        if (width != null) {
+            return new Dimension(width, Math.max(1, (int) Math.round((double) originalHeight * width / originalWidth)));
+        }
+        if (height != null) {
+            return new Dimension(Math.max(1, (int) Math.round((double) originalWidth * height / originalHeight)), height);
+        }
+        return new Dimension(originalWidth, originalHeight);
+    }
+
+    /**
+     * Halves the image until it's less than twice the thumbnail & does the last step with a bicubic interpolation.
+     * The transparent areas become white, as JPEG has no alpha : every step draws over white, so the image is
+     * composited by the first step that resizes it, there's no copy at the size of the original.
+     */
+    static BufferedImage scale(final BufferedImage image, final int width, final int height) {
+        BufferedImage current = image;
+        int currentWidth = current.getWidth();
+        int currentHeight = current.getHeight();
+
+        while (currentWidth / 2 >= width && currentHeight / 2 >= height) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, currentWidth, currentHeight, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (currentWidth != width || currentHeight != height) {
+            current = draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        } else if (current == image && image.getType() != BufferedImage.TYPE_INT_RGB) {
+            // Already at the size of the thumbnail, only the background is needed
+            current = draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(final BufferedImage image, final int width, final int height, final Object interpolation) {
+        final BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private static byte[] encodeJpeg(final BufferedImage image) throws Exception {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
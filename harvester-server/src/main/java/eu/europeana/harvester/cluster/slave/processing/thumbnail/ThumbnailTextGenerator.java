@@ -5,7 +5,8 @@ import org.im4java.core.IMOperation;
 import org.im4java.process.Pipe;
 
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.File;
+import java.util.List;
 
 /**
  * Created by andra on 14.06.2016.
@@ -18,7 +19,7 @@ public class ThumbnailTextGenerator extends ThumbnailGenerator {
         super(colorMathPath);
     }
 
-    protected byte[] createThumbnail(final InputStream in, final Integer width, final Integer height, final byte[] originalFileInfo) throws Exception {
+    protected byte[] createThumbnail(final File original, final Integer width, final Integer height) throws Exception {
         final IMOperation op = new IMOperation();
 
         if (width != null && height != null) {
@@ -37,19 +38,33 @@ public class ThumbnailTextGenerator extends ThumbnailGenerator {
         // Apply alpha remove
         op.alpha("remove");
         // Source file path, PDF_PAGE_NO_TO_SHOW applies conversion only on the first page
-        op.addImage("-" + PDF_PAGE_NO_TO_SHOW);
+        op.addImage(original.getAbsolutePath() + PDF_PAGE_NO_TO_SHOW);
         // New file path, generating a jpg format thumbnail
         op.addImage(IMAGE_OUTPUT_FORMAT + "-");
 
-        final Pipe pipeIn = new Pipe(in, null);
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         final Pipe pipeOut = new Pipe(null, out);
 
         final ConvertCmd convert = new ConvertCmd();
-        convert.setInputProvider(pipeIn);
         convert.setOutputConsumer(pipeOut);
         convert.run(op);
 
         return out.toByteArray();
     }
+
+    /**
+     * Renders the first page straight from the file on disk : Ghostscript then reads only the objects of that page
+     * instead of getting the whole document through the input.
+     */
+    @Override
+    protected List<byte[]> createThumbnails(final File original, final List<Integer> widths) throws Exception {
+        final IMOperation op = new IMOperation();
+        // PDF_PAGE_NO_TO_SHOW applies conversion only on the first page
+        op.addImage(original.getAbsolutePath() + PDF_PAGE_NO_TO_SHOW);
+        // Set white background
+        op.background("white");
+        // Apply alpha remove
+        op.alpha("remove");
+        return runThumbnailChain(op, widths);
+    }
 }
\ No newline at end of file
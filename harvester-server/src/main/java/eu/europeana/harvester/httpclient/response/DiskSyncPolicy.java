@@ -0,0 +1,15 @@
+package eu.europeana.harvester.httpclient.response;
+
+/**
+ * When the content stored on disk is forced to the storage device.
+ */
+public enum DiskSyncPolicy {
+    /**
+     * Never, the OS decides when the pages are written.
+     */
+    NONE,
+    /**
+     * Once per task, when the response is closed.
+     */
+    ON_CLOSE
+}
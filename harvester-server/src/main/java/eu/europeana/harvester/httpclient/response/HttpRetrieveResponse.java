@@ -6,6 +6,8 @@ import net.logstash.logback.marker.MapEntriesAppendingMarker;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +28,16 @@ import java.util.Map;
 
      void addHeader(String type, String value);
 
+     /**
+      * The ETag response header as sent by the server. Null if missing.
+      */
+     String getETag();
+
+     /**
+      * The Last-Modified response header as sent by the server. Null if missing.
+      */
+     String getLastModified();
+
      RetrievingState getState();
 
      void setState(RetrievingState retrievingState);
@@ -34,8 +46,37 @@ import java.util.Map;
 
      void addContent(byte[] content) throws Exception;
 
+     /**
+      * Adds the remaining bytes of the buffer to the content. The buffer position is advanced to its limit.
+      */
+     void addContent(ByteBuffer content) throws Exception;
+
+     /**
+      * Adds the remaining bytes of the channel (from its position to its end) to the content. The disk storage
+      * transfers them channel to channel, without copying them through the heap.
+      */
+     void addContent(FileChannel source) throws Exception;
+
+     /**
+      * Hint from the downloader about the final size of the content (ie. the Content-Length header).
+      * The disk storage sets the length of the file upfront, which makes it a sparse file : it doesn't
+      * reserve the disk space.
+      */
+     void expectContentSizeInBytes(long contentSizeInBytes);
+
      Long getContentSizeInBytes();
 
+     /**
+      * Marks the content as partial : only the header (and the trailer) of the file was retrieved, the rest is a hole
+      * in the file on disk. The size is then the one announced by the server for the whole file.
+      */
+     void markHeaderOnly(long contentLengthInBytes);
+
+     /**
+      * @return true if only the header of the content was retrieved
+      */
+     boolean isHeaderOnly();
+
      Throwable getException();
 
      void setException(Throwable exception);
@@ -5,6 +5,8 @@ import net.logstash.logback.marker.MapEntriesAppendingMarker;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -32,12 +34,25 @@ abstract class HttpRetrieveResponseBase implements HttpRetrieveResponse {
      */
     private Map<String, String> responseHeaders = new HashMap<String, String>();
 
+    /**
+     * The validators of the content, as sent by the server. They are sent back as they are (If-None-Match,
+     * If-Range), so they must never go through the sanitising of the stored headers.
+     */
+    private String eTag;
+
+    private String lastModified;
+
     /**
      * The size of the content in bytes. Should always be used instead of getting the content size as, depending
      * on the storage strategy, loading the content might be very expensive.
      */
     protected Long contentSizeInBytes = 0l;
 
+    /**
+     * Whether only the header of the content was retrieved.
+     */
+    private boolean headerOnly = false;
+
     /**
      * The HTTP response code.
      */
@@ -111,21 +126,83 @@ abstract class HttpRetrieveResponseBase implements HttpRetrieveResponse {
 
     @Override
     synchronized public void addHeader(String type, String value) {
+        final boolean validator = "ETag".equalsIgnoreCase(type) || "Last-Modified".equalsIgnoreCase(type);
+        if ("ETag".equalsIgnoreCase(type)) {
+            eTag = value;
+        } else if ("Last-Modified".equalsIgnoreCase(type)) {
+            lastModified = value;
+        }
+
         type = type.replace("%", "");
         type = type.replace("$", "");
         type = type.replace(".", "");
-        value = value.replace("%", "");
-        value = value.replace("$", "");
-        value = value.replace(".", "");
+        // The validators are stored raw too : the next conditional download sends them back from the stored headers
+        if (!validator) {
+            value = value.replace("%", "");
+            value = value.replace("$", "");
+            value = value.replace(".", "");
+        }
 
         responseHeaders.put(type, value);
     }
 
+    @Override
+    synchronized public String getETag() {
+        return eTag;
+    }
+
+    @Override
+    synchronized public String getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public void addContent(ByteBuffer content) throws Exception {
+        // By default the storage works with arrays.
+        final byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        addContent(bytes);
+    }
+
+    @Override
+    public void addContent(FileChannel source) throws Exception {
+        // By default the storage works with arrays.
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            addContent(buffer);
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void expectContentSizeInBytes(long contentSizeInBytes) {
+        // NO IMPLEMENTATION as by default the storage can't make use of it.
+    }
+
     @Override
     synchronized public Long getContentSizeInBytes() {
         return contentSizeInBytes;
     }
 
+    @Override
+    synchronized public void markHeaderOnly(final long contentLengthInBytes) {
+        headerOnly = true;
+        contentSizeInBytes = contentLengthInBytes;
+    }
+
+    @Override
+    synchronized public boolean isHeaderOnly() {
+        return headerOnly;
+    }
+
+    /**
+     * Forgets that only the header was retrieved, before the content is retrieved again.
+     */
+    synchronized protected void resetHeaderOnly() {
+        headerOnly = false;
+    }
+
     @Override
     synchronized public Throwable getException() {
         return exception;
@@ -4,14 +4,17 @@ import com.google.common.io.Files;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Stores the retrieved content on disk thus minimizing the memory usage to hold only meta info (ie. headers, url, etc.)
+ * The content is written straight in a file channel, without any intermediate stream or per chunk flush.
  */
 public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase implements HttpRetrieveResponse {
 
@@ -20,23 +23,46 @@ public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase im
     /**
      * The file where to store the content.
      */
-    private FileOutputStream fo;
+    private RandomAccessFile file;
+
+    /**
+     * The channel of the file where to store the content.
+     */
+    private FileChannel channel;
 
     /**
      * The absolute path on disk where the content of the download will be saved.
      */
     private final String absolutePath;
 
+    /**
+     * When the content is forced to the storage device.
+     */
+    private final DiskSyncPolicy diskSyncPolicy;
+
+    /**
+     * The length the file was extended to upfront. Zero if it was not extended. The file is sparse : no disk
+     * space is allocated until the content is written, so a full disk is still only noticed by the writes.
+     */
+    private long extendedLengthInBytes = 0l;
+
     public HttpRetrieveResponseDiskStorage(String path) throws IOException {
+        this(path, DiskSyncPolicy.NONE);
+    }
+
+    public HttpRetrieveResponseDiskStorage(String path, DiskSyncPolicy diskSyncPolicy) throws IOException {
         if (StringUtils.isBlank(path)) {
             throw new IllegalArgumentException("Path to file is blank");
         }
         this.absolutePath = path;
+        this.diskSyncPolicy = diskSyncPolicy;
     }
 
     @Override
     synchronized public void init() throws IOException {
         contentSizeInBytes = 0l;
+        extendedLengthInBytes = 0l;
+        resetHeaderOnly();
         try {
             final File file = new File(absolutePath);
 
@@ -51,7 +77,8 @@ public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase im
                 throw new RuntimeException("createNewFile: " + absolutePath + " has failed for unknown reason");
             }
 
-            fo = new FileOutputStream(file.getAbsoluteFile());
+            this.file = new RandomAccessFile(file.getAbsoluteFile(), "rw");
+            this.channel = this.file.getChannel();
         } catch (IOException | RuntimeException  e) {
             setState(RetrievingState.ERROR);
             setException(e);
@@ -74,12 +101,43 @@ public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase im
 
     @Override
     synchronized public void addContent(byte[] content) throws Exception {
+        addContent(ByteBuffer.wrap(content));
+    }
+
+    @Override
+    synchronized public void addContent(ByteBuffer content) throws Exception {
+        //lazy load
+        if (null == channel) init();
+        try {
+            final long position = contentSizeInBytes;
+            long written = 0;
+            while (content.hasRemaining()) {
+                written += channel.write(content, position + written);
+            }
+            contentSizeInBytes += written;
+        } catch (IOException e) {
+            setState(RetrievingState.ERROR);
+            setException(e);
+
+            close();
+
+            throw e;
+        }
+    }
+
+    @Override
+    synchronized public void addContent(FileChannel source) throws Exception {
         //lazy load
-        if (null == fo) init();
+        if (null == channel) init();
         try {
-            contentSizeInBytes += content.length;
-            fo.write(content);
-            fo.flush();
+            final long remaining = source.size() - source.position();
+            long transferred = 0;
+            while (transferred < remaining) {
+                final long count = channel.transferFrom(source, contentSizeInBytes + transferred, remaining - transferred);
+                if (count <= 0) break;
+                transferred += count;
+            }
+            contentSizeInBytes += transferred;
         } catch (IOException e) {
             setState(RetrievingState.ERROR);
             setException(e);
@@ -90,22 +148,56 @@ public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase im
         }
     }
 
+    @Override
+    synchronized public void expectContentSizeInBytes(long expectedContentSizeInBytes) {
+        if (expectedContentSizeInBytes <= 0) return;
+        try {
+            //lazy load
+            if (null == channel) init();
+            if (contentSizeInBytes == 0 && extendedLengthInBytes == 0) {
+                file.setLength(expectedContentSizeInBytes);
+                extendedLengthInBytes = expectedContentSizeInBytes;
+            }
+        } catch (IOException e) {
+            // Only a hint, the content is stored even if the file can't be extended.
+            if (null != loggingMarker) {
+                LOG.warn(loggingMarker, "Could not extend file " + absolutePath + " to " + expectedContentSizeInBytes + " bytes", e);
+            } else {
+                LOG.warn("Could not extend file " + absolutePath + " to " + expectedContentSizeInBytes + " bytes", e);
+            }
+        }
+    }
+
     @Override
     synchronized public Long getContentSizeInBytes() {
         return contentSizeInBytes;
     }
 
+    public DiskSyncPolicy getDiskSyncPolicy() {
+        return diskSyncPolicy;
+    }
+
     @Override
     synchronized public void close() throws IOException {
-       if (null != fo) {
-           fo.getChannel().close();
-           fo.close();
+       if (null != channel && channel.isOpen()) {
+           try {
+               // The file is longer than the content when the download was aborted.
+               if (extendedLengthInBytes > contentSizeInBytes) {
+                   channel.truncate(contentSizeInBytes);
+               }
+               if (diskSyncPolicy == DiskSyncPolicy.ON_CLOSE) {
+                   channel.force(true);
+               }
+           } finally {
+               channel.close();
+               file.close();
+           }
        }
     }
 
     @Override
     protected void finalize() throws Throwable {
-        if (null != fo && fo.getFD().valid()) {
+        if (null != channel && channel.isOpen()) {
             if (null != loggingMarker) {
                 LOG.error (loggingMarker, "File: " + absolutePath + " has valid fd");
             }
@@ -114,7 +206,8 @@ public class HttpRetrieveResponseDiskStorage extends HttpRetrieveResponseBase im
             }
 
             try {
-                fo.close();
+                channel.close();
+                file.close();
             }
             catch (Exception e) {
 
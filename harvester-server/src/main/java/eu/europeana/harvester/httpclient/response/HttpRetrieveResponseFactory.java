@@ -6,6 +6,19 @@ package eu.europeana.harvester.httpclient.response;
  */
 public class HttpRetrieveResponseFactory {
 
+    /**
+     * When the content of the disk based responses is forced to the storage device.
+     */
+    private final DiskSyncPolicy diskSyncPolicy;
+
+    public HttpRetrieveResponseFactory() {
+        this(DiskSyncPolicy.NONE);
+    }
+
+    public HttpRetrieveResponseFactory(final DiskSyncPolicy diskSyncPolicy) {
+        this.diskSyncPolicy = diskSyncPolicy;
+    }
+
     /**
      * @param type you have to choose the type of the response you need
      * @param path if you choose disk based response you have to provide a path for it
@@ -17,7 +30,7 @@ public class HttpRetrieveResponseFactory {
             case MEMORY_STORAGE:
                 return new HttpRetrieveResponseMemoryStorage();
             case DISK_STORAGE:
-                return new HttpRetrieveResponseDiskStorage(path);
+                return new HttpRetrieveResponseDiskStorage(path, diskSyncPolicy);
             case NO_STORAGE:
                 return new HttpRetrieveResponseWithNoStorage();
             default:
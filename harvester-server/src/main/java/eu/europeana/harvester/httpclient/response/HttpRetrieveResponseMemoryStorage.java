@@ -17,6 +17,7 @@ public class HttpRetrieveResponseMemoryStorage extends HttpRetrieveResponseBase
     @Override
     public void init() {
         this.content = null;
+        resetHeaderOnly();
     }
 
     @Override
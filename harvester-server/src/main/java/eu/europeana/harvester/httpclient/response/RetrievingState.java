@@ -10,5 +10,6 @@ public enum RetrievingState {
     PROCESSING,
     FINISHED_RATE_LIMIT,
     FINISHED_TIME_LIMIT,
-    FINISHED_SIZE_LIMIT
+    FINISHED_SIZE_LIMIT,
+    FINISHED_UNWANTED_CONTENT
 }
@@ -0,0 +1,84 @@
+package eu.europeana.harvester.cluster.master.accountants;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import eu.europeana.harvester.cluster.domain.DefaultLimits;
+import eu.europeana.harvester.cluster.domain.TaskState;
+import eu.europeana.harvester.cluster.domain.messages.RequestTasks;
+import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
+import eu.europeana.harvester.cluster.domain.messages.inner.AddTask;
+import eu.europeana.harvester.cluster.domain.utils.Pair;
+import eu.europeana.harvester.domain.JobPriority;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AccountantActorHelperTest {
+
+    private ActorSystem system;
+
+    private ActorRef slave;
+
+    private AccountantActorHelper helper;
+
+    @Before
+    public void setUp() {
+        system = ActorSystem.create();
+        slave = new JavaTestKit(system).getRef();
+        helper = new AccountantActorHelper(new DefaultLimits(5, 0l, 10, 0, 1000, 10, 0.5, Duration.standardMinutes(10)));
+        for (int i = 0; i < 100; i++) {
+            final RetrieveUrl task = mock(RetrieveUrl.class);
+            when(task.getId()).thenReturn("task-" + i);
+            when(task.getIpAddress()).thenReturn("10.0.0." + (i % 10));
+            helper.addTask(new AddTask(JobPriority.NORMAL.getPriority(), task.getId(), new Pair<>(task, TaskState.READY)));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void canNotGiveTheCreditOfTheBagsInFlightTwice() {
+        helper.advertiseCredit(slave, new RequestTasks("session", 0, 8, 8, 0l));
+        assertEquals(5, helper.getBagOfTasksForCredit(slave).getTasks().size());
+        assertEquals(3, helper.getBagOfTasksForCredit(slave).getTasks().size());
+        assertTrue(helper.getSlavesWithCredit().isEmpty());
+
+        // The heartbeat arrives before the bags : the free slots are the same but the 8 tasks were already sent
+        helper.advertiseCredit(slave, new RequestTasks("session", 0, 8, 8, 0l));
+        assertTrue(helper.getSlavesWithCredit().isEmpty());
+        assertTrue(helper.getBagOfTasksForCredit(slave).getTasks().isEmpty());
+
+        // The bags arrived & 2 tasks are downloaded
+        helper.advertiseCredit(slave, new RequestTasks("session", 8, 2, 8, 0l));
+        assertEquals(2, helper.getBagOfTasksForCredit(slave).getTasks().size());
+        assertTrue(helper.getSlavesWithCredit().isEmpty());
+    }
+
+    @Test
+    public void canStartTheCountAgainWithANewSession() {
+        helper.advertiseCredit(slave, new RequestTasks("session-1", 0, 4, 4, 0l));
+        assertEquals(4, helper.getBagOfTasksForCredit(slave).getTasks().size());
+
+        // The node master restarted, its count starts again
+        helper.advertiseCredit(slave, new RequestTasks("session-2", 0, 3, 3, 0l));
+        assertEquals(3, helper.getBagOfTasksForCredit(slave).getTasks().size());
+    }
+
+    @Test
+    public void canGiveNoCreditToASlaveWithAFullProcessing() {
+        helper.advertiseCredit(slave, new RequestTasks("session", 10, 8, 0, 1000l));
+        assertTrue(helper.getSlavesWithCredit().isEmpty());
+
+        helper.advertiseCredit(slave, new RequestTasks("session", 10, 8, 1, 1000l));
+        assertEquals(5, helper.getBagOfTasksForCredit(slave).getTasks().size());
+    }
+}
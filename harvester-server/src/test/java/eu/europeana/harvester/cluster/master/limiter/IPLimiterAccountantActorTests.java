@@ -10,6 +10,7 @@ import org.junit.Test;
 
 import java.util.*;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -139,6 +140,56 @@ public class IPLimiterAccountantActorTests {
 
 
 
+    @Test
+    public void canPushReturnedSlotsToTheWaitingTasks() throws InterruptedException {
+        ActorSystem system = ActorSystem.create();
+
+        new JavaTestKit(system) {{
+
+            final ActorRef subject = IPLimiterAccountantActor.createActor(getSystem(), new IPLimiterConfig(1,new HashMap<String, Integer>(),Duration.standardMinutes(10)));
+
+            subject.tell(new ReserveConnectionSlotsRequest(ip1, Arrays.asList("task-1", "task-2")), getRef());
+            while (!msgAvailable()) Thread.sleep(100);
+            final ReserveConnectionSlotsResponse grantedRightAway = expectMsgAnyClassOf(ReserveConnectionSlotsResponse.class);
+            assertEquals(1, grantedRightAway.getGrantedSlots().size());
+            assertEquals("task-1", grantedRightAway.getGrantedSlots().get(0).getTaskID());
+
+            // The returned slot is sent to the waiting task without asking again
+            subject.tell(new ReturnConnectionSlotRequest(grantedRightAway.getGrantedSlots().get(0).getSlotId(), ip1), getRef());
+            while (!msgAvailable()) Thread.sleep(100);
+            final ReserveConnectionSlotsResponse grantedOnReturn = expectMsgAnyClassOf(ReserveConnectionSlotsResponse.class);
+            assertEquals(1, grantedOnReturn.getGrantedSlots().size());
+            assertEquals("task-2", grantedOnReturn.getGrantedSlots().get(0).getTaskID());
+            assertTrue(grantedOnReturn.getGrantedSlots().get(0).getGranted());
+
+        }};
+    }
+
+    @Test
+    public void canDropTheWaitingTasksOfARequesterThatIsGone() throws InterruptedException {
+        ActorSystem system = ActorSystem.create();
+
+        new JavaTestKit(system) {{
+
+            final ActorRef subject = IPLimiterAccountantActor.createActor(getSystem(), new IPLimiterConfig(1,new HashMap<String, Integer>(),Duration.standardMinutes(10)));
+            final JavaTestKit requester = new JavaTestKit(getSystem());
+
+            subject.tell(new ReserveConnectionSlotsRequest(ip1, Arrays.asList("task-1", "task-2")), requester.getRef());
+            final ReserveConnectionSlotsResponse grantedRightAway = requester.expectMsgClass(ReserveConnectionSlotsResponse.class);
+            assertEquals("task-1", grantedRightAway.getGrantedSlots().get(0).getTaskID());
+
+            // The requester stops while task-2 waits : the returned slot is free again instead of going to it
+            getSystem().stop(requester.getRef());
+            Thread.sleep(1000);
+            subject.tell(new ReturnConnectionSlotRequest(grantedRightAway.getGrantedSlots().get(0).getSlotId(), ip1), getRef());
+            subject.tell(new ReserveConnectionSlotRequest(ip1, taskId), getRef());
+            final ReserveConnectionSlotResponse response = expectMsgClass(ReserveConnectionSlotResponse.class);
+            assertTrue(response.getGranted());
+            assertEquals(taskId, response.getTaskID());
+
+        }};
+    }
+
     @Test(timeout = 10000)
     public void canHandle500kRequestsInUnder10Seconds() throws InterruptedException {
 
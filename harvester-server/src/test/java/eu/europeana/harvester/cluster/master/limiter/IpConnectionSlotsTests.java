@@ -1,9 +1,13 @@
 package eu.europeana.harvester.cluster.master.limiter;
 
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
 import org.joda.time.DateTime;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class IpConnectionSlotsTests {
@@ -72,4 +76,102 @@ public class IpConnectionSlotsTests {
 
     }
 
+    @Test
+    public void canGrantReturnedSlotsToTheLongestWaitingTasks() {
+        final IpConnectionSlots ipConnectionSlots = new IpConnectionSlots(2, ip1);
+        final List<ReserveConnectionSlotResponse> grantedSlots =
+                ipConnectionSlots.requestConnectionSlotReservations(Arrays.asList("task-1", "task-2", "task-3"));
+        assertEquals(2, grantedSlots.size());
+        assertEquals("task-1", grantedSlots.get(0).getTaskID());
+        assertEquals("task-2", grantedSlots.get(1).getTaskID());
+        assertEquals(1, ipConnectionSlots.getNumberOfWaitingTasks());
+
+        // A task that waits keeps its place, the new ones queue after it
+        assertTrue(ipConnectionSlots.requestConnectionSlotReservations(Arrays.asList("task-4", "task-3")).isEmpty());
+        assertEquals(2, ipConnectionSlots.getNumberOfWaitingTasks());
+        assertFalse(ipConnectionSlots.requestConnectionSlotReservation(taskId).getGranted());
+
+        assertTrue(ipConnectionSlots.grantSlotsToWaitingTasks().isEmpty());
+        ipConnectionSlots.returnConnectionSlotReservation(grantedSlots.get(0).getSlotId());
+        final List<ReserveConnectionSlotResponse> slotsOfWaitingTasks = ipConnectionSlots.grantSlotsToWaitingTasks();
+        assertEquals(1, slotsOfWaitingTasks.size());
+        assertEquals("task-3", slotsOfWaitingTasks.get(0).getTaskID());
+        assertTrue(slotsOfWaitingTasks.get(0).getGranted());
+        assertEquals(0, ipConnectionSlots.getNumberOfAvailableSlots());
+
+        ipConnectionSlots.setMaxAvailableSlots(3);
+        assertEquals("task-4", ipConnectionSlots.grantSlotsToWaitingTasks().get(0).getTaskID());
+        assertEquals(0, ipConnectionSlots.getNumberOfWaitingTasks());
+    }
+
+    @Test
+    public void canLeaseTheFreeSlotsUntilTheyAreReturned() {
+        final IpConnectionSlots ipConnectionSlots = new IpConnectionSlots(3, ip1);
+        assertTrue(ipConnectionSlots.requestConnectionSlotReservation(taskId).getGranted());
+        final ConnectionSlotLease lease = ipConnectionSlots.leaseConnectionSlots(5, 1000l);
+        assertEquals(2, lease.getNrOfSlots().intValue());
+        assertEquals(ip1, lease.getIp());
+        assertEquals(0, ipConnectionSlots.getNumberOfAvailableSlots());
+        assertEquals(0, ipConnectionSlots.leaseConnectionSlots(1, 1000l).getNrOfSlots().intValue());
+
+        assertTrue(ipConnectionSlots.renewConnectionSlotLease(lease.getLeaseId()));
+        assertTrue(ipConnectionSlots.returnConnectionSlotLease(lease.getLeaseId()));
+        assertEquals(2, ipConnectionSlots.getNumberOfAvailableSlots());
+        assertFalse(ipConnectionSlots.returnConnectionSlotLease(lease.getLeaseId()));
+        assertFalse(ipConnectionSlots.renewConnectionSlotLease(lease.getLeaseId()));
+    }
+
+    @Test
+    public void canStopRenewingALeaseWhileTasksWait() throws InterruptedException {
+        final IpConnectionSlots ipConnectionSlots = new IpConnectionSlots(2, ip1);
+        final ConnectionSlotLease lease = ipConnectionSlots.leaseConnectionSlots(2, 1000l);
+        assertEquals(2, lease.getNrOfSlots().intValue());
+
+        assertTrue(ipConnectionSlots.requestConnectionSlotReservations(Arrays.asList("task-1")).isEmpty());
+        assertEquals(0, ipConnectionSlots.leaseConnectionSlots(1, 1000l).getNrOfSlots().intValue());
+        assertFalse(ipConnectionSlots.renewConnectionSlotLease(lease.getLeaseId()));
+
+        // The slots of the lease that wasn't renewed are slots of single tasks, returned one by one by the slave
+        assertTrue(ipConnectionSlots.grantSlotsToWaitingTasks().isEmpty());
+        assertTrue(ipConnectionSlots.returnConnectionSlotReservation(lease.getSlotIds().get(0)));
+        final List<ReserveConnectionSlotResponse> slotsOfWaitingTasks = ipConnectionSlots.grantSlotsToWaitingTasks();
+        assertEquals(1, slotsOfWaitingTasks.size());
+        assertEquals("task-1", slotsOfWaitingTasks.get(0).getTaskID());
+
+        // Or they expire if the slave is gone
+        Thread.sleep(2 * 1000);
+        assertEquals(2, ipConnectionSlots.reclaimOccupiedSlotsOlderThan(DateTime.now().minusSeconds(1)).intValue());
+    }
+
+    @Test
+    public void canExpireTheLeasesThatAreNotRenewed() throws InterruptedException {
+        final IpConnectionSlots ipConnectionSlots = new IpConnectionSlots(2, ip1);
+        final ConnectionSlotLease lease = ipConnectionSlots.leaseConnectionSlots(2, 1000l);
+        Thread.sleep(2 * 1000);
+        ipConnectionSlots.reclaimOccupiedSlotsOlderThan(DateTime.now().minusSeconds(1));
+        assertEquals(2, ipConnectionSlots.getNumberOfAvailableSlots());
+        assertFalse(ipConnectionSlots.renewConnectionSlotLease(lease.getLeaseId()));
+    }
+
+    @Test
+    public void canExpireTheWaitingTasksThatAreNotAskedForAgain() throws InterruptedException {
+        final IpConnectionSlots ipConnectionSlots = new IpConnectionSlots(1, ip1);
+        final List<ReserveConnectionSlotResponse> grantedSlots =
+                ipConnectionSlots.requestConnectionSlotReservations(Arrays.asList("task-1", "task-2", "task-3"));
+        assertEquals(1, grantedSlots.size());
+
+        // Only task-3 is asked for again, task-2 expires
+        Thread.sleep(2 * 1000);
+        assertTrue(ipConnectionSlots.requestConnectionSlotReservations(Arrays.asList("task-3")).isEmpty());
+        assertEquals(Arrays.asList("task-2"), ipConnectionSlots.expireWaitingTasksAskedForBefore(DateTime.now().minusSeconds(1)));
+        assertEquals(1, ipConnectionSlots.getNumberOfWaitingTasks());
+
+        ipConnectionSlots.removeWaitingTasks(Arrays.asList("task-3"));
+        assertEquals(0, ipConnectionSlots.getNumberOfWaitingTasks());
+
+        // Nothing waits anymore, the single tasks get the returned slot
+        ipConnectionSlots.returnConnectionSlotReservation(grantedSlots.get(0).getSlotId());
+        assertTrue(ipConnectionSlots.grantSlotsToWaitingTasks().isEmpty());
+        assertTrue(ipConnectionSlots.requestConnectionSlotReservation(taskId).getGranted());
+    }
 }
@@ -2,6 +2,7 @@ package eu.europeana.harvester.cluster.master.limiter;
 
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotsRequest;
 import eu.europeana.harvester.cluster.master.limiter.domain.ReturnConnectionSlotRequest;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -59,6 +60,27 @@ public class IpLimiterAccountantTests {
     }
 
 
+    @Test
+    public void canReserveSlotsInBatchesAndGrantTheReturnedOnesToTheWaitingTasks() {
+        final Map<String, Integer> specificLimitsPerIp = new HashMap<>();
+        specificLimitsPerIp.put(ip2, 2);
+        final IpLimiterAccountant ipLimiterAccountant = new IpLimiterAccountant(1, specificLimitsPerIp);
+
+        final List<ReserveConnectionSlotResponse> ip1Slots =
+                ipLimiterAccountant.reserveConnectionSlotsRequest(new ReserveConnectionSlotsRequest(ip1, Arrays.asList("task-1", "task-2")));
+        assertEquals(1, ip1Slots.size());
+        assertEquals(2, ipLimiterAccountant.reserveConnectionSlotsRequest(new ReserveConnectionSlotsRequest(ip2, Arrays.asList("task-3", "task-4", "task-5"))).size());
+        assertTrue(ipLimiterAccountant.grantSlotsToWaitingTasks().isEmpty());
+
+        ipLimiterAccountant.returnConnectionSlotRequest(new ReturnConnectionSlotRequest(ip1Slots.get(0).getSlotId(), ip1));
+        final List<ReserveConnectionSlotResponse> slotsOfWaitingTasks = ipLimiterAccountant.grantSlotsToWaitingTasks(ip1);
+        assertEquals(1, slotsOfWaitingTasks.size());
+        assertEquals("task-2", slotsOfWaitingTasks.get(0).getTaskID());
+
+        ipLimiterAccountant.setSpecificLimitPerIp(ip2, 3);
+        assertEquals("task-5", ipLimiterAccountant.grantSlotsToWaitingTasks().get(0).getTaskID());
+    }
+
     @Test(timeout=10000)
     public void canHandle1MillionRequestsInUnder5Seconds() {
         final DateTime start = DateTime.now();
@@ -4,9 +4,13 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.testkit.JavaTestKit;
 import com.google.common.collect.Lists;
+import eu.europeana.harvester.cluster.domain.ProcessingPipelineConfig;
+import eu.europeana.harvester.cluster.domain.messages.DoneDownload;
 import eu.europeana.harvester.cluster.domain.messages.DoneProcessing;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrlWithProcessingConfig;
+import eu.europeana.harvester.cluster.domain.messages.WorkerReady;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingStage;
 import eu.europeana.harvester.cluster.slave.processing.SlaveProcessor;
 import eu.europeana.harvester.cluster.slave.processing.color.ColorExtractor;
 import eu.europeana.harvester.cluster.slave.processing.metainfo.MediaMetaInfoExtractor;
@@ -15,6 +19,7 @@ import eu.europeana.harvester.db.MediaStorageClient;
 import eu.europeana.harvester.db.filesystem.FileSystemMediaStorageClientImpl;
 import eu.europeana.harvester.domain.*;
 import eu.europeana.harvester.httpclient.response.HttpRetrieveResponseFactory;
+import eu.europeana.harvester.httpclient.response.ResponseType;
 import org.apache.commons.io.FileUtils;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -29,14 +34,17 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class RetrieveAndProcessActorTest {
@@ -350,7 +358,6 @@ public class RetrieveAndProcessActorTest {
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doThrow(new Exception("")).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
-                any(new byte[]{}.getClass()),
                 anyString());
 
         final SlaveProcessor slaveProcessorFail = new SlaveProcessor(
@@ -415,7 +422,6 @@ public class RetrieveAndProcessActorTest {
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doThrow(new Exception("bere")).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
-                any(new byte[]{}.getClass()),
                 anyString());
 
         doThrow(new RuntimeException("exception")).when(mediaStorageClientFail).createOrModify(any(MediaFile.class));
@@ -642,7 +648,6 @@ public class RetrieveAndProcessActorTest {
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doThrow(new Exception("")).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
-                any(new byte[]{}.getClass()),
                 anyString());
 
         final SlaveProcessor slaveProcessorFail = new SlaveProcessor(
@@ -706,7 +711,6 @@ public class RetrieveAndProcessActorTest {
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doThrow(new Exception("bere")).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
-                any(new byte[]{}.getClass()),
                 anyString());
 
         doThrow(new RuntimeException("exceptio")).when(mediaStorageClientFail).createOrModify(any(MediaFile.class));
@@ -1076,4 +1080,75 @@ public class RetrieveAndProcessActorTest {
             assertEquals (ProcessingJobSubTaskState.NEVER_EXECUTED, msg2.getStats().getThumbnailStorageState());
         }};
     }
+
+    @Test
+    public void canProcessEachFileWithItsOwnTaskWhenTheWorkerTakesTheNextTaskBeforeTheProcessing() throws Exception {
+        final List<ProcessingJobSubTask> subTasks = Lists.newArrayList(
+                new ProcessingJobSubTask(ProcessingJobSubTaskType.META_EXTRACTION, null)
+        );
+
+        final RetrieveUrl task1 = new RetrieveUrl(jpegImage1GitHubUrl, new ProcessingJobLimits(), DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,"a",
+                "referenceid-1", Collections.<String, String>emptyMap(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,
+                        "source-reference-1", subTasks), null,new ReferenceOwner("unknown","unknwon","unknown"));
+        final RetrieveUrl task2 = new RetrieveUrl(jpegMediafrUrl, new ProcessingJobLimits(), DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,"a",
+                "referenceid-2", Collections.<String, String>emptyMap(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,
+                        "source-reference-2", subTasks), null,new ReferenceOwner("unknown","unknwon","unknown"));
+
+        final RetrieveUrlWithProcessingConfig taskWithConfig1 = new RetrieveUrlWithProcessingConfig(task1,PROCESSING_PATH_PREFIX+task1.getId());
+        final RetrieveUrlWithProcessingConfig taskWithConfig2 = new RetrieveUrlWithProcessingConfig(task2,PROCESSING_PATH_PREFIX+task2.getId());
+
+        final SlaveProcessor slaveProcessor = mock(SlaveProcessor.class);
+
+        // The only processing worker is busy : both files wait in the stage queue
+        final ProcessingStage processingStage = new ProcessingStage(new ProcessingPipelineConfig(true, 1, 2, 0));
+        final CountDownLatch release = new CountDownLatch(1);
+        processingStage.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            new JavaTestKit(system) {{
+
+                final ActorRef subject = RetrieveAndProcessActor.createActor(getSystem(),
+                        httpRetrieveResponseFactory, slaveProcessor, processingStage);
+
+                // The slot of each task is freed as soon as its download is over, before the processing
+                subject.tell(taskWithConfig1, getRef());
+                assertEquals(task1.getId(), expectMsgClass(duration("30 seconds"), DoneDownload.class).getTaskID());
+                expectMsgClass(duration("30 seconds"), WorkerReady.class);
+                subject.tell(taskWithConfig2, getRef());
+                assertEquals(task2.getId(), expectMsgClass(duration("30 seconds"), DoneDownload.class).getTaskID());
+                expectMsgClass(duration("30 seconds"), WorkerReady.class);
+
+                release.countDown();
+
+                final Map<String, DoneProcessing> doneProcessings = new HashMap<>();
+                for (final Object msg : receiveN(2, duration("30 seconds"))) {
+                    final DoneProcessing doneProcessing = (DoneProcessing) msg;
+                    doneProcessings.put(doneProcessing.getTaskID(), doneProcessing);
+                }
+
+                assertEquals(task1.getUrl(), doneProcessings.get(task1.getId()).getUrl());
+                assertEquals(task2.getUrl(), doneProcessings.get(task2.getId()).getUrl());
+
+                verify(slaveProcessor).process(any(ProcessingJobTaskDocumentReference.class),
+                        eq(taskWithConfig1.getDownloadPath()), eq(jpegImage1GitHubUrl),
+                        any(ResponseType.class), any(ReferenceOwner.class));
+                verify(slaveProcessor).process(any(ProcessingJobTaskDocumentReference.class),
+                        eq(taskWithConfig2.getDownloadPath()), eq(jpegMediafrUrl),
+                        any(ResponseType.class), any(ReferenceOwner.class));
+            }};
+        } finally {
+            processingStage.close();
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import com.google.common.base.Charsets;
+import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.domain.GenericSubTaskConfiguration;
+import eu.europeana.harvester.domain.ProcessingJobSubTask;
+import eu.europeana.harvester.domain.ProcessingJobSubTaskType;
+import eu.europeana.harvester.domain.ThumbnailConfig;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static eu.europeana.harvester.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ContentSnifferTest {
+
+    private static final List<ProcessingJobSubTask> THUMBNAIL_ONLY = Collections.singletonList(
+            new ProcessingJobSubTask(ProcessingJobSubTaskType.GENERATE_THUMBNAIL, new GenericSubTaskConfiguration(new ThumbnailConfig(180, 180))));
+
+    private static final List<ProcessingJobSubTask> ALL_SUB_TASKS = Arrays.asList(
+            new ProcessingJobSubTask(ProcessingJobSubTaskType.META_EXTRACTION, new GenericSubTaskConfiguration()),
+            new ProcessingJobSubTask(ProcessingJobSubTaskType.COLOR_EXTRACTION, new GenericSubTaskConfiguration()),
+            new ProcessingJobSubTask(ProcessingJobSubTaskType.GENERATE_THUMBNAIL, new GenericSubTaskConfiguration(new ThumbnailConfig(180, 180))));
+
+    @Test
+    public void canDetectImagesFromTheirMagicBytesWhateverTheContentTypeHeader() throws IOException {
+        final byte[] image = Files.readAllBytes(Paths.get(PATH_PREFIX + Image1));
+
+        assertEquals(ContentType.IMAGE, ContentSniffer.sniff("image/jpeg", image, image.length));
+        assertEquals(ContentType.IMAGE, ContentSniffer.sniff("text/html", image, image.length));
+        assertEquals(ContentType.IMAGE, ContentSniffer.sniff(null, image, 16));
+    }
+
+    @Test
+    public void canDetectTheMimeTypeOfTheUnambiguousFormats() throws IOException {
+        final byte[] image = Files.readAllBytes(Paths.get(PATH_PREFIX + Image1));
+        final byte[] pdf = Files.readAllBytes(Paths.get(PATH_PREFIX + PDF3));
+        final byte[] audio = Files.readAllBytes(Paths.get(PATH_PREFIX + Audio1));
+
+        assertEquals("image/jpeg", ContentSniffer.sniffMimeType(image, image.length));
+        assertEquals("application/pdf", ContentSniffer.sniffMimeType(pdf, pdf.length));
+        // Left to the external detection
+        assertNull(ContentSniffer.sniffMimeType(audio, audio.length));
+        assertNull(ContentSniffer.sniffMimeType(image, 2));
+    }
+
+    @Test
+    public void canDetectHtmlPages() {
+        final byte[] page = "\uFEFF\n  <!DOCTYPE html><html><head><title>Landing page</title></head></html>".getBytes(Charsets.UTF_8);
+        final byte[] xhtml = "<?xml version=\"1.0\"?>\n<html xmlns=\"http://www.w3.org/1999/xhtml\"></html>".getBytes(Charsets.UTF_8);
+        final byte[] text = "Not found".getBytes(Charsets.UTF_8);
+
+        assertEquals(ContentType.UNKNOWN, ContentSniffer.sniff("image/jpeg", page, page.length));
+        assertEquals(ContentType.UNKNOWN, ContentSniffer.sniff(null, xhtml, xhtml.length));
+        assertEquals(ContentType.UNKNOWN, ContentSniffer.sniff("text/html; charset=utf-8", text, text.length));
+    }
+
+    @Test
+    public void canLeaveTheContentTypeUndecidedWhenNotSure() {
+        final byte[] unknown = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08};
+
+        assertNull(ContentSniffer.sniff(null, unknown, unknown.length));
+        assertNull(ContentSniffer.sniff("application/octet-stream", unknown, unknown.length));
+        assertEquals(ContentType.VIDEO, ContentSniffer.sniff("video/x-unknown", unknown, unknown.length));
+        assertTrue(ContentSniffer.canProduceAnySubTask(null, ALL_SUB_TASKS));
+    }
+
+    @Test
+    public void canDecideWhetherTheSubTasksCanBeExecuted() {
+        assertFalse(ContentSniffer.canProduceAnySubTask(ContentType.UNKNOWN, ALL_SUB_TASKS));
+        assertFalse(ContentSniffer.canProduceAnySubTask(ContentType.AUDIO, THUMBNAIL_ONLY));
+        assertTrue(ContentSniffer.canProduceAnySubTask(ContentType.AUDIO, ALL_SUB_TASKS));
+        assertTrue(ContentSniffer.canProduceAnySubTask(ContentType.PDF, THUMBNAIL_ONLY));
+        assertTrue(ContentSniffer.canProduceAnySubTask(ContentType.IMAGE, THUMBNAIL_ONLY));
+    }
+}
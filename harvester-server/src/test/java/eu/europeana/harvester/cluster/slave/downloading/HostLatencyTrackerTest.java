@@ -0,0 +1,111 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import eu.europeana.harvester.cluster.domain.AdaptiveTimeoutConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HostLatencyTrackerTest {
+
+    private static final String HOST = "www.europeana.eu";
+
+    private static final long JOB_CONNECT_TIMEOUT = 100 * 1000l;
+
+    private final HostLatencyTracker tracker = new HostLatencyTracker(new AdaptiveTimeoutConfig(
+            true, /* enabled */
+            0.125, /* latencySmoothingFactor */
+            0.25, /* deviationSmoothingFactor */
+            4.0, /* deviationMultiplier */
+            3, /* minNrOfSamples */
+            1000l, /* minTimeoutInMillis */
+            3, /* maxNrOfConsecutiveFailures */
+            60 * 1000l, /* downHostRetryDelayInMillis */
+            1000 /* maxNrOfHosts */));
+
+    @After
+    public void tearDown() {
+        tracker.close();
+    }
+
+    @Test
+    public void canDeriveTheConnectTimeoutFromTheObservedLatencies() {
+        assertEquals(JOB_CONNECT_TIMEOUT, tracker.connectTimeoutInMillis(HOST, JOB_CONNECT_TIMEOUT));
+
+        tracker.recordResponse(HOST, 200);
+        tracker.recordResponse(HOST, 200);
+        // Not enough samples yet
+        assertEquals(JOB_CONNECT_TIMEOUT, tracker.connectTimeoutInMillis(HOST, JOB_CONNECT_TIMEOUT));
+
+        for (int i = 0; i < 50; i++) {
+            tracker.recordResponse(HOST, 200 + (i % 2) * 4000);
+        }
+        final long timeout = tracker.connectTimeoutInMillis(HOST, JOB_CONNECT_TIMEOUT);
+        assertTrue(timeout > 4200);
+        assertTrue(timeout < JOB_CONNECT_TIMEOUT);
+
+        // Never shorter than the min timeout nor longer than the job one
+        for (int i = 0; i < 100; i++) {
+            tracker.recordResponse(HOST, 10);
+        }
+        assertEquals(1000l, tracker.connectTimeoutInMillis(HOST, JOB_CONNECT_TIMEOUT));
+        assertEquals(500l, tracker.connectTimeoutInMillis(HOST, 500l));
+    }
+
+    @Test
+    public void canDetectTheHostsThatAreDown() {
+        assertFalse(tracker.isDown(HOST));
+
+        tracker.recordConnectFailure(HOST);
+        tracker.recordConnectFailure(HOST);
+        assertFalse(tracker.isDown(HOST));
+        tracker.recordConnectFailure(HOST);
+        assertTrue(tracker.isDown(HOST));
+        assertFalse(tracker.isDown("other." + HOST));
+
+        tracker.recordResponse(HOST, 100);
+        assertFalse(tracker.isDown(HOST));
+    }
+
+    @Test
+    public void canIgnoreTheLatenciesWhenDisabled() {
+        final HostLatencyTracker disabledTracker = new HostLatencyTracker(new AdaptiveTimeoutConfig());
+        try {
+            for (int i = 0; i < 10; i++) {
+                disabledTracker.recordResponse(HOST, 10);
+                disabledTracker.recordConnectFailure(HOST);
+            }
+            assertEquals(JOB_CONNECT_TIMEOUT, disabledTracker.connectTimeoutInMillis(HOST, JOB_CONNECT_TIMEOUT));
+            assertFalse(disabledTracker.isDown(HOST));
+            assertNull(disabledTracker.scheduleConnectTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    fail("No connect timeout is scheduled when disabled");
+                }
+            }, 10l));
+        } finally {
+            disabledTracker.close();
+        }
+    }
+
+    @Test
+    public void canScheduleTheConnectTimeouts() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final Runnable onTimeout = new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        };
+
+        tracker.scheduleConnectTimeout(onTimeout, 10 * 1000l).cancel(false);
+        tracker.scheduleConnectTimeout(onTimeout, 10l);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals("www.europeana.eu", HostLatencyTracker.hostOf("http://WWW.europeana.eu/portal/record.html"));
+        assertNull(HostLatencyTracker.hostOf("not an url"));
+    }
+}
@@ -0,0 +1,82 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class MediaHeaderLocatorTest {
+
+    private static final long CONTENT_LENGTH = 100 * 1000 * 1000l;
+
+    private static final long HEADER_SIZE = 1000 * 1000l;
+
+    @Test
+    public void canLocateTheIndexAtTheBeginningOfAMp4File() {
+        final MediaHeaderLocator locator = new MediaHeaderLocator(CONTENT_LENGTH, HEADER_SIZE);
+
+        locator.consume(ByteBuffer.wrap(concat(box("ftyp", 24), box("free", 8), box("moov", 5000))));
+
+        assertFalse(locator.isUnsupported());
+        assertEquals(24 + 8 + 5000, locator.getHeaderEnd());
+        assertEquals(-1, locator.getTrailerStart());
+    }
+
+    @Test
+    public void canLocateTheIndexAtTheEndOfAMp4FileFromTinyParts() {
+        final MediaHeaderLocator locator = new MediaHeaderLocator(CONTENT_LENGTH, HEADER_SIZE);
+        final byte[] content = concat(box("ftyp", 32), largeBox("mdat", CONTENT_LENGTH - 32 - 4000));
+
+        for (int i = 0; i < content.length; i++) {
+            final ByteBuffer part = ByteBuffer.wrap(content, i, 1);
+            locator.consume(part);
+            assertEquals(1, part.remaining());
+        }
+
+        assertFalse(locator.isUnsupported());
+        assertEquals(-1, locator.getHeaderEnd());
+        assertEquals(CONTENT_LENGTH - 4000, locator.getTrailerStart());
+    }
+
+    @Test
+    public void canLocateTheHeaderOfAMp3FileAfterItsTag() {
+        final MediaHeaderLocator locator = new MediaHeaderLocator(CONTENT_LENGTH, HEADER_SIZE);
+
+        // A tag of 2 * 128 + 1 bytes
+        locator.consume(ByteBuffer.wrap(new byte[]{'I', 'D', '3', 3, 0, 0, 0, 0, 2, 1, 0, 0}));
+
+        assertEquals(10 + 257 + HEADER_SIZE, locator.getHeaderEnd());
+        assertEquals(-1, locator.getTrailerStart());
+    }
+
+    @Test
+    public void canNotLocateTheHeaderOfTheOtherFormats() {
+        final MediaHeaderLocator ogg = new MediaHeaderLocator(CONTENT_LENGTH, HEADER_SIZE);
+        ogg.consume(ByteBuffer.wrap(new byte[]{'O', 'g', 'g', 'S', 0, 2, 0, 0, 0, 0, 0, 0}));
+        assertTrue(ogg.isUnsupported());
+
+        // The media data goes until the end of the file, there is no index
+        final MediaHeaderLocator mp4 = new MediaHeaderLocator(CONTENT_LENGTH, HEADER_SIZE);
+        mp4.consume(ByteBuffer.wrap(concat(box("ftyp", 24), box("mdat", 0))));
+        assertTrue(mp4.isUnsupported());
+    }
+
+    private static byte[] box(final String type, final long size) {
+        final ByteBuffer box = ByteBuffer.allocate((int) Math.max(8, Math.min(size, 64)));
+        box.putInt((int) size).put(type.getBytes());
+        return box.array();
+    }
+
+    private static byte[] largeBox(final String type, final long size) {
+        return ByteBuffer.allocate(16).putInt(1).put(type.getBytes()).putLong(size).array();
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        int length = 0;
+        for (final byte[] part : parts) length += part.length;
+        final ByteBuffer result = ByteBuffer.allocate(length);
+        for (final byte[] part : parts) result.put(part);
+        return result.array();
+    }
+}
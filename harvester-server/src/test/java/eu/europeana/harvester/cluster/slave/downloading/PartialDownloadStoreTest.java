@@ -0,0 +1,75 @@
+package eu.europeana.harvester.cluster.slave.downloading;
+
+import eu.europeana.harvester.cluster.domain.ResumableDownloadConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class PartialDownloadStoreTest {
+
+    private static final String url = "http://www.example.com/large.tiff";
+
+    private Path scratchPath;
+    private Path downloadPath;
+    private PartialDownloadStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        scratchPath = Files.createTempDirectory("partial-downloads");
+        downloadPath = Files.createTempFile("download", ".tiff");
+        store = new PartialDownloadStore(new ResumableDownloadConfig(true, scratchPath.toString(), 3l, 60 * 1000l));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.remove(url);
+        Files.deleteIfExists(downloadPath);
+        Files.deleteIfExists(scratchPath);
+    }
+
+    @Test
+    public void canKeepAndFindPartialDownload() throws IOException {
+        Files.write(downloadPath, "12345".getBytes());
+
+        assertTrue(store.keep(url, downloadPath.toString(), "\"abc\"", null));
+        assertFalse(new File(downloadPath.toString()).exists());
+
+        final PartialDownload partialDownload = store.find(url);
+        assertNotNull(partialDownload);
+        assertEquals(5l, partialDownload.getSizeInBytes().longValue());
+        assertEquals("\"abc\"", partialDownload.getIfRangeValidator());
+        assertEquals("12345", new String(Files.readAllBytes(Paths.get(partialDownload.getAbsolutePath()))));
+
+        assertNull(store.find(url + "/other"));
+        store.remove(url);
+        assertNull(store.find(url));
+    }
+
+    @Test
+    public void cannotKeepPartialDownloadWithoutStrongValidator() throws IOException {
+        Files.write(downloadPath, "12345".getBytes());
+
+        assertFalse(store.keep(url, downloadPath.toString(), "W/\"abc\"", null));
+        assertFalse(store.keep(url, downloadPath.toString(), null, null));
+        assertNull(store.find(url));
+
+        assertTrue(store.keep(url, downloadPath.toString(), "W/\"abc\"", "Tue, 15 Nov 1994 08:12:31 GMT"));
+        assertEquals("Tue, 15 Nov 1994 08:12:31 GMT", store.find(url).getIfRangeValidator());
+    }
+
+    @Test
+    public void cannotKeepTooSmallPartialDownload() throws IOException {
+        Files.write(downloadPath, "12".getBytes());
+
+        assertFalse(store.keep(url, downloadPath.toString(), "\"abc\"", null));
+        assertNull(store.find(url));
+    }
+}
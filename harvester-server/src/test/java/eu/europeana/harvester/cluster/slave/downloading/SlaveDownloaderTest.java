@@ -133,6 +133,51 @@ public class SlaveDownloaderTest {
     }
 
 
+    @Test
+    public void canAbortUnconditionalDownloadWhenTerminationThresholdSizeLimitExceeded() throws Exception {
+        final SlaveDownloader slaveDownloader = new SlaveDownloader();
+        final HttpRetrieveResponse response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, pathOnDisk);
+
+        final ProcessingJobLimits limits = new ProcessingJobLimits(
+                100 * 1000l /* retrievalTerminationThresholdTimeLimitInMillis */,
+                5 * 1000l /* retrievalTerminationThresholdReadPerSecondInBytes */,
+                10 * 1000l /* retrievalConnectionTimeoutInMillis  */,
+                10 /* retrievalMaxNrOfRedirects */,
+                100 * 1000l /* processingTerminationThresholdTimeLimitInMillis */,
+                1024l /* retrievalTerminationThresholdSizeLimitInBytes - IT SHOULD FAIL BECAUSE OF THIS */);
+
+        final RetrieveUrl task = new RetrieveUrl(image1GitHubUrl, limits, DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD, "jobid-1",
+                "referenceid-1", Collections.<String, String>emptyMap(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,
+                        "source-reference-1", Collections.<ProcessingJobSubTask>emptyList()), null,new ReferenceOwner("unknown","unknwon","unknown"));
+
+        slaveDownloader.downloadAndStoreInHttpRetrieveResponse(response, task);
+
+        assertEquals(RetrievingState.FINISHED_SIZE_LIMIT, response.getState());
+        assertTrue(response.getContentSizeInBytes().longValue() <= 1024);
+        assertFalse(new File(pathOnDisk).exists());
+    }
+
+    @Test
+    public void canAbortUnconditionalDownloadWhenContentCannotBeProcessed() throws Exception {
+        final SlaveDownloader slaveDownloader = new SlaveDownloader();
+        final HttpRetrieveResponse response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, pathOnDisk);
+
+        final ProcessingJobLimits limits = new ProcessingJobLimits();
+
+        // The url of the directory returns an HTML index page instead of an image.
+        final RetrieveUrl task = new RetrieveUrl(GitHubUrl_PREFIX, limits, DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD, "jobid-1",
+                "referenceid-1", Collections.<String, String>emptyMap(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,
+                        "source-reference-1", Collections.singletonList(new ProcessingJobSubTask(ProcessingJobSubTaskType.GENERATE_THUMBNAIL,
+                        new GenericSubTaskConfiguration(new ThumbnailConfig(180, 180))))), null,new ReferenceOwner("unknown","unknwon","unknown"));
+
+        slaveDownloader.downloadAndStoreInHttpRetrieveResponse(response, task);
+
+        assertEquals(RetrievingState.FINISHED_UNWANTED_CONTENT, response.getState());
+        assertFalse(new File(pathOnDisk).exists());
+    }
+
     @Test
     public void canDownloadUnconditionallyWithDefaultLimits() throws Exception {
         final SlaveDownloader slaveDownloader = new SlaveDownloader();
@@ -260,4 +305,34 @@ public class SlaveDownloaderTest {
 
     }
 
+
+    @Test
+    public void canDownloadConditionallyAndSkipDownloadWhenNotModified() throws Exception {
+        final SlaveDownloader slaveDownloader = new SlaveDownloader();
+        final ProcessingJobLimits limits = new ProcessingJobLimits();
+
+        // The first download collects the validators (ETag & Last-Modified).
+        final HttpRetrieveResponse firstResponse = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, pathOnDisk);
+        slaveDownloader.downloadAndStoreInHttpRetrieveResponse(firstResponse, new RetrieveUrl(image1GitHubUrl, limits,
+                DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD, "jobid-1", "referenceid-1", Collections.<String, String>emptyMap(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.UNCONDITIONAL_DOWNLOAD,
+                        "source-reference-1", Collections.<ProcessingJobSubTask>emptyList()), null,new ReferenceOwner("unknown","unknwon","unknown")));
+        assertEquals(RetrievingState.COMPLETED, firstResponse.getState());
+        new File(pathOnDisk).delete();
+
+        final HttpRetrieveResponse response = httpRetrieveResponseFactory.create(ResponseType.DISK_STORAGE, pathOnDisk);
+        final RetrieveUrl task = new RetrieveUrl(image1GitHubUrl, limits,DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD, "jobid-1",
+                "referenceid-1", firstResponse.getResponseHeaders(),
+                new ProcessingJobTaskDocumentReference(DocumentReferenceTaskType.CONDITIONAL_DOWNLOAD,
+                        "source-reference-1", Collections.<ProcessingJobSubTask>emptyList()), null,new ReferenceOwner("unknown","unknwon","unknown"));
+
+        slaveDownloader.downloadAndStoreInHttpRetrieveResponse(response, task);
+
+        assertEquals(RetrievingState.COMPLETED, response.getState());
+        assertEquals(304, response.getHttpResponseCode().intValue());
+        assertFalse(response.getResponseHeaders().isEmpty());
+        assertTrue(response.getContentSizeInBytes().longValue() == 0);
+        assertFalse(new File(pathOnDisk).exists());
+    }
+
 }
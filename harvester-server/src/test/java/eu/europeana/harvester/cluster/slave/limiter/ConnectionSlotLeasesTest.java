@@ -0,0 +1,87 @@
+package eu.europeana.harvester.cluster.slave.limiter;
+
+import eu.europeana.harvester.cluster.master.limiter.domain.ConnectionSlotLease;
+import eu.europeana.harvester.cluster.master.limiter.domain.ReserveConnectionSlotResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionSlotLeasesTest {
+    private final String ip1 = "127.0.0.1";
+
+    @Test
+    public void canRunTheWaitingTasksOnTheSlotsOfTheLease() {
+        final ConnectionSlotLeases connectionSlotLeases = new ConnectionSlotLeases(2);
+        assertEquals(2, connectionSlotLeases.addWaitingTasks(ip1, Arrays.asList("task-1", "task-2", "task-3")));
+        assertEquals(0, connectionSlotLeases.addWaitingTasks(ip1, Arrays.asList("task-4")));
+        assertTrue(connectionSlotLeases.getIpsWithPendingLeaseRequest().contains(ip1));
+
+        final List<ReserveConnectionSlotResponse> startedTasks =
+                connectionSlotLeases.onLeaseGranted(new ConnectionSlotLease("lease-1", ip1, Arrays.asList("slot-1", "slot-2"), 1000l));
+        assertEquals(Arrays.asList("task-1", "task-2"), taskIds(startedTasks));
+        assertEquals(Arrays.asList("slot-1", "slot-2"), slotIds(startedTasks));
+        assertTrue(connectionSlotLeases.isOnLease("task-1"));
+        assertTrue(connectionSlotLeases.isWaiting(ip1, "task-3"));
+        assertTrue(connectionSlotLeases.getIpsWithPendingLeaseRequest().isEmpty());
+
+        // Each task runs on the slot freed by the one before
+        final List<ReserveConnectionSlotResponse> startedOnSlot1 = connectionSlotLeases.onTaskDone(ip1, "task-1");
+        assertEquals(Arrays.asList("task-3"), taskIds(startedOnSlot1));
+        assertEquals(Arrays.asList("slot-1"), slotIds(startedOnSlot1));
+        assertEquals(Arrays.asList("task-4"), taskIds(connectionSlotLeases.onTaskDone(ip1, "task-2")));
+        assertNull(connectionSlotLeases.releaseIdleLease(ip1));
+
+        assertTrue(connectionSlotLeases.onTaskDone(ip1, "task-3").isEmpty());
+        assertTrue(connectionSlotLeases.onTaskDone(ip1, "task-4").isEmpty());
+        assertEquals("lease-1", connectionSlotLeases.releaseIdleLease(ip1));
+        assertFalse(connectionSlotLeases.hasLease(ip1));
+    }
+
+    @Test
+    public void canHandOverTheWaitingTasksWhenTheLeaseIsLost() {
+        final ConnectionSlotLeases connectionSlotLeases = new ConnectionSlotLeases(10);
+        assertEquals(3, connectionSlotLeases.addWaitingTasks(ip1, Arrays.asList("task-1", "task-2", "task-3")));
+        connectionSlotLeases.onLeaseGranted(new ConnectionSlotLease("lease-1", ip1, Arrays.asList("slot-1"), 1000l));
+        assertEquals("lease-1", connectionSlotLeases.getLeaseIds().get(ip1));
+        assertTrue(connectionSlotLeases.getFreeSlotIds(ip1).isEmpty());
+
+        assertEquals(Arrays.asList("task-2", "task-3"), connectionSlotLeases.onLeaseLost(ip1));
+        assertFalse(connectionSlotLeases.hasLease(ip1));
+        assertFalse(connectionSlotLeases.isWaiting(ip1, "task-2"));
+
+        // The slot of the lost lease is a slot of a single task now, returned to the master by its id
+        assertFalse(connectionSlotLeases.isOnLease("task-1"));
+        assertTrue(connectionSlotLeases.onTaskDone(ip1, "task-1").isEmpty());
+    }
+
+    @Test
+    public void canGiveBackTheFreeSlotsOfTheLease() {
+        final ConnectionSlotLeases connectionSlotLeases = new ConnectionSlotLeases(10);
+        connectionSlotLeases.addWaitingTasks(ip1, Arrays.asList("task-1"));
+        connectionSlotLeases.onLeaseGranted(new ConnectionSlotLease("lease-1", ip1, Arrays.asList("slot-1", "slot-2", "slot-3"), 1000l));
+
+        assertEquals(Arrays.asList("slot-2", "slot-3"), connectionSlotLeases.getFreeSlotIds(ip1));
+        connectionSlotLeases.onLeaseLost(ip1);
+        assertTrue(connectionSlotLeases.getFreeSlotIds(ip1).isEmpty());
+    }
+
+    private static List<String> taskIds(final List<ReserveConnectionSlotResponse> slots) {
+        final List<String> taskIds = new ArrayList<>();
+        for (final ReserveConnectionSlotResponse slot : slots) {
+            taskIds.add(slot.getTaskID());
+        }
+        return taskIds;
+    }
+
+    private static List<String> slotIds(final List<ReserveConnectionSlotResponse> slots) {
+        final List<String> slotIds = new ArrayList<>();
+        for (final ReserveConnectionSlotResponse slot : slots) {
+            slotIds.add(slot.getSlotId());
+        }
+        return slotIds;
+    }
+}
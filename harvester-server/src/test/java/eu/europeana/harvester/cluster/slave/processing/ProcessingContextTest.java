@@ -0,0 +1,78 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.cluster.slave.processing.color.ColorPaletteExtractor;
+import eu.europeana.harvester.cluster.slave.processing.metainfo.MediaMetaDataUtils;
+import eu.europeana.harvester.domain.ImageMetaInfo;
+import eu.europeana.harvester.domain.ThumbnailType;
+import org.junit.Test;
+
+import static eu.europeana.harvester.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ProcessingContextTest {
+
+    @Test
+    public void canIdentifyTheImageOnlyOnce() throws Exception {
+        final ProcessingContext context = new ProcessingContext(getPath(Image1), PATH_COLORMAP);
+
+        assertEquals(ContentType.IMAGE, context.getContentType());
+        assertTrue(context.getMimeType().startsWith("image"));
+        assertSame(context.getImageInfo(), context.getImageInfo());
+        assertTrue(context.getImageInfo().getWidth() > 0);
+    }
+
+    @Test
+    public void canReadTheWidthOfAnImageWithoutIdentifyingIt() throws Exception {
+        final ProcessingContext context = new ProcessingContext(getPath(Image1), PATH_COLORMAP);
+
+        final Integer width = context.getImageWidth();
+        assertEquals(Integer.valueOf(context.getImageInfo().getWidth()), width);
+    }
+
+    @Test
+    public void canExtractTheMetaInfoFromTheIdentityAndTheJvmPalette() throws Exception {
+        final ColorPaletteExtractor paletteExtractor = new ColorPaletteExtractor(PATH_COLORMAP);
+        final ProcessingContext context = new ProcessingContext(getPath(Image1), PATH_COLORMAP, paletteExtractor);
+
+        final ImageMetaInfo metaInfo = MediaMetaDataUtils.extractImageMetadata(context);
+
+        assertSame(context.getColorPalette(), metaInfo.getColorPalette());
+        assertArrayEquals(paletteExtractor.extract(context.getDecodedImage().getImage()), metaInfo.getColorPalette());
+        assertEquals((Integer) 2500, metaInfo.getWidth());
+        assertEquals((Integer) 1737, metaInfo.getHeight());
+        assertTrue(IMAGE_FORMAT.equalsIgnoreCase(metaInfo.getFileFormat()));
+        assertTrue("sRGB".equalsIgnoreCase(metaInfo.getColorSpace()));
+    }
+
+    @Test
+    public void canDecodeTheImageOnlyOnceAtTheResolutionOfTheLargestThumbnail() throws Exception {
+        final ProcessingContext context = new ProcessingContext(getPath(Image1), PATH_COLORMAP);
+
+        final DecodedImage decoded = context.getDecodedImage();
+        assertSame(decoded, context.getDecodedImage());
+        assertEquals(2500, decoded.getOriginalWidth());
+        assertEquals(1737, decoded.getOriginalHeight());
+        assertTrue(decoded.getImage().getWidth() >= ThumbnailType.LARGE.getWidth());
+        assertTrue(decoded.getImage().getWidth() < decoded.getOriginalWidth());
+        assertEquals(Integer.valueOf(2500), context.getImageWidth());
+    }
+
+    @Test
+    public void canIdentifyTheImageLikeTheImageInfo() throws Exception {
+        final ImageIdentity identity = ImageIdentity.identify(getPath(Image2));
+        final ProcessingContext context = new ProcessingContext(getPath(Image2), PATH_COLORMAP);
+
+        assertEquals(Integer.valueOf(context.getImageInfo().getWidth()), identity.getWidth());
+        assertEquals(Integer.valueOf(context.getImageInfo().getHeight()), identity.getHeight());
+        assertEquals(context.getImageInfo().getFileFormat(), identity.getFileFormat());
+        assertEquals(context.getImageInfo().getColorSpace(), identity.getColorSpace());
+    }
+
+    @Test
+    public void canClassifyAFileThatDoesNotExistAsUnknown() {
+        final ProcessingContext context = new ProcessingContext(PATH_PREFIX + "does-not-exist", PATH_COLORMAP);
+
+        assertEquals(ContentType.UNKNOWN, context.getContentType());
+    }
+}
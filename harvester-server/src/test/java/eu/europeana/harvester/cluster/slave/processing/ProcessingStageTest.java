@@ -0,0 +1,96 @@
+package eu.europeana.harvester.cluster.slave.processing;
+
+import eu.europeana.harvester.cluster.domain.ProcessingPipelineConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ProcessingStageTest {
+
+    private final ProcessingStage stage = new ProcessingStage(new ProcessingPipelineConfig(true, 1, 1, 0));
+
+    @After
+    public void tearDown() {
+        stage.close();
+    }
+
+    @Test
+    public void canMakeTheDownloadsWaitWhenTheStageIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch processed = new CountDownLatch(3);
+        final Runnable slowProcessing = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.countDown();
+            }
+        };
+
+        // One file processed & one queued
+        stage.submit(slowProcessing);
+        stage.submit(slowProcessing);
+
+        final AtomicBoolean thirdSubmitted = new AtomicBoolean(false);
+        final Thread downloader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stage.submit(slowProcessing);
+                    thirdSubmitted.set(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        downloader.start();
+
+        Thread.sleep(200);
+        assertFalse(thirdSubmitted.get());
+        assertEquals(2, stage.getNrOfPendingFiles());
+
+        release.countDown();
+        downloader.join(5000);
+        assertTrue(thirdSubmitted.get());
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void canCountTheQueuedBytesAndTheFreeSlots() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch processed = new CountDownLatch(2);
+        final Runnable slowProcessing = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processed.countDown();
+            }
+        };
+
+        assertEquals(2, stage.getNrOfFreeSlots());
+        assertEquals(0l, stage.getQueuedBytes());
+
+        stage.submit(slowProcessing, 1000l);
+        stage.submit(slowProcessing, 500l);
+        assertEquals(0, stage.getNrOfFreeSlots());
+        assertEquals(1500l, stage.getQueuedBytes());
+
+        release.countDown();
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(2, stage.getNrOfFreeSlots());
+        assertEquals(0l, stage.getQueuedBytes());
+    }
+}
@@ -1,7 +1,6 @@
 package eu.europeana.harvester.cluster.slave.processing;
 
 import akka.event.LoggingAdapter;
-import com.google.common.io.Files;
 import eu.europeana.harvester.cluster.domain.messages.RetrieveUrl;
 import eu.europeana.harvester.cluster.slave.HttpServer;
 import eu.europeana.harvester.cluster.slave.downloading.SlaveDownloader;
@@ -194,7 +193,6 @@ public class SlaveProcessorTest {
         final ProcessingResultTuple results = slaveProcessor.process(taskDocumentReference,
                 PATH_DOWNLOADED + Image1,
                 fileUrl,
-                filesInBytes.get(Image1),
                 ResponseType.DISK_STORAGE,
                 owner);
 
@@ -225,7 +223,6 @@ public class SlaveProcessorTest {
         final ProcessingResultTuple results = slaveProcessor.process(taskDocumentReference,
                 PATH_DOWNLOADED + Image1,
                 fileUrl,
-                filesInBytes.get(Image1),
                 ResponseType.DISK_STORAGE,
                 owner);
 
@@ -249,7 +246,6 @@ public class SlaveProcessorTest {
 
         final ProcessingResultTuple results = slaveProcessor.process(taskDocumentReference, PATH_DOWNLOADED + Audio1,
                 fileUrl,
-                Files.toByteArray(new File(PATH_DOWNLOADED + Audio1)),
                 ResponseType.DISK_STORAGE,
                 owner);
 
@@ -277,8 +273,6 @@ public class SlaveProcessorTest {
 
         final ProcessingResultTuple results = slaveProcessor.process(taskDocumentReference, PATH_DOWNLOADED + Video1,
                 fileUrl,
-                Files.toByteArray(new File(PATH_DOWNLOADED +
-                        Video1)),
                 ResponseType.DISK_STORAGE, owner);
 
         assertNotNull(results.getMediaMetaInfoTuple());
@@ -304,8 +298,6 @@ public class SlaveProcessorTest {
 
         final ProcessingResultTuple results = slaveProcessor.process(taskDocumentReference, PATH_DOWNLOADED + PDF1,
                 fileUrl,
-                Files.toByteArray(new File(PATH_DOWNLOADED +
-                        PDF1)),
                 ResponseType.DISK_STORAGE,
                 new ReferenceOwner("unknown", "unknwon",
                         "unknown"));
@@ -334,8 +326,8 @@ public class SlaveProcessorTest {
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
         ThumbnailImageGenerator thumbnailImageGeneratorFail = mock(ThumbnailImageGenerator.class);
 
-        doThrow(exception).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doReturn(null).when(colorExtractorFail).colorExtraction(anyString());
+        doThrow(exception).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doReturn(null).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doReturn(null).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
@@ -345,7 +337,7 @@ public class SlaveProcessorTest {
         SlaveProcessor slaveProcessorAlwaysFail = new SlaveProcessor(mediaMetaInfoExtractorFail, colorExtractorFail, mediaStorageClientFail, PATH_COLORMAP);
 
         ProcessingResultTuple e = slaveProcessorAlwaysFail.process(taskDocumentReference, PATH_DOWNLOADED + Image1, fileUrl,
-                new byte[]{0}, ResponseType.DISK_STORAGE,
+                ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
 
         assertEquals (ProcessingJobSubTaskState.ERROR, e.getProcessingJobSubTaskStats().getMetaExtractionState());
@@ -366,8 +358,8 @@ public class SlaveProcessorTest {
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
         ThumbnailImageGenerator thumbnailImageGeneratorFail = mock(ThumbnailImageGenerator.class);
 
-        doThrow(exception).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doReturn(null).when(colorExtractorFail).colorExtraction(anyString());
+        doThrow(exception).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doReturn(null).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doReturn(null).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
@@ -377,7 +369,7 @@ public class SlaveProcessorTest {
         SlaveProcessor slaveProcessorAlwaysFail = new SlaveProcessor(mediaMetaInfoExtractorFail, colorExtractorFail, mediaStorageClientFail, PATH_COLORMAP);
 
         ProcessingResultTuple e = slaveProcessorAlwaysFail.process(taskDocumentReference, PATH_DOWNLOADED + Image1, fileUrl,
-                new byte[]{0}, ResponseType.DISK_STORAGE,
+                ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
 
         assertEquals (ProcessingJobSubTaskState.ERROR, e.getProcessingJobSubTaskStats().getMetaExtractionState());
@@ -399,8 +391,8 @@ public class SlaveProcessorTest {
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
         ThumbnailImageGenerator thumbnailImageGeneratorFail = mock(ThumbnailImageGenerator.class);
 
-        doReturn(null).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doThrow(new IOException(exception)).when(colorExtractorFail).colorExtraction(anyString());
+        doReturn(null).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doThrow(new IOException(exception)).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doReturn(null).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
@@ -412,7 +404,7 @@ public class SlaveProcessorTest {
         downloadFile(fileUrl, PATH_DOWNLOADED + Image1);
         ProcessingResultTuple e =            slaveProcessorAlwaysFail.process(taskDocumentReference,
                 PATH_DOWNLOADED + Image1, fileUrl,
-                new byte[]{0}, ResponseType.DISK_STORAGE,
+                ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
         assertEquals (ProcessingJobSubTaskState.ERROR, e.getProcessingJobSubTaskStats().getColorExtractionState());
         assertNotNull(e.getProcessingJobSubTaskStats().getColorExtractionLog());
@@ -432,8 +424,8 @@ public class SlaveProcessorTest {
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
         ThumbnailImageGenerator thumbnailImageGeneratorFail = mock(ThumbnailImageGenerator.class);
 
-        doReturn(null).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doReturn(null).when(colorExtractorFail).colorExtraction(anyString());
+        doReturn(null).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doReturn(null).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doThrow(exception).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
@@ -445,7 +437,7 @@ public class SlaveProcessorTest {
         downloadFile(fileUrl, PATH_DOWNLOADED + Image1);
         ProcessingResultTuple e = slaveProcessorAlwaysFail.process(taskDocumentReference,
                 PATH_DOWNLOADED + Image1, fileUrl,
-                new byte[]{0}, ResponseType.DISK_STORAGE,
+                ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
         assertEquals(ProcessingJobSubTaskState.NEVER_EXECUTED, e.getProcessingJobSubTaskStats().getThumbnailGenerationState());
         assertEquals (null, e.getProcessingJobSubTaskStats().getThumbnailGenerationLog());
@@ -464,8 +456,8 @@ public class SlaveProcessorTest {
         ColorExtractor colorExtractorFail = mock(ColorExtractor.class);
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
 
-        doReturn(null).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doReturn(null).when(colorExtractorFail).colorExtraction(anyString());
+        doReturn(null).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doReturn(null).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
 
         doThrow(new RuntimeException(exception)).when(mediaStorageClientFail).createOrModify(any(MediaFile.class));
 
@@ -474,7 +466,6 @@ public class SlaveProcessorTest {
         downloadFile(fileUrl, PATH_DOWNLOADED + Image1);
         ProcessingResultTuple e = slaveProcessorAlwaysFail.process(taskDocumentReference, PATH_DOWNLOADED + Image1,
                 fileUrl,
-                Files.toByteArray(new File(PATH_DOWNLOADED + Image1)),
                 ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
 
@@ -498,8 +489,8 @@ public class SlaveProcessorTest {
         MediaStorageClient mediaStorageClientFail = mock(FileSystemMediaStorageClientImpl.class);
         ThumbnailImageGenerator thumbnailImageGeneratorFail = mock(ThumbnailImageGenerator.class);
 
-        doReturn(null).when(mediaMetaInfoExtractorFail).extract(anyString());
-        doReturn(null).when(colorExtractorFail).colorExtraction(anyString());
+        doReturn(null).when(mediaMetaInfoExtractorFail).extract(any(ProcessingContext.class));
+        doReturn(null).when(colorExtractorFail).colorExtraction(any(ProcessingContext.class));
         doReturn(PATH_COLORMAP).when(thumbnailImageGeneratorFail).getColorMapPath();
         doReturn(null).when(thumbnailImageGeneratorFail).createMediaFileWithThumbnail(anyInt(), anyInt(), anyString(),
                 anyString(),
@@ -509,7 +500,7 @@ public class SlaveProcessorTest {
         SlaveProcessor slaveProcessorAlwaysFail = new SlaveProcessor(mediaMetaInfoExtractorFail, colorExtractorFail, mediaStorageClientFail, PATH_COLORMAP);
 
         ProcessingResultTuple tuple =    slaveProcessorAlwaysFail.process(taskDocumentReference, PATH_DOWNLOADED + Image1,
-                fileUrl, new byte[]{0}, ResponseType.DISK_STORAGE,
+                fileUrl, ResponseType.DISK_STORAGE,
                 new ReferenceOwner("", "", "", "")) ;
 
         assertEquals(ProcessingJobSubTaskState.FAILED, tuple.getProcessingJobSubTaskStats().getMetaExtractionState());
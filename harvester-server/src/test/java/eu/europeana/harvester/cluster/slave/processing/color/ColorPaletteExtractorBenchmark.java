@@ -0,0 +1,56 @@
+package eu.europeana.harvester.cluster.slave.processing.color;
+
+import eu.europeana.harvester.cluster.slave.processing.ImageIdentity;
+import gr.ntua.image.mediachecker.MediaChecker;
+import org.apache.logging.log4j.LogManager;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static eu.europeana.harvester.TestUtils.*;
+
+/**
+ * The meta info & the colors of an image : identify + the palette in the JVM against the image info that remaps the
+ * full image to the colormap. Not part of the unit tests (surefire runs only the *Test classes) : run it by hand
+ * before changing slave.processingPipeline.jvmColorPalette.
+ */
+public class ColorPaletteExtractorBenchmark {
+
+    private static final org.apache.logging.log4j.Logger LOG = LogManager.getLogger(ColorPaletteExtractorBenchmark.class.getName());
+
+    private static final int RUNS = 5;
+
+    @Test
+    public void compareTheJvmPaletteWithTheImageMagickRemap() throws Exception {
+        final ColorPaletteExtractor colorMapExtractor = new ColorPaletteExtractor(PATH_COLORMAP);
+        final String[] images = new String[]{Image1, Image2};
+
+        // Warm up
+        colorMapExtractor.extract(getPath(Image1));
+        ImageIdentity.identify(getPath(Image1));
+        MediaChecker.getImageInfo(getPath(Image1), PATH_COLORMAP);
+
+        long jvmDuration = 0;
+        long imageMagickDuration = 0;
+        for (int i = 0; i < RUNS; i++) {
+            for (final String image : images) {
+                long start = System.nanoTime();
+                ImageIdentity.identify(getPath(image));
+                colorMapExtractor.extract(getPath(image));
+                jvmDuration += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                MediaChecker.getImageInfo(getPath(image), PATH_COLORMAP);
+                imageMagickDuration += System.nanoTime() - start;
+            }
+        }
+
+        LOG.info("Identify & palette in the JVM : {} ms/image, ImageMagick remap : {} ms/image",
+                 jvmDuration / (RUNS * images.length * 1000000), imageMagickDuration / (RUNS * images.length * 1000000));
+        for (final String image : images) {
+            LOG.info("{} : JVM palette {}, ImageMagick palette {}", image,
+                     Arrays.toString(colorMapExtractor.extract(getPath(image))),
+                     Arrays.toString(MediaChecker.getImageInfo(getPath(image), PATH_COLORMAP).getPalette()));
+        }
+    }
+}
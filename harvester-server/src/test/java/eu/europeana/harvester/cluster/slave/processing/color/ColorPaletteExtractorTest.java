@@ -0,0 +1,90 @@
+package eu.europeana.harvester.cluster.slave.processing.color;
+
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
+import gr.ntua.image.mediachecker.MediaChecker;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static eu.europeana.harvester.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ColorPaletteExtractorTest {
+
+    private static final int RED = 0xFF0000;
+    private static final int BLUE = 0x0000FF;
+    private static final int BLACK = 0x000000;
+    private static final int WHITE = 0xFFFFFF;
+
+    private final ColorPaletteExtractor extractor = new ColorPaletteExtractor(new int[]{RED, BLUE, BLACK, WHITE});
+
+    @Test
+    public void canRankTheColorsByFrequency() {
+        final int[] pixels = new int[100];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | ((i < 70) ? RED : (i < 90) ? BLUE : BLACK);
+        }
+
+        final int[] histogram = extractor.histogram(pixels, 10, 10);
+
+        assertEquals(100, histogram[0] + histogram[1] + histogram[2] + histogram[3]);
+        assertArrayEquals(new String[]{"#FF0000", "#0000FF", "#000000"}, extractor.palette(histogram));
+    }
+
+    @Test
+    public void canDitherTheColorsThatAreNotInTheColormap() {
+        final int[] pixels = new int[100 * 100];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF808080;
+        }
+
+        final int[] histogram = extractor.histogram(pixels, 100, 100);
+
+        // Mid gray is half black & half white
+        assertEquals(0, histogram[0] + histogram[1]);
+        assertEquals(5000, histogram[2], 100);
+        assertEquals(5000, histogram[3], 100);
+    }
+
+    @Test
+    public void canSeeTheTransparentPixelsOverWhite() {
+        final int[] histogram = extractor.histogram(new int[]{0x00000000, 0x00000000, 0xFF000000}, 3, 1);
+
+        assertArrayEquals(new String[]{"#FFFFFF", "#000000"}, extractor.palette(histogram));
+    }
+
+    @Test
+    public void canSampleAnImageThatIsAlreadyDecoded() {
+        final BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x < 700) ? RED : BLUE);
+            }
+        }
+
+        assertArrayEquals(new String[]{"#FF0000", "#0000FF"}, extractor.extract(image));
+    }
+
+    @Test
+    public void canExtractThePaletteOfAnImage() throws Exception {
+        final ColorPaletteExtractor colorMapExtractor = new ColorPaletteExtractor(PATH_COLORMAP);
+
+        final String[] palette = colorMapExtractor.extract(getPath(Image1));
+
+        assertEquals(ColorPaletteExtractor.NR_OF_COLORS, palette.length);
+        for (final String color : palette) {
+            assertTrue(color.matches("#[0-9A-F]{6}"));
+        }
+        assertNull(colorMapExtractor.extract(getPath(Audio1)));
+    }
+
+    @Test
+    public void canTakeThePaletteOfTheImageMagickRemapByDefault() throws Exception {
+        for (final String image : new String[]{Image1, Image2}) {
+            final ProcessingContext context = new ProcessingContext(getPath(image), PATH_COLORMAP);
+
+            assertArrayEquals(image, MediaChecker.getImageInfo(getPath(image), PATH_COLORMAP).getPalette(),
+                              context.getColorPalette());
+        }
+    }
+}
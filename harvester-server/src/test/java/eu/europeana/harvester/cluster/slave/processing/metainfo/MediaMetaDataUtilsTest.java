@@ -52,6 +52,15 @@ public class MediaMetaDataUtilsTest {
         assertEquals (ContentType.VIDEO, MediaMetaDataUtils.classifyUrl(PATH_PREFIX + "video2.mpg"));
     }
 
+    @Test
+    public void test_ContentTypeDetection_MimeType() {
+        assertEquals(ContentType.IMAGE, MediaMetaDataUtils.classifyMimeType("image/jpeg"));
+        assertEquals(ContentType.PDF, MediaMetaDataUtils.classifyMimeType("application/pdf"));
+        assertEquals(ContentType.NON_PDF_TEXT, MediaMetaDataUtils.classifyMimeType("text/plain"));
+        assertEquals(ContentType.UNKNOWN, MediaMetaDataUtils.classifyMimeType("text/html"));
+        assertEquals(ContentType.UNKNOWN, MediaMetaDataUtils.classifyMimeType(null));
+    }
+
     @Test
     public void test_ContentTypeDetection_Unknown() {
         assertEquals(ContentType.UNKNOWN, MediaMetaDataUtils.classifyUrl("http://www.google.com"));
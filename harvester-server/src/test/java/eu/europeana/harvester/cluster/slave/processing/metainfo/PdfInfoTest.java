@@ -0,0 +1,24 @@
+package eu.europeana.harvester.cluster.slave.processing.metainfo;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static eu.europeana.harvester.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class PdfInfoTest {
+
+    @Test
+    public void canReadTheInfoOfAPdfFromItsFirstPages() throws Exception {
+        final PdfInfo pdfInfo = PdfInfo.read(getPath(PDF4));
+
+        assertTrue(pdfInfo.getSearchable());
+        assertEquals((Integer) (-1), pdfInfo.getDpi());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsForAFileThatIsNotAPdf() throws Exception {
+        PdfInfo.read(getPath(Image1));
+    }
+}
@@ -21,4 +21,12 @@ public class ThumbnailGeneratorFactoryTest {
         ThumbnailGenerator thumbnailPDFGenerator = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, "");
         assertTrue(thumbnailPDFGenerator instanceof ThumbnailTextGenerator);
     }
+
+    @Test
+    public void testGetJavaImageThumbnailGenerator() throws Exception {
+        assertTrue(ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, "image/jpeg", "") instanceof ThumbnailJavaImageGenerator);
+        assertTrue(ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, "image/png", "") instanceof ThumbnailJavaImageGenerator);
+        assertTrue(ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, "image/tiff", "") instanceof ThumbnailImageGenerator);
+        assertTrue(ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, "application/pdf", "") instanceof ThumbnailTextGenerator);
+    }
 }
\ No newline at end of file
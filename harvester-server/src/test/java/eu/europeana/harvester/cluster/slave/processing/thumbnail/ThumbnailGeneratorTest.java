@@ -1,7 +1,9 @@
 package eu.europeana.harvester.cluster.slave.processing.thumbnail;
 
 import eu.europeana.harvester.cluster.domain.ContentType;
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
 import eu.europeana.harvester.domain.MediaFile;
+import eu.europeana.harvester.domain.ThumbnailConfig;
 import eu.europeana.harvester.domain.ThumbnailType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -9,6 +11,13 @@ import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
 import static eu.europeana.harvester.TestUtils.*;
 import static org.junit.Assert.*;
 
@@ -33,7 +42,7 @@ public class ThumbnailGeneratorTest {
         final Integer width = ThumbnailType.MEDIUM.getWidth();
         final Integer height = ThumbnailType.MEDIUM.getHeight();
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, PATH_COLORMAP)
-                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image1), filesInBytes.get(Image1), getPath(Image1));
+                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image1), getPath(Image1));
 
         assertTrue(IMAGE_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -48,7 +57,7 @@ public class ThumbnailGeneratorTest {
         final Integer width = ThumbnailType.LARGE.getWidth();
         final Integer height = ThumbnailType.LARGE.getHeight();
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, PATH_COLORMAP)
-                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image1), filesInBytes.get(Image1), getPath(Image1));
+                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image1), getPath(Image1));
 
         assertTrue(IMAGE_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -65,7 +74,7 @@ public class ThumbnailGeneratorTest {
 
         System.out.println(getPath(Image2));
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, PATH_COLORMAP)
-                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image2), filesInBytes.get(Image2), getPath(Image2));
+                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image2), getPath(Image2));
 
         assertTrue(IMAGE_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -81,7 +90,7 @@ public class ThumbnailGeneratorTest {
         final Integer height = ThumbnailType.LARGE.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, PATH_COLORMAP)
-                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image2), filesInBytes.get(Image2), getPath(Image2));
+                                            .createMediaFileWithThumbnail(width, height, "", getPath(Image2), getPath(Image2));
 
         assertTrue(IMAGE_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -91,13 +100,47 @@ public class ThumbnailGeneratorTest {
         assertTrue(almostSameSize(filesInBytes.get(Image2ThumbnailLarge), thumbnail.getContent()));
     }
 
+    @Test
+    public void test_ThumbnailGeneration_Image1_AllSizes() throws Exception {
+        final List<ThumbnailConfig> sizes = Arrays.asList(
+                new ThumbnailConfig(ThumbnailType.MEDIUM.getWidth(), ThumbnailType.MEDIUM.getHeight()),
+                new ThumbnailConfig(ThumbnailType.LARGE.getWidth(), ThumbnailType.LARGE.getHeight()));
+
+        final List<MediaFile> thumbnails = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.IMAGE, PATH_COLORMAP)
+                                            .createMediaFilesWithThumbnails(sizes, "", getPath(Image1), new ProcessingContext(getPath(Image1), PATH_COLORMAP));
+
+        assertEquals(2, thumbnails.size());
+        assertEquals(ThumbnailType.MEDIUM.getWidth(), thumbnails.get(0).getSize().intValue());
+        assertTrue(almostSameSize(filesInBytes.get(Image1ThumbnailMedium), thumbnails.get(0).getContent()));
+        assertEquals(ThumbnailType.LARGE.getWidth(), thumbnails.get(1).getSize().intValue());
+        assertTrue(almostSameSize(filesInBytes.get(Image1ThumbnailLarge), thumbnails.get(1).getContent()));
+        assertTrue(IMAGE_MIMETYPE.equalsIgnoreCase(thumbnails.get(1).getContentType()));
+        assertEquals(getPath(Image1), thumbnails.get(1).getOriginalUrl());
+    }
+
+    @Test
+    public void test_ThumbnailGeneration_JpegDecodeSize() throws Exception {
+        final File largeJpeg = File.createTempFile("large", ".jpg");
+        largeJpeg.deleteOnExit();
+        ImageIO.write(new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), "jpeg", largeJpeg);
+        final File largePng = File.createTempFile("large", ".png");
+        largePng.deleteOnExit();
+        ImageIO.write(new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), "png", largePng);
+
+        assertEquals(new Dimension(800, 600), ThumbnailImageGenerator.jpegDecodeSize(largeJpeg, ThumbnailType.LARGE.getWidth()));
+        assertEquals(new Dimension(400, 300), ThumbnailImageGenerator.jpegDecodeSize(largeJpeg, ThumbnailType.MEDIUM.getWidth()));
+        assertNull(ThumbnailImageGenerator.jpegDecodeSize(largeJpeg, null));
+        assertNull(ThumbnailImageGenerator.jpegDecodeSize(largePng, ThumbnailType.LARGE.getWidth()));
+        assertNull(ThumbnailImageGenerator.jpegDecodeSize(largeJpeg, 1500));
+    }
+
     @Test(expected=Exception.class)
     public void test_ThumbnailGeneration_Fail_Audio() throws Exception {
         final Integer width = ThumbnailType.LARGE.getWidth();
         final Integer height = ThumbnailType.LARGE.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.AUDIO, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(height, width, "", getPath(Audio2), filesInBytes.get(Audio2), getPath(Audio2));
+                .createMediaFileWithThumbnail(height, width, "", getPath(Audio2), getPath(Audio2));
 
         assertNull(thumbnail);
     }
@@ -107,7 +150,7 @@ public class ThumbnailGeneratorTest {
         final Integer width = ThumbnailType.LARGE.getWidth();
         final Integer height = ThumbnailType.LARGE.getHeight();
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.VIDEO, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(height, width, "", getPath(Video2), filesInBytes.get(Video2), getPath(Video2));
+                .createMediaFileWithThumbnail(height, width, "", getPath(Video2), getPath(Video2));
 
         assertNull(thumbnail);
     }
@@ -117,7 +160,7 @@ public class ThumbnailGeneratorTest {
         final Integer width = ThumbnailType.MEDIUM.getWidth();
         final Integer height = ThumbnailType.MEDIUM.getHeight();
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.NON_PDF_TEXT, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(height, width, "", getPath(Text1), filesInBytes.get(Text1), getPath(Text1));
+                .createMediaFileWithThumbnail(height, width, "", getPath(Text1), getPath(Text1));
 
         assertNull(thumbnail);
     }
@@ -128,7 +171,7 @@ public class ThumbnailGeneratorTest {
         final Integer height = ThumbnailType.MEDIUM.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(width, height, "", getPath(PDF1), filesInBytes.get(PDF1), getPath(PDF1));
+                .createMediaFileWithThumbnail(width, height, "", getPath(PDF1), getPath(PDF1));
 
         assertTrue(PDF_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -144,7 +187,7 @@ public class ThumbnailGeneratorTest {
         final Integer height = ThumbnailType.MEDIUM.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(width, height, "", getPath(PDF2), filesInBytes.get(PDF2), getPath(PDF2));
+                .createMediaFileWithThumbnail(width, height, "", getPath(PDF2), getPath(PDF2));
 
         assertTrue(PDF_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -160,7 +203,7 @@ public class ThumbnailGeneratorTest {
         final Integer height = ThumbnailType.LARGE.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(width, height, "", getPath(PDF3), filesInBytes.get(PDF3), getPath(PDF3));
+                .createMediaFileWithThumbnail(width, height, "", getPath(PDF3), getPath(PDF3));
 
         assertTrue(PDF_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
@@ -176,7 +219,7 @@ public class ThumbnailGeneratorTest {
         final Integer height = ThumbnailType.LARGE.getHeight();
 
         final MediaFile thumbnail = ThumbnailGeneratorFactory.getThumbnailGenerator(ContentType.PDF, PATH_COLORMAP)
-                .createMediaFileWithThumbnail(width, height, "", getPath(PDF4), filesInBytes.get(PDF4), getPath(PDF4));
+                .createMediaFileWithThumbnail(width, height, "", getPath(PDF4), getPath(PDF4));
 
         assertTrue(PDF_MIMETYPE.equalsIgnoreCase(thumbnail.getContentType()));
         assertEquals("", thumbnail.getSource());
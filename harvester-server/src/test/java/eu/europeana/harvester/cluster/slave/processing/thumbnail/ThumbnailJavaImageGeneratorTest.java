@@ -0,0 +1,105 @@
+package eu.europeana.harvester.cluster.slave.processing.thumbnail;
+
+import eu.europeana.harvester.cluster.slave.processing.ProcessingContext;
+import eu.europeana.harvester.domain.ThumbnailType;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static eu.europeana.harvester.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ThumbnailJavaImageGeneratorTest {
+
+    private final ThumbnailJavaImageGenerator generator = new ThumbnailJavaImageGenerator(PATH_COLORMAP);
+
+    @Test
+    public void canGenerateThumbnailsInTheJvm() throws Exception {
+        final byte[] original = filesInBytes.get(Image1);
+        final BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(original));
+        final Integer width = ThumbnailType.MEDIUM.getWidth();
+
+        final byte[] thumbnail = generator.createThumbnail(new File(getPath(Image1)), width, null);
+        final BufferedImage thumbnailImage = ImageIO.read(new ByteArrayInputStream(thumbnail));
+
+        assertEquals(width.intValue(), thumbnailImage.getWidth());
+        assertEquals(Math.round((double) originalImage.getHeight() * width / originalImage.getWidth()), thumbnailImage.getHeight());
+        assertTrue(thumbnail.length < original.length);
+    }
+
+    @Test
+    public void canGenerateAllTheSizesFromASingleDecoding() throws Exception {
+        final List<byte[]> thumbnails = generator.createThumbnails(new File(getPath(Image1)),
+                Arrays.asList(ThumbnailType.LARGE.getWidth(), ThumbnailType.MEDIUM.getWidth()));
+
+        assertEquals(2, thumbnails.size());
+        assertEquals(ThumbnailType.LARGE.getWidth(), ImageIO.read(new ByteArrayInputStream(thumbnails.get(0))).getWidth());
+        assertEquals(ThumbnailType.MEDIUM.getWidth(), ImageIO.read(new ByteArrayInputStream(thumbnails.get(1))).getWidth());
+    }
+
+    @Test
+    public void canGenerateTheThumbnailsFromTheImageDecodedByTheContext() throws Exception {
+        final ProcessingContext context = new ProcessingContext(getPath(Image1), PATH_COLORMAP);
+        assertNotNull(context.getDecodedImage());
+
+        final List<byte[]> thumbnails = generator.createThumbnails(context,
+                Arrays.asList(ThumbnailType.LARGE.getWidth(), ThumbnailType.MEDIUM.getWidth()));
+
+        assertEquals(2, thumbnails.size());
+        assertEquals(ThumbnailType.LARGE.getWidth(), ImageIO.read(new ByteArrayInputStream(thumbnails.get(0))).getWidth());
+        assertEquals(ThumbnailType.MEDIUM.getWidth(), ImageIO.read(new ByteArrayInputStream(thumbnails.get(1))).getWidth());
+    }
+
+    @Test
+    public void canReplaceTheTransparencyWithWhite() throws Exception {
+        final BufferedImage transparent = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+        final File png = File.createTempFile("transparent", ".png");
+        png.deleteOnExit();
+        ImageIO.write(transparent, "png", png);
+
+        final byte[] thumbnail = generator.createThumbnail(png, 100, 100);
+        final BufferedImage thumbnailImage = ImageIO.read(new ByteArrayInputStream(thumbnail));
+
+        assertEquals(100, thumbnailImage.getWidth());
+        assertEquals(50, thumbnailImage.getHeight());
+        final Color center = new Color(thumbnailImage.getRGB(50, 25));
+        assertTrue(center.getRed() > 250 && center.getGreen() > 250 && center.getBlue() > 250);
+    }
+
+    @Test
+    public void canScaleWithoutCopyingTheOriginal() {
+        final BufferedImage transparent = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_ARGB);
+
+        final BufferedImage halved = ThumbnailJavaImageGenerator.scale(transparent, 250, 125);
+        assertEquals(BufferedImage.TYPE_INT_RGB, halved.getType());
+        assertEquals(Color.WHITE.getRGB(), halved.getRGB(125, 60));
+
+        // Already at the size of the thumbnail : only composited over white
+        final BufferedImage sameSize = ThumbnailJavaImageGenerator.scale(transparent, 1000, 500);
+        assertEquals(BufferedImage.TYPE_INT_RGB, sameSize.getType());
+        assertEquals(Color.WHITE.getRGB(), sameSize.getRGB(500, 250));
+        assertSame(halved, ThumbnailJavaImageGenerator.scale(halved, 250, 125));
+    }
+
+    @Test
+    public void canComputeTheThumbnailSizeLikeImageMagick() {
+        assertEquals(new Dimension(200, 100), ThumbnailJavaImageGenerator.thumbnailSize(400, 200, 200, 200));
+        assertEquals(new Dimension(200, 100), ThumbnailJavaImageGenerator.thumbnailSize(400, 200, 200, null));
+        assertEquals(new Dimension(100, 50), ThumbnailJavaImageGenerator.thumbnailSize(400, 200, null, 50));
+        assertEquals(new Dimension(400, 200), ThumbnailJavaImageGenerator.thumbnailSize(400, 200, null, null));
+    }
+
+    @Test
+    public void canTellTheSupportedFormats() {
+        assertTrue(ThumbnailJavaImageGenerator.supports("image/jpeg"));
+        assertTrue(ThumbnailJavaImageGenerator.supports("image/PNG"));
+        assertFalse(ThumbnailJavaImageGenerator.supports("image/tiff"));
+        assertFalse(ThumbnailJavaImageGenerator.supports(null));
+    }
+}
@@ -4,9 +4,13 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import static org.junit.Assert.*;
 
 public class HttpRetrieveResponseDiskStorageTests {
@@ -35,6 +39,79 @@ public class HttpRetrieveResponseDiskStorageTests {
 
     }
 
+    @Test
+    public void canKeepTheValidatorsAsSentByTheServer() throws Exception {
+        final HttpRetrieveResponseDiskStorage storage = new HttpRetrieveResponseDiskStorage(filePath);
+        storage.init();
+        storage.addHeader("ETag", "\"5f3a.1c2b.0\"");
+        storage.addHeader("Last-Modified", "Sat, 17 Oct 2026 03:47:07 GMT");
+        storage.close();
+        assertEquals("\"5f3a.1c2b.0\"", storage.getETag());
+        assertEquals("Sat, 17 Oct 2026 03:47:07 GMT", storage.getLastModified());
+        // The stored validators are sent back by the next conditional download
+        assertEquals("\"5f3a.1c2b.0\"", storage.getResponseHeaders().get("ETag"));
+        storage.addHeader("X-Header.Name", "value.1");
+        assertEquals("value1", storage.getResponseHeaders().get("X-HeaderName"));
+    }
+
+    @Test
+    public void canReportTheFullSizeWhenOnlyTheHeaderIsRetrieved() throws Exception {
+        final HttpRetrieveResponseDiskStorage storage = new HttpRetrieveResponseDiskStorage(filePath);
+        storage.addContent("123".getBytes());
+        storage.close();
+        assertFalse(storage.isHeaderOnly());
+
+        storage.markHeaderOnly(1024);
+        assertTrue(storage.isHeaderOnly());
+        assertEquals(1024, storage.getContentSizeInBytes().intValue());
+
+        // Retrieved again in full
+        storage.init();
+        assertFalse(storage.isHeaderOnly());
+        storage.close();
+    }
+
+    @Test
+    public void canStoreByteBuffersCorrectly() throws Exception {
+        final HttpRetrieveResponseDiskStorage storage = new HttpRetrieveResponseDiskStorage(filePath, DiskSyncPolicy.ON_CLOSE);
+        storage.addContent(ByteBuffer.wrap("123".getBytes()));
+        final ByteBuffer buffer = ByteBuffer.wrap("xx456xx".getBytes(), 2, 3);
+        storage.addContent(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(storage.getContentSizeInBytes().intValue(), 6);
+        storage.close();
+        assertEquals("123456", new String(storage.getContent()));
+    }
+
+    @Test
+    public void canStoreFileChannelsCorrectly() throws Exception {
+        final String partialPath = PATH_PREFIX + "file_storage_partial.txt";
+        Files.write(Paths.get(partialPath), "123456".getBytes());
+        try {
+            final HttpRetrieveResponseDiskStorage storage = new HttpRetrieveResponseDiskStorage(filePath);
+            storage.expectContentSizeInBytes(9);
+            try (final FileChannel partial = FileChannel.open(Paths.get(partialPath), StandardOpenOption.READ)) {
+                storage.addContent(partial);
+            }
+            storage.addContent("789".getBytes());
+            assertEquals(storage.getContentSizeInBytes().intValue(), 9);
+            storage.close();
+            assertEquals("123456789", new String(storage.getContent()));
+        } finally {
+            Files.delete(Paths.get(partialPath));
+        }
+    }
+
+    @Test
+    public void canTruncateTheExtendedFileWhenContentIsShorter() throws Exception {
+        final HttpRetrieveResponseDiskStorage storage = new HttpRetrieveResponseDiskStorage(filePath);
+        storage.expectContentSizeInBytes(1024);
+        assertEquals(1024, new File(filePath).length());
+        storage.addContent("123".getBytes());
+        storage.close();
+        assertEquals(3, new File(filePath).length());
+        assertEquals("123", new String(storage.getContent()));
+    }
 
     @After
     public void tearDown() throws IOException {